@@ -0,0 +1,107 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import net.usmans.engine.ConversionJob;
+import net.usmans.engine.ConversionListener;
+import net.usmans.engine.ConversionSummary;
+import net.usmans.engine.ConversionTarget;
+import net.usmans.engine.KeystoreSource;
+
+/**
+ * Converts keystores a batch at a time into the same targets, and totals the batches. The sinks of
+ * the targets stay open across batches and are only closed by {@link #finish}; failures count
+ * against one error budget for all batches.
+ */
+class BatchedConversion {
+  /** Starts the conversion of one batch. */
+  @FunctionalInterface
+  interface BatchConverter {
+    ConversionJob convert(
+        List<KeystoreSource> batch,
+        ConversionListener listener,
+        List<ConversionTarget> targets,
+        int maxErrors);
+  }
+
+  private final List<ConversionTarget> targets;
+  private final List<ConversionTarget> batchTargets;
+  private final ConversionListener listener;
+  private final int maxErrors;
+  private final BatchConverter converter;
+  private final long startNanos = System.nanoTime();
+  private int converted;
+  private int failed;
+  private int cancelled;
+
+  /**
+   * @param targets The targets of every batch
+   * @param listener Listener of every batch
+   * @param maxErrors Number of failed keystores tolerated over all batches
+   * @param converter Starts the conversion of a batch
+   */
+  BatchedConversion(
+      final List<ConversionTarget> targets,
+      final ConversionListener listener,
+      final int maxErrors,
+      final BatchConverter converter) {
+    this.targets = targets;
+    // the engine closes the sinks of a job once it is done
+    this.batchTargets =
+        targets.stream()
+            .map(target -> new ConversionTarget(target.kdfParamFactory(), target.sink()::write))
+            .toList();
+    this.listener = listener;
+    this.maxErrors = maxErrors;
+    this.converter = converter;
+  }
+
+  /**
+   * @param batch Keystores of the batch
+   * @return The started conversion of the batch, with the error budget left by the previous batches
+   */
+  ConversionJob start(final List<KeystoreSource> batch) {
+    return converter.convert(batch, listener, batchTargets, maxErrors - failed);
+  }
+
+  /**
+   * Count a converted batch.
+   *
+   * @param summary Outcome of the batch
+   * @return true if the next batch should be converted, false if the batch was cancelled or the
+   *     error budget is spent
+   */
+  boolean add(final ConversionSummary summary) {
+    converted += summary.converted();
+    failed += summary.failed();
+    cancelled += summary.cancelled();
+    return summary.cancelled() == 0 && failed <= maxErrors;
+  }
+
+  /**
+   * Count a batch given up for another worker to convert, leaving its cancelled keystores out.
+   *
+   * @param summary Outcome of the batch
+   */
+  void addAbandoned(final ConversionSummary summary) {
+    converted += summary.converted();
+    failed += summary.failed();
+  }
+
+  /**
+   * Close the sinks of the targets.
+   *
+   * @return Totals of all batches
+   * @throws IOException If a sink cannot be closed
+   */
+  ConversionSummary finish() throws IOException {
+    for (final ConversionTarget target : targets) {
+      target.sink().close();
+    }
+    return new ConversionSummary(
+        converted, failed, cancelled, Duration.ofNanos(System.nanoTime() - startNanos));
+  }
+}
@@ -0,0 +1,35 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans;
+
+import java.util.Locale;
+import picocli.CommandLine;
+
+/** Converts sizes such as {@code 512m} or {@code 2g} (binary units) to a number of bytes. */
+public class ByteSizeConverter implements CommandLine.ITypeConverter<Long> {
+  @Override
+  public Long convert(final String value) {
+    final String size = value.trim().toLowerCase(Locale.ROOT);
+    if (size.isEmpty()) {
+      throw new CommandLine.TypeConversionException("Size cannot be empty");
+    }
+    final int shift =
+        switch (size.charAt(size.length() - 1)) {
+          case 'k' -> 10;
+          case 'm' -> 20;
+          case 'g' -> 30;
+          case 't' -> 40;
+          default -> 0;
+        };
+    final String digits = shift == 0 ? size : size.substring(0, size.length() - 1);
+    try {
+      final long number = Long.parseLong(digits);
+      if (number <= 0 || number > (Long.MAX_VALUE >> shift)) {
+        throw new CommandLine.TypeConversionException("Invalid size: " + value);
+      }
+      return number << shift;
+    } catch (final NumberFormatException e) {
+      throw new CommandLine.TypeConversionException("Invalid size: " + value);
+    }
+  }
+}
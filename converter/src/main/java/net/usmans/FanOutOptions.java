@@ -0,0 +1,57 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans;
+
+import java.util.List;
+import picocli.CommandLine;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.ParameterException;
+
+/** Options of a conversion fanned out to child JVMs, see {@link ProcessFanOut}. */
+class FanOutOptions {
+  @Option(
+      names = {"--processes"},
+      paramLabel = "<INTEGER>",
+      description =
+          "Number of child JVMs to fan the conversion out to. Each child converts its own "
+              + "partition of the source keystores. Defaults to ${DEFAULT-VALUE} (convert in "
+              + "this JVM).")
+  int processes = 1;
+
+  @Option(
+      names = {"--process-heap"},
+      paramLabel = "<SIZE>",
+      description =
+          "Maximum heap size of each child JVM when --processes is greater than 1, for example 2g. "
+              + "Defaults to the JVM default.")
+  String processHeap;
+
+  @Option(
+      names = {"--worker"},
+      hidden = true,
+      description =
+          "Internal: convert keystore paths read from stdin and report results on stdout.")
+  boolean worker;
+
+  /**
+   * @return true if the conversion is fanned out to more than one child JVM
+   */
+  boolean enabled() {
+    return processes > 1;
+  }
+
+  /**
+   * @param maxErrors Number of failed keystores tolerated before the children are stopped
+   * @param workerArguments Converter arguments passed to each child
+   * @return The fan-out of --processes
+   */
+  ProcessFanOut fanOut(final int maxErrors, final List<String> workerArguments) {
+    return new ProcessFanOut(processes, processHeap, maxErrors, workerArguments);
+  }
+
+  void validate(final CommandLine commandLine) {
+    if (processes <= 0) {
+      throw new ParameterException(commandLine, "--processes must be a positive integer.");
+    }
+  }
+}
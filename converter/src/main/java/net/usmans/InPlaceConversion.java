@@ -0,0 +1,202 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Converts a keystore directory in place. The converted tree is built in a staging directory next
+ * to the source, on the same file system. Once every keystore converted, the files of the source
+ * that are not keystores are copied over, the staging tree is synced to disk and swapped in with
+ * two renames: the source to a backup directory, then the staging directory to the source. A failed
+ * second rename moves the backup back; should that fail too, both trees are left where they are for
+ * the operator to move. Readers of the source path see either tree, except between the two renames,
+ * when the path briefly does not exist.
+ */
+class InPlaceConversion {
+  private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+  private final Path source;
+  private final Path staging;
+  private final Path backup;
+
+  private InPlaceConversion(final Path source, final Path staging, final Path backup) {
+    this.source = source;
+    this.staging = staging;
+    this.backup = backup;
+  }
+
+  /**
+   * @param source The keystore directory to convert in place
+   * @return The in-place conversion, its staging directory not created yet
+   * @throws IllegalArgumentException If the source has no parent directory
+   */
+  static InPlaceConversion of(final Path source) {
+    final Path absoluteSource = source.toAbsolutePath().normalize();
+    if (absoluteSource.getParent() == null) {
+      throw new IllegalArgumentException("Cannot convert a file system root in place");
+    }
+    final String suffix = LocalDateTime.now().format(SUFFIX);
+    final String name = absoluteSource.getFileName().toString();
+    return new InPlaceConversion(
+        absoluteSource,
+        absoluteSource.resolveSibling(name + ".converting-" + suffix),
+        absoluteSource.resolveSibling(name + ".backup-" + suffix));
+  }
+
+  /**
+   * @return Directory the converted keystores are written to
+   */
+  Path staging() {
+    return staging;
+  }
+
+  /**
+   * @return Directory the source is kept in after the swap
+   */
+  Path backup() {
+    return backup;
+  }
+
+  /**
+   * Complete the staging tree and swap it in for the source.
+   *
+   * @param keystores The source keystores, all converted into the staging directory
+   * @throws UncheckedIOException If the staging tree cannot be completed or swapped in. The source
+   *     is then unchanged, unless it could not be moved back from the backup directory either: the
+   *     message then tells where the backup and the staging trees are.
+   */
+  void swap(final Collection<Path> keystores) {
+    try {
+      Files.createDirectories(staging);
+      copyOtherFiles(
+          keystores.stream()
+              .map(keystore -> keystore.toAbsolutePath().normalize())
+              .collect(Collectors.toSet()));
+      sync(staging);
+
+      Files.move(source, backup, StandardCopyOption.ATOMIC_MOVE);
+      try {
+        Files.move(staging, source, StandardCopyOption.ATOMIC_MOVE);
+      } catch (final IOException e) {
+        try {
+          Files.move(backup, source, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final IOException rollback) {
+          final IOException stranded =
+              new IOException(
+                  String.format(
+                      "Unable to swap the converted keystores into %s, nor to move the source back:"
+                          + " the source keystores are in %s and the converted ones in %s",
+                      source, backup, staging),
+                  e);
+          stranded.addSuppressed(rollback);
+          throw stranded;
+        }
+        throw e;
+      }
+      syncDirectory(source.getParent());
+    } catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Delete the staging directory, leaving the source as it was. Does nothing while the source is
+   * not in place, that is after a swap that could neither complete nor be rolled back: the staging
+   * tree then holds the only converted copy of the keystores.
+   */
+  void abort() {
+    if (!Files.exists(staging, LinkOption.NOFOLLOW_LINKS)
+        || !Files.exists(source, LinkOption.NOFOLLOW_LINKS)) {
+      return;
+    }
+    try (Stream<Path> paths = Files.walk(staging)) {
+      for (final Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+        Files.delete(path);
+      }
+    } catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Copy files the conversion does not write, such as signer configuration, unless a converted
+   * keystore took their place.
+   */
+  private void copyOtherFiles(final Set<Path> keystores) throws IOException {
+    Files.walkFileTree(
+        source,
+        new SimpleFileVisitor<>() {
+          @Override
+          public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs)
+              throws IOException {
+            Files.createDirectories(staging.resolve(source.relativize(dir)));
+            return FileVisitResult.CONTINUE;
+          }
+
+          @Override
+          public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs)
+              throws IOException {
+            final Path target = staging.resolve(source.relativize(file));
+            if (!keystores.contains(file) && !Files.exists(target, LinkOption.NOFOLLOW_LINKS)) {
+              Files.copy(
+                  file, target, StandardCopyOption.COPY_ATTRIBUTES, LinkOption.NOFOLLOW_LINKS);
+            }
+            return FileVisitResult.CONTINUE;
+          }
+        });
+  }
+
+  /** Flush every file and directory of the tree to disk, so the swap never exposes lost writes. */
+  private static void sync(final Path tree) throws IOException {
+    Files.walkFileTree(
+        tree,
+        new SimpleFileVisitor<>() {
+          @Override
+          public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs)
+              throws IOException {
+            if (attrs.isRegularFile()) {
+              try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                channel.force(true);
+              }
+            }
+            return FileVisitResult.CONTINUE;
+          }
+
+          @Override
+          public FileVisitResult postVisitDirectory(final Path dir, final IOException e)
+              throws IOException {
+            if (e != null) {
+              throw e;
+            }
+            syncDirectory(dir);
+            return FileVisitResult.CONTINUE;
+          }
+        });
+  }
+
+  private static void syncDirectory(final Path dir) {
+    try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+      channel.force(true);
+    } catch (final IOException e) {
+      // directories cannot be opened for syncing on every platform, Windows for one
+    }
+  }
+}
@@ -0,0 +1,121 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans;
+
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import picocli.CommandLine;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.ParameterException;
+import tech.pegasys.teku.bls.keystore.KdfEngines;
+import tech.pegasys.teku.bls.keystore.kdf.ParallelSCrypt;
+import tech.pegasys.teku.bls.keystore.model.KdfParam;
+
+/** Options of the KDF implementations, see {@link KdfEngines} and {@link ParallelSCrypt}. */
+class KdfEngineOptions {
+  @Option(
+      names = {"--scrypt-file-threshold"},
+      paramLabel = "<SIZE>",
+      converter = ByteSizeConverter.class,
+      description =
+          "Keep scrypt memory (128 * r * n bytes per lane) larger than this size, for example 256m, "
+              + "in a temporary file mapped into memory instead of the heap, so keystores with a "
+              + "very large n convert within a small heap. The file is overwritten with zeros "
+              + "before it is deleted.")
+  Long scryptFileThreshold;
+
+  @Option(
+      names = {"--scrypt-file-dir"},
+      paramLabel = "<PATH>",
+      description =
+          "Directory of the scrypt memory files of --scrypt-file-threshold, on a local disk. "
+              + "Defaults to the system temporary directory.")
+  Path scryptFileDir;
+
+  @Option(
+      names = {"--select-kdf-engines"},
+      description =
+          "Time the available implementations of each KDF function (Bouncy Castle, the JDK's "
+              + "PBKDF2WithHmacSHA256, parallel scrypt) on the KDF parameters of the job, check "
+              + "that they derive the same keys, and derive keys with the fastest per parameter "
+              + "set. Choices are cached per host in --kdf-engine-cache and reported.")
+  boolean selectKdfEngines;
+
+  @Option(
+      names = {"--kdf-engine-cache"},
+      paramLabel = "<PATH>",
+      description =
+          "File caching the choices of --select-kdf-engines. Defaults to ${DEFAULT-VALUE}.")
+  Path kdfEngineCache =
+      Path.of(System.getProperty("user.home"), ".v4keystore_converter", "kdf-engines.properties");
+
+  /** Keep the scrypt memory above --scrypt-file-threshold in files. */
+  void install() {
+    if (scryptFileThreshold != null) {
+      ParallelSCrypt.fileBackedAbove(
+          scryptFileDir == null ? Path.of(System.getProperty("java.io.tmpdir")) : scryptFileDir,
+          scryptFileThreshold);
+    }
+  }
+
+  /**
+   * Select the fastest KDF engine for each parameter set and report the choices.
+   *
+   * @param params The KDF parameters of the job
+   * @param report Stream for the choices
+   */
+  void select(final List<KdfParam> params, final PrintStream report) {
+    for (final KdfEngines.Selection selection : KdfEngines.select(params, kdfEngineCache)) {
+      final String timings =
+          selection.cached()
+              ? "cached for this host"
+              : selection.timings().isEmpty()
+                  ? "the only engine for these parameters"
+                  : selection.timings().entrySet().stream()
+                      .map(
+                          timing ->
+                              String.format(
+                                  "%s %.2f ms",
+                                  timing.getKey().displayName(), timing.getValue().toNanos() / 1e6))
+                      .collect(Collectors.joining(", "));
+      report.printf(
+          "KDF engine for %s: %s (%s)%n",
+          selection.parameterClass(), selection.engine().displayName(), timings);
+      selection
+          .mismatched()
+          .forEach(
+              engine ->
+                  System.err.printf(
+                      "KDF engine %s derived a different key for %s and is not used.%n",
+                      engine.displayName(), selection.parameterClass()));
+    }
+  }
+
+  void validate(final CommandLine commandLine) {
+    if (scryptFileDir != null && scryptFileThreshold == null) {
+      throw new ParameterException(
+          commandLine, "--scrypt-file-dir requires --scrypt-file-threshold.");
+    }
+    if (scryptFileDir != null && !Files.isDirectory(scryptFileDir)) {
+      throw new ParameterException(commandLine, "--scrypt-file-dir must be an existing directory.");
+    }
+  }
+
+  /** Forward the KDF engine options to the child JVMs of --processes. */
+  void addWorkerArguments(final List<String> arguments) {
+    if (selectKdfEngines) {
+      // the children find the choices of the parent in the cache
+      arguments.add("--select-kdf-engines");
+      arguments.add("--kdf-engine-cache=" + kdfEngineCache);
+    }
+    if (scryptFileThreshold != null) {
+      arguments.add("--scrypt-file-threshold=" + scryptFileThreshold);
+      if (scryptFileDir != null) {
+        arguments.add("--scrypt-file-dir=" + scryptFileDir);
+      }
+    }
+  }
+}
@@ -0,0 +1,108 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans;
+
+import java.nio.file.Path;
+import java.util.Locale;
+import net.usmans.engine.BulkloadingMode;
+import net.usmans.engine.KdfParamFactory;
+import picocli.CommandLine;
+import tech.pegasys.teku.bls.keystore.model.KdfFunction;
+
+/**
+ * One output of a single-pass conversion to several layouts and KDF parameters, given as {@code
+ * <mode>:<kdf>[:<param>=<value>...]:dest=<path>}, for example {@code
+ * nimbus:scrypt:n=262144:dest=/srv/nimbus}. {@code dest} comes last and takes the rest of the
+ * value. KDF parameters that are not given default as for {@code -c}, {@code -n}, {@code -p} and
+ * {@code -r}.
+ *
+ * @param mode Bulk-loading mode the keystores are written in
+ * @param kdfFunction KDF function to convert to
+ * @param c PBKDF2 iterative count
+ * @param n SCRYPT CPU/memory cost
+ * @param p SCRYPT parallelization
+ * @param r SCRYPT block size
+ * @param destination Destination directory
+ */
+public record OutputProfile(
+    BulkloadingMode mode, KdfFunction kdfFunction, int c, int n, int p, int r, Path destination) {
+
+  public KdfParamFactory kdfParamFactory() {
+    return switch (kdfFunction) {
+      case PBKDF2 -> KdfParamFactory.pbkdf2(c);
+      case SCRYPT -> KdfParamFactory.scrypt(n, p, r);
+    };
+  }
+
+  /** Converts {@code --profile} values. */
+  public static class Converter implements CommandLine.ITypeConverter<OutputProfile> {
+    @Override
+    public OutputProfile convert(final String value) {
+      final String[] parts = value.split(":", 3);
+      if (parts.length < 3) {
+        throw invalid(value, "expected <mode>:<kdf>[:<param>=<value>...]:dest=<path>");
+      }
+      final BulkloadingMode mode = parseEnum(BulkloadingMode.class, parts[0], value);
+      final KdfFunction kdfFunction = parseEnum(KdfFunction.class, parts[1], value);
+      int c = 1;
+      int n = 2;
+      int p = 1;
+      int r = 8;
+      String rest = parts[2];
+      while (!rest.startsWith("dest=")) {
+        final int separator = rest.indexOf(':');
+        if (separator < 0) {
+          throw invalid(value, "dest=<path> is required");
+        }
+        final String parameter = rest.substring(0, separator);
+        rest = rest.substring(separator + 1);
+        final String[] keyValue = parameter.split("=", 2);
+        if (keyValue.length != 2) {
+          throw invalid(value, "expected <param>=<value> but got " + parameter);
+        }
+        final int number = parsePositive(keyValue[1], value);
+        switch (keyValue[0].toLowerCase(Locale.ROOT)) {
+          case "c" -> c = number;
+          case "n" -> n = number;
+          case "p" -> p = number;
+          case "r" -> r = number;
+          default -> throw invalid(value, "unknown KDF parameter " + keyValue[0]);
+        }
+      }
+      final String destination = rest.substring("dest=".length());
+      if (destination.isBlank()) {
+        throw invalid(value, "dest cannot be empty");
+      }
+      if (kdfFunction == KdfFunction.SCRYPT && (n <= 1 || Integer.bitCount(n) != 1)) {
+        throw invalid(value, "n must be a power of 2");
+      }
+      return new OutputProfile(mode, kdfFunction, c, n, p, r, Path.of(destination));
+    }
+
+    private static <T extends Enum<T>> T parseEnum(
+        final Class<T> type, final String name, final String value) {
+      try {
+        return Enum.valueOf(type, name.toUpperCase(Locale.ROOT));
+      } catch (final IllegalArgumentException e) {
+        throw invalid(value, "unknown " + type.getSimpleName() + " " + name);
+      }
+    }
+
+    private static int parsePositive(final String number, final String value) {
+      try {
+        final int parsed = Integer.parseInt(number);
+        if (parsed > 0) {
+          return parsed;
+        }
+      } catch (final NumberFormatException e) {
+        // reported below
+      }
+      throw invalid(value, number + " is not a positive integer");
+    }
+
+    private static CommandLine.TypeConversionException invalid(
+        final String value, final String reason) {
+      return new CommandLine.TypeConversionException("Invalid profile '" + value + "': " + reason);
+    }
+  }
+}
@@ -0,0 +1,92 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans;
+
+import java.time.Duration;
+import java.util.List;
+import net.usmans.engine.KeystoreSource;
+import net.usmans.engine.PasswordSource;
+import net.usmans.engine.Prefetcher;
+import picocli.CommandLine;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.ParameterException;
+
+/** Options of the read-ahead of keystores and passwords, see {@link Prefetcher}. */
+class PrefetchOptions {
+  @Option(
+      names = {"--prefetch-depth"},
+      paramLabel = "<INTEGER>",
+      description =
+          "Read up to this many keystores and their passwords ahead of the conversion workers, "
+              + "on separate I/O threads, so that workers do not wait on slow or networked storage "
+              + "such as NFS. Defaults to ${DEFAULT-VALUE} (no read-ahead).")
+  int depth;
+
+  @Option(
+      names = {"--prefetch-threads"},
+      paramLabel = "<INTEGER>",
+      description = "Number of I/O threads reading ahead. Defaults to ${DEFAULT-VALUE}.")
+  int threads = 16;
+
+  @Option(
+      names = {"--prefetch-timeout"},
+      paramLabel = "<SECONDS>",
+      description =
+          "Time after which a single keystore or password read is abandoned and retried. "
+              + "Defaults to ${DEFAULT-VALUE}.")
+  int timeout = 30;
+
+  @Option(
+      names = {"--prefetch-retries"},
+      paramLabel = "<INTEGER>",
+      description =
+          "Number of times a read failing with an I/O error or timing out is retried, "
+              + "with exponential backoff from 100 ms. Missing files and invalid keystores "
+              + "are not retried. Defaults to ${DEFAULT-VALUE}.")
+  int retries = 3;
+
+  @Option(
+      names = {"--prefetch-memory"},
+      paramLabel = "<SIZE>",
+      converter = ByteSizeConverter.class,
+      description =
+          "Stop reading ahead while the keystores and passwords read ahead take more than "
+              + "this size, for example 64m. Defaults to 64m.")
+  long memory = 64L << 20;
+
+  boolean enabled() {
+    return depth > 0;
+  }
+
+  /**
+   * @param sources The keystores, in the order they are converted
+   * @param passwordSource The source of their passwords
+   * @return The started prefetcher
+   */
+  Prefetcher start(final List<KeystoreSource> sources, final PasswordSource passwordSource) {
+    return Prefetcher.start(
+        sources,
+        passwordSource,
+        new Prefetcher.Options(depth, threads, Duration.ofSeconds(timeout), retries, memory));
+  }
+
+  void validate(final CommandLine commandLine) {
+    if (depth < 0 || threads <= 0 || timeout <= 0 || retries < 0) {
+      throw new ParameterException(
+          commandLine,
+          "--prefetch-depth and --prefetch-retries cannot be negative, "
+              + "--prefetch-threads and --prefetch-timeout must be positive.");
+    }
+  }
+
+  /** Forward the read-ahead to the child JVMs of --processes. */
+  void addWorkerArguments(final List<String> arguments) {
+    if (enabled()) {
+      arguments.add("--prefetch-depth=" + depth);
+      arguments.add("--prefetch-threads=" + threads);
+      arguments.add("--prefetch-timeout=" + timeout);
+      arguments.add("--prefetch-retries=" + retries);
+      arguments.add("--prefetch-memory=" + memory);
+    }
+  }
+}
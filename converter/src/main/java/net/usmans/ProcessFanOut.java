@@ -0,0 +1,236 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import me.tongfei.progressbar.ProgressBar;
+
+/**
+ * Fans the conversion out to child JVMs. Each child runs the converter in worker mode, reads its
+ * partition of keystore paths from stdin (one path per line) and reports one line per keystore on
+ * stdout. The parent merges these reports into a single progress bar and exit code.
+ */
+class ProcessFanOut {
+  static final String SUCCESS = "OK";
+  static final String FAILURE = "ERROR";
+
+  private final int processes;
+  private final String heapSize;
+  private final int maxErrors;
+  private final List<String> workerArguments;
+  private final List<Process> children = new CopyOnWriteArrayList<>();
+
+  /**
+   * @param processes Number of child JVMs to launch.
+   * @param heapSize Maximum heap size of each child, for example {@code 2g}. Can be null to use the
+   *     JVM default.
+   * @param maxErrors Number of failed keystores tolerated before the children are stopped.
+   * @param workerArguments Converter arguments passed to each child.
+   */
+  ProcessFanOut(
+      final int processes,
+      final String heapSize,
+      final int maxErrors,
+      final List<String> workerArguments) {
+    this.processes = processes;
+    this.heapSize = heapSize;
+    this.maxErrors = maxErrors;
+    this.workerArguments = workerArguments;
+  }
+
+  /**
+   * Launch the child JVMs, hand each of them a partition of the keystore paths and wait for them to
+   * finish.
+   *
+   * @param keystorePaths The keystore paths to convert.
+   * @return 0 if every keystore was converted by the children, 1 otherwise.
+   * @throws UncheckedIOException If a child JVM cannot be started or its reports cannot be read;
+   *     the children are destroyed.
+   */
+  int run(final List<Path> keystorePaths) {
+    final List<List<Path>> partitions = partition(keystorePaths);
+    final AtomicInteger failures = new AtomicInteger();
+    final ExecutorService ioExecutor = Executors.newCachedThreadPool();
+    boolean finished = false;
+    try (ProgressBar progressBar = new ProgressBar("Converting", keystorePaths.size())) {
+      final List<CompletableFuture<Void>> readers = new ArrayList<>();
+      for (final List<Path> partition : partitions) {
+        if (partition.isEmpty()) {
+          continue;
+        }
+        final Process process = start();
+        children.add(process);
+        CompletableFuture.runAsync(() -> writePartition(process, partition), ioExecutor);
+        readers.add(
+            CompletableFuture.runAsync(
+                () -> readReports(process, partition.size(), progressBar, failures), ioExecutor));
+      }
+      CompletableFuture.allOf(readers.toArray(CompletableFuture[]::new)).join();
+      finished = true;
+    } finally {
+      if (!finished) {
+        // the children would go on converting keystores that this process no longer tracks
+        children.forEach(Process::destroy);
+      }
+      ioExecutor.shutdownNow();
+    }
+    return failures.get() == 0 ? 0 : 1;
+  }
+
+  private List<List<Path>> partition(final List<Path> keystorePaths) {
+    final List<List<Path>> partitions = new ArrayList<>(processes);
+    for (int i = 0; i < processes; i++) {
+      partitions.add(new ArrayList<>());
+    }
+    // round-robin so that each child gets a similar mix of keystores
+    for (int i = 0; i < keystorePaths.size(); i++) {
+      partitions.get(i % processes).add(keystorePaths.get(i));
+    }
+    return partitions;
+  }
+
+  private Process start() {
+    try {
+      return new ProcessBuilder(command()).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to start child JVM", e);
+    }
+  }
+
+  private List<String> command() {
+    final List<String> command = new ArrayList<>();
+    command.add(javaExecutable());
+    ManagementFactory.getRuntimeMXBean().getInputArguments().stream()
+        .filter(this::isInheritable)
+        .forEach(command::add);
+    if (heapSize != null) {
+      command.add("-Xmx" + heapSize);
+    }
+    // children share the host's cores rather than each assuming it owns all of them
+    final int parallelism = Math.max(1, Runtime.getRuntime().availableProcessors() / processes);
+    command.add("-Djava.util.concurrent.ForkJoinPool.common.parallelism=" + parallelism);
+    command.add("-cp");
+    command.add(System.getProperty("java.class.path"));
+    command.add(V4keystore_converterMain.class.getName());
+    command.addAll(workerArguments);
+    return command;
+  }
+
+  private boolean isInheritable(final String jvmArgument) {
+    if (heapSize != null && (jvmArgument.startsWith("-Xmx") || jvmArgument.startsWith("-Xms"))) {
+      return false;
+    }
+    // a debug agent would try to bind the same port in every child
+    return !jvmArgument.startsWith("-agentlib:jdwp")
+        && !jvmArgument.startsWith("-Djava.util.concurrent.ForkJoinPool.common.parallelism");
+  }
+
+  private static String javaExecutable() {
+    return ProcessHandle.current()
+        .info()
+        .command()
+        .orElse(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+  }
+
+  private static void writePartition(final Process process, final List<Path> partition) {
+    try (BufferedWriter writer =
+        new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), UTF_8))) {
+      for (final Path keystorePath : partition) {
+        writer.write(keystorePath.toString());
+        writer.newLine();
+      }
+    } catch (IOException e) {
+      // the child has exited early; the missing reports are counted as failures by the reader
+      System.err.printf("Error while sending keystore paths to child JVM: %s%n", e.getMessage());
+    }
+  }
+
+  private void readReports(
+      final Process process,
+      final int expectedReports,
+      final ProgressBar progressBar,
+      final AtomicInteger failures) {
+    int reports = 0;
+    try (BufferedReader reader =
+        new BufferedReader(new InputStreamReader(process.getInputStream(), UTF_8))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.startsWith(SUCCESS + " ")) {
+          reports++;
+          progressBar.step();
+        } else if (line.startsWith(FAILURE + " ")) {
+          reports++;
+          progressBar.step();
+          final String[] report = line.substring(FAILURE.length() + 1).split("\t", 2);
+          System.err.printf(
+              "Error while converting keystore %s: %s%n",
+              report[0], report.length > 1 ? report[1] : "unknown error");
+          if (failures.incrementAndGet() > maxErrors) {
+            stopChildren();
+          }
+        }
+      }
+      final int exitCode = process.waitFor();
+      if (exitCode != 0 || reports < expectedReports) {
+        System.err.printf(
+            "Child JVM %d exited with code %d after reporting %d of %d keystores.%n",
+            process.pid(), exitCode, reports, expectedReports);
+        failures.addAndGet(Math.max(1, expectedReports - reports));
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } catch (InterruptedException e) {
+      process.destroy();
+      Thread.currentThread().interrupt();
+      failures.incrementAndGet();
+    }
+  }
+
+  private void stopChildren() {
+    // stopped children report fewer keystores than expected and count as failed
+    if (children.stream().anyMatch(Process::isAlive)) {
+      System.err.printf("More than %d keystores failed, stopping child JVMs.%n", maxErrors);
+      children.forEach(Process::destroy);
+    }
+  }
+
+  /**
+   * Read the partition of keystore paths sent by the parent process.
+   *
+   * @param in The worker's stdin.
+   * @return List of keystore paths.
+   * @throws IOException If stdin cannot be read.
+   */
+  static List<Path> readPartition(final InputStream in) throws IOException {
+    final BufferedReader reader = new BufferedReader(new InputStreamReader(in, UTF_8));
+    return reader.lines().filter(line -> !line.isBlank()).map(Path::of).toList();
+  }
+
+  static void reportSuccess(final PrintStream out, final Path keystorePath) {
+    out.println(SUCCESS + " " + keystorePath);
+  }
+
+  static void reportFailure(final PrintStream out, final Path keystorePath, final String message) {
+    // keep the report on a single line, the parent reads it line by line
+    final String reason = message == null ? "unknown error" : message.replaceAll("\\R", " ");
+    out.println(FAILURE + " " + keystorePath + "\t" + reason);
+  }
+}
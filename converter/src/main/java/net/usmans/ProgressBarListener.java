@@ -0,0 +1,26 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans;
+
+import me.tongfei.progressbar.ProgressBar;
+import net.usmans.engine.ConversionListener;
+import net.usmans.engine.ConversionResult;
+
+/** Reports the conversion progress on a terminal progress bar and failures on stderr. */
+class ProgressBarListener implements ConversionListener {
+  private final ProgressBar progressBar;
+
+  ProgressBarListener(final ProgressBar progressBar) {
+    this.progressBar = progressBar;
+  }
+
+  @Override
+  public void onResult(final ConversionResult result) {
+    if (!result.isSuccess()) {
+      System.err.printf(
+          "Error while converting keystore %s (%s): %s%n",
+          result.source().path(), result.failedStage(), result.error().getMessage());
+    }
+    progressBar.step();
+  }
+}
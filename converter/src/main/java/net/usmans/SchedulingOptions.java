@@ -0,0 +1,208 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans;
+
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Supplier;
+import net.usmans.engine.AdaptiveConcurrencyController;
+import net.usmans.engine.CgroupLimits;
+import net.usmans.engine.KdfCostModel;
+import net.usmans.engine.KeystoreConversionEngine;
+import net.usmans.engine.ResourceGovernor;
+import picocli.CommandLine;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.ParameterException;
+import tech.pegasys.teku.bls.keystore.kdf.MultiBufferPbkdf2;
+import tech.pegasys.teku.bls.keystore.kdf.ParallelSCrypt;
+
+/**
+ * Options bounding how many keystores are converted at once and in which order. The executor they
+ * select is created for the first batch of a run and kept for the next ones.
+ */
+class SchedulingOptions {
+  @Option(
+      names = {"--adaptive-concurrency"},
+      description =
+          "Adjust the number of keystores converted concurrently to the observed throughput, "
+              + "GC time and allocation rate instead of using a fixed parallelism. "
+              + "Each adjustment is logged.")
+  boolean adaptiveConcurrency;
+
+  @Option(
+      names = {"--max-concurrency"},
+      paramLabel = "<INTEGER>",
+      description =
+          "Upper bound of keystores converted concurrently with --adaptive-concurrency. "
+              + "Defaults to ${DEFAULT-VALUE}.")
+  int maxConcurrency = 2 * Runtime.getRuntime().availableProcessors();
+
+  @Option(
+      names = {"--cost-scheduling"},
+      description =
+          "Estimate the KDF cost of every keystore, calibrated on this host, and convert the most "
+              + "expensive keystores first within --memory-budget. Reports estimated against "
+              + "actual cost per KDF class.")
+  boolean costScheduling;
+
+  @Option(
+      names = {"--memory-budget"},
+      paramLabel = "<SIZE>",
+      converter = ByteSizeConverter.class,
+      description =
+          "Maximum estimated KDF memory of keystores converted at the same time with "
+              + "--cost-scheduling, for example 2g. Defaults to half of the maximum heap.")
+  Long memoryBudget;
+
+  @Option(
+      names = {"--max-cpu-percent"},
+      paramLabel = "<INTEGER>",
+      description =
+          "Cap the conversion at this percentage of the cores available to the process, after the "
+              + "cgroup v2 cpu.max quota, to run beside a live signer. KDF work is admitted through "
+              + "a token bucket of CPU time on low priority threads and slows down further when the "
+              + "load average shows other processes need the cores.")
+  Integer maxCpuPercent;
+
+  @Option(
+      names = {"--max-memory"},
+      paramLabel = "<SIZE>",
+      converter = ByteSizeConverter.class,
+      description =
+          "Cap the estimated KDF memory of keystores converted at the same time, for example 512m, "
+              + "and at most the cgroup v2 memory.max. Implies --cost-scheduling with this memory "
+              + "budget.")
+  Long maxMemory;
+
+  @Option(
+      names = {"--batch-pbkdf2"},
+      description =
+          "Derive the PBKDF2 keys of several keystores at once, one keystore per SIMD lane. "
+              + "Needs the JVM option --add-modules=jdk.incubator.vector, for example in JAVA_OPTS; "
+              + "keys are derived one at a time without it. Not used with --cost-scheduling.")
+  boolean batchPbkdf2;
+
+  private AdaptiveConcurrencyController concurrencyController;
+  private ResourceGovernor resourceGovernor;
+
+  /**
+   * @return true if the keystores are converted most expensive first, which reorders them
+   */
+  boolean costScheduled() {
+    return costScheduling || maxMemory != null;
+  }
+
+  /**
+   * @return true if the CPU or memory of this process is capped
+   */
+  boolean governed() {
+    return maxCpuPercent != null || maxMemory != null;
+  }
+
+  /**
+   * Set the executor, the order and the batching of a conversion.
+   *
+   * @param builder The engine builder of the conversion
+   * @param costModel The KDF cost model, calibrated the first time it is needed
+   * @param console Stream for the adjustments of the executor
+   */
+  void configure(
+      final KeystoreConversionEngine.Builder builder,
+      final Supplier<KdfCostModel> costModel,
+      final PrintStream console) {
+    if (adaptiveConcurrency && concurrencyController == null) {
+      concurrencyController =
+          new AdaptiveConcurrencyController(
+              1, maxConcurrency, Duration.ofSeconds(2), console::println);
+    }
+    if (concurrencyController != null) {
+      builder.executor(concurrencyController);
+    }
+    if (resourceGovernor == null && maxCpuPercent != null) {
+      final CgroupLimits limits = CgroupLimits.read();
+      final double cpuBudget = ResourceGovernor.cpuBudget(limits, maxCpuPercent);
+      console.printf(
+          "Resource governor: %.2f cores of %d (cgroup cpu.max: %s).%n",
+          cpuBudget,
+          Runtime.getRuntime().availableProcessors(),
+          limits.cpuCores().isPresent()
+              ? String.format("%.2f cores", limits.cpuCores().getAsDouble())
+              : "none");
+      resourceGovernor = new ResourceGovernor(cpuBudget, console::println);
+    }
+    if (resourceGovernor != null) {
+      builder.executor(resourceGovernor);
+      // scrypt lanes run by common pool workers would escape the CPU budget
+      ParallelSCrypt.sequentialLanes();
+    }
+    if (costScheduled()) {
+      builder.costModel(costModel.get());
+      if (maxMemory != null) {
+        builder.memoryBudget(
+            Math.min(maxMemory, CgroupLimits.read().memoryBytes().orElse(Long.MAX_VALUE)));
+      } else if (memoryBudget != null) {
+        builder.memoryBudget(memoryBudget);
+      }
+    } else if (batchPbkdf2) {
+      builder.pbkdf2BatchSize(MultiBufferPbkdf2.LANES);
+    }
+  }
+
+  /**
+   * Stop the executor once the run is converted.
+   *
+   * @param console Stream for the throughput of the resource governor
+   */
+  void close(final PrintStream console) {
+    if (concurrencyController != null) {
+      concurrencyController.close();
+    }
+    if (resourceGovernor != null) {
+      resourceGovernor.close();
+      final ResourceGovernor.Throughput throughput = resourceGovernor.throughput();
+      console.printf(
+          "Resource governor: %d keystores in %.1f s (%.1f keys/s), %.2f of %.2f cores used, "
+              + "workers paused %.1f s.%n",
+          throughput.keystores(),
+          throughput.elapsed().toMillis() / 1000.0,
+          throughput.keysPerSecond(),
+          throughput.cpuCores(),
+          throughput.cpuBudget(),
+          throughput.paused().toMillis() / 1000.0);
+    }
+  }
+
+  void validate(final CommandLine commandLine) {
+    if (maxCpuPercent != null && (maxCpuPercent <= 0 || maxCpuPercent > 100)) {
+      throw new ParameterException(commandLine, "--max-cpu-percent must be between 1 and 100.");
+    }
+    if (maxMemory != null && maxMemory <= 0) {
+      throw new ParameterException(commandLine, "--max-memory must be positive.");
+    }
+    if (maxCpuPercent != null && adaptiveConcurrency) {
+      throw new ParameterException(
+          commandLine, "--max-cpu-percent cannot be used with --adaptive-concurrency.");
+    }
+    if (maxConcurrency <= 0) {
+      throw new ParameterException(commandLine, "--max-concurrency must be a positive integer.");
+    }
+  }
+
+  /** Forward the scheduling to the child JVMs of --processes. */
+  void addWorkerArguments(final List<String> arguments) {
+    if (adaptiveConcurrency) {
+      arguments.add("--adaptive-concurrency");
+      arguments.add("--max-concurrency=" + maxConcurrency);
+    }
+    if (costScheduling) {
+      arguments.add("--cost-scheduling");
+      if (memoryBudget != null) {
+        arguments.add("--memory-budget=" + memoryBudget);
+      }
+    }
+    if (batchPbkdf2) {
+      arguments.add("--batch-pbkdf2");
+    }
+  }
+}
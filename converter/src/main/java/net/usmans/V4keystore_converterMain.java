@@ -2,22 +2,48 @@
 // SPDX-License-Identifier: (Apache-2.0 OR MIT)
 package net.usmans;
 
-import static com.google.common.io.Files.*;
-
 import java.io.IOException;
+import java.io.PrintStream;
 import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Map;
-import java.util.Objects;
+import java.util.Optional;
 import java.util.concurrent.Callable;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 import me.tongfei.progressbar.ProgressBar;
-import org.apache.tuweni.bytes.Bytes;
-import org.apache.tuweni.bytes.Bytes32;
+import net.usmans.archive.ArchiveKeystores;
+import net.usmans.archive.ArchivePasswordSource;
+import net.usmans.archive.ArchiveReader;
+import net.usmans.archive.TarKeystoreSink;
+import net.usmans.bench.BenchCommand;
+import net.usmans.bundle.KeystoreBundle;
+import net.usmans.bundle.KeystoreBundleWriter;
+import net.usmans.claim.ClaimOptions;
+import net.usmans.claim.LeaseDirectory;
+import net.usmans.daemon.ClientCommand;
+import net.usmans.daemon.DaemonCommand;
+import net.usmans.engine.BulkloadingMode;
+import net.usmans.engine.ConversionJob;
+import net.usmans.engine.ConversionListener;
+import net.usmans.engine.ConversionResult;
+import net.usmans.engine.ConversionSummary;
+import net.usmans.engine.ConversionTarget;
+import net.usmans.engine.KdfCostModel;
+import net.usmans.engine.KdfParamFactory;
+import net.usmans.engine.KeystoreConversionEngine;
+import net.usmans.engine.KeystoreSink;
+import net.usmans.engine.KeystoreSource;
+import net.usmans.engine.PasswordCandidates;
+import net.usmans.engine.PasswordSource;
+import net.usmans.engine.Prefetcher;
+import net.usmans.engine.Preflight;
+import net.usmans.index.KeystoreIndex;
+import net.usmans.inventory.InventoryCommand;
+import net.usmans.metrics.ConversionMetrics;
+import net.usmans.metrics.MetricsOptions;
+import net.usmans.metrics.MetricsServer;
 import picocli.CommandLine;
 import picocli.CommandLine.ArgGroup;
 import picocli.CommandLine.Command;
@@ -25,47 +51,88 @@ import picocli.CommandLine.Model.CommandSpec;
 import picocli.CommandLine.Option;
 import picocli.CommandLine.ParameterException;
 import picocli.CommandLine.Spec;
-import tech.pegasys.teku.bls.keystore.KeyStore;
-import tech.pegasys.teku.bls.keystore.KeyStoreLoader;
-import tech.pegasys.teku.bls.keystore.model.Cipher;
-import tech.pegasys.teku.bls.keystore.model.CipherFunction;
+import tech.pegasys.teku.bls.keystore.DerivedKeyCache;
 import tech.pegasys.teku.bls.keystore.model.KdfFunction;
-import tech.pegasys.teku.bls.keystore.model.KeyStoreData;
-import tech.pegasys.teku.bls.keystore.model.Pbkdf2Param;
-import tech.pegasys.teku.bls.keystore.model.Pbkdf2PseudoRandomFunction;
-import tech.pegasys.teku.bls.keystore.model.SCryptParam;
+import tech.pegasys.teku.bls.keystore.model.KdfParam;
 
 @Command(
     name = "converter",
     mixinStandardHelpOptions = true,
     versionProvider = PicoCliVersionProvider.class,
     description = "Convert KDF function parameters of BLS V4 keystores",
+    subcommands = {
+      BenchCommand.class,
+      DaemonCommand.class,
+      ClientCommand.class,
+      InventoryCommand.class
+    },
     sortOptions = false,
     sortSynopsis = false)
 public class V4keystore_converterMain implements Callable<Integer> {
-  static final SecureRandom SECURE_RANDOM = new SecureRandom();
-
   @Option(
       names = {"--src"},
       paramLabel = "<PATH>",
-      description = "Source directory containing v4 keystores",
-      required = true)
+      description =
+          "Source directory containing v4 keystores, a keystore bundle file, or a tar, tar.gz or "
+              + "zip archive of keystores (- to read the archive from stdin). Required.")
   private Path source;
 
   @Option(
       names = {"--password-src"},
       paramLabel = "<PATH>",
-      description = "Path to directory containing passwords files.",
-      required = true)
+      description =
+          "Path to directory containing passwords files, or a tar, tar.gz or zip archive of "
+              + "password files (- to read the archive from stdin). Required.")
   private Path passwordPath;
 
+  @Option(
+      names = {"--password-candidates"},
+      paramLabel = "<PATH>",
+      description =
+          "Candidate passwords for keystores whose password file is missing: a directory of "
+              + "password files, searched recursively, or a file with one password per line. "
+              + "Candidates are tried in parallel until the keystore checksum matches, those found "
+              + "next to the keystore and those matched most recently first.")
+  private Path passwordCandidatesPath;
+
+  @Option(
+      names = {"--password-matches"},
+      paramLabel = "<FILE>",
+      description =
+          "JSON file recording which candidate matched which keystore, read first to try those "
+              + "candidates first and written after the conversion. Holds the origin of each "
+              + "candidate, not the password. Defaults to ${DEFAULT-VALUE}.")
+  private Path passwordMatchesFile = Path.of("password-matches.json");
+
   @Option(
       names = {"--dest"},
       paramLabel = "<PATH>",
-      description = "Destination directory where converted v4 keystores will be placed.",
-      required = true)
+      description =
+          "Destination directory where converted v4 keystores will be placed, or a .tar or .tar.gz "
+              + "file to stream them into (- for stdout). Required unless --profile is given.")
   private Path destination;
 
+  @Option(
+      names = {"--in-place"},
+      description =
+          "Convert --src in place instead of into --dest. The converted tree is built next to "
+              + "--src, synced to disk and swapped in with a rename once every keystore converted; "
+              + "--src is kept as a .backup directory. Other files in --src are carried over. "
+              + "--src is left untouched if any keystore fails.")
+  private boolean inPlace;
+
+  @Option(
+      names = {"--profile"},
+      paramLabel = "<PROFILE>",
+      converter = OutputProfile.Converter.class,
+      description =
+          "Output profile as <mode>:<kdf>[:<param>=<value>...]:dest=<path>, for example "
+              + "nimbus:scrypt:n=262144:dest=/srv/nimbus. Repeat to convert to several layouts and "
+              + "KDF parameters in a single pass: every keystore is decrypted once and re-encrypted "
+              + "for all profiles. Replaces --dest, --kdf-function, -c, -n, -p and -r; --mode is "
+              + "the layout of the source.")
+  private List<OutputProfile> profiles = List.of();
+
   @Option(
       names = {"--mode"},
       paramLabel = "<MODE>",
@@ -75,6 +142,17 @@ public class V4keystore_converterMain implements Callable<Integer> {
               + "Valid Values: ${COMPLETION-CANDIDATES}. Defaults to: ${DEFAULT-VALUE}")
   private BulkloadingMode mode = BulkloadingMode.WEB3SIGNER;
 
+  @Option(
+      names = {"--output-format"},
+      paramLabel = "<FORMAT>",
+      description =
+          "Format of converted keystores. JSON writes one EIP-2335 json file per keystore as per --mode, "
+              + "BUNDLE packs all keystores into a single, indexed "
+              + KeystoreBundle.FILE_NAME
+              + " file in the destination directory. "
+              + "Valid values: ${COMPLETION-CANDIDATES}. Defaults to: ${DEFAULT-VALUE}")
+  private OutputFormat outputFormat = OutputFormat.JSON;
+
   @Option(
       names = {"--kdf-function"},
       paramLabel = "<KDF>",
@@ -82,12 +160,66 @@ public class V4keystore_converterMain implements Callable<Integer> {
           "Kdf Function to convert to. Valid values: ${COMPLETION-CANDIDATES}. Defaults to: ${DEFAULT-VALUE}")
   private KdfFunction kdfFunction = KdfFunction.PBKDF2;
 
+  @Option(
+      names = {"--shared-kdf-salt"},
+      description =
+          "Encrypt all keystores with the same KDF salt and derive the key only once per distinct password. "
+              + "Conversion cost drops from one KDF run per keystore to one per password, but keystores "
+              + "sharing a password then also share the derived key and differ only in their AES IV: "
+              + "breaking one such keystore breaks all of them, and an attacker pays the KDF cost once for "
+              + "the whole set instead of once per keystore. Do not use for production keys unless that "
+              + "tradeoff is acceptable.")
+  private boolean sharedKdfSalt;
+
+  @Option(
+      names = {"--use-index"},
+      description =
+          "Keep a persistent index of keystore public keys and KDF parameters in the source directory ("
+              + KeystoreIndex.INDEX_FILE_NAME
+              + "). Only keystores added or changed since the last run are parsed to refresh it.")
+  private boolean useIndex;
+
+  @Option(
+      names = {"--skip-preflight"},
+      description =
+          "Skip the checks run before any KDF work: every keystore is parsed and validated, its "
+              + "password must be readable, public keys must be unique and no two keystores may be "
+              + "written to the same destination file.")
+  private boolean skipPreflight;
+
+  @Option(
+      names = {"--max-errors"},
+      paramLabel = "<INTEGER>",
+      description =
+          "Number of failed keystores tolerated, in preflight and during the conversion. Once "
+              + "exceeded, the remaining keystores are cancelled. Defaults to 0 for the preflight "
+              + "and unlimited during the conversion.")
+  private Integer maxErrors;
+
   @ArgGroup(validate = false, heading = "PBKDF2 Options%n")
   PBKDFOptions pbkdfOptions = new PBKDFOptions();
 
   @ArgGroup(validate = false, heading = "SCRYPT Options%n")
   SCRYPTOptions scryptOptions = new SCRYPTOptions();
 
+  @ArgGroup(validate = false, heading = "Scheduling Options%n")
+  SchedulingOptions schedulingOptions = new SchedulingOptions();
+
+  @ArgGroup(validate = false, heading = "Prefetch Options%n")
+  PrefetchOptions prefetchOptions = new PrefetchOptions();
+
+  @ArgGroup(validate = false, heading = "KDF Engine Options%n")
+  KdfEngineOptions kdfEngineOptions = new KdfEngineOptions();
+
+  @ArgGroup(validate = false, heading = "Claim Options%n")
+  ClaimOptions claimOptions = new ClaimOptions();
+
+  @ArgGroup(validate = false, heading = "Process Options%n")
+  FanOutOptions fanOutOptions = new FanOutOptions();
+
+  @ArgGroup(validate = false, heading = "Metrics Options%n")
+  MetricsOptions metricsOptions = new MetricsOptions();
+
   static class PBKDFOptions {
     @Option(
         names = {"-c"},
@@ -122,12 +254,29 @@ public class V4keystore_converterMain implements Callable<Integer> {
 
   @Spec private CommandSpec spec; // will be populated by PicoCli at runtime
 
-  enum BulkloadingMode {
-    WEB3SIGNER,
-    NIMBUS
+  enum OutputFormat {
+    JSON,
+    BUNDLE
   }
 
-  record KeyStoreRecord(KeyStoreData keyStoreData, Bytes privateKey, String password) {}
+  // keystores read from an archive are converted in batches to bound memory
+  private static final int ARCHIVE_BATCH_SIZE = 1024;
+
+  // keystores whose KDF parameters are read to find the parameter sets of a job
+  private static final int KDF_ENGINE_SAMPLE_SIZE = 256;
+
+  private DerivedKeyCache derivedKeyCache;
+  private ConversionMetrics metrics;
+  private KdfCostModel costModel;
+  private KdfParamFactory kdfParamFactory;
+  private PasswordSource passwordSource;
+  private PasswordCandidates passwordCandidates;
+  private Prefetcher prefetcher;
+  private List<KeystoreSource> prefetchedSources;
+  private Prefetcher.Statistics prefetchStatistics;
+  private List<KeystoreSource> sources;
+  private KeystoreSink keystoreSink;
+  private List<ConversionTarget> targets;
 
   public static void main(String[] args) {
     int exitCode =
@@ -141,146 +290,671 @@ public class V4keystore_converterMain implements Callable<Integer> {
   public Integer call() {
     validateCliParams();
 
-    System.out.println("Reading source paths ...");
-    List<Path> srcPaths = getKeystoresPath();
+    kdfEngineOptions.install();
 
-    final Map<Path, KeyStoreRecord> decryptedKeystores = decryptKeystores(srcPaths);
+    if (fanOutOptions.worker) {
+      return runWorker();
+    }
 
-    convertDecryptedKeystores(decryptedKeystores);
-    System.out.println("Conversion completed successfully.");
-    return 0;
+    if (metricsOptions.enabled()) {
+      metrics = new ConversionMetrics();
+    }
+    try (MetricsServer ignored = metricsOptions.start(metrics, console())) {
+      return inPlace ? convertInPlace() : convertAll();
+    } finally {
+      closePasswordCandidates();
+    }
+  }
+
+  private void closePasswordCandidates() {
+    if (passwordCandidates == null) {
+      return;
+    }
+    passwordCandidates.close();
+    if (!passwordCandidates.matches().isEmpty()) {
+      console()
+          .printf(
+              "Found the passwords of %d keystores among %d candidates, recorded in %s%n",
+              passwordCandidates.matches().size(), passwordCandidates.size(), passwordMatchesFile);
+    }
+  }
+
+  private Integer convertInPlace() {
+    final InPlaceConversion inPlaceConversion = InPlaceConversion.of(source);
+    destination = inPlaceConversion.staging();
+    boolean swapped = false;
+    try {
+      final int exitCode = convertAll();
+      if (exitCode != 0) {
+        System.err.printf("%s was left unchanged.%n", source);
+        return exitCode;
+      }
+      inPlaceConversion.swap(sources.stream().map(KeystoreSource::path).toList());
+      swapped = true;
+      console()
+          .printf(
+              "Swapped the converted keystores into %s, the previous ones are in %s%n",
+              source, inPlaceConversion.backup());
+      return 0;
+    } finally {
+      if (!swapped) {
+        inPlaceConversion.abort();
+      }
+    }
+  }
+
+  private Integer convertAll() {
+    if (ArchiveKeystores.isArchive(source)) {
+      return convertArchive();
+    }
+
+    console().println("Reading source paths ...");
+    sources = getKeystoreSources();
+
+    if (!skipPreflight) {
+      // with a single converting process, the checks read through the prefetcher of the conversion
+      final Prefetcher preflightPrefetcher =
+          prefetchOptions.enabled() && !claimOptions.enabled() && !fanOutOptions.enabled()
+              ? prefetcher(sources)
+              : null;
+      final boolean passed =
+          preflightPrefetcher == null
+              ? preflight(sources, passwordSource())
+              : preflight(preflightPrefetcher.preflightSources(), preflightPrefetcher);
+      if (!passed) {
+        closePrefetcher();
+        return 1;
+      }
+    }
+
+    selectKdfEngines(sources);
+
+    if (claimOptions.enabled()) {
+      return convertClaimed();
+    }
+
+    if (fanOutOptions.enabled()) {
+      createDestinationDirectory();
+      final int exitCode =
+          fanOutOptions
+              .fanOut(maxErrors(), workerArguments())
+              .run(sources.stream().map(KeystoreSource::path).toList());
+      if (exitCode == 0) {
+        console().println("Conversion completed successfully.");
+      }
+      return exitCode;
+    }
+
+    final ConversionSummary summary;
+    try (ProgressBar progressBar = new ProgressBar("Converting", sources.size())) {
+      summary =
+          convert(sources, new ProgressBarListener(progressBar), targets(), maxErrors())
+              .completion()
+              .join();
+    }
+    return finish(summary);
   }
 
   /**
-   * Read keystore paths from source directory. Web3Signer has publickey.json as keystore files.
-   * Nimbus has publickey/keystore.json as keystore files. The {@code Files.list} method does not
-   * run in parallel, hence we only read the keystores Paths that will be processed later.
+   * Convert the batches of keystores this worker claims in --claim-dir, until every batch of the
+   * tree is converted by one worker or another.
    *
-   * @return List of keystore paths
+   * @return Exit code, 1 if a keystore converted by this worker failed
    */
-  private List<Path> getKeystoresPath() {
-    try (Stream<Path> srcFiles = Files.list(source)) {
-      return switch (mode) {
-        case WEB3SIGNER ->
-            srcFiles
-                .filter(
-                    path ->
-                        Files.isRegularFile(path)
-                            && path.getFileName().toString().endsWith(".json")
-                            && !path.getFileName().toString().startsWith("deposit_data"))
-                .toList();
-        case NIMBUS ->
-            srcFiles.filter(Files::isDirectory).map(path -> path.resolve("keystore.json")).toList();
-      };
+  private Integer convertClaimed() {
+    final List<KeystoreSource> ordered =
+        sources.stream().sorted(Comparator.comparing(KeystoreSource::path)).toList();
+    final ConversionSummary summary;
+    try (LeaseDirectory leases =
+            claimOptions.open(
+                ordered.stream().map(keystore -> relativeToSource(keystore.path())).toList());
+        ProgressBar progressBar = new ProgressBar("Converting", -1)) {
+      console()
+          .printf(
+              "Claiming batches of %d keystores in %s as %s ...%n",
+              claimOptions.batchSize(), claimOptions.claimDir(), leases.owner());
+      final BatchedConversion conversion =
+          new BatchedConversion(
+              targets(), new ProgressBarListener(progressBar), maxErrors(), this::convert);
+      int batches = 0;
+      Optional<LeaseDirectory.Lease> lease;
+      while ((lease = leases.claim()).isPresent()) {
+        final ConversionJob job =
+            conversion.start(ordered.subList(lease.get().fromIndex(), lease.get().toIndex()));
+        // the worker that claimed the batch from us converts it again
+        lease.get().onLost(job::cancel);
+        final ConversionSummary batchSummary = job.completion().join();
+        if (lease.get().isLost()) {
+          conversion.addAbandoned(batchSummary);
+          System.err.printf(
+              "The lease on batch %d expired while converting it and another worker claimed it,"
+                  + " stopped converting it.%n",
+              lease.get().batch());
+          continue;
+        }
+        batches++;
+        if (!conversion.add(batchSummary)) {
+          lease.get().release();
+          break;
+        }
+        lease.get().complete(batchSummary.failed());
+      }
+      summary = conversion.finish();
+      console()
+          .printf(
+              "Converted %d of %d batches, %d of them claimed from expired leases.%n",
+              batches, leases.batches(), leases.reclaimed());
+    } catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for a batch to claim", e);
+    }
+    return finish(summary);
+  }
+
+  /** Path of a keystore as all workers see it, whatever the mount point of the source. */
+  private Path relativeToSource(final Path keystore) {
+    return keystore.startsWith(source) ? source.relativize(keystore) : keystore;
+  }
+
+  /**
+   * With --select-kdf-engines, select the fastest KDF engine for the parameter sets of the targets
+   * and of a sample of the sources.
+   *
+   * @param sources The source keystores
+   */
+  private void selectKdfEngines(final List<KeystoreSource> sources) {
+    if (!kdfEngineOptions.selectKdfEngines) {
+      return;
+    }
+    final List<KdfParam> params = new ArrayList<>();
+    targets().forEach(target -> params.add(target.kdfParamFactory().create()));
+    // reading every keystore again would cost as much as the preflight, a sample finds the
+    // parameter sets of a tree; sets that are missed use the default engine
+    final int step = Math.max(1, sources.size() / KDF_ENGINE_SAMPLE_SIZE);
+    for (int i = 0; i < sources.size(); i += step) {
+      try {
+        params.add(sources.get(i).kdfParam());
+      } catch (final RuntimeException e) {
+        // reported when the keystore is converted
+      }
+    }
+    // workers report to the parent on stdout
+    kdfEngineOptions.select(params, fanOutOptions.worker ? System.err : console());
+  }
+
+  /**
+   * Stream keystores out of the source archive and convert them a batch at a time, so that the
+   * archive is never held in memory or extracted to disk. Preflight checks would need a pass over
+   * the whole archive and are not run; invalid keystores fail as they are converted.
+   *
+   * @return Exit code
+   */
+  private Integer convertArchive() {
+    // the source keystores are not known before they are streamed
+    selectKdfEngines(List.of());
+    console().printf("Streaming keystores from %s ...%n", source);
+    final ConversionSummary summary;
+    try (ArchiveReader reader = ArchiveKeystores.openReader(source);
+        ProgressBar progressBar = new ProgressBar("Converting", -1)) {
+      final BatchedConversion conversion =
+          new BatchedConversion(
+              targets(), new ProgressBarListener(progressBar), maxErrors(), this::convert);
+      List<KeystoreSource> batch;
+      while (!(batch = ArchiveKeystores.nextBatch(reader, mode, ARCHIVE_BATCH_SIZE)).isEmpty()) {
+        if (!conversion.add(conversion.start(batch).completion().join())) {
+          break;
+        }
+      }
+      summary = conversion.finish();
     } catch (IOException e) {
       throw new UncheckedIOException(e);
     }
+    return finish(summary);
+  }
+
+  private Integer finish(final ConversionSummary summary) {
+    printPrefetchStatistics();
+
+    schedulingOptions.close(console());
+
+    if (schedulingOptions.costScheduling) {
+      printCostReport();
+    }
+
+    if (derivedKeyCache != null) {
+      console()
+          .printf(
+              "Shared KDF salt: %d key derivations for %d keystores.%n",
+              derivedKeyCache.size(), summary.converted());
+    }
+
+    if (!summary.isSuccess()) {
+      System.err.printf(
+          "Converted %d keystores, %d failed, %d cancelled.%n",
+          summary.converted(), summary.failed(), summary.cancelled());
+      return 1;
+    }
+    console().println("Conversion completed successfully.");
+    return 0;
   }
 
   /**
-   * Decrypt v4 keystores.
+   * Check the sources before any KDF work.
    *
-   * @param keystorePaths The keystore paths that will be decrypted.
-   * @return Map of encrypted keystore path and decrypted keystore data.
+   * @param sources The keystore sources
+   * @param passwordSource The source of their passwords
+   * @return true if the conversion can go ahead
    */
-  private Map<Path, KeyStoreRecord> decryptKeystores(final List<Path> keystorePaths) {
-    return ProgressBar.wrap(keystorePaths.parallelStream(), "Decrypting")
-        .map(
-            keystorePath -> {
-              var password = getPassword(keystorePath);
-              try {
-                final KeyStoreData keyStoreData = KeyStoreLoader.loadFromFile(keystorePath.toUri());
-                final Bytes privateKey = KeyStore.decrypt(password, keyStoreData);
-                return Map.entry(
-                    keystorePath, new KeyStoreRecord(keyStoreData, privateKey, password));
-              } catch (final RuntimeException e) {
-                System.err.printf("Error decrypting keystore: %s%n", e.getMessage());
-                return null;
-              }
-            })
-        .filter(Objects::nonNull)
-        .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+  private boolean preflight(
+      final List<KeystoreSource> sources, final PasswordSource passwordSource) {
+    console().println("Running preflight checks ...");
+    final Preflight.Report report =
+        new Preflight(
+                passwordSource,
+                // an archive has no per-keystore destination files, and must not be created yet
+                ArchiveKeystores.isArchive(destination)
+                    ? List.of(new ConversionTarget(kdfParamFactory(), (source, converted) -> {}))
+                    : targets(),
+                costModel())
+            .check(sources);
+    report
+        .issues()
+        .forEach(
+            issue ->
+                (issue.severity() == Preflight.Severity.ERROR ? System.err : console())
+                    .printf("%s %s: %s%n", issue.severity(), issue.path(), issue.message()));
+    final double kdfSeconds = report.estimatedKdfTime().toMillis() / 1000.0;
+    final int cores = Runtime.getRuntime().availableProcessors();
+    console()
+        .printf(
+            "Preflight: %d keystores, %d errors, estimated KDF time %.1f s of CPU,"
+                + " about %.1f s on %d cores.%n",
+            report.keystores(), report.errors(), kdfSeconds, kdfSeconds / cores, cores);
+    if (report.errors() > (maxErrors == null ? 0 : maxErrors)) {
+      System.err.println("Preflight failed, no keystore was converted.");
+      return false;
+    }
+    return true;
+  }
+
+  private KdfCostModel costModel() {
+    if (costModel == null) {
+      costModel = KdfCostModel.calibrate();
+    }
+    return costModel;
+  }
+
+  private void printCostReport() {
+    console().println("KDF cost per key derivation, estimated against actual:");
+    costModel
+        .report()
+        .forEach(
+            costClass ->
+                console()
+                    .printf(
+                        "  %-28s %8d derivations, estimated %8.1f ms, actual %8.1f ms%n",
+                        costClass.costClass(),
+                        costClass.derivations(),
+                        costClass.estimated().toNanos() / 1e6,
+                        costClass.actual().toNanos() / 1e6));
+  }
+
+  private int maxErrors() {
+    return maxErrors == null ? Integer.MAX_VALUE : maxErrors;
+  }
+
+  private ConversionJob convert(
+      final List<KeystoreSource> sources,
+      final ConversionListener listener,
+      final List<ConversionTarget> targets,
+      final int maxErrors) {
+    if (sharedKdfSalt && derivedKeyCache == null) {
+      derivedKeyCache = new DerivedKeyCache();
+    }
+    final KeystoreConversionEngine.Builder builder = KeystoreConversionEngine.builder();
+    // workers report to the parent on stdout
+    schedulingOptions.configure(
+        builder, this::costModel, fanOutOptions.worker ? System.err : console());
+    targets.stream()
+        .skip(1)
+        .forEach(target -> builder.addTarget(target.kdfParamFactory(), target.sink()));
+    // archive batches are already in memory
+    if (prefetchOptions.enabled() && !ArchiveKeystores.isArchive(source)) {
+      final Prefetcher prefetcher = prefetcher(sources);
+      builder.sources(prefetcher.sources()).passwordSource(prefetcher);
+    } else {
+      builder.sources(sources).passwordSource(passwordSource());
+    }
+    return builder
+        .kdfParamFactory(targets.get(0).kdfParamFactory())
+        .derivedKeyCache(derivedKeyCache)
+        .maxErrors(maxErrors)
+        .sink(targets.get(0).sink())
+        .listener(metrics == null ? listener : listener.andThen(metrics))
+        .build()
+        .start();
+  }
+
+  /**
+   * @return The --profile targets, or the single target of --dest and the KDF options
+   */
+  private List<ConversionTarget> targets() {
+    if (targets == null) {
+      targets =
+          profiles.isEmpty()
+              ? List.of(new ConversionTarget(kdfParamFactory(), keystoreSink()))
+              : profiles.stream()
+                  .map(
+                      profile ->
+                          new ConversionTarget(
+                              sharedKdfSalt
+                                  ? profile.kdfParamFactory().withSharedSalt()
+                                  : profile.kdfParamFactory(),
+                              KeystoreSink.directory(profile.destination(), mode, profile.mode())))
+                  .toList();
+      if (claimOptions.enabled()) {
+        // a worker that lost its lease may still be writing the keystores of a reclaimed batch
+        targets =
+            targets.stream()
+                .map(
+                    target ->
+                        target.sink() instanceof KeystoreSink.DirectorySink sink
+                            ? new ConversionTarget(
+                                target.kdfParamFactory(), sink.withAtomicWrites())
+                            : target)
+                .toList();
+      }
+    }
+    return targets;
+  }
+
+  private KeystoreSink keystoreSink() {
+    if (keystoreSink == null) {
+      try {
+        keystoreSink =
+            ArchiveKeystores.isArchive(destination)
+                ? new TarKeystoreSink(ArchiveKeystores.openWriter(destination), mode)
+                : switch (outputFormat) {
+                  case JSON -> KeystoreSink.directory(destination, mode);
+                  case BUNDLE ->
+                      new KeystoreBundleWriter(destination.resolve(KeystoreBundle.FILE_NAME));
+                };
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+    return keystoreSink;
+  }
+
+  private PasswordSource passwordSource() {
+    if (passwordSource == null) {
+      if (ArchiveKeystores.isArchive(passwordPath)) {
+        // passwords are only held in memory, never extracted to disk
+        try (ArchiveReader reader = ArchiveKeystores.openReader(passwordPath)) {
+          passwordSource = ArchivePasswordSource.read(reader, mode);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      } else {
+        passwordSource = PasswordSource.directory(passwordPath, mode);
+      }
+      if (passwordCandidatesPath != null) {
+        passwordCandidates =
+            PasswordCandidates.load(
+                passwordSource,
+                passwordCandidatesPath,
+                passwordMatchesFile,
+                Runtime.getRuntime().availableProcessors());
+        passwordSource = passwordCandidates;
+      }
+    }
+    return passwordSource;
+  }
+
+  private KdfParamFactory kdfParamFactory() {
+    if (kdfParamFactory == null) {
+      final KdfParamFactory factory =
+          switch (kdfFunction) {
+            case PBKDF2 -> KdfParamFactory.pbkdf2(pbkdfOptions.c);
+            case SCRYPT ->
+                KdfParamFactory.scrypt(scryptOptions.n, scryptOptions.p, scryptOptions.r);
+          };
+      kdfParamFactory = sharedKdfSalt ? factory.withSharedSalt() : factory;
+    }
+    return kdfParamFactory;
   }
 
-  private void convertDecryptedKeystores(final Map<Path, KeyStoreRecord> decryptedKeystores) {
+  /**
+   * @return Stream for progress messages; stderr when the converted keystores go to stdout
+   */
+  private PrintStream console() {
+    return ArchiveKeystores.isStandardStream(destination) ? System.err : System.out;
+  }
+
+  /**
+   * Read keystore sources, either the keystore files of the source directory as per bulk-loading
+   * mode or the keystores packed in a source bundle file.
+   *
+   * @return List of keystore sources
+   */
+  private List<KeystoreSource> getKeystoreSources() {
+    try {
+      if (Files.isRegularFile(source)) {
+        return KeystoreBundle.open(source).sources(mode);
+      }
+      if (useIndex) {
+        return getIndexedKeystoreSources();
+      }
+      return mode.listKeystores(source).stream().map(KeystoreSource::file).toList();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private List<KeystoreSource> getIndexedKeystoreSources() throws IOException {
+    final KeystoreIndex index = KeystoreIndex.refresh(source, mode);
+    final KeystoreIndex.RefreshStatistics statistics = index.statistics();
+    console()
+        .printf(
+            "Keystore index: %d unchanged, %d parsed, %d removed, %d not indexable.%n",
+            statistics.reused(),
+            statistics.parsed(),
+            statistics.removed(),
+            statistics.failures().size());
+    // keystores that could not be indexed are still converted so that their errors are reported
+    final List<KeystoreSource> sources = new ArrayList<>(index.entries());
+    statistics.failures().keySet().stream().map(KeystoreSource::file).forEach(sources::add);
+    return sources;
+  }
+
+  private void createDestinationDirectory() {
     try {
       Files.createDirectories(destination);
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
-
-    ProgressBar.wrap(decryptedKeystores.entrySet().parallelStream(), "Converting")
-        .forEach(
-            entry -> {
-              try {
-                var kdfParam =
-                    switch (kdfFunction) {
-                      case PBKDF2 ->
-                          new Pbkdf2Param(
-                              32,
-                              pbkdfOptions.c,
-                              Pbkdf2PseudoRandomFunction.HMAC_SHA256,
-                              Bytes32.random(SECURE_RANDOM));
-                      case SCRYPT ->
-                          new SCryptParam(
-                              32,
-                              scryptOptions.n,
-                              scryptOptions.p,
-                              scryptOptions.r,
-                              Bytes32.random(SECURE_RANDOM));
-                    };
-
-                var cipher =
-                    new Cipher(CipherFunction.AES_128_CTR, Bytes.random(16, SECURE_RANDOM));
-
-                var pubKey = entry.getValue().keyStoreData().getPubkey();
-                final KeyStoreData encrypted =
-                    KeyStore.encrypt(
-                        entry.getValue().privateKey(),
-                        pubKey,
-                        entry.getValue().password(),
-                        entry.getValue().keyStoreData().getPath(),
-                        kdfParam,
-                        cipher);
-
-                var keystoreDestDir =
-                    switch (mode) {
-                      case WEB3SIGNER -> destination;
-                      case NIMBUS ->
-                          Files.createDirectory(destination.resolve(pubKey.toHexString()));
-                    };
-
-                KeyStoreLoader.saveToFile(
-                    keystoreDestDir.resolve(entry.getKey().getFileName()), encrypted);
-              } catch (RuntimeException | IOException e) {
-                System.err.printf("Error while converting keystore: %s%n", e.getMessage());
-              }
-            });
   }
 
   /**
-   * Read password of keystore file. Web3Signer uses <pk>.txt while Nimbus uses <pk> without
-   * extension as password.
+   * Convert the keystore paths handed over by the parent process on stdin. Used when the conversion
+   * is fanned out to child JVMs with {@code --processes}; see {@link ProcessFanOut}.
    *
-   * @param keystorePath The keystore path
-   * @return The password
+   * @return Exit code of the worker process.
    */
-  private String getPassword(Path keystorePath) {
-    var passwordFileName =
-        switch (mode) {
-          case WEB3SIGNER ->
-              Path.of(getNameWithoutExtension(keystorePath.getFileName().toString()) + ".txt");
-          case NIMBUS -> keystorePath.getParent().getFileName();
-        };
-
+  private Integer runWorker() {
+    final List<Path> keystorePaths;
     try {
-      return Files.readString(passwordPath.resolve(passwordFileName));
+      keystorePaths = ProcessFanOut.readPartition(System.in);
     } catch (IOException e) {
       throw new UncheckedIOException(e);
     }
+
+    final List<KeystoreSource> partition =
+        keystorePaths.stream().map(KeystoreSource::file).toList();
+    selectKdfEngines(partition);
+    convert(
+            partition,
+            new ConversionListener() {
+              @Override
+              public void onResult(final ConversionResult result) {
+                if (result.isSuccess()) {
+                  ProcessFanOut.reportSuccess(System.out, result.source().path());
+                } else {
+                  ProcessFanOut.reportFailure(
+                      System.out, result.source().path(), result.error().getMessage());
+                }
+              }
+            },
+            targets(),
+            maxErrors())
+        .completion()
+        .join();
+    printPrefetchStatistics();
+    schedulingOptions.close(System.err);
+    return 0;
+  }
+
+  /**
+   * @param sources The keystores to convert next
+   * @return The prefetcher reading them ahead, the one of the preflight checks if it read them
+   */
+  private Prefetcher prefetcher(final List<KeystoreSource> sources) {
+    if (prefetcher == null || prefetchedSources != sources) {
+      // the previous batch is converted
+      closePrefetcher();
+      prefetcher = prefetchOptions.start(sources, passwordSource());
+      prefetchedSources = sources;
+    }
+    return prefetcher;
+  }
+
+  private void closePrefetcher() {
+    if (prefetcher == null) {
+      return;
+    }
+    prefetcher.close();
+    prefetchStatistics =
+        prefetchStatistics == null
+            ? prefetcher.statistics()
+            : prefetchStatistics.plus(prefetcher.statistics());
+    prefetcher = null;
+    prefetchedSources = null;
+  }
+
+  private void printPrefetchStatistics() {
+    closePrefetcher();
+    if (prefetchStatistics == null) {
+      return;
+    }
+    // workers report to the parent on stdout
+    (fanOutOptions.worker ? System.err : console())
+        .printf(
+            "Prefetch: workers waited %.1f s for keystores and passwords,"
+                + " %d keystores not read ahead, %d reads retried.%n",
+            prefetchStatistics.workerWait().toMillis() / 1000.0,
+            prefetchStatistics.notReadAhead(),
+            prefetchStatistics.retries());
+  }
+
+  /**
+   * Arguments passed to each child JVM. The parsed options are forwarded explicitly rather than the
+   * original command line so that the fan-out options are not inherited by the children.
+   *
+   * @return The worker command line arguments.
+   */
+  private List<String> workerArguments() {
+    final List<String> arguments = new ArrayList<>();
+    if (sharedKdfSalt) {
+      arguments.add("--shared-kdf-salt");
+    }
+    schedulingOptions.addWorkerArguments(arguments);
+    kdfEngineOptions.addWorkerArguments(arguments);
+    prefetchOptions.addWorkerArguments(arguments);
+    arguments.addAll(
+        List.of(
+            "--worker",
+            "--src",
+            source.toString(),
+            "--password-src",
+            passwordPath.toString(),
+            "--dest",
+            destination.toString(),
+            "--mode",
+            mode.name(),
+            "--kdf-function",
+            kdfFunction.name(),
+            "-c",
+            String.valueOf(pbkdfOptions.c),
+            "-n",
+            String.valueOf(scryptOptions.n),
+            "-p",
+            String.valueOf(scryptOptions.p),
+            "-r",
+            String.valueOf(scryptOptions.r)));
+    return arguments;
   }
 
   private void validateCliParams() {
+    // not declared as required so that subcommands can run without them
+    final List<String> missing = new ArrayList<>();
+    if (source == null) {
+      missing.add("'--src=<PATH>'");
+    }
+    if (passwordPath == null) {
+      missing.add("'--password-src=<PATH>'");
+    }
+    if (destination == null && profiles.isEmpty() && !inPlace) {
+      missing.add("'--dest=<PATH>'");
+    }
+    if (!missing.isEmpty()) {
+      throw new ParameterException(
+          spec.commandLine(), "Missing required options: " + String.join(", ", missing));
+    }
+
+    if (maxErrors != null && maxErrors < 0) {
+      throw new ParameterException(spec.commandLine(), "--max-errors cannot be negative.");
+    }
+
+    fanOutOptions.validate(spec.commandLine());
+    schedulingOptions.validate(spec.commandLine());
+    kdfEngineOptions.validate(spec.commandLine());
+    prefetchOptions.validate(spec.commandLine());
+    metricsOptions.validate(spec.commandLine());
+    claimOptions.validate(spec.commandLine());
+
+    if (passwordCandidatesPath != null && !Files.exists(passwordCandidatesPath)) {
+      throw new ParameterException(spec.commandLine(), "--password-candidates does not exist.");
+    }
+
+    final boolean processes = fanOutOptions.enabled();
+    reject(
+        processes && schedulingOptions.governed(),
+        "--max-cpu-percent and --max-memory cannot be used with --processes.");
+    reject(
+        processes && passwordCandidatesPath != null,
+        "--password-candidates cannot be used with --processes.");
+    reject(
+        processes && metricsOptions.enabled(), "--metrics-port cannot be used with --processes.");
+    reject(
+        prefetchOptions.enabled() && schedulingOptions.costScheduled(),
+        "--prefetch-depth cannot be used with --cost-scheduling or --max-memory, which reorder"
+            + " the keystores.");
+    reject(
+        prefetchOptions.enabled() && passwordCandidatesPath != null,
+        "--prefetch-depth cannot be used with --password-candidates.");
+
+    validateArchiveParams();
+    validateProfiles();
+    validateInPlace();
+    validateClaimDir();
+
+    reject(
+        fanOutOptions.enabled()
+            && (outputFormat == OutputFormat.BUNDLE || Files.isRegularFile(source)),
+        "--processes cannot be used with keystore bundles.");
+
     if (kdfFunction == KdfFunction.PBKDF2 && pbkdfOptions.c <= 0) {
       throw new ParameterException(spec.commandLine(), "-c must be a positive integer.");
     }
@@ -300,4 +974,83 @@ public class V4keystore_converterMain implements Callable<Integer> {
       }
     }
   }
+
+  private void validateArchiveParams() {
+    if (ArchiveKeystores.isStandardStream(source)
+        && ArchiveKeystores.isStandardStream(passwordPath)) {
+      throw new ParameterException(
+          spec.commandLine(), "--src and --password-src cannot both be read from stdin.");
+    }
+
+    final boolean archives =
+        ArchiveKeystores.isArchive(source)
+            || ArchiveKeystores.isArchive(passwordPath)
+            || ArchiveKeystores.isArchive(destination);
+    reject(archives && fanOutOptions.enabled(), "--processes cannot be used with archives.");
+
+    if (ArchiveKeystores.isArchive(source) && useIndex) {
+      throw new ParameterException(
+          spec.commandLine(), "--use-index cannot be used with an archive source.");
+    }
+
+    if (ArchiveKeystores.isArchive(destination) && outputFormat == OutputFormat.BUNDLE) {
+      throw new ParameterException(
+          spec.commandLine(), "--output-format BUNDLE cannot be written to an archive.");
+    }
+  }
+
+  private void validateClaimDir() {
+    if (!claimOptions.enabled()) {
+      return;
+    }
+    reject(
+        fanOutOptions.enabled() || inPlace,
+        "--claim-dir cannot be used with --processes or --in-place.");
+    if (ArchiveKeystores.isArchive(source)
+        || ArchiveKeystores.isArchive(destination)
+        || outputFormat == OutputFormat.BUNDLE) {
+      throw new ParameterException(
+          spec.commandLine(),
+          "--claim-dir needs a keystore directory or bundle as --src and a directory as --dest.");
+    }
+  }
+
+  private void validateInPlace() {
+    if (!inPlace) {
+      return;
+    }
+    if (destination != null || !profiles.isEmpty()) {
+      throw new ParameterException(
+          spec.commandLine(), "--dest and --profile cannot be used with --in-place.");
+    }
+    if (!Files.isDirectory(source)) {
+      throw new ParameterException(
+          spec.commandLine(), "--in-place needs a keystore directory as --src.");
+    }
+    if (outputFormat == OutputFormat.BUNDLE) {
+      throw new ParameterException(
+          spec.commandLine(), "--output-format BUNDLE cannot be used with --in-place.");
+    }
+  }
+
+  private void validateProfiles() {
+    if (profiles.isEmpty()) {
+      return;
+    }
+    if (destination != null) {
+      throw new ParameterException(
+          spec.commandLine(), "--dest cannot be used with --profile, give dest in each profile.");
+    }
+    reject(fanOutOptions.enabled(), "--processes cannot be used with --profile.");
+    if (outputFormat == OutputFormat.BUNDLE) {
+      throw new ParameterException(
+          spec.commandLine(), "--output-format BUNDLE cannot be used with --profile.");
+    }
+  }
+
+  private void reject(final boolean invalid, final String message) {
+    if (invalid) {
+      throw new ParameterException(spec.commandLine(), message);
+    }
+  }
 }
@@ -0,0 +1,143 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans.archive;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+import net.usmans.engine.BulkloadingMode;
+import net.usmans.engine.KeystoreSource;
+import tech.pegasys.teku.bls.keystore.KeyStoreLoader;
+import tech.pegasys.teku.bls.keystore.KeyStoreValidationException;
+import tech.pegasys.teku.bls.keystore.model.KeyStoreData;
+
+/**
+ * Keystores and passwords in archives. An archive path is either {@code -} for stdin/stdout or a
+ * file named {@code .tar}, {@code .tar.gz}, {@code .tgz} or {@code .zip} (read only).
+ */
+public final class ArchiveKeystores {
+  public static final String STANDARD_STREAM = "-";
+
+  private ArchiveKeystores() {}
+
+  /**
+   * @param path A --src, --password-src or --dest path, can be null
+   * @return true if the path denotes an archive or a standard stream
+   */
+  public static boolean isArchive(final Path path) {
+    if (path == null) {
+      return false;
+    }
+    final String name = path.toString().toLowerCase(Locale.ROOT);
+    return isStandardStream(path)
+        || name.endsWith(".tar")
+        || name.endsWith(".tar.gz")
+        || name.endsWith(".tgz")
+        || name.endsWith(".zip");
+  }
+
+  public static boolean isStandardStream(final Path path) {
+    return path != null && path.toString().equals(STANDARD_STREAM);
+  }
+
+  /**
+   * @param path Archive file, or {@code -} for stdin
+   * @return Reader of the archive
+   * @throws IOException If the archive cannot be opened
+   */
+  public static ArchiveReader openReader(final Path path) throws IOException {
+    if (isStandardStream(path)) {
+      // leave stdin open for the rest of the JVM
+      return ArchiveReader.open(
+          new FilterInputStream(System.in) {
+            @Override
+            public void close() {}
+          });
+    }
+    return ArchiveReader.open(Files.newInputStream(path));
+  }
+
+  /**
+   * @param path Tar file, gzip compressed if named {@code .tar.gz} or {@code .tgz}, or {@code -}
+   *     for stdout
+   * @return Writer of the archive
+   * @throws IOException If the archive cannot be created
+   */
+  public static TarWriter openWriter(final Path path) throws IOException {
+    if (isStandardStream(path)) {
+      // flush, but leave stdout open for the rest of the JVM
+      return new TarWriter(
+          new FilterOutputStream(System.out) {
+            @Override
+            public void write(final byte[] b, final int off, final int len) throws IOException {
+              out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+              flush();
+            }
+          });
+    }
+    if (path.getParent() != null) {
+      Files.createDirectories(path.getParent());
+    }
+    final OutputStream out = Files.newOutputStream(path);
+    final String name = path.toString().toLowerCase(Locale.ROOT);
+    return new TarWriter(
+        name.endsWith(".gz") || name.endsWith(".tgz") ? new GZIPOutputStream(out, 64 * 1024) : out);
+  }
+
+  /**
+   * Read the next keystores of an archive, as per bulk-loading mode. Only the keystores of one
+   * batch are held in memory.
+   *
+   * @param reader The archive
+   * @param mode The bulk-loading mode
+   * @param batchSize Maximum number of keystores to read
+   * @return The keystores, empty at the end of the archive
+   * @throws IOException If the archive cannot be read
+   */
+  public static List<KeystoreSource> nextBatch(
+      final ArchiveReader reader, final BulkloadingMode mode, final int batchSize)
+      throws IOException {
+    final List<KeystoreSource> batch = new ArrayList<>(batchSize);
+    ArchiveReader.Entry entry;
+    while (batch.size() < batchSize
+        && (entry = reader.next(name -> mode.isKeystoreEntry(Path.of(name)))) != null) {
+      batch.add(
+          new ArchiveKeystoreSource(
+              Path.of(entry.name()),
+              entry.content() == null ? null : new String(entry.content(), UTF_8)));
+    }
+    return batch;
+  }
+
+  /**
+   * Keystore read from an archive entry, parsed when loaded.
+   *
+   * @param path Path of the entry in the archive
+   * @param json The keystore, or null if the entry was too large to be a keystore
+   */
+  record ArchiveKeystoreSource(Path path, String json) implements KeystoreSource {
+    @Override
+    public KeyStoreData load() {
+      if (json == null) {
+        throw new KeyStoreValidationException(
+            "Invalid KeyStore: archive entry larger than "
+                + ArchiveReader.MAX_ENTRY_SIZE
+                + " bytes");
+      }
+      return KeyStoreLoader.loadFromString(json);
+    }
+  }
+}
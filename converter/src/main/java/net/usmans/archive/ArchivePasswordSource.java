@@ -0,0 +1,59 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans.archive;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import net.usmans.engine.BulkloadingMode;
+import net.usmans.engine.KeystoreSource;
+import net.usmans.engine.PasswordSource;
+
+/**
+ * Passwords read from an archive into memory, so that they are never extracted to disk. Password
+ * files are matched by file name, as per bulk-loading mode, wherever they are in the archive.
+ */
+public final class ArchivePasswordSource implements PasswordSource {
+  private final Map<String, String> passwords;
+  private final BulkloadingMode mode;
+
+  private ArchivePasswordSource(final Map<String, String> passwords, final BulkloadingMode mode) {
+    this.passwords = passwords;
+    this.mode = mode;
+  }
+
+  /**
+   * @param reader The password archive, read to its end
+   * @param mode The bulk-loading mode
+   * @return The password source
+   * @throws IOException If the archive cannot be read
+   */
+  public static ArchivePasswordSource read(final ArchiveReader reader, final BulkloadingMode mode)
+      throws IOException {
+    final Map<String, String> passwords = new HashMap<>();
+    ArchiveReader.Entry entry;
+    while ((entry = reader.next(name -> true)) != null) {
+      if (entry.content() != null) {
+        passwords.put(
+            Path.of(entry.name()).getFileName().toString(), new String(entry.content(), UTF_8));
+      }
+    }
+    return new ArchivePasswordSource(passwords, mode);
+  }
+
+  @Override
+  public String getPassword(final KeystoreSource source) {
+    final String passwordFileName = mode.passwordFileName(source.path()).toString();
+    final String password = passwords.get(passwordFileName);
+    if (password == null) {
+      throw new UncheckedIOException(
+          new NoSuchFileException(passwordFileName, null, "not found in password archive"));
+    }
+    return password;
+  }
+}
@@ -0,0 +1,254 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans.archive;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Reads the regular file entries of a tar, gzip compressed tar or zip archive as a stream, one
+ * entry at a time. The format is detected from the first bytes of the stream. Entries are skipped
+ * without being buffered unless they are wanted, and only wanted entries up to {@link
+ * #MAX_ENTRY_SIZE} are read into memory, so memory stays bounded whatever the size of the archive.
+ *
+ * <p>Tar archives may use ustar, GNU long names or pax path headers.
+ */
+public final class ArchiveReader implements Closeable {
+  public static final int MAX_ENTRY_SIZE = 1 << 20;
+  static final int BLOCK_SIZE = 512;
+
+  private final InputStream tar;
+  private final ZipInputStream zip;
+  private long tarRemaining;
+
+  /**
+   * A regular file of the archive.
+   *
+   * @param name Path of the entry in the archive, without a leading {@code ./}
+   * @param size Size of the entry, or -1 if unknown
+   * @param content Content of the entry, or null if larger than {@link #MAX_ENTRY_SIZE}
+   */
+  public record Entry(String name, long size, byte[] content) {}
+
+  private ArchiveReader(final InputStream tar, final ZipInputStream zip) {
+    this.tar = tar;
+    this.zip = zip;
+  }
+
+  /**
+   * @param input The archive stream, closed with the reader
+   * @return Reader of the archive
+   * @throws IOException If the stream cannot be read
+   */
+  public static ArchiveReader open(final InputStream input) throws IOException {
+    final BufferedInputStream buffered = new BufferedInputStream(input, 64 * 1024);
+    buffered.mark(4);
+    final byte[] magic = buffered.readNBytes(4);
+    buffered.reset();
+    if (magic.length >= 2 && (magic[0] & 0xFF) == 0x1F && (magic[1] & 0xFF) == 0x8B) {
+      return new ArchiveReader(new GZIPInputStream(buffered, 64 * 1024), null);
+    }
+    if (magic.length == 4 && magic[0] == 'P' && magic[1] == 'K' && magic[2] == 3 && magic[3] == 4) {
+      return new ArchiveReader(null, new ZipInputStream(buffered, UTF_8));
+    }
+    return new ArchiveReader(buffered, null);
+  }
+
+  /**
+   * Read the next wanted regular file entry, skipping directories, links and unwanted entries.
+   *
+   * @param wanted Selects entries by name
+   * @return The next wanted entry, or null at the end of the archive
+   * @throws IOException If the archive cannot be read or is malformed
+   */
+  public Entry next(final Predicate<String> wanted) throws IOException {
+    return zip != null ? nextZipEntry(wanted) : nextTarEntry(wanted);
+  }
+
+  private Entry nextZipEntry(final Predicate<String> wanted) throws IOException {
+    ZipEntry zipEntry;
+    while ((zipEntry = zip.getNextEntry()) != null) {
+      final String name = normalize(zipEntry.getName());
+      if (zipEntry.isDirectory() || !wanted.test(name)) {
+        continue;
+      }
+      final byte[] content = zip.readNBytes(MAX_ENTRY_SIZE + 1);
+      return content.length > MAX_ENTRY_SIZE
+          ? new Entry(name, zipEntry.getSize(), null)
+          : new Entry(name, content.length, content);
+    }
+    return null;
+  }
+
+  private Entry nextTarEntry(final Predicate<String> wanted) throws IOException {
+    String longName = null;
+    while (true) {
+      tar.skipNBytes(tarRemaining);
+      tarRemaining = 0;
+      final byte[] header = tar.readNBytes(BLOCK_SIZE);
+      if (header.length == 0) {
+        return null;
+      }
+      if (header.length < BLOCK_SIZE) {
+        throw new IOException("Truncated tar archive");
+      }
+      if (isZeroBlock(header)) {
+        return null;
+      }
+      if (checksum(header) != parseNumber(header, 148, 8)) {
+        throw new IOException("Invalid tar header checksum, not a tar archive?");
+      }
+
+      final long size = parseNumber(header, 124, 12);
+      tarRemaining = (size + BLOCK_SIZE - 1) / BLOCK_SIZE * BLOCK_SIZE;
+      switch (header[156]) {
+        case 'L' -> {
+          longName = trimNul(readTarContent(size));
+          continue;
+        }
+        case 'x' -> {
+          longName = parsePax(readTarContent(size)).getOrDefault("path", longName);
+          continue;
+        }
+        case '0', '\0', '7' -> {
+          // regular file
+        }
+        default -> {
+          // directories, links, devices and global headers
+          longName = null;
+          continue;
+        }
+      }
+
+      final String name = normalize(longName != null ? longName : ustarName(header));
+      longName = null;
+      if (!wanted.test(name)) {
+        continue;
+      }
+      if (size > MAX_ENTRY_SIZE) {
+        return new Entry(name, size, null);
+      }
+      return new Entry(name, size, readTarContent(size));
+    }
+  }
+
+  private byte[] readTarContent(final long size) throws IOException {
+    if (size > MAX_ENTRY_SIZE) {
+      throw new IOException("Tar header entry too large: " + size);
+    }
+    final byte[] content = tar.readNBytes((int) size);
+    if (content.length < size) {
+      throw new IOException("Truncated tar archive");
+    }
+    tarRemaining -= size;
+    return content;
+  }
+
+  private static String ustarName(final byte[] header) {
+    final String name = field(header, 0, 100);
+    final boolean ustar = new String(header, 257, 5, UTF_8).equals("ustar");
+    final String prefix = ustar ? field(header, 345, 155) : "";
+    return prefix.isEmpty() ? name : prefix + "/" + name;
+  }
+
+  private static Map<String, String> parsePax(final byte[] content) {
+    // records of "<length> <key>=<value>\n", the length counting the whole record
+    final Map<String, String> records = new HashMap<>();
+    int offset = 0;
+    while (offset < content.length) {
+      int space = offset;
+      while (space < content.length && content[space] != ' ') {
+        space++;
+      }
+      if (space == content.length) {
+        break;
+      }
+      final int length = Integer.parseInt(new String(content, offset, space - offset, UTF_8));
+      if (length <= space - offset || offset + length > content.length) {
+        break;
+      }
+      final String record = new String(content, space + 1, offset + length - space - 2, UTF_8);
+      final int equals = record.indexOf('=');
+      if (equals > 0) {
+        records.put(record.substring(0, equals), record.substring(equals + 1));
+      }
+      offset += length;
+    }
+    return records;
+  }
+
+  static long checksum(final byte[] header) {
+    long sum = 0;
+    for (int i = 0; i < BLOCK_SIZE; i++) {
+      // the checksum field itself counts as spaces
+      sum += i >= 148 && i < 156 ? ' ' : header[i] & 0xFF;
+    }
+    return sum;
+  }
+
+  private static long parseNumber(final byte[] header, final int offset, final int length)
+      throws IOException {
+    if ((header[offset] & 0x80) != 0) {
+      // GNU base-256 encoding of large numbers
+      long value = header[offset] & 0x7F;
+      for (int i = offset + 1; i < offset + length; i++) {
+        value = (value << 8) | (header[i] & 0xFF);
+      }
+      return value;
+    }
+    final String octal = field(header, offset, length).trim();
+    try {
+      return octal.isEmpty() ? 0 : Long.parseLong(octal, 8);
+    } catch (final NumberFormatException e) {
+      throw new IOException("Invalid tar header, not a tar archive?", e);
+    }
+  }
+
+  private static String field(final byte[] header, final int offset, final int length) {
+    int end = offset;
+    while (end < offset + length && header[end] != 0) {
+      end++;
+    }
+    return new String(header, offset, end - offset, UTF_8);
+  }
+
+  private static String trimNul(final byte[] content) {
+    int end = content.length;
+    while (end > 0 && content[end - 1] == 0) {
+      end--;
+    }
+    return new String(content, 0, end, UTF_8);
+  }
+
+  private static boolean isZeroBlock(final byte[] header) {
+    return Arrays.equals(header, new byte[BLOCK_SIZE]);
+  }
+
+  private static String normalize(final String name) {
+    String normalized = name;
+    while (normalized.startsWith("./")) {
+      normalized = normalized.substring(2);
+    }
+    return normalized;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (zip != null) {
+      zip.close();
+    } else {
+      tar.close();
+    }
+  }
+}
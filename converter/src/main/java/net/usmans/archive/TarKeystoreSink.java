@@ -0,0 +1,38 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans.archive;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import net.usmans.engine.BulkloadingMode;
+import net.usmans.engine.KeystoreSink;
+import net.usmans.engine.KeystoreSource;
+import tech.pegasys.teku.bls.keystore.KeyStoreLoader;
+import tech.pegasys.teku.bls.keystore.model.KeyStoreData;
+
+/**
+ * Writes converted keystores as entries of a tar stream, laid out as per bulk-loading mode. The
+ * keystores never touch the disk unless the stream is a file.
+ */
+public final class TarKeystoreSink implements KeystoreSink {
+  private final TarWriter writer;
+  private final BulkloadingMode mode;
+
+  public TarKeystoreSink(final TarWriter writer, final BulkloadingMode mode) {
+    this.writer = writer;
+    this.mode = mode;
+  }
+
+  @Override
+  public void write(final KeystoreSource source, final KeyStoreData converted) throws IOException {
+    final Path entry = mode.keystoreFile(Path.of(""), source.path(), converted.getPubkey());
+    writer.write(entry.toString(), KeyStoreLoader.saveToString(converted).getBytes(UTF_8));
+  }
+
+  @Override
+  public void close() throws IOException {
+    writer.close();
+  }
+}
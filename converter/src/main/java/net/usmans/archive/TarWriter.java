@@ -0,0 +1,118 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans.archive;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes regular files as a ustar archive stream. Names longer than ustar allows are written with a
+ * GNU long name header. Files are owned by uid 0 and readable by their owner only. Thread-safe.
+ */
+public final class TarWriter implements Closeable {
+  private static final int BLOCK_SIZE = ArchiveReader.BLOCK_SIZE;
+
+  private final OutputStream out;
+
+  /**
+   * @param out The stream to write to, closed with the writer
+   */
+  public TarWriter(final OutputStream out) {
+    this.out = new BufferedOutputStream(out, 64 * 1024);
+  }
+
+  /**
+   * Write a regular file.
+   *
+   * @param name Path of the file in the archive
+   * @param content Content of the file
+   * @throws IOException If the stream cannot be written
+   */
+  public synchronized void write(final String name, final byte[] content) throws IOException {
+    final byte[] nameBytes = name.getBytes(UTF_8);
+    final int split = ustarSplit(nameBytes);
+    if (split < 0) {
+      final byte[] longName = new byte[nameBytes.length + 1];
+      System.arraycopy(nameBytes, 0, longName, 0, nameBytes.length);
+      writeEntry(header("././@LongLink".getBytes(US_ASCII), null, longName.length, 'L'), longName);
+      writeEntry(header(truncate(nameBytes, 100), null, content.length, '0'), content);
+    } else if (split == 0) {
+      writeEntry(header(nameBytes, null, content.length, '0'), content);
+    } else {
+      final byte[] prefix = new byte[split];
+      final byte[] suffix = new byte[nameBytes.length - split - 1];
+      System.arraycopy(nameBytes, 0, prefix, 0, prefix.length);
+      System.arraycopy(nameBytes, split + 1, suffix, 0, suffix.length);
+      writeEntry(header(suffix, prefix, content.length, '0'), content);
+    }
+  }
+
+  /**
+   * @return 0 if the name fits the name field, the index of the '/' separating prefix and name if
+   *     it fits both ustar fields, -1 otherwise
+   */
+  private static int ustarSplit(final byte[] name) {
+    if (name.length <= 100) {
+      return 0;
+    }
+    for (int i = Math.min(155, name.length - 1); i > 0; i--) {
+      if (name[i] == '/' && name.length - i - 1 <= 100 && name.length - i - 1 > 0) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static byte[] truncate(final byte[] name, final int length) {
+    final byte[] truncated = new byte[Math.min(length, name.length)];
+    System.arraycopy(name, 0, truncated, 0, truncated.length);
+    return truncated;
+  }
+
+  private static byte[] header(
+      final byte[] name, final byte[] prefix, final long size, final char type) {
+    final byte[] header = new byte[BLOCK_SIZE];
+    System.arraycopy(name, 0, header, 0, name.length);
+    octal(header, 100, 8, 0600);
+    octal(header, 108, 8, 0);
+    octal(header, 116, 8, 0);
+    octal(header, 124, 12, size);
+    octal(header, 136, 12, System.currentTimeMillis() / 1000);
+    header[156] = (byte) type;
+    System.arraycopy("ustar\u000000".getBytes(US_ASCII), 0, header, 257, 8);
+    if (prefix != null) {
+      System.arraycopy(prefix, 0, header, 345, prefix.length);
+    }
+    // six octal digits, NUL, space
+    final String checksum = String.format("%06o", ArchiveReader.checksum(header));
+    System.arraycopy(checksum.getBytes(US_ASCII), 0, header, 148, 6);
+    header[154] = 0;
+    header[155] = ' ';
+    return header;
+  }
+
+  private static void octal(
+      final byte[] header, final int offset, final int length, final long value) {
+    final String digits = String.format("%0" + (length - 1) + "o", value);
+    System.arraycopy(digits.getBytes(US_ASCII), 0, header, offset, length - 1);
+  }
+
+  private void writeEntry(final byte[] header, final byte[] content) throws IOException {
+    out.write(header);
+    out.write(content);
+    final int padding = (BLOCK_SIZE - content.length % BLOCK_SIZE) % BLOCK_SIZE;
+    out.write(new byte[padding]);
+  }
+
+  /** Write the end of archive marker and close the stream. */
+  @Override
+  public synchronized void close() throws IOException {
+    out.write(new byte[2 * BLOCK_SIZE]);
+    out.close();
+  }
+}
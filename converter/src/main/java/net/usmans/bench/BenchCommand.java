@@ -0,0 +1,466 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+import net.usmans.PicoCliVersionProvider;
+import net.usmans.engine.BulkloadingMode;
+import net.usmans.engine.ConversionJob;
+import net.usmans.engine.ConversionResult;
+import net.usmans.engine.ConversionSummary;
+import net.usmans.engine.KdfCostModel;
+import net.usmans.engine.KdfParamFactory;
+import net.usmans.engine.KeystoreConversionEngine;
+import net.usmans.engine.KeystoreSink;
+import net.usmans.engine.KeystoreSource;
+import net.usmans.engine.PasswordSource;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Model.CommandSpec;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.ParameterException;
+import picocli.CommandLine.Spec;
+import tech.pegasys.teku.bls.keystore.model.KdfFunction;
+
+/**
+ * Benchmarks the end-to-end conversion on synthetic keystore fleets. For every bulk-loading mode
+ * and fleet size a fleet is generated once, then converted once per thread count. Results are
+ * written as json so that runs on different hosts or builds can be compared.
+ */
+@Command(
+    name = "bench",
+    mixinStandardHelpOptions = true,
+    versionProvider = PicoCliVersionProvider.class,
+    description =
+        "Benchmark the conversion of synthetic keystore fleets across thread counts and bulk-loading modes",
+    sortOptions = false,
+    subcommands = {RandomBenchCommand.class})
+public class BenchCommand implements Callable<Integer> {
+  private static final String FLEET_COMPLETE = ".complete";
+
+  @Option(
+      names = {"--keys"},
+      paramLabel = "<INTEGER>",
+      split = ",",
+      description = "Comma separated fleet sizes. Defaults to ${DEFAULT-VALUE}.")
+  private List<Integer> keys = List.of(1000);
+
+  @Option(
+      names = {"--threads"},
+      paramLabel = "<INTEGER>",
+      split = ",",
+      description =
+          "Comma separated conversion thread counts to sweep. Defaults to powers of 2 up to the "
+              + "number of cores, and the number of cores.")
+  private List<Integer> threads;
+
+  @Option(
+      names = {"--modes"},
+      paramLabel = "<MODE>",
+      split = ",",
+      description =
+          "Comma separated bulk-loading modes of the fleets. "
+              + "Valid values: ${COMPLETION-CANDIDATES}. Defaults to all.")
+  private List<BulkloadingMode> modes = List.of(BulkloadingMode.values());
+
+  @Option(
+      names = {"--source-kdf-function"},
+      paramLabel = "<KDF>",
+      description =
+          "Kdf Function of the generated keystores. Valid values: ${COMPLETION-CANDIDATES}. "
+              + "Defaults to: ${DEFAULT-VALUE}")
+  private KdfFunction sourceKdfFunction = KdfFunction.SCRYPT;
+
+  @Option(
+      names = {"--source-c"},
+      paramLabel = "<INTEGER>",
+      description =
+          "PBKDF2 iterative count of the generated keystores. Defaults to ${DEFAULT-VALUE}.")
+  private int sourceC = 262144;
+
+  @Option(
+      names = {"--source-n"},
+      paramLabel = "<INTEGER>",
+      description =
+          "SCRYPT CPU/memory cost of the generated keystores. Defaults to ${DEFAULT-VALUE}.")
+  private int sourceN = 16384;
+
+  @Option(
+      names = {"--source-p"},
+      paramLabel = "<INTEGER>",
+      description =
+          "SCRYPT parallelization of the generated keystores. Defaults to ${DEFAULT-VALUE}.")
+  private int sourceP = 1;
+
+  @Option(
+      names = {"--source-r"},
+      paramLabel = "<INTEGER>",
+      description = "SCRYPT block size of the generated keystores. Defaults to ${DEFAULT-VALUE}.")
+  private int sourceR = 8;
+
+  @Option(
+      names = {"--kdf-function"},
+      paramLabel = "<KDF>",
+      description =
+          "Kdf Function to convert to. Valid values: ${COMPLETION-CANDIDATES}. Defaults to: ${DEFAULT-VALUE}")
+  private KdfFunction kdfFunction = KdfFunction.PBKDF2;
+
+  @Option(
+      names = {"-c"},
+      paramLabel = "<INTEGER>",
+      description = "PBKDF2 iterative count to convert to. Defaults to ${DEFAULT-VALUE}.")
+  private int c = 1;
+
+  @Option(
+      names = {"-n"},
+      paramLabel = "<INTEGER>",
+      description = "SCRYPT CPU/memory cost to convert to. Defaults to ${DEFAULT-VALUE}.")
+  private int n = 2;
+
+  @Option(
+      names = {"-p"},
+      paramLabel = "<INTEGER>",
+      description = "SCRYPT parallelization to convert to. Defaults to ${DEFAULT-VALUE}.")
+  private int p = 1;
+
+  @Option(
+      names = {"-r"},
+      paramLabel = "<INTEGER>",
+      description = "SCRYPT block size to convert to. Defaults to ${DEFAULT-VALUE}.")
+  private int r = 8;
+
+  @Option(
+      names = {"--work-dir"},
+      paramLabel = "<PATH>",
+      description =
+          "Directory for the generated fleets, kept and reused by later runs with the same fleet "
+              + "parameters. Defaults to a temporary directory deleted after the run.")
+  private Path workDir;
+
+  @Option(
+      names = {"--output"},
+      paramLabel = "<PATH>",
+      description = "File to write the json results to. Defaults to stdout.")
+  private Path output;
+
+  @Option(
+      names = {"--skip-warmup"},
+      description = "Skip the untimed conversion run that warms up the JIT before the sweep.")
+  private boolean skipWarmup;
+
+  @Spec private CommandSpec spec; // will be populated by PicoCli at runtime
+
+  /**
+   * Results of one conversion run.
+   *
+   * @param mode Bulk-loading mode of the fleet
+   * @param keys Number of keystores in the fleet
+   * @param threads Number of conversion threads
+   * @param converted Number of keystores converted
+   * @param failed Number of keystores that failed to convert
+   * @param seconds Wall-clock time of the conversion
+   * @param keysPerSecond Converted keystores per second
+   * @param p50Millis Median time to convert one keystore
+   * @param p99Millis 99th percentile of the time to convert one keystore
+   * @param maxMillis Longest time to convert one keystore
+   * @param peakRssBytes Peak resident set size of the JVM during the run, -1 if unknown
+   * @param gcMillis Time spent in garbage collection during the run
+   * @param gcCount Number of garbage collections during the run
+   */
+  public record RunResult(
+      BulkloadingMode mode,
+      int keys,
+      int threads,
+      int converted,
+      int failed,
+      double seconds,
+      double keysPerSecond,
+      double p50Millis,
+      double p99Millis,
+      double maxMillis,
+      long peakRssBytes,
+      long gcMillis,
+      long gcCount) {}
+
+  /**
+   * @param cores Available processors
+   * @param maxHeapBytes Maximum heap of the JVM
+   * @param javaVersion Java runtime version
+   * @param os Operating system name and architecture
+   * @param sourceKdf KDF parameters of the generated keystores
+   * @param targetKdf KDF parameters converted to
+   * @param results One result per mode, fleet size and thread count
+   */
+  public record Report(
+      int cores,
+      long maxHeapBytes,
+      String javaVersion,
+      String os,
+      String sourceKdf,
+      String targetKdf,
+      List<RunResult> results) {}
+
+  @Override
+  public Integer call() throws IOException {
+    validateCliParams();
+
+    final boolean temporaryWorkDir = workDir == null;
+    final Path fleetsDir =
+        temporaryWorkDir ? Files.createTempDirectory("v4keystore-bench") : workDir;
+    final KdfParamFactory sourceKdf =
+        kdfParamFactory(sourceKdfFunction, sourceC, sourceN, sourceP, sourceR);
+    final KdfParamFactory targetKdf = kdfParamFactory(kdfFunction, c, n, p, r);
+    final List<Integer> threadCounts = threads == null ? defaultThreadCounts() : threads;
+
+    final List<RunResult> results = new ArrayList<>();
+    try {
+      for (final BulkloadingMode mode : modes) {
+        for (final int keyCount : keys) {
+          final Path fleetDir = fleet(fleetsDir, mode, keyCount, sourceKdf);
+          if (!skipWarmup && results.isEmpty()) {
+            System.err.println("Warming up ...");
+            run(
+                fleetDir,
+                fleetsDir.resolve("converted"),
+                mode,
+                keyCount,
+                threadCounts.get(0),
+                targetKdf);
+          }
+          for (final int threadCount : threadCounts) {
+            final RunResult result =
+                run(
+                    fleetDir,
+                    fleetsDir.resolve("converted"),
+                    mode,
+                    keyCount,
+                    threadCount,
+                    targetKdf);
+            System.err.printf(
+                "%-10s %7d keys %4d threads: %9.1f keys/s, p99 %8.1f ms, peak RSS %s, GC %d ms%n",
+                mode,
+                keyCount,
+                threadCount,
+                result.keysPerSecond(),
+                result.p99Millis(),
+                result.peakRssBytes() < 0 ? "unknown" : (result.peakRssBytes() >> 20) + " MiB",
+                result.gcMillis());
+            results.add(result);
+          }
+        }
+      }
+    } finally {
+      deleteRecursively(temporaryWorkDir ? fleetsDir : fleetsDir.resolve("converted"));
+    }
+
+    final Report report =
+        new Report(
+            Runtime.getRuntime().availableProcessors(),
+            Runtime.getRuntime().maxMemory(),
+            Runtime.version().toString(),
+            System.getProperty("os.name") + " " + System.getProperty("os.arch"),
+            KdfCostModel.costClass(sourceKdf.create()),
+            KdfCostModel.costClass(targetKdf.create()),
+            results);
+    final ObjectMapper objectMapper = new ObjectMapper();
+    if (output == null) {
+      System.out.println(objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(report));
+    } else {
+      objectMapper.writerWithDefaultPrettyPrinter().writeValue(output.toFile(), report);
+    }
+    return results.stream().allMatch(result -> result.failed() == 0) ? 0 : 1;
+  }
+
+  /**
+   * Generate a fleet, or reuse the one generated by an earlier run with the same parameters.
+   *
+   * @return Directory with the {@code keys} and {@code secrets} of the fleet
+   */
+  private static Path fleet(
+      final Path fleetsDir,
+      final BulkloadingMode mode,
+      final int keyCount,
+      final KdfParamFactory sourceKdf)
+      throws IOException {
+    final String kdf = KdfCostModel.costClass(sourceKdf.create()).replaceAll("[ =]", "");
+    final Path fleetDir =
+        fleetsDir.resolve(
+            String.format("fleet-%s-%d-%s", mode.name().toLowerCase(Locale.ROOT), keyCount, kdf));
+    if (Files.exists(fleetDir.resolve(FLEET_COMPLETE))) {
+      return fleetDir;
+    }
+    deleteRecursively(fleetDir);
+    System.err.printf("Generating %d %s keystores in %s ...%n", keyCount, mode, fleetDir);
+    FleetGenerator.generate(
+        fleetDir.resolve("keys"), fleetDir.resolve("secrets"), mode, keyCount, sourceKdf);
+    Files.createFile(fleetDir.resolve(FLEET_COMPLETE));
+    return fleetDir;
+  }
+
+  private static RunResult run(
+      final Path fleetDir,
+      final Path destination,
+      final BulkloadingMode mode,
+      final int keyCount,
+      final int threadCount,
+      final KdfParamFactory targetKdf)
+      throws IOException {
+    deleteRecursively(destination);
+    // don't charge the garbage of the previous run to this one
+    System.gc();
+    ProcessMemory.resetPeakRss();
+    final long gcMillisBefore = gcMillis();
+    final long gcCountBefore = gcCount();
+    final long startNanos = System.nanoTime();
+
+    final ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+    final ConversionJob job;
+    final ConversionSummary summary;
+    try {
+      job =
+          KeystoreConversionEngine.builder()
+              .sources(
+                  mode.listKeystores(fleetDir.resolve("keys")).stream()
+                      .map(KeystoreSource::file)
+                      .toList())
+              .passwordSource(PasswordSource.directory(fleetDir.resolve("secrets"), mode))
+              .kdfParamFactory(targetKdf)
+              .sink(KeystoreSink.directory(destination, mode))
+              .executor(executor)
+              .build()
+              .start();
+      summary = job.completion().join();
+    } finally {
+      executor.shutdown();
+    }
+
+    final double seconds = (System.nanoTime() - startNanos) / 1e9;
+    final List<ConversionResult> results =
+        job.results().stream().map(CompletableFuture::join).toList();
+    final long[] latencies =
+        results.stream()
+            .map(ConversionResult::elapsed)
+            .mapToLong(Duration::toNanos)
+            .sorted()
+            .toArray();
+    results.stream()
+        .filter(result -> !result.isSuccess())
+        .findFirst()
+        .ifPresent(
+            result ->
+                System.err.printf(
+                    "Error while converting keystore %s: %s%n",
+                    result.source().path(), result.error().getMessage()));
+    return new RunResult(
+        mode,
+        keyCount,
+        threadCount,
+        summary.converted(),
+        summary.failed() + summary.cancelled(),
+        seconds,
+        summary.converted() / seconds,
+        percentile(latencies, 0.50) / 1e6,
+        percentile(latencies, 0.99) / 1e6,
+        percentile(latencies, 1.0) / 1e6,
+        ProcessMemory.peakRssBytes(),
+        gcMillis() - gcMillisBefore,
+        gcCount() - gcCountBefore);
+  }
+
+  /**
+   * @param sorted Values sorted in ascending order
+   * @param percentile Percentile between 0 and 1
+   * @return Nearest-rank percentile, 0 if there are no values
+   */
+  static long percentile(final long[] sorted, final double percentile) {
+    if (sorted.length == 0) {
+      return 0;
+    }
+    final int rank = (int) Math.ceil(percentile * sorted.length);
+    return sorted[Math.max(0, rank - 1)];
+  }
+
+  private static List<Integer> defaultThreadCounts() {
+    final int cores = Runtime.getRuntime().availableProcessors();
+    final List<Integer> threadCounts = new ArrayList<>();
+    for (int threadCount = 1; threadCount < cores; threadCount *= 2) {
+      threadCounts.add(threadCount);
+    }
+    threadCounts.add(cores);
+    return threadCounts;
+  }
+
+  private static KdfParamFactory kdfParamFactory(
+      final KdfFunction kdfFunction, final int c, final int n, final int p, final int r) {
+    return switch (kdfFunction) {
+      case PBKDF2 -> KdfParamFactory.pbkdf2(c);
+      case SCRYPT -> KdfParamFactory.scrypt(n, p, r);
+    };
+  }
+
+  private static long gcMillis() {
+    return ManagementFactory.getGarbageCollectorMXBeans().stream()
+        .mapToLong(GarbageCollectorMXBean::getCollectionTime)
+        .filter(time -> time > 0)
+        .sum();
+  }
+
+  private static long gcCount() {
+    return ManagementFactory.getGarbageCollectorMXBeans().stream()
+        .mapToLong(GarbageCollectorMXBean::getCollectionCount)
+        .filter(count -> count > 0)
+        .sum();
+  }
+
+  private static void deleteRecursively(final Path path) throws IOException {
+    if (!Files.exists(path)) {
+      return;
+    }
+    try (Stream<Path> paths = Files.walk(path)) {
+      paths
+          .sorted(Comparator.reverseOrder())
+          .forEach(
+              file -> {
+                try {
+                  Files.delete(file);
+                } catch (final IOException e) {
+                  throw new UncheckedIOException(e);
+                }
+              });
+    }
+  }
+
+  private void validateCliParams() {
+    if (keys.stream().anyMatch(keyCount -> keyCount <= 0)) {
+      throw new ParameterException(spec.commandLine(), "--keys must be positive integers.");
+    }
+    if (threads != null && threads.stream().anyMatch(threadCount -> threadCount <= 0)) {
+      throw new ParameterException(spec.commandLine(), "--threads must be positive integers.");
+    }
+    if (sourceC <= 0 || c <= 0) {
+      throw new ParameterException(spec.commandLine(), "-c must be a positive integer.");
+    }
+    if (sourceN <= 1 || n <= 1 || Integer.bitCount(sourceN) != 1 || Integer.bitCount(n) != 1) {
+      throw new ParameterException(
+          spec.commandLine(), "-n must be a positive integer and must be a power of 2.");
+    }
+    if (sourceP <= 0 || p <= 0 || sourceR <= 0 || r <= 0) {
+      throw new ParameterException(spec.commandLine(), "-p and -r must be positive integers.");
+    }
+  }
+}
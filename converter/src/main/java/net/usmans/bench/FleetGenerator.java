@@ -0,0 +1,82 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans.bench;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.util.stream.IntStream;
+import net.usmans.engine.BulkloadingMode;
+import net.usmans.engine.KdfParamFactory;
+import org.apache.tuweni.bytes.Bytes;
+import tech.pegasys.teku.bls.keystore.KeyStore;
+import tech.pegasys.teku.bls.keystore.KeyStoreLoader;
+import tech.pegasys.teku.bls.keystore.model.Cipher;
+import tech.pegasys.teku.bls.keystore.model.CipherFunction;
+import tech.pegasys.teku.bls.keystore.model.KeyStoreData;
+
+/**
+ * Generates synthetic keystore fleets for benchmarks. The keys are random bytes rather than BLS key
+ * pairs: the converter never does BLS arithmetic, so they cost the same to convert and are much
+ * faster to generate. Each keystore gets its own password and KDF salt.
+ */
+public final class FleetGenerator {
+  private static final SecureRandom SECURE_RANDOM = new SecureRandom();
+
+  private FleetGenerator() {}
+
+  /**
+   * Generate keystores and their password files in parallel, laid out as per bulk-loading mode.
+   *
+   * @param keystoreDir Directory to write keystores to, created if it does not exist
+   * @param passwordDir Directory to write password files to, created if it does not exist
+   * @param mode The bulk-loading mode
+   * @param count Number of keystores
+   * @param kdfParamFactory KDF parameters of the generated keystores
+   * @throws IOException If a keystore or password file cannot be written
+   */
+  public static void generate(
+      final Path keystoreDir,
+      final Path passwordDir,
+      final BulkloadingMode mode,
+      final int count,
+      final KdfParamFactory kdfParamFactory)
+      throws IOException {
+    Files.createDirectories(keystoreDir);
+    Files.createDirectories(passwordDir);
+    try {
+      IntStream.range(0, count)
+          .parallel()
+          .forEach(i -> generateKeystore(keystoreDir, passwordDir, mode, kdfParamFactory));
+    } catch (final UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  private static void generateKeystore(
+      final Path keystoreDir,
+      final Path passwordDir,
+      final BulkloadingMode mode,
+      final KdfParamFactory kdfParamFactory) {
+    final Bytes pubkey = Bytes.random(48, SECURE_RANDOM);
+    final String password = Bytes.random(16, SECURE_RANDOM).toUnprefixedHexString();
+    final KeyStoreData keyStoreData =
+        KeyStore.encrypt(
+            Bytes.random(32, SECURE_RANDOM),
+            pubkey,
+            password,
+            "",
+            kdfParamFactory.create(),
+            new Cipher(CipherFunction.AES_128_CTR, Bytes.random(16, SECURE_RANDOM)));
+    final Path keystoreFile = keystoreDir.resolve(mode.keystorePath(pubkey));
+    try {
+      Files.createDirectories(keystoreFile.getParent());
+      KeyStoreLoader.saveToFile(keystoreFile, keyStoreData);
+      Files.writeString(passwordDir.resolve(mode.passwordFileName(keystoreFile)), password);
+    } catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
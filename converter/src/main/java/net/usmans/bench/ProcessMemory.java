@@ -0,0 +1,49 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Peak resident set size of this JVM, read from {@code /proc/self} on Linux. Other platforms report
+ * it as unknown.
+ */
+final class ProcessMemory {
+  private static final Path STATUS = Path.of("/proc/self/status");
+  private static final Path CLEAR_REFS = Path.of("/proc/self/clear_refs");
+
+  private ProcessMemory() {}
+
+  /**
+   * Reset the peak to the current resident set size. If the kernel does not allow it, the peak
+   * stays the peak since the JVM started.
+   */
+  static void resetPeakRss() {
+    try {
+      Files.writeString(CLEAR_REFS, "5");
+    } catch (final IOException | UnsupportedOperationException e) {
+      // not Linux, or an old kernel
+    }
+  }
+
+  /**
+   * @return Peak resident set size in bytes since the last reset, -1 if unknown
+   */
+  static long peakRssBytes() {
+    try {
+      final List<String> lines = Files.readAllLines(STATUS);
+      for (final String line : lines) {
+        if (line.startsWith("VmHWM:")) {
+          // VmHWM:    123456 kB
+          return Long.parseLong(line.substring(6).replace("kB", "").trim()) * 1024;
+        }
+      }
+    } catch (final IOException | NumberFormatException e) {
+      // not Linux
+    }
+    return -1;
+  }
+}
@@ -0,0 +1,126 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans.bench;
+
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+import net.usmans.PicoCliVersionProvider;
+import net.usmans.engine.KeystoreRandom;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Model.CommandSpec;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.ParameterException;
+import picocli.CommandLine.Spec;
+
+/**
+ * Contention benchmark of the salts and IVs drawn for every converted keystore: many threads
+ * drawing a salt and an IV in a loop, from one shared {@link SecureRandom} and from {@link
+ * KeystoreRandom}. With cheap target KDF parameters this is what the conversion workers do between
+ * KDF runs.
+ */
+@Command(
+    name = "random",
+    mixinStandardHelpOptions = true,
+    versionProvider = PicoCliVersionProvider.class,
+    description =
+        "Benchmark drawing keystore salts and IVs from many threads, shared SecureRandom against "
+            + "per-thread DRBGs",
+    sortOptions = false)
+public class RandomBenchCommand implements Callable<Integer> {
+
+  @Option(
+      names = {"--threads"},
+      paramLabel = "<INTEGER>",
+      split = ",",
+      description = "Comma separated thread counts. Defaults to ${DEFAULT-VALUE}.")
+  private List<Integer> threads = List.of(1, 8, 64);
+
+  @Option(
+      names = {"--seconds"},
+      paramLabel = "<INTEGER>",
+      description = "Duration of each measurement. Defaults to ${DEFAULT-VALUE}.")
+  private int seconds = 3;
+
+  @Spec private CommandSpec spec; // will be populated by PicoCli at runtime
+
+  private interface Draw {
+    void saltAndIv();
+  }
+
+  @Override
+  public Integer call() throws InterruptedException {
+    if (seconds <= 0 || threads.stream().anyMatch(count -> count <= 0)) {
+      throw new ParameterException(
+          spec.commandLine(), "--threads and --seconds must be positive integers.");
+    }
+    final SecureRandom shared = new SecureRandom();
+    final Draw sharedDraw =
+        () -> {
+          Bytes32.random(shared);
+          Bytes.random(16, shared);
+        };
+    final Draw perThreadDraw =
+        () -> {
+          KeystoreRandom.salt();
+          KeystoreRandom.iv();
+        };
+    // untimed, so that both are compiled before the first measurement
+    measure(sharedDraw, 1, 1);
+    measure(perThreadDraw, 1, 1);
+
+    System.out.printf(
+        "%8s %22s %22s %8s%n", "threads", "shared SecureRandom/s", "per-thread DRBG/s", "ratio");
+    for (final int threadCount : threads) {
+      final double sharedRate = measure(sharedDraw, threadCount, seconds);
+      final double perThreadRate = measure(perThreadDraw, threadCount, seconds);
+      System.out.printf(
+          "%8d %22.0f %22.0f %7.1fx%n",
+          threadCount, sharedRate, perThreadRate, perThreadRate / sharedRate);
+    }
+    return 0;
+  }
+
+  /**
+   * @return Salt and IV pairs drawn per second, over all threads
+   */
+  private static double measure(final Draw draw, final int threadCount, final int seconds)
+      throws InterruptedException {
+    final LongAdder draws = new LongAdder();
+    final CountDownLatch start = new CountDownLatch(1);
+    final long durationNanos = seconds * 1_000_000_000L;
+    final List<Thread> workers = new ArrayList<>(threadCount);
+    for (int i = 0; i < threadCount; i++) {
+      final Thread worker =
+          new Thread(
+              () -> {
+                try {
+                  start.await();
+                } catch (final InterruptedException e) {
+                  Thread.currentThread().interrupt();
+                  return;
+                }
+                final long deadline = System.nanoTime() + durationNanos;
+                long count = 0;
+                while (System.nanoTime() < deadline) {
+                  draw.saltAndIv();
+                  count++;
+                }
+                draws.add(count);
+              });
+      worker.start();
+      workers.add(worker);
+    }
+    final long startNanos = System.nanoTime();
+    start.countDown();
+    for (final Thread worker : workers) {
+      worker.join();
+    }
+    return draws.sum() / ((System.nanoTime() - startNanos) / 1e9);
+  }
+}
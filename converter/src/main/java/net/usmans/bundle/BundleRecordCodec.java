@@ -0,0 +1,200 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans.bundle;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.UUID;
+import org.apache.tuweni.bytes.Bytes;
+import tech.pegasys.teku.bls.keystore.KeyStoreValidationException;
+import tech.pegasys.teku.bls.keystore.model.Checksum;
+import tech.pegasys.teku.bls.keystore.model.ChecksumFunction;
+import tech.pegasys.teku.bls.keystore.model.Cipher;
+import tech.pegasys.teku.bls.keystore.model.CipherFunction;
+import tech.pegasys.teku.bls.keystore.model.CipherParam;
+import tech.pegasys.teku.bls.keystore.model.Crypto;
+import tech.pegasys.teku.bls.keystore.model.EmptyParam;
+import tech.pegasys.teku.bls.keystore.model.Kdf;
+import tech.pegasys.teku.bls.keystore.model.KdfFunction;
+import tech.pegasys.teku.bls.keystore.model.KdfParam;
+import tech.pegasys.teku.bls.keystore.model.KeyStoreData;
+import tech.pegasys.teku.bls.keystore.model.Pbkdf2Param;
+import tech.pegasys.teku.bls.keystore.model.Pbkdf2PseudoRandomFunction;
+import tech.pegasys.teku.bls.keystore.model.SCryptParam;
+
+/**
+ * Binary layout of a single keystore in a bundle. All integers are big-endian:
+ *
+ * <pre>
+ * u32 record length, excluding this field
+ * u32 keystore version
+ * u8  flags (bit 0: uuid present, bit 1: path present)
+ * u8  kdf function
+ * u8  pbkdf2 prf
+ * u8  cipher function
+ * u8  checksum function
+ * u32 dklen
+ * u32 pbkdf2 c or scrypt n
+ * u32 scrypt r, 0 for pbkdf2
+ * u32 scrypt p, 0 for pbkdf2
+ * u64 uuid most significant bits
+ * u64 uuid least significant bits
+ * followed by pubkey, salt, iv, cipher message, checksum message, path and kdf message, each as a
+ * u16 length and the bytes (strings in UTF-8).
+ * </pre>
+ *
+ * Enum values are stored as their ordinal; new enum constants must only be appended.
+ */
+final class BundleRecordCodec {
+  private static final int FLAG_UUID = 1;
+  private static final int FLAG_PATH = 2;
+  private static final int FIXED_LENGTH = 4 + 5 + 4 * 4 + 8 + 8;
+
+  private BundleRecordCodec() {}
+
+  static byte[] encode(final KeyStoreData keyStoreData) {
+    final KdfParam kdfParam = keyStoreData.getCrypto().getKdf().getParam();
+    final Cipher cipher = keyStoreData.getCrypto().getCipher();
+    final Checksum checksum = keyStoreData.getCrypto().getChecksum();
+    final byte[] path = keyStoreData.getPath() == null ? new byte[0] : utf8(keyStoreData.getPath());
+    final byte[] kdfMessage = utf8(keyStoreData.getCrypto().getKdf().getMessage());
+    final Bytes[] variableFields = {
+      keyStoreData.getPubkey(),
+      kdfParam.getSalt(),
+      cipher.getCipherParam().getIv(),
+      cipher.getMessage(),
+      checksum.getMessage(),
+      Bytes.wrap(path),
+      Bytes.wrap(kdfMessage)
+    };
+
+    int length = FIXED_LENGTH;
+    for (final Bytes field : variableFields) {
+      length += 2 + checkedLength(field);
+    }
+
+    final ByteBuffer buffer = ByteBuffer.allocate(4 + length);
+    buffer.putInt(length);
+    buffer.putInt(keyStoreData.getVersion());
+    buffer.put(
+        (byte)
+            ((keyStoreData.getUuid() == null ? 0 : FLAG_UUID)
+                | (keyStoreData.getPath() == null ? 0 : FLAG_PATH)));
+    buffer.put((byte) kdfParam.getKdfFunction().ordinal());
+    buffer.put(
+        (byte) (kdfParam instanceof Pbkdf2Param pbkdf2Param ? pbkdf2Param.getPrf().ordinal() : 0));
+    buffer.put((byte) cipher.getCipherFunction().ordinal());
+    buffer.put((byte) checksum.getChecksumFunction().ordinal());
+    buffer.putInt(kdfParam.getDkLen());
+    if (kdfParam instanceof Pbkdf2Param pbkdf2Param) {
+      buffer.putInt(pbkdf2Param.getC()).putInt(0).putInt(0);
+    } else if (kdfParam instanceof SCryptParam sCryptParam) {
+      buffer.putInt(sCryptParam.getN()).putInt(sCryptParam.getR()).putInt(sCryptParam.getP());
+    } else {
+      throw new KeyStoreValidationException(
+          "Unsupported kdf parameters: " + kdfParam.getClass().getSimpleName());
+    }
+    final UUID uuid = keyStoreData.getUuid();
+    buffer.putLong(uuid == null ? 0 : uuid.getMostSignificantBits());
+    buffer.putLong(uuid == null ? 0 : uuid.getLeastSignificantBits());
+    for (final Bytes field : variableFields) {
+      buffer.putShort((short) field.size());
+      buffer.put(field.toArrayUnsafe());
+    }
+    return buffer.array();
+  }
+
+  /**
+   * Decode the record at the buffer's position, advancing the position past it.
+   *
+   * @param buffer The bundle buffer
+   * @return The keystore
+   * @throws KeyStoreValidationException If the record is truncated or holds unknown values
+   */
+  static KeyStoreData decode(final ByteBuffer buffer) {
+    try {
+      return decodeRecord(buffer);
+    } catch (final BufferUnderflowException e) {
+      throw new KeyStoreValidationException("Truncated keystore bundle record");
+    }
+  }
+
+  private static KeyStoreData decodeRecord(final ByteBuffer buffer) {
+    final int length = buffer.getInt();
+    if (length < FIXED_LENGTH || length > buffer.remaining()) {
+      throw new KeyStoreValidationException("Corrupt keystore bundle record");
+    }
+    final int end = buffer.position() + length;
+    final int version = buffer.getInt();
+    final int flags = buffer.get();
+    final KdfFunction kdfFunction = valueOf(KdfFunction.values(), buffer.get(), "kdf function");
+    final Pbkdf2PseudoRandomFunction prf =
+        valueOf(Pbkdf2PseudoRandomFunction.values(), buffer.get(), "pbkdf2 prf");
+    final CipherFunction cipherFunction =
+        valueOf(CipherFunction.values(), buffer.get(), "cipher function");
+    final ChecksumFunction checksumFunction =
+        valueOf(ChecksumFunction.values(), buffer.get(), "checksum function");
+    final int dklen = buffer.getInt();
+    final int cOrN = buffer.getInt();
+    final int r = buffer.getInt();
+    final int p = buffer.getInt();
+    final long uuidMsb = buffer.getLong();
+    final long uuidLsb = buffer.getLong();
+    final Bytes pubkey = readField(buffer);
+    final Bytes salt = readField(buffer);
+    final Bytes iv = readField(buffer);
+    final Bytes cipherMessage = readField(buffer);
+    final Bytes checksumMessage = readField(buffer);
+    final Bytes path = readField(buffer);
+    final Bytes kdfMessage = readField(buffer);
+    if (buffer.position() != end) {
+      throw new KeyStoreValidationException("Corrupt keystore bundle record");
+    }
+
+    final KdfParam kdfParam =
+        switch (kdfFunction) {
+          case PBKDF2 -> new Pbkdf2Param(dklen, cOrN, prf, salt);
+          case SCRYPT -> new SCryptParam(dklen, cOrN, p, r, salt);
+        };
+    final Crypto crypto =
+        new Crypto(
+            new Kdf(kdfFunction, kdfParam, new String(kdfMessage.toArrayUnsafe(), UTF_8)),
+            new Checksum(checksumFunction, new EmptyParam(), checksumMessage),
+            new Cipher(cipherFunction, new CipherParam(iv), cipherMessage));
+    return new KeyStoreData(
+        crypto,
+        pubkey,
+        version,
+        (flags & FLAG_PATH) == 0 ? null : new String(path.toArrayUnsafe(), UTF_8),
+        (flags & FLAG_UUID) == 0 ? null : new UUID(uuidMsb, uuidLsb));
+  }
+
+  private static <T extends Enum<T>> T valueOf(
+      final T[] values, final byte ordinal, final String name) {
+    final int index = Byte.toUnsignedInt(ordinal);
+    if (index >= values.length) {
+      throw new KeyStoreValidationException(
+          String.format("Unknown %s %d in keystore bundle record", name, index));
+    }
+    return values[index];
+  }
+
+  private static Bytes readField(final ByteBuffer buffer) {
+    final byte[] field = new byte[Short.toUnsignedInt(buffer.getShort())];
+    buffer.get(field);
+    return Bytes.wrap(field);
+  }
+
+  private static int checkedLength(final Bytes field) {
+    if (field.size() > 0xFFFF) {
+      throw new KeyStoreValidationException("Keystore field too large for bundle: " + field.size());
+    }
+    return field.size();
+  }
+
+  private static byte[] utf8(final String value) {
+    return value.getBytes(UTF_8);
+  }
+}
@@ -0,0 +1,231 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans.bundle;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.IntStream;
+import net.usmans.engine.BulkloadingMode;
+import net.usmans.engine.KeystoreSink;
+import net.usmans.engine.KeystoreSource;
+import org.apache.tuweni.bytes.Bytes;
+import tech.pegasys.teku.bls.keystore.KeyStoreValidationException;
+import tech.pegasys.teku.bls.keystore.model.KeyStoreData;
+
+/**
+ * Read-only, memory-mapped view of a keystore bundle: many v4 keystores packed in a single file so
+ * that signers pay one open and one mapping instead of one open/read/parse per key. Keystores are
+ * decoded on demand. The file starts with a 32 byte header, followed by an index sorted by public
+ * key and the keystore records, see {@link BundleRecordCodec}:
+ *
+ * <pre>
+ * header: 8 byte magic, u16 format version, u16 reserved, u32 count, u64 index offset,
+ *         u64 records offset
+ * index:  count entries of 64 bytes: u8 pubkey length, pubkey zero-padded to 48 bytes,
+ *         7 reserved bytes, u64 record offset
+ * </pre>
+ *
+ * Bundles are written by {@link KeystoreBundleWriter}. Every keystore can be turned back into
+ * standard EIP-2335 json with {@link #extract(Path, BulkloadingMode)}.
+ */
+public final class KeystoreBundle {
+  public static final String FILE_NAME = "keystores.v4bundle";
+  static final byte[] MAGIC = "V4KSBNDL".getBytes(US_ASCII);
+  static final short FORMAT_VERSION = 1;
+  static final int HEADER_SIZE = 32;
+  static final int INDEX_ENTRY_SIZE = 64;
+  static final int MAX_PUBKEY_LENGTH = 48;
+
+  private final Path bundleFile;
+  private final ByteBuffer buffer;
+  private final int count;
+  private final int indexOffset;
+  private final int recordsOffset;
+
+  private KeystoreBundle(
+      final Path bundleFile,
+      final ByteBuffer buffer,
+      final int count,
+      final int indexOffset,
+      final int recordsOffset) {
+    this.bundleFile = bundleFile;
+    this.buffer = buffer;
+    this.count = count;
+    this.indexOffset = indexOffset;
+    this.recordsOffset = recordsOffset;
+  }
+
+  /**
+   * Map a bundle file into memory and validate its header.
+   *
+   * @param bundleFile The bundle file
+   * @return The bundle
+   * @throws IOException If the file cannot be mapped
+   * @throws KeyStoreValidationException If the file is not a supported keystore bundle
+   */
+  public static KeystoreBundle open(final Path bundleFile) throws IOException {
+    final MappedByteBuffer buffer;
+    try (FileChannel channel = FileChannel.open(bundleFile, StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new KeyStoreValidationException("Keystore bundle too large: " + bundleFile);
+      }
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+
+    final byte[] magic = new byte[MAGIC.length];
+    if (buffer.limit() >= HEADER_SIZE) {
+      buffer.get(0, magic);
+    }
+    if (!Arrays.equals(magic, MAGIC)) {
+      throw new KeyStoreValidationException("Not a keystore bundle: " + bundleFile);
+    }
+    final short formatVersion = buffer.getShort(8);
+    if (formatVersion != FORMAT_VERSION) {
+      throw new KeyStoreValidationException(
+          String.format("The keystore bundle format version %d is not supported", formatVersion));
+    }
+    final int count = buffer.getInt(12);
+    final long indexOffset = buffer.getLong(16);
+    final long recordsOffset = buffer.getLong(24);
+    // the records follow the index
+    if (count < 0
+        || indexOffset < HEADER_SIZE
+        || indexOffset > buffer.limit()
+        || recordsOffset != indexOffset + (long) count * INDEX_ENTRY_SIZE
+        || recordsOffset > buffer.limit()) {
+      throw new KeyStoreValidationException("Corrupt keystore bundle: " + bundleFile);
+    }
+    return new KeystoreBundle(bundleFile, buffer, count, (int) indexOffset, (int) recordsOffset);
+  }
+
+  public Path getBundleFile() {
+    return bundleFile;
+  }
+
+  /**
+   * @return Number of keystores in the bundle
+   */
+  public int size() {
+    return count;
+  }
+
+  /**
+   * @param index Position in the index, between 0 and {@link #size()}
+   * @return Public key of the keystore at the index position
+   */
+  public Bytes pubkey(final int index) {
+    return Bytes.wrap(pubkeyBytes(index));
+  }
+
+  /**
+   * Decode the keystore at the index position.
+   *
+   * @param index Position in the index, between 0 and {@link #size()}
+   * @return The keystore
+   * @throws KeyStoreValidationException If the record is corrupt
+   */
+  public KeyStoreData get(final int index) {
+    final long recordOffset = buffer.getLong(entryOffset(index) + 56);
+    if (recordOffset < recordsOffset || recordOffset > buffer.limit() - 4) {
+      throw new KeyStoreValidationException(
+          String.format(
+              "Corrupt keystore bundle: record offset %d at index %d", recordOffset, index));
+    }
+    final ByteBuffer record = buffer.duplicate().position((int) recordOffset);
+    final KeyStoreData keyStoreData = BundleRecordCodec.decode(record);
+    keyStoreData.validate();
+    return keyStoreData;
+  }
+
+  /**
+   * Look up a keystore by public key with a binary search of the index.
+   *
+   * @param pubkey The public key
+   * @return The keystore, or empty if the bundle does not contain the public key
+   */
+  public Optional<KeyStoreData> find(final Bytes pubkey) {
+    final byte[] key = pubkey.toArrayUnsafe();
+    int low = 0;
+    int high = count - 1;
+    while (low <= high) {
+      final int mid = (low + high) >>> 1;
+      final int cmp = Arrays.compareUnsigned(pubkeyBytes(mid), key);
+      if (cmp < 0) {
+        low = mid + 1;
+      } else if (cmp > 0) {
+        high = mid - 1;
+      } else {
+        return Optional.of(get(mid));
+      }
+    }
+    return Optional.empty();
+  }
+
+  /**
+   * Keystores of this bundle as conversion sources, named after their public key as per the
+   * bulk-loading mode so that passwords are found in the usual layout.
+   *
+   * @param mode The bulk-loading mode
+   * @return The sources, in public key order
+   */
+  public List<KeystoreSource> sources(final BulkloadingMode mode) {
+    return IntStream.range(0, count)
+        .mapToObj(index -> (KeystoreSource) new BundleKeystoreSource(this, index, mode))
+        .toList();
+  }
+
+  /**
+   * Write every keystore of the bundle as EIP-2335 json files.
+   *
+   * @param destination The destination directory
+   * @param mode The bulk-loading mode
+   * @throws IOException If a keystore cannot be written
+   */
+  public void extract(final Path destination, final BulkloadingMode mode) throws IOException {
+    final KeystoreSink sink = KeystoreSink.directory(destination, mode);
+    for (final KeystoreSource source : sources(mode)) {
+      sink.write(source, source.load());
+    }
+  }
+
+  private byte[] pubkeyBytes(final int index) {
+    final int entryOffset = entryOffset(index);
+    final int length = Byte.toUnsignedInt(buffer.get(entryOffset));
+    if (length > MAX_PUBKEY_LENGTH) {
+      throw new KeyStoreValidationException(
+          String.format("Corrupt keystore bundle: pubkey length %d at index %d", length, index));
+    }
+    final byte[] pubkey = new byte[length];
+    buffer.get(entryOffset + 1, pubkey);
+    return pubkey;
+  }
+
+  private int entryOffset(final int index) {
+    if (index < 0 || index >= count) {
+      throw new IndexOutOfBoundsException(index);
+    }
+    return indexOffset + index * INDEX_ENTRY_SIZE;
+  }
+
+  private record BundleKeystoreSource(KeystoreBundle bundle, int index, BulkloadingMode mode)
+      implements KeystoreSource {
+    @Override
+    public Path path() {
+      return mode.keystorePath(bundle.pubkey(index));
+    }
+
+    @Override
+    public KeyStoreData load() {
+      return bundle.get(index);
+    }
+  }
+}
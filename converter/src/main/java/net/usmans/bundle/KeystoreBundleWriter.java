@@ -0,0 +1,121 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans.bundle;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import net.usmans.engine.KeystoreSink;
+import net.usmans.engine.KeystoreSource;
+import org.apache.tuweni.bytes.Bytes;
+import tech.pegasys.teku.bls.keystore.model.KeyStoreData;
+
+/**
+ * Sink packing converted keystores into a single {@link KeystoreBundle} file. Records are encoded
+ * as keystores arrive and the bundle is written sequentially on {@link #close()}, to a temporary
+ * file that is fsync-ed once and then moved in place.
+ */
+public final class KeystoreBundleWriter implements KeystoreSink {
+  private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+  private final Path bundleFile;
+  private final Map<Bytes, byte[]> records = new ConcurrentHashMap<>();
+
+  public KeystoreBundleWriter(final Path bundleFile) {
+    this.bundleFile = bundleFile;
+  }
+
+  @Override
+  public void write(final KeystoreSource source, final KeyStoreData converted) throws IOException {
+    final Bytes pubkey = converted.getPubkey();
+    if (pubkey.size() > KeystoreBundle.MAX_PUBKEY_LENGTH) {
+      throw new IOException("Public key too long for keystore bundle: " + pubkey);
+    }
+    if (records.putIfAbsent(pubkey, BundleRecordCodec.encode(converted)) != null) {
+      throw new IOException("Duplicate public key in keystore bundle: " + pubkey);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    final List<Bytes> pubkeys =
+        records.keySet().stream()
+            .sorted((a, b) -> Arrays.compareUnsigned(a.toArrayUnsafe(), b.toArrayUnsafe()))
+            .toList();
+    final long indexOffset = KeystoreBundle.HEADER_SIZE;
+    final long recordsOffset =
+        indexOffset + (long) pubkeys.size() * KeystoreBundle.INDEX_ENTRY_SIZE;
+
+    final ByteBuffer header = ByteBuffer.allocate(KeystoreBundle.HEADER_SIZE);
+    header
+        .put(KeystoreBundle.MAGIC)
+        .putShort(KeystoreBundle.FORMAT_VERSION)
+        .putShort((short) 0)
+        .putInt(pubkeys.size())
+        .putLong(indexOffset)
+        .putLong(recordsOffset);
+
+    final ByteBuffer index = ByteBuffer.allocate(pubkeys.size() * KeystoreBundle.INDEX_ENTRY_SIZE);
+    long recordOffset = recordsOffset;
+    for (final Bytes pubkey : pubkeys) {
+      final int entryOffset = index.position();
+      index.put((byte) pubkey.size()).put(pubkey.toArrayUnsafe());
+      index.position(entryOffset + KeystoreBundle.INDEX_ENTRY_SIZE - 8).putLong(recordOffset);
+      recordOffset += records.get(pubkey).length;
+    }
+
+    final Path directory = bundleFile.toAbsolutePath().getParent();
+    Files.createDirectories(directory);
+    // a unique name, so that writers of the same bundle do not write the same file
+    final Path tempFile =
+        Files.createTempFile(directory, bundleFile.getFileName().toString(), ".tmp");
+    try {
+      writeBundle(tempFile, header, index, pubkeys);
+      Files.move(tempFile, bundleFile, ATOMIC_MOVE, REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(tempFile);
+    }
+  }
+
+  private void writeBundle(
+      final Path file, final ByteBuffer header, final ByteBuffer index, final List<Bytes> pubkeys)
+      throws IOException {
+    try (FileChannel channel = FileChannel.open(file, TRUNCATE_EXISTING, WRITE)) {
+      writeFully(channel, header.flip());
+      writeFully(channel, index.flip());
+      final ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+      for (final Bytes pubkey : pubkeys) {
+        final byte[] record = records.get(pubkey);
+        if (record.length > buffer.remaining()) {
+          writeFully(channel, buffer.flip());
+          buffer.clear();
+        }
+        if (record.length > buffer.remaining()) {
+          writeFully(channel, ByteBuffer.wrap(record));
+        } else {
+          buffer.put(record);
+        }
+      }
+      writeFully(channel, buffer.flip());
+      channel.force(true);
+    }
+  }
+
+  private static void writeFully(final FileChannel channel, final ByteBuffer buffer)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+}
@@ -0,0 +1,72 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans.claim;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import picocli.CommandLine;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.ParameterException;
+
+/** Options of a conversion shared between workers through a {@link LeaseDirectory}. */
+public class ClaimOptions {
+  @Option(
+      names = {"--claim-dir"},
+      paramLabel = "<PATH>",
+      description =
+          "Share the conversion of --src between workers on several hosts: run the same command "
+              + "on each host with the same directory on a shared POSIX file system. Workers claim "
+              + "batches of keystores through lease files in it until every batch is converted, "
+              + "and claim again the batches of workers whose lease expired.")
+  private Path claimDir;
+
+  @Option(
+      names = {"--claim-batch-size"},
+      paramLabel = "<INTEGER>",
+      description =
+          "Number of keystores per claimed batch with --claim-dir. All workers must use the same "
+              + "value. Defaults to ${DEFAULT-VALUE}.")
+  private int batchSize = 64;
+
+  @Option(
+      names = {"--claim-lease"},
+      paramLabel = "<SECONDS>",
+      description =
+          "Time after which the batch of a worker that stopped renewing its lease is claimed "
+              + "again, with --claim-dir. Leases are renewed every third of it. Host clocks must "
+              + "agree to well within it. Defaults to ${DEFAULT-VALUE}.")
+  private int lease = 60;
+
+  /**
+   * @return true if --claim-dir is given
+   */
+  public boolean enabled() {
+    return claimDir != null;
+  }
+
+  public Path claimDir() {
+    return claimDir;
+  }
+
+  public int batchSize() {
+    return batchSize;
+  }
+
+  /**
+   * Open the lease directory of --claim-dir.
+   *
+   * @param keystores The keystores of the tree, in the same order for all workers
+   * @return The lease directory
+   */
+  public LeaseDirectory open(final List<Path> keystores) {
+    return LeaseDirectory.open(claimDir, keystores, batchSize, Duration.ofSeconds(lease));
+  }
+
+  public void validate(final CommandLine commandLine) {
+    if (enabled() && (batchSize <= 0 || lease <= 0)) {
+      throw new ParameterException(
+          commandLine, "--claim-batch-size and --claim-lease must be positive.");
+    }
+  }
+}
@@ -0,0 +1,439 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans.claim;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Shares the conversion of a keystore tree between workers, on several hosts, through lease files
+ * in a directory on a shared POSIX file system. The sorted keystores are split into batches of
+ * consecutive keystores. A worker claims a batch by creating its lease file exclusively, keeps the
+ * lease alive by touching the file, and marks the batch done once converted. A lease not touched
+ * for the lease duration is expired: its worker is presumed dead, and the batch is claimed again by
+ * exclusively creating the lease file of the next generation. Creating a file exclusively is atomic
+ * on local file systems and on NFS v3 and later, so no two workers claim the same generation. The
+ * worker holding an older generation finds out at its next renewal that its lease was lost.
+ *
+ * <p>Expiry compares file modification times with the local clock, so the clocks of the hosts must
+ * agree to well within the lease duration.
+ *
+ * <p>Files of the directory:
+ *
+ * <ul>
+ *   <li>{@code claim-plan.properties} the number of keystores, the batch size and a fingerprint of
+ *       the keystore paths; workers of a different tree or batch size are refused
+ *   <li>{@code batch-<batch>.lease-<generation>} a lease, holding its owner
+ *   <li>{@code batch-<batch>.done} a converted batch, with its owner and the number of failures
+ * </ul>
+ */
+public final class LeaseDirectory implements AutoCloseable {
+  static final String PLAN_FILE_NAME = "claim-plan.properties";
+
+  private static final Pattern LEASE = Pattern.compile("batch-(\\d+)\\.lease-(\\d+)");
+  private static final Pattern DONE = Pattern.compile("batch-(\\d+)\\.done");
+
+  private final Path directory;
+  private final String owner;
+  private final Duration leaseDuration;
+  private final int keystores;
+  private final int batchSize;
+  private final int batches;
+  private final ScheduledExecutorService heartbeat;
+  private int reclaimed;
+
+  /** A claimed batch, renewed in the background until it is completed or released. */
+  public final class Lease {
+    private final int batch;
+    private final int generation;
+    private final Path file;
+    private final ScheduledFuture<?> renewal;
+    private volatile boolean lost;
+    private Runnable lostAction = () -> {};
+
+    private Lease(final int batch, final int generation) {
+      this.batch = batch;
+      this.generation = generation;
+      this.file = leaseFile(batch, generation);
+      final long periodMillis = Math.max(1, leaseDuration.toMillis() / 3);
+      this.renewal =
+          heartbeat.scheduleAtFixedRate(
+              this::renew, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return Index of the first keystore of the batch, in path order
+     */
+    public int fromIndex() {
+      return batch * batchSize;
+    }
+
+    /**
+     * @return Index after the last keystore of the batch, in path order
+     */
+    public int toIndex() {
+      return Math.min(keystores, fromIndex() + batchSize);
+    }
+
+    /**
+     * @return The batch number
+     */
+    public int batch() {
+      return batch;
+    }
+
+    /**
+     * @return true if the lease expired and another worker claimed the batch
+     */
+    public boolean isLost() {
+      return lost;
+    }
+
+    /**
+     * Run an action, typically cancelling the conversion of the batch, as soon as the lease is
+     * found lost; right away if it already is.
+     *
+     * @param action The action, run on the renewal thread
+     */
+    public synchronized void onLost(final Runnable action) {
+      lostAction = action;
+      if (lost) {
+        action.run();
+      }
+    }
+
+    private void renew() {
+      boolean claimedByAnother;
+      try {
+        claimedByAnother = Files.exists(leaseFile(batch, generation + 1));
+        if (!claimedByAnother) {
+          Files.setLastModifiedTime(file, FileTime.from(Instant.now()));
+        }
+      } catch (final NoSuchFileException e) {
+        // removed by the worker that completed the batch after claiming it from us
+        claimedByAnother = true;
+      } catch (final IOException e) {
+        // a transient error only brings the lease closer to expiry, the next renewal retries
+        return;
+      }
+      if (claimedByAnother) {
+        renewal.cancel(false);
+        synchronized (this) {
+          lost = true;
+          lostAction.run();
+        }
+      }
+    }
+
+    /**
+     * Mark the batch done, and remove its leases.
+     *
+     * @param failed Number of keystores of the batch that failed to convert
+     * @throws UncheckedIOException If the done file cannot be written
+     */
+    public void complete(final int failed) {
+      renewal.cancel(false);
+      try {
+        Files.writeString(
+            doneFile(batch),
+            "owner=" + owner + "\nfailed=" + failed + "\n",
+            UTF_8,
+            StandardOpenOption.CREATE_NEW,
+            StandardOpenOption.WRITE);
+      } catch (final FileAlreadyExistsException e) {
+        // the worker that claimed the batch from us completed it first
+      } catch (final IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      for (int i = 0; i <= generation + 1; i++) {
+        deleteQuietly(leaseFile(batch, i));
+      }
+    }
+
+    /** Give the batch up unconverted, so that another worker can claim it right away. */
+    public void release() {
+      renewal.cancel(false);
+      if (!lost) {
+        deleteQuietly(file);
+      }
+    }
+  }
+
+  private LeaseDirectory(
+      final Path directory,
+      final String owner,
+      final Duration leaseDuration,
+      final int keystores,
+      final int batchSize) {
+    this.directory = directory;
+    this.owner = owner;
+    this.leaseDuration = leaseDuration;
+    this.keystores = keystores;
+    this.batchSize = batchSize;
+    this.batches = (keystores + batchSize - 1) / batchSize;
+    this.heartbeat =
+        Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("lease-heartbeat").setDaemon(true).build());
+  }
+
+  /**
+   * Join the conversion of a keystore tree, creating the claim directory and its plan if this is
+   * the first worker.
+   *
+   * @param directory The claim directory, on storage shared by all workers
+   * @param keystores Paths of the keystores relative to the source, in the order they are batched
+   * @param batchSize Number of keystores per batch
+   * @param leaseDuration Time after which a lease that was not renewed expires
+   * @return The claim directory
+   * @throws UncheckedIOException If the directory cannot be read or written
+   * @throws IllegalStateException If the directory was planned for other keystores or another batch
+   *     size
+   */
+  public static LeaseDirectory open(
+      final Path directory,
+      final List<Path> keystores,
+      final int batchSize,
+      final Duration leaseDuration) {
+    checkArgument(batchSize > 0, "Batch size must be positive");
+    checkArgument(
+        !leaseDuration.isNegative() && !leaseDuration.isZero(), "Lease duration must be positive");
+    final Properties plan = new Properties();
+    plan.setProperty("keystores", String.valueOf(keystores.size()));
+    plan.setProperty("batchSize", String.valueOf(batchSize));
+    plan.setProperty("fingerprint", fingerprint(keystores));
+    try {
+      Files.createDirectories(directory);
+      final Properties existingPlan = createOrReadPlan(directory, plan);
+      if (!existingPlan.equals(plan)) {
+        throw new IllegalStateException(
+            String.format(
+                "%s was created for %s keystores in batches of %s, fingerprint %s, "
+                    + "not %d keystores in batches of %d, fingerprint %s",
+                directory,
+                existingPlan.getProperty("keystores"),
+                existingPlan.getProperty("batchSize"),
+                existingPlan.getProperty("fingerprint"),
+                keystores.size(),
+                batchSize,
+                plan.getProperty("fingerprint")));
+      }
+    } catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return new LeaseDirectory(
+        directory, defaultOwner(), leaseDuration, keystores.size(), batchSize);
+  }
+
+  private static String fingerprint(final List<Path> keystores) {
+    final Hasher hasher = Hashing.sha256().newHasher();
+    keystores.forEach(keystore -> hasher.putString(keystore.toString(), UTF_8).putByte((byte) 0));
+    return hasher.hash().toString();
+  }
+
+  /** Write the plan, unless another worker already did, and return the plan in place. */
+  private static Properties createOrReadPlan(final Path directory, final Properties plan)
+      throws IOException {
+    final Path planFile = directory.resolve(PLAN_FILE_NAME);
+    if (!Files.exists(planFile)) {
+      // written in full under a unique name, then linked in place, which fails if it exists
+      final Path temporary = directory.resolve(PLAN_FILE_NAME + "." + UUID.randomUUID());
+      try {
+        Files.writeString(temporary, toString(plan), UTF_8);
+        Files.createLink(planFile, temporary);
+      } catch (final FileAlreadyExistsException e) {
+        // another worker was first
+      } finally {
+        Files.deleteIfExists(temporary);
+      }
+    }
+    final Properties existingPlan = new Properties();
+    existingPlan.load(new StringReader(Files.readString(planFile, UTF_8)));
+    return existingPlan;
+  }
+
+  private static String toString(final Properties properties) {
+    final StringBuilder text = new StringBuilder();
+    properties.stringPropertyNames().stream()
+        .sorted()
+        .forEach(
+            name ->
+                text.append(name).append('=').append(properties.getProperty(name)).append('\n'));
+    return text.toString();
+  }
+
+  private static String defaultOwner() {
+    String host;
+    try {
+      host = InetAddress.getLocalHost().getHostName();
+    } catch (final IOException e) {
+      host = "unknown-host";
+    }
+    return host + "/" + ProcessHandle.current().pid() + "/" + UUID.randomUUID();
+  }
+
+  /**
+   * @return Identifies this worker in lease and done files
+   */
+  public String owner() {
+    return owner;
+  }
+
+  /**
+   * @return Number of batches of the tree
+   */
+  public int batches() {
+    return batches;
+  }
+
+  /**
+   * @return Number of batches this worker claimed from expired leases
+   */
+  public int reclaimed() {
+    return reclaimed;
+  }
+
+  /**
+   * Claim a batch that is neither done nor leased, or whose lease expired. Workers start looking at
+   * different batches, so that they do not all contend for the first ones. While the remaining
+   * batches are all leased, wait for one to be done or to expire.
+   *
+   * @return The lease of the claimed batch, or empty once every batch is done
+   * @throws UncheckedIOException If the claim directory cannot be read or written
+   * @throws InterruptedException If interrupted while waiting for a lease to expire
+   */
+  public Optional<Lease> claim() throws InterruptedException {
+    final int start = batches == 0 ? 0 : Math.floorMod(owner.hashCode(), batches);
+    while (true) {
+      final Set<Integer> done = new HashSet<>();
+      final Map<Integer, Integer> generations = new HashMap<>();
+      try (Stream<Path> files = Files.list(directory)) {
+        files.forEach(
+            file -> {
+              final String name = file.getFileName().toString();
+              final Matcher lease = LEASE.matcher(name);
+              final Matcher doneFile = DONE.matcher(name);
+              if (lease.matches()) {
+                generations.merge(
+                    Integer.parseInt(lease.group(1)), Integer.parseInt(lease.group(2)), Math::max);
+              } else if (doneFile.matches()) {
+                done.add(Integer.parseInt(doneFile.group(1)));
+              }
+            });
+      } catch (final IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      if (done.size() >= batches) {
+        return Optional.empty();
+      }
+      for (int i = 0; i < batches; i++) {
+        final int batch = (start + i) % batches;
+        if (done.contains(batch)) {
+          continue;
+        }
+        final Integer generation = generations.get(batch);
+        final Optional<Lease> lease;
+        if (generation == null) {
+          lease = tryCreate(batch, 0);
+        } else if (isExpired(batch, generation)) {
+          lease = tryCreate(batch, generation + 1);
+          lease.ifPresent(ignored -> reclaimed++);
+        } else {
+          continue;
+        }
+        if (lease.isPresent()) {
+          return lease;
+        }
+      }
+      Thread.sleep(Math.max(10, Math.min(1_000, leaseDuration.toMillis() / 4)));
+    }
+  }
+
+  private boolean isExpired(final int batch, final int generation) {
+    try {
+      final Instant renewed = Files.getLastModifiedTime(leaseFile(batch, generation)).toInstant();
+      return renewed.plus(leaseDuration).isBefore(Instant.now());
+    } catch (final NoSuchFileException e) {
+      // completed or released since the listing, the next listing tells which
+      return false;
+    } catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private Optional<Lease> tryCreate(final int batch, final int generation) {
+    try {
+      if (Files.exists(doneFile(batch))) {
+        return Optional.empty();
+      }
+      Files.writeString(
+          leaseFile(batch, generation),
+          "owner=" + owner + "\n",
+          UTF_8,
+          StandardOpenOption.CREATE_NEW,
+          StandardOpenOption.WRITE);
+      if (Files.exists(doneFile(batch))) {
+        // completed between the check and the creation, which freed the lease file
+        deleteQuietly(leaseFile(batch, generation));
+        return Optional.empty();
+      }
+    } catch (final FileAlreadyExistsException e) {
+      return Optional.empty();
+    } catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return Optional.of(new Lease(batch, generation));
+  }
+
+  private Path leaseFile(final int batch, final int generation) {
+    return directory.resolve(String.format("batch-%08d.lease-%d", batch, generation));
+  }
+
+  private Path doneFile(final int batch) {
+    return directory.resolve(String.format("batch-%08d.done", batch));
+  }
+
+  private static void deleteQuietly(final Path file) {
+    try {
+      Files.deleteIfExists(file);
+    } catch (final IOException e) {
+      // an orphaned lease file of a done batch is ignored
+    }
+  }
+
+  /** Stop renewing leases. Leases not completed or released then expire. */
+  @Override
+  public void close() {
+    heartbeat.shutdownNow();
+  }
+}
@@ -0,0 +1,180 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans.daemon;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+import net.usmans.PicoCliVersionProvider;
+import net.usmans.engine.BulkloadingMode;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import tech.pegasys.teku.bls.keystore.model.KdfFunction;
+
+/** Sends a conversion job to a running {@code daemon} and waits for its outcome. */
+@Command(
+    name = "client",
+    mixinStandardHelpOptions = true,
+    versionProvider = PicoCliVersionProvider.class,
+    description = "Convert keystores on a running daemon",
+    sortOptions = false)
+public class ClientCommand implements Callable<Integer> {
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+  @Option(
+      names = {"--socket"},
+      paramLabel = "<PATH>",
+      required = true,
+      description = "Unix domain socket the daemon listens on. Required.")
+  private Path socket;
+
+  @Option(
+      names = {"--src"},
+      paramLabel = "<PATH>",
+      required = true,
+      description = "Source directory containing v4 keystores. Required.")
+  private Path source;
+
+  @Option(
+      names = {"--password-src"},
+      paramLabel = "<PATH>",
+      required = true,
+      description = "Path to directory containing passwords files. Required.")
+  private Path passwordPath;
+
+  @Option(
+      names = {"--dest"},
+      paramLabel = "<PATH>",
+      required = true,
+      description = "Destination directory where converted v4 keystores will be placed. Required.")
+  private Path destination;
+
+  @Option(
+      names = {"--mode"},
+      paramLabel = "<MODE>",
+      description =
+          "Keystores Bulk-loading mode. Valid Values: ${COMPLETION-CANDIDATES}. "
+              + "Defaults to: ${DEFAULT-VALUE}")
+  private BulkloadingMode mode = BulkloadingMode.WEB3SIGNER;
+
+  @Option(
+      names = {"--kdf-function"},
+      paramLabel = "<KDF>",
+      description =
+          "Kdf Function to convert to. Valid values: ${COMPLETION-CANDIDATES}. Defaults to: ${DEFAULT-VALUE}")
+  private KdfFunction kdfFunction = KdfFunction.PBKDF2;
+
+  @Option(
+      names = {"-c"},
+      paramLabel = "<INTEGER>",
+      description = "PBKDF2 iterative count. Defaults to ${DEFAULT-VALUE}.")
+  private int c = 1;
+
+  @Option(
+      names = {"-n"},
+      paramLabel = "<INTEGER>",
+      description = "SCRYPT CPU/memory cost. Defaults to ${DEFAULT-VALUE}.")
+  private int n = 2;
+
+  @Option(
+      names = {"-p"},
+      paramLabel = "<INTEGER>",
+      description = "SCRYPT parallelization. Defaults to ${DEFAULT-VALUE}.")
+  private int p = 1;
+
+  @Option(
+      names = {"-r"},
+      paramLabel = "<INTEGER>",
+      description = "SCRYPT block size. Defaults to ${DEFAULT-VALUE}.")
+  private int r = 8;
+
+  @Option(
+      names = {"--max-errors"},
+      paramLabel = "<INTEGER>",
+      description =
+          "Number of failed keystores tolerated before the remaining keystores are cancelled. "
+              + "Defaults to unlimited.")
+  private Integer maxErrors;
+
+  @Override
+  public Integer call() throws IOException {
+    final ConversionResponse response =
+        submit(
+            socket,
+            new ConversionRequest(
+                source.toAbsolutePath().toString(),
+                passwordPath.toAbsolutePath().toString(),
+                destination.toAbsolutePath().toString(),
+                mode,
+                kdfFunction,
+                c,
+                n,
+                p,
+                r,
+                maxErrors));
+
+    if (response.error() != null) {
+      System.err.println("Job rejected by the daemon: " + response.error());
+      return 1;
+    }
+    response
+        .failures()
+        .forEach(
+            failure ->
+                System.err.printf(
+                    "Error while converting keystore %s (%s): %s%n",
+                    failure.path(), failure.stage(), failure.message()));
+    if (!response.isSuccess()) {
+      System.err.printf(
+          "Converted %d keystores, %d failed, %d cancelled.%n",
+          response.converted(), response.failed(), response.cancelled());
+      return 1;
+    }
+    System.out.printf(
+        "Converted %d keystores in %d ms (queued %d ms).%n",
+        response.converted(), response.elapsedMillis(), response.queuedMillis());
+    return 0;
+  }
+
+  /**
+   * Send a job to the daemon and wait for its outcome.
+   *
+   * @param socket Unix domain socket the daemon listens on
+   * @param request The job
+   * @return The outcome of the job
+   * @throws IOException If the daemon cannot be reached or does not answer
+   */
+  public static ConversionResponse submit(final Path socket, final ConversionRequest request)
+      throws IOException {
+    try (SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(socket))) {
+      IOException writeError = null;
+      try {
+        final OutputStream out = Channels.newOutputStream(channel);
+        out.write(OBJECT_MAPPER.writeValueAsBytes(request));
+        out.write('\n');
+        out.flush();
+      } catch (final IOException e) {
+        // a daemon refusing the client answers and closes the connection without reading the job
+        writeError = e;
+      }
+      final String line =
+          new BufferedReader(new InputStreamReader(Channels.newInputStream(channel), UTF_8))
+              .readLine();
+      if (line == null) {
+        throw writeError != null
+            ? writeError
+            : new IOException("Daemon closed the connection without an answer");
+      }
+      return OBJECT_MAPPER.readValue(line, ConversionResponse.class);
+    }
+  }
+}
@@ -0,0 +1,354 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans.daemon;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import jdk.net.ExtendedSocketOptions;
+import jdk.net.UnixDomainPrincipal;
+import net.usmans.engine.ConversionJob;
+import net.usmans.engine.ConversionResult;
+import net.usmans.engine.KeystoreConversionEngine;
+import net.usmans.engine.KeystoreSink;
+import net.usmans.engine.KeystoreSource;
+import net.usmans.engine.PasswordSource;
+
+/**
+ * Runs conversion jobs for clients connected to a Unix domain socket, in a JVM that stays warm
+ * between jobs. Every connection carries one job: a json {@link ConversionRequest} line, answered
+ * by a json {@link ConversionResponse} line once the job is done. Up to {@code maxJobs} jobs run at
+ * the same time and further jobs queue in arrival order. All jobs share the conversion executor.
+ *
+ * <p>The socket is only accessible to the user running the daemon, and connections of other users
+ * are refused: a job reads any key the daemon can read and writes wherever the client asks.
+ */
+public class ConversionDaemon implements Closeable {
+  /** Largest request line accepted, far above the json of a job. */
+  static final int MAX_REQUEST_BYTES = 64 * 1024;
+
+  private final Path socketPath;
+  private final Limits limits;
+  private final Semaphore jobSlots;
+  private final Semaphore connectionSlots;
+  private final Executor conversionExecutor;
+  private final ExecutorService connections;
+  private final ScheduledExecutorService requestTimeouts;
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private ServerSocketChannel server;
+  private UserPrincipal owner;
+
+  /**
+   * Bounds on the clients of the daemon.
+   *
+   * @param maxConnections Number of clients connected at the same time, running or queued; further
+   *     clients are refused
+   * @param requestTimeout Time a client has to send its request once connected
+   * @param maxKdfMemoryBytes Largest memory the KDF of a requested target may need
+   */
+  public record Limits(int maxConnections, Duration requestTimeout, long maxKdfMemoryBytes) {
+    /**
+     * @return 64 connections, 10 seconds to send a request and a quarter of the maximum heap per
+     *     KDF
+     */
+    public static Limits defaults() {
+      return new Limits(64, Duration.ofSeconds(10), Runtime.getRuntime().maxMemory() / 4);
+    }
+  }
+
+  /**
+   * @param socketPath Path of the Unix domain socket to listen on
+   * @param maxJobs Number of jobs converted at the same time
+   * @param conversionExecutor Executor converting the keystores of all jobs
+   */
+  public ConversionDaemon(
+      final Path socketPath, final int maxJobs, final Executor conversionExecutor) {
+    this(socketPath, maxJobs, conversionExecutor, Limits.defaults());
+  }
+
+  /**
+   * @param socketPath Path of the Unix domain socket to listen on
+   * @param maxJobs Number of jobs converted at the same time
+   * @param conversionExecutor Executor converting the keystores of all jobs
+   * @param limits Bounds on the clients
+   */
+  public ConversionDaemon(
+      final Path socketPath,
+      final int maxJobs,
+      final Executor conversionExecutor,
+      final Limits limits) {
+    this.socketPath = socketPath;
+    this.limits = limits;
+    this.jobSlots = new Semaphore(maxJobs, true);
+    this.connectionSlots = new Semaphore(limits.maxConnections());
+    this.conversionExecutor = conversionExecutor;
+    this.connections = Executors.newFixedThreadPool(limits.maxConnections());
+    this.requestTimeouts =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              final Thread thread = new Thread(runnable, "daemon-request-timeout");
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
+
+  /**
+   * Bind the socket and accept clients in the background. A socket file left behind by a daemon
+   * that is no longer running is replaced.
+   *
+   * @throws IOException If the socket cannot be bound, or another daemon listens on it
+   */
+  public void start() throws IOException {
+    removeStaleSocket();
+    server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+    bind();
+    owner = Files.getOwner(socketPath);
+    final Thread acceptor = new Thread(this::accept, "daemon-acceptor");
+    acceptor.setDaemon(true);
+    acceptor.start();
+  }
+
+  /**
+   * Run a conversion job once a job slot is free.
+   *
+   * @param request The job
+   * @return The outcome of the job, with the error if it could not run
+   */
+  public ConversionResponse convert(final ConversionRequest request) {
+    final long queuedNanos = System.nanoTime();
+    try {
+      request.validate(limits.maxKdfMemoryBytes());
+      jobSlots.acquire();
+    } catch (final IllegalArgumentException e) {
+      return ConversionResponse.error(e.getMessage());
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return ConversionResponse.error("Daemon is shutting down");
+    }
+    final Duration queued = Duration.ofNanos(System.nanoTime() - queuedNanos);
+    try {
+      final ConversionJob job =
+          KeystoreConversionEngine.builder()
+              .sources(
+                  request.mode().listKeystores(Path.of(request.src())).stream()
+                      .map(KeystoreSource::file)
+                      .toList())
+              .passwordSource(
+                  PasswordSource.directory(Path.of(request.passwordSrc()), request.mode()))
+              .kdfParamFactory(request.kdfParamFactory())
+              .sink(KeystoreSink.directory(Path.of(request.dest()), request.mode()))
+              .maxErrors(request.maxErrors() == null ? Integer.MAX_VALUE : request.maxErrors())
+              .executor(conversionExecutor)
+              .build()
+              .start();
+      final List<ConversionResponse.Failure> failures =
+          job.results().stream()
+              .map(CompletableFuture::join)
+              .filter(result -> !result.isSuccess())
+              .map(ConversionDaemon::failure)
+              .toList();
+      return ConversionResponse.completed(job.completion().join(), queued, failures);
+    } catch (final IOException e) {
+      return ConversionResponse.error("Unable to list keystores: " + e.getMessage());
+    } catch (final RuntimeException e) {
+      return ConversionResponse.error(e.getMessage());
+    } finally {
+      jobSlots.release();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (server != null) {
+      server.close();
+      Files.deleteIfExists(socketPath);
+    }
+    connections.shutdownNow();
+    requestTimeouts.shutdownNow();
+  }
+
+  /**
+   * Bind the socket in a directory only this user can enter and give it owner-only permissions
+   * before moving it in place, so that no other user can connect in between.
+   */
+  private void bind() throws IOException {
+    final Path directory = socketPath.toAbsolutePath().getParent();
+    if (!directory.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+      server.bind(UnixDomainSocketAddress.of(socketPath));
+      return;
+    }
+    final Path privateDirectory =
+        Files.createTempDirectory(
+            directory,
+            ".daemon-",
+            PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+    try {
+      final Path boundPath = privateDirectory.resolve("sock");
+      server.bind(UnixDomainSocketAddress.of(boundPath));
+      Files.setPosixFilePermissions(boundPath, PosixFilePermissions.fromString("rw-------"));
+      Files.move(boundPath, socketPath, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(privateDirectory.resolve("sock"));
+      Files.delete(privateDirectory);
+    }
+  }
+
+  private void accept() {
+    while (server.isOpen()) {
+      try {
+        final SocketChannel channel = server.accept();
+        if (connectionSlots.tryAcquire()) {
+          connections.execute(() -> serve(channel));
+        } else {
+          try (channel) {
+            respond(channel, ConversionResponse.error("Too many clients connected"));
+          }
+        }
+      } catch (final AsynchronousCloseException e) {
+        return;
+      } catch (final IOException e) {
+        System.err.println("Unable to accept client: " + e.getMessage());
+      }
+    }
+  }
+
+  private void serve(final SocketChannel channel) {
+    try (channel) {
+      if (!isOwner(channel)) {
+        respond(channel, ConversionResponse.error("Only the user running the daemon can connect"));
+        return;
+      }
+      ConversionResponse response;
+      try {
+        final String line = readRequestLine(channel);
+        response =
+            line == null
+                ? ConversionResponse.error("Empty request")
+                : convert(objectMapper.readValue(line, ConversionRequest.class));
+      } catch (final AsynchronousCloseException e) {
+        System.err.println("Closed a client that sent no request in " + limits.requestTimeout());
+        return;
+      } catch (final JsonProcessingException e) {
+        response = ConversionResponse.error("Invalid request: " + e.getOriginalMessage());
+      } catch (final IllegalArgumentException e) {
+        response = ConversionResponse.error(e.getMessage());
+      }
+      respond(channel, response);
+    } catch (final IOException e) {
+      System.err.println("Unable to serve client: " + e.getMessage());
+    } finally {
+      connectionSlots.release();
+    }
+  }
+
+  private boolean isOwner(final SocketChannel channel) throws IOException {
+    final UnixDomainPrincipal peer;
+    try {
+      peer = channel.getOption(ExtendedSocketOptions.SO_PEERCRED);
+    } catch (final UnsupportedOperationException e) {
+      // the owner-only permissions of the socket keep other users out
+      return true;
+    }
+    return peer.user().getName().equals(owner.getName());
+  }
+
+  /**
+   * @return The request line, null if the client sent nothing
+   * @throws AsynchronousCloseException If the client sent no request within the request timeout
+   * @throws IllegalArgumentException If the line is longer than {@link #MAX_REQUEST_BYTES}
+   */
+  private String readRequestLine(final SocketChannel channel) throws IOException {
+    // a client that connects and stays silent would hold its connection slot forever
+    final ScheduledFuture<?> timeout =
+        requestTimeouts.schedule(
+            () -> closeQuietly(channel), limits.requestTimeout().toMillis(), TimeUnit.MILLISECONDS);
+    try {
+      final InputStream in = new BufferedInputStream(Channels.newInputStream(channel));
+      final ByteArrayOutputStream line = new ByteArrayOutputStream();
+      int b;
+      while ((b = in.read()) != -1 && b != '\n') {
+        if (line.size() == MAX_REQUEST_BYTES) {
+          throw new IllegalArgumentException(
+              "Request is larger than " + MAX_REQUEST_BYTES + " bytes");
+        }
+        line.write(b);
+      }
+      return b == -1 && line.size() == 0 ? null : line.toString(UTF_8);
+    } finally {
+      timeout.cancel(false);
+    }
+  }
+
+  private void respond(final SocketChannel channel, final ConversionResponse response)
+      throws IOException {
+    final OutputStream out = Channels.newOutputStream(channel);
+    out.write(objectMapper.writeValueAsBytes(response));
+    out.write('\n');
+    out.flush();
+  }
+
+  private static void closeQuietly(final SocketChannel channel) {
+    try {
+      channel.close();
+    } catch (final IOException e) {
+      // the client is gone either way
+    }
+  }
+
+  private void removeStaleSocket() throws IOException {
+    if (!Files.exists(socketPath, LinkOption.NOFOLLOW_LINKS)) {
+      return;
+    }
+    if (!Files.readAttributes(socketPath, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS)
+        .isOther()) {
+      throw new IOException(socketPath + " exists and is not a socket");
+    }
+    if (isListening()) {
+      throw new IOException("Another daemon is listening on " + socketPath);
+    }
+    Files.delete(socketPath);
+  }
+
+  private boolean isListening() {
+    try (SocketChannel ignored = SocketChannel.open(UnixDomainSocketAddress.of(socketPath))) {
+      return true;
+    } catch (final IOException e) {
+      return false;
+    }
+  }
+
+  private static ConversionResponse.Failure failure(final ConversionResult result) {
+    return new ConversionResponse.Failure(
+        result.source().path().toString(), result.failedStage(), result.error().getMessage());
+  }
+}
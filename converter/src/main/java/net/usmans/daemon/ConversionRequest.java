@@ -0,0 +1,79 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans.daemon;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import net.usmans.engine.BulkloadingMode;
+import net.usmans.engine.KdfParamFactory;
+import tech.pegasys.teku.bls.keystore.model.KdfFunction;
+
+/**
+ * A conversion job sent to the daemon. Paths are resolved by the daemon process, so clients send
+ * absolute paths.
+ *
+ * @param src Directory containing the v4 keystores
+ * @param passwordSrc Directory containing the password files
+ * @param dest Directory where the converted keystores are written
+ * @param mode Bulk-loading mode of the source and destination directories
+ * @param kdfFunction KDF function to convert to
+ * @param c PBKDF2 iterative count
+ * @param n SCRYPT CPU/memory cost
+ * @param p SCRYPT parallelization
+ * @param r SCRYPT block size
+ * @param maxErrors Number of failed keystores tolerated before the job is cancelled, null for
+ *     unlimited
+ */
+public record ConversionRequest(
+    String src,
+    String passwordSrc,
+    String dest,
+    BulkloadingMode mode,
+    KdfFunction kdfFunction,
+    int c,
+    int n,
+    int p,
+    int r,
+    Integer maxErrors) {
+
+  /**
+   * @param maxKdfMemoryBytes Largest memory the KDF of the target may need
+   * @throws IllegalArgumentException If the request is incomplete, its KDF parameters are invalid
+   *     or need more memory than allowed
+   */
+  void validate(final long maxKdfMemoryBytes) {
+    checkArgument(src != null, "src is required");
+    checkArgument(passwordSrc != null, "passwordSrc is required");
+    checkArgument(dest != null, "dest is required");
+    checkArgument(mode != null, "mode is required");
+    checkArgument(kdfFunction != null, "kdfFunction is required");
+    checkArgument(maxErrors == null || maxErrors >= 0, "maxErrors cannot be negative");
+    if (kdfFunction == KdfFunction.PBKDF2) {
+      checkArgument(c > 0, "c must be a positive integer");
+    } else {
+      checkArgument(
+          n > 1 && Integer.bitCount(n) == 1, "n must be a positive integer and a power of 2");
+      checkArgument(p > 0 && r > 0, "p and r must be positive integers");
+      checkArgument(
+          scryptMemoryBytes(n, r, p) <= maxKdfMemoryBytes,
+          "n, r and p need more scrypt memory than the %s bytes the daemon allows",
+          maxKdfMemoryBytes);
+    }
+  }
+
+  /** Memory of the V arrays of the p lanes, which may all run at the same time. */
+  private static long scryptMemoryBytes(final int n, final int r, final int p) {
+    try {
+      return Math.multiplyExact(Math.multiplyExact(128L * r, n), (long) p);
+    } catch (final ArithmeticException e) {
+      return Long.MAX_VALUE;
+    }
+  }
+
+  KdfParamFactory kdfParamFactory() {
+    return switch (kdfFunction) {
+      case PBKDF2 -> KdfParamFactory.pbkdf2(c);
+      case SCRYPT -> KdfParamFactory.scrypt(n, p, r);
+    };
+  }
+}
@@ -0,0 +1,58 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans.daemon;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import java.time.Duration;
+import java.util.List;
+import net.usmans.engine.ConversionStage;
+import net.usmans.engine.ConversionSummary;
+
+/**
+ * Outcome of a conversion job run by the daemon.
+ *
+ * @param converted Number of keystores converted
+ * @param failed Number of keystores that failed to convert
+ * @param cancelled Number of keystores not converted because the job was cancelled
+ * @param queuedMillis Time the job waited for a free job slot
+ * @param elapsedMillis Wall-clock time of the conversion
+ * @param failures The keystores that failed to convert
+ * @param error Why the job could not run at all, null if it ran
+ */
+public record ConversionResponse(
+    int converted,
+    int failed,
+    int cancelled,
+    long queuedMillis,
+    long elapsedMillis,
+    List<Failure> failures,
+    String error) {
+
+  /**
+   * @param path Path of the keystore
+   * @param stage The stage that failed
+   * @param message The cause of failure
+   */
+  public record Failure(String path, ConversionStage stage, String message) {}
+
+  static ConversionResponse completed(
+      final ConversionSummary summary, final Duration queued, final List<Failure> failures) {
+    return new ConversionResponse(
+        summary.converted(),
+        summary.failed(),
+        summary.cancelled(),
+        queued.toMillis(),
+        summary.elapsed().toMillis(),
+        failures,
+        null);
+  }
+
+  static ConversionResponse error(final String error) {
+    return new ConversionResponse(0, 0, 0, 0, 0, List.of(), error);
+  }
+
+  @JsonIgnore
+  public boolean isSuccess() {
+    return error == null && failed == 0 && cancelled == 0;
+  }
+}
@@ -0,0 +1,199 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans.daemon;
+
+import com.google.common.io.MoreFiles;
+import com.google.common.io.RecursiveDeleteOption;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import net.usmans.ByteSizeConverter;
+import net.usmans.PicoCliVersionProvider;
+import net.usmans.bench.FleetGenerator;
+import net.usmans.engine.BulkloadingMode;
+import net.usmans.engine.KdfParamFactory;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Model.CommandSpec;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.ParameterException;
+import picocli.CommandLine.Spec;
+import tech.pegasys.teku.bls.keystore.model.KdfFunction;
+
+/**
+ * Keeps a warmed up JVM listening on a Unix domain socket for conversion jobs sent by the {@code
+ * client} command, so that bursts of small jobs do not pay JVM startup, class loading and JIT
+ * warm-up every time.
+ */
+@Command(
+    name = "daemon",
+    mixinStandardHelpOptions = true,
+    versionProvider = PicoCliVersionProvider.class,
+    description = "Run conversion jobs sent by the client command, on a JVM that stays warm",
+    sortOptions = false)
+public class DaemonCommand implements Callable<Integer> {
+  // KDF parameters of the warm-up keystores, enough iterations for the JIT to compile the KDF loops
+  private static final int WARMUP_C = 16384;
+  private static final int WARMUP_N = 16384;
+
+  @Option(
+      names = {"--socket"},
+      paramLabel = "<PATH>",
+      required = true,
+      description = "Unix domain socket to listen on. Required.")
+  private Path socket;
+
+  @Option(
+      names = {"--max-jobs"},
+      paramLabel = "<INTEGER>",
+      description =
+          "Number of jobs converted at the same time, further jobs wait in arrival order. "
+              + "Defaults to ${DEFAULT-VALUE}.")
+  private int maxJobs = 2;
+
+  @Option(
+      names = {"--threads"},
+      paramLabel = "<INTEGER>",
+      description =
+          "Number of threads converting the keystores of all jobs. Defaults to the number of cores.")
+  private int threads = Runtime.getRuntime().availableProcessors();
+
+  @Option(
+      names = {"--max-connections"},
+      paramLabel = "<INTEGER>",
+      description =
+          "Number of clients connected at the same time, running or queued jobs. "
+              + "Further clients are refused. Defaults to ${DEFAULT-VALUE}.")
+  private int maxConnections = ConversionDaemon.Limits.defaults().maxConnections();
+
+  @Option(
+      names = {"--request-timeout"},
+      paramLabel = "<SECONDS>",
+      description =
+          "Seconds a client has to send its job once connected. Defaults to ${DEFAULT-VALUE}.")
+  private long requestTimeoutSeconds =
+      ConversionDaemon.Limits.defaults().requestTimeout().toSeconds();
+
+  @Option(
+      names = {"--max-kdf-memory"},
+      paramLabel = "<SIZE>",
+      converter = ByteSizeConverter.class,
+      description =
+          "Largest scrypt memory (128 * n * r * p bytes) a job may ask for, for example 256m. "
+              + "Defaults to a quarter of the maximum heap.")
+  private Long maxKdfMemory;
+
+  @Option(
+      names = {"--skip-warmup"},
+      description =
+          "Skip the conversion of generated keystores that warms up the JIT before listening.")
+  private boolean skipWarmup;
+
+  @Spec private CommandSpec spec; // will be populated by PicoCli at runtime
+
+  @Override
+  public Integer call() throws IOException, InterruptedException {
+    validateCliParams();
+
+    final ExecutorService executor = Executors.newFixedThreadPool(threads);
+    final ConversionDaemon daemon =
+        new ConversionDaemon(
+            socket,
+            maxJobs,
+            executor,
+            new ConversionDaemon.Limits(
+                maxConnections,
+                Duration.ofSeconds(requestTimeoutSeconds),
+                maxKdfMemory == null
+                    ? ConversionDaemon.Limits.defaults().maxKdfMemoryBytes()
+                    : maxKdfMemory));
+    if (!skipWarmup) {
+      warmUp(daemon);
+    }
+    daemon.start();
+    System.err.printf("Listening on %s with %d threads.%n", socket, threads);
+
+    final CountDownLatch stopped = new CountDownLatch(1);
+    Runtime.getRuntime()
+        .addShutdownHook(
+            new Thread(
+                () -> {
+                  try {
+                    daemon.close();
+                  } catch (final IOException e) {
+                    System.err.println("Unable to remove socket: " + e.getMessage());
+                  }
+                  executor.shutdownNow();
+                  stopped.countDown();
+                }));
+    stopped.await();
+    return 0;
+  }
+
+  /** Convert generated keystores from scrypt to PBKDF2 and back, through the job path. */
+  private void warmUp(final ConversionDaemon daemon) throws IOException {
+    System.err.println("Warming up ...");
+    final Path workDir = Files.createTempDirectory("v4keystore-daemon");
+    try {
+      FleetGenerator.generate(
+          workDir.resolve("scrypt"),
+          workDir.resolve("secrets"),
+          BulkloadingMode.WEB3SIGNER,
+          threads,
+          KdfParamFactory.scrypt(WARMUP_N, 1, 8));
+      warmUpJob(daemon, workDir, "scrypt", "pbkdf2", KdfFunction.PBKDF2);
+      warmUpJob(daemon, workDir, "pbkdf2", "scrypt-again", KdfFunction.SCRYPT);
+    } finally {
+      MoreFiles.deleteRecursively(workDir, RecursiveDeleteOption.ALLOW_INSECURE);
+    }
+  }
+
+  private static void warmUpJob(
+      final ConversionDaemon daemon,
+      final Path workDir,
+      final String src,
+      final String dest,
+      final KdfFunction kdfFunction) {
+    final ConversionResponse response =
+        daemon.convert(
+            new ConversionRequest(
+                workDir.resolve(src).toString(),
+                workDir.resolve("secrets").toString(),
+                workDir.resolve(dest).toString(),
+                BulkloadingMode.WEB3SIGNER,
+                kdfFunction,
+                WARMUP_C,
+                WARMUP_N,
+                1,
+                8,
+                null));
+    if (!response.isSuccess()) {
+      throw new IllegalStateException(
+          "Warm-up failed: "
+              + (response.error() == null
+                  ? response.failures().get(0).message()
+                  : response.error()));
+    }
+  }
+
+  private void validateCliParams() {
+    if (maxJobs <= 0) {
+      throw new ParameterException(spec.commandLine(), "--max-jobs must be a positive integer.");
+    }
+    if (threads <= 0) {
+      throw new ParameterException(spec.commandLine(), "--threads must be a positive integer.");
+    }
+    if (maxConnections < maxJobs) {
+      throw new ParameterException(
+          spec.commandLine(), "--max-connections cannot be lower than --max-jobs.");
+    }
+    if (requestTimeoutSeconds <= 0) {
+      throw new ParameterException(
+          spec.commandLine(), "--request-timeout must be a positive integer.");
+    }
+  }
+}
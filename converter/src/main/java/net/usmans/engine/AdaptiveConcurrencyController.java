@@ -0,0 +1,281 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans.engine;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Executor that adapts the number of keystores converted concurrently to what the host sustains.
+ * Every sample interval it measures converted keys per second, the fraction of wall time spent in
+ * GC and the allocation rate, and adjusts the in-flight limit with additive increase,
+ * multiplicative decrease: the limit grows by one while work is queued and throughput keeps up, and
+ * shrinks by a quarter when GC dominates or throughput drops after an increase. Every adjustment is
+ * logged. Pass it to {@link KeystoreConversionEngine.Builder#executor(Executor)} and close it once
+ * the conversion has completed.
+ */
+public final class AdaptiveConcurrencyController implements Executor, AutoCloseable {
+  static final double MAX_GC_FRACTION = 0.10;
+  static final double TOLERANCE = 0.05;
+  private static final double DECREASE_FACTOR = 0.75;
+
+  private final int minConcurrency;
+  private final int maxConcurrency;
+  private final Consumer<String> log;
+  private final ExecutorService workers;
+  private final ScheduledExecutorService sampler;
+  private final Queue<Runnable> queued = new ArrayDeque<>();
+  private final LongAdder completed = new LongAdder();
+  private Map<Long, Long> threadAllocatedBytes = new HashMap<>();
+
+  // guarded by this
+  private int limit;
+  private int inFlight;
+  private Sample lastSample;
+  private boolean increasedLast;
+
+  // only accessed by the sampler thread
+  private long lastSampleNanos = System.nanoTime();
+  private long lastCompleted;
+  private long lastGcMillis = gcMillis();
+
+  /** Sampled load of the host over one interval. */
+  record Sample(double keysPerSecond, double gcFraction, double allocatedBytesPerSecond) {}
+
+  /**
+   * Start with one in-flight keystore per available processor.
+   *
+   * @param minConcurrency Lower bound of in-flight keystores
+   * @param maxConcurrency Upper bound of in-flight keystores
+   * @param sampleInterval Time between adjustments
+   * @param log Receives one line per adjustment
+   */
+  public AdaptiveConcurrencyController(
+      final int minConcurrency,
+      final int maxConcurrency,
+      final Duration sampleInterval,
+      final Consumer<String> log) {
+    this(
+        minConcurrency,
+        maxConcurrency,
+        Runtime.getRuntime().availableProcessors(),
+        sampleInterval,
+        log);
+  }
+
+  AdaptiveConcurrencyController(
+      final int minConcurrency,
+      final int maxConcurrency,
+      final int initialConcurrency,
+      final Duration sampleInterval,
+      final Consumer<String> log) {
+    checkArgument(minConcurrency > 0, "Minimum concurrency must be positive");
+    checkArgument(maxConcurrency >= minConcurrency, "Maximum concurrency below minimum");
+    this.minConcurrency = minConcurrency;
+    this.maxConcurrency = maxConcurrency;
+    this.log = log;
+    this.limit = Math.min(maxConcurrency, Math.max(minConcurrency, initialConcurrency));
+    this.workers =
+        Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder()
+                .setNameFormat("converter-worker-%d")
+                .setDaemon(true)
+                .build());
+    this.sampler =
+        Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("converter-sampler").setDaemon(true).build());
+    sampleAllocatedBytes();
+    sampler.scheduleAtFixedRate(
+        () -> adjust(sample()),
+        sampleInterval.toMillis(),
+        sampleInterval.toMillis(),
+        TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public void execute(final Runnable task) {
+    synchronized (this) {
+      if (inFlight >= limit) {
+        queued.add(task);
+        return;
+      }
+      inFlight++;
+    }
+    dispatch(task);
+  }
+
+  /**
+   * @return The current limit of in-flight keystores
+   */
+  public synchronized int getLimit() {
+    return limit;
+  }
+
+  private void dispatch(final Runnable task) {
+    workers.execute(
+        () -> {
+          try {
+            task.run();
+          } finally {
+            completed.increment();
+            onTaskDone();
+          }
+        });
+  }
+
+  private void onTaskDone() {
+    final Runnable next;
+    synchronized (this) {
+      inFlight--;
+      next = inFlight < limit ? queued.poll() : null;
+      if (next != null) {
+        inFlight++;
+      }
+    }
+    if (next != null) {
+      dispatch(next);
+    }
+  }
+
+  private void drain() {
+    while (true) {
+      final Runnable next;
+      synchronized (this) {
+        next = inFlight < limit ? queued.poll() : null;
+        if (next == null) {
+          return;
+        }
+        inFlight++;
+      }
+      dispatch(next);
+    }
+  }
+
+  private Sample sample() {
+    final long nowNanos = System.nanoTime();
+    final double seconds = Math.max(1e-3, (nowNanos - lastSampleNanos) / 1e9);
+    final long completedNow = completed.sum();
+    final long gcMillisNow = gcMillis();
+    final Sample sample =
+        new Sample(
+            (completedNow - lastCompleted) / seconds,
+            Math.min(1.0, (gcMillisNow - lastGcMillis) / 1000.0 / seconds),
+            sampleAllocatedBytes() / seconds);
+    lastSampleNanos = nowNanos;
+    lastCompleted = completedNow;
+    lastGcMillis = gcMillisNow;
+    return sample;
+  }
+
+  /**
+   * Apply one AIMD step for the sample.
+   *
+   * @param current Load of the host over the last interval
+   */
+  void adjust(final Sample current) {
+    final int previousLimit;
+    final int newLimit;
+    String reason = null;
+    synchronized (this) {
+      previousLimit = limit;
+      if (current.gcFraction() > MAX_GC_FRACTION) {
+        reason = String.format("GC took %.0f%% of wall time", current.gcFraction() * 100);
+        limit = decreased(limit);
+      } else if (increasedLast
+          && current.keysPerSecond() < lastSample.keysPerSecond() * (1 - TOLERANCE)) {
+        reason = "throughput dropped after the last increase";
+        limit = decreased(limit);
+      } else if (increasedLast
+          && current.keysPerSecond() <= lastSample.keysPerSecond() * (1 + TOLERANCE)
+          && current.allocatedBytesPerSecond()
+              > lastSample.allocatedBytesPerSecond() * (1 + TOLERANCE)) {
+        reason = "allocation rate grew without a throughput gain";
+        limit = Math.max(minConcurrency, limit - 1);
+      } else if (!queued.isEmpty()
+          && limit < maxConcurrency
+          && (!increasedLast
+              || current.keysPerSecond() > lastSample.keysPerSecond() * (1 + TOLERANCE))) {
+        reason = queued.size() + " keystores waiting";
+        limit++;
+      }
+      newLimit = limit;
+      increasedLast = newLimit > previousLimit;
+      lastSample = current;
+    }
+
+    if (newLimit != previousLimit) {
+      log.accept(
+          String.format(
+              "Adaptive concurrency: %d -> %d in-flight keystores "
+                  + "(%.1f keys/s, GC %.1f%%, allocating %.1f MiB/s): %s",
+              previousLimit,
+              newLimit,
+              current.keysPerSecond(),
+              current.gcFraction() * 100,
+              current.allocatedBytesPerSecond() / (1024 * 1024),
+              reason));
+      drain();
+    }
+  }
+
+  private int decreased(final int currentLimit) {
+    return Math.max(
+        minConcurrency, Math.min(currentLimit - 1, (int) (currentLimit * DECREASE_FACTOR)));
+  }
+
+  private static long gcMillis() {
+    return ManagementFactory.getGarbageCollectorMXBeans().stream()
+        .mapToLong(GarbageCollectorMXBean::getCollectionTime)
+        .filter(millis -> millis > 0)
+        .sum();
+  }
+
+  /**
+   * @return Bytes allocated by all live threads since the previous call
+   */
+  private long sampleAllocatedBytes() {
+    final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    if (!(threadMXBean instanceof com.sun.management.ThreadMXBean allocationMXBean)
+        || !allocationMXBean.isThreadAllocatedMemorySupported()
+        || !allocationMXBean.isThreadAllocatedMemoryEnabled()) {
+      return 0;
+    }
+    final long[] threadIds = allocationMXBean.getAllThreadIds();
+    final long[] allocatedBytes = allocationMXBean.getThreadAllocatedBytes(threadIds);
+    final Map<Long, Long> current = new HashMap<>();
+    long delta = 0;
+    for (int i = 0; i < threadIds.length; i++) {
+      if (allocatedBytes[i] >= 0) {
+        current.put(threadIds[i], allocatedBytes[i]);
+        delta += allocatedBytes[i] - threadAllocatedBytes.getOrDefault(threadIds[i], 0L);
+      }
+    }
+    threadAllocatedBytes = current;
+    return delta;
+  }
+
+  /** Stop sampling and release the worker threads, once all submitted tasks have completed. */
+  @Override
+  public void close() {
+    sampler.shutdownNow();
+    workers.shutdown();
+    log.accept(
+        String.format("Adaptive concurrency: finished at %d in-flight keystores", getLimit()));
+  }
+}
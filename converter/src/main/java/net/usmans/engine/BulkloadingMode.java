@@ -0,0 +1,107 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans.engine;
+
+import static com.google.common.io.Files.getNameWithoutExtension;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+import org.apache.tuweni.bytes.Bytes;
+
+/**
+ * Keystores bulk-loading layouts. WEB3SIGNER stores keystores as {@code <pk>.json} and passwords as
+ * {@code <pk>.txt}, while NIMBUS stores keystores as {@code <pk>/keystore.json} and passwords as
+ * {@code <pk>} without any extension.
+ */
+public enum BulkloadingMode {
+  WEB3SIGNER,
+  NIMBUS;
+
+  /**
+   * Read keystore paths from source directory. Web3Signer has publickey.json as keystore files.
+   * Nimbus has publickey/keystore.json as keystore files. The {@code Files.list} method does not
+   * run in parallel, hence we only read the keystores Paths that will be processed later.
+   *
+   * @param source The source directory
+   * @return List of keystore paths
+   * @throws IOException If the source directory cannot be listed
+   */
+  public List<Path> listKeystores(final Path source) throws IOException {
+    try (Stream<Path> srcFiles = Files.list(source)) {
+      return switch (this) {
+        case WEB3SIGNER ->
+            srcFiles
+                .filter(
+                    path ->
+                        Files.isRegularFile(path)
+                            && path.getFileName().toString().endsWith(".json")
+                            && !path.getFileName().toString().startsWith("deposit_data"))
+                .toList();
+        case NIMBUS ->
+            srcFiles.filter(Files::isDirectory).map(path -> path.resolve("keystore.json")).toList();
+      };
+    }
+  }
+
+  /**
+   * Whether an archive entry is a keystore, as per the layout. Unlike a source directory, entries
+   * may be nested below a top-level directory of the archive.
+   *
+   * @param entryPath Path of the archive entry
+   * @return true if the entry is a keystore
+   */
+  public boolean isKeystoreEntry(final Path entryPath) {
+    final String fileName = entryPath.getFileName().toString();
+    return switch (this) {
+      case WEB3SIGNER -> fileName.endsWith(".json") && !fileName.startsWith("deposit_data");
+      case NIMBUS -> fileName.equals("keystore.json") && entryPath.getParent() != null;
+    };
+  }
+
+  /**
+   * Name of password file of a keystore. Web3Signer uses <pk>.txt while Nimbus uses <pk> without
+   * extension as password.
+   *
+   * @param keystorePath The keystore path
+   * @return The password file name, relative to the passwords directory
+   */
+  public Path passwordFileName(final Path keystorePath) {
+    return switch (this) {
+      case WEB3SIGNER ->
+          Path.of(getNameWithoutExtension(keystorePath.getFileName().toString()) + ".txt");
+      case NIMBUS -> keystorePath.getParent().getFileName();
+    };
+  }
+
+  /**
+   * Relative path of a keystore named after its public key, for keystores that do not come from a
+   * file, such as the ones in a bundle.
+   *
+   * @param pubkey The public key of the keystore
+   * @return The relative keystore path
+   */
+  public Path keystorePath(final Bytes pubkey) {
+    return switch (this) {
+      case WEB3SIGNER -> Path.of(pubkey.toHexString() + ".json");
+      case NIMBUS -> Path.of(pubkey.toHexString(), "keystore.json");
+    };
+  }
+
+  /**
+   * Path of converted keystore in the destination directory.
+   *
+   * @param destination The destination directory
+   * @param keystorePath The source keystore path
+   * @param pubkey The public key of the keystore
+   * @return The converted keystore path
+   */
+  public Path keystoreFile(final Path destination, final Path keystorePath, final Bytes pubkey) {
+    return switch (this) {
+      case WEB3SIGNER -> destination.resolve(keystorePath.getFileName());
+      case NIMBUS -> destination.resolve(pubkey.toHexString()).resolve(keystorePath.getFileName());
+    };
+  }
+}
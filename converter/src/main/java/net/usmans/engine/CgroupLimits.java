@@ -0,0 +1,108 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans.engine;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.OptionalLong;
+
+/**
+ * CPU and memory limits of the cgroup v2 of this process, and of its ancestors: the tightest limit
+ * on the path applies. Limits are absent where they are {@code max}, where the files cannot be
+ * read, and on hosts without a cgroup v2 hierarchy.
+ *
+ * @param cpuCores Cores allowed by {@code cpu.max}, quota divided by period
+ * @param memoryBytes Bytes allowed by {@code memory.max}
+ */
+public record CgroupLimits(OptionalDouble cpuCores, OptionalLong memoryBytes) {
+  private static final Path MOUNT_INFO = Path.of("/proc/self/mountinfo");
+  private static final Path PROC_CGROUP = Path.of("/proc/self/cgroup");
+
+  /**
+   * @return The limits of this process
+   */
+  public static CgroupLimits read() {
+    try {
+      final Optional<Path> mountPoint = cgroup2MountPoint(Files.readAllLines(MOUNT_INFO));
+      final Optional<String> cgroup = cgroupPath(Files.readAllLines(PROC_CGROUP));
+      if (mountPoint.isEmpty() || cgroup.isEmpty()) {
+        return new CgroupLimits(OptionalDouble.empty(), OptionalLong.empty());
+      }
+      return read(mountPoint.get(), cgroup.get());
+    } catch (final IOException e) {
+      return new CgroupLimits(OptionalDouble.empty(), OptionalLong.empty());
+    }
+  }
+
+  /**
+   * @param mountPoint Mount point of the cgroup v2 hierarchy
+   * @param cgroup Path of the cgroup within the hierarchy, for example {@code /system.slice/x}
+   * @return The tightest limits from the cgroup up to the root
+   */
+  static CgroupLimits read(final Path mountPoint, final String cgroup) {
+    double cpuCores = Double.POSITIVE_INFINITY;
+    long memoryBytes = Long.MAX_VALUE;
+    Path directory = mountPoint.resolve(cgroup.replaceFirst("^/+", "")).normalize();
+    while (directory.startsWith(mountPoint)) {
+      cpuCores = Math.min(cpuCores, cpuMax(directory.resolve("cpu.max")));
+      memoryBytes = Math.min(memoryBytes, memoryMax(directory.resolve("memory.max")));
+      if (directory.equals(mountPoint)) {
+        break;
+      }
+      directory = directory.getParent();
+    }
+    return new CgroupLimits(
+        Double.isInfinite(cpuCores) ? OptionalDouble.empty() : OptionalDouble.of(cpuCores),
+        memoryBytes == Long.MAX_VALUE ? OptionalLong.empty() : OptionalLong.of(memoryBytes));
+  }
+
+  static Optional<Path> cgroup2MountPoint(final List<String> mountInfo) {
+    // <id> <parent> <major:minor> <root> <mount point> <options> [optional fields] - <fstype> ...
+    return mountInfo.stream()
+        .filter(line -> line.contains(" - cgroup2 "))
+        .map(line -> Path.of(line.split(" ")[4]))
+        .findFirst();
+  }
+
+  static Optional<String> cgroupPath(final List<String> procCgroup) {
+    // the cgroup v2 entry has hierarchy id 0 and no controllers
+    return procCgroup.stream()
+        .filter(line -> line.startsWith("0::"))
+        .map(line -> line.substring(3))
+        .findFirst();
+  }
+
+  private static double cpuMax(final Path file) {
+    // "<quota> <period>" or "max <period>"
+    final String[] fields = readFirstLine(file).split(" ");
+    if (fields.length != 2 || fields[0].equals("max")) {
+      return Double.POSITIVE_INFINITY;
+    }
+    try {
+      return Double.parseDouble(fields[0]) / Double.parseDouble(fields[1]);
+    } catch (final NumberFormatException e) {
+      return Double.POSITIVE_INFINITY;
+    }
+  }
+
+  private static long memoryMax(final Path file) {
+    final String value = readFirstLine(file);
+    try {
+      return value.isEmpty() || value.equals("max") ? Long.MAX_VALUE : Long.parseLong(value);
+    } catch (final NumberFormatException e) {
+      return Long.MAX_VALUE;
+    }
+  }
+
+  private static String readFirstLine(final Path file) {
+    try {
+      return Files.isReadable(file) ? Files.readString(file).trim() : "";
+    } catch (final IOException e) {
+      return "";
+    }
+  }
+}
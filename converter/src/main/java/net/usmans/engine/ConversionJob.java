@@ -0,0 +1,85 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans.engine;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Handle of a running conversion, as returned by {@link KeystoreConversionEngine#start()}. */
+public final class ConversionJob {
+  private final List<CompletableFuture<ConversionResult>> results;
+  private final CompletableFuture<ConversionSummary> completion;
+  private final AtomicBoolean cancelled;
+
+  ConversionJob(
+      final List<CompletableFuture<ConversionResult>> results,
+      final CompletableFuture<ConversionSummary> completion,
+      final AtomicBoolean cancelled) {
+    this.results = results;
+    this.completion = completion;
+    this.cancelled = cancelled;
+  }
+
+  /**
+   * @return One future per source keystore, in the order of the sources. The futures never complete
+   *     exceptionally; failures are reported in the {@link ConversionResult}.
+   */
+  public List<CompletableFuture<ConversionResult>> results() {
+    return results;
+  }
+
+  /**
+   * @return Future completed once every keystore has been converted, failed or cancelled and the
+   *     sink has been closed.
+   */
+  public CompletableFuture<ConversionSummary> completion() {
+    return completion;
+  }
+
+  /**
+   * Publisher of per-keystore results in completion order. Every subscriber receives all results,
+   * including the ones completed before it subscribed, followed by {@code onComplete}.
+   *
+   * @return The publisher
+   */
+  public Flow.Publisher<ConversionResult> publisher() {
+    return subscriber -> {
+      // buffer can hold every result, so submitting never blocks the engine's workers
+      final SubmissionPublisher<ConversionResult> publisher =
+          new SubmissionPublisher<>(
+              ForkJoinPool.commonPool(), Math.max(Flow.defaultBufferSize(), results.size()));
+      publisher.subscribe(subscriber);
+      if (results.isEmpty()) {
+        publisher.close();
+        return;
+      }
+      final AtomicInteger remaining = new AtomicInteger(results.size());
+      results.forEach(
+          result ->
+              result.thenAccept(
+                  conversionResult -> {
+                    publisher.submit(conversionResult);
+                    if (remaining.decrementAndGet() == 0) {
+                      publisher.close();
+                    }
+                  }));
+    };
+  }
+
+  /**
+   * Cancel the job. Keystores not yet started are skipped and keystores in progress stop at their
+   * next stage; both are reported as cancelled. Keystores already written are left as they are.
+   */
+  public void cancel() {
+    cancelled.set(true);
+  }
+
+  public boolean isCancelled() {
+    return cancelled.get();
+  }
+}
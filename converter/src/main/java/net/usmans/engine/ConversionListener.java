@@ -0,0 +1,78 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans.engine;
+
+import tech.pegasys.teku.bls.keystore.model.KdfParam;
+
+/**
+ * Callbacks of a conversion job. {@link #onResult} is called concurrently from the engine's
+ * workers, hence implementations must be thread-safe.
+ */
+public interface ConversionListener {
+  ConversionListener NOOP = new ConversionListener() {};
+
+  /**
+   * @param total Number of keystores that will be converted
+   */
+  default void onStart(int total) {}
+
+  /**
+   * @param source A keystore a worker starts converting
+   */
+  default void onKeystoreStarted(KeystoreSource source) {}
+
+  /**
+   * @param kdfParam KDF parameters of a key derived to decrypt a source or encrypt a target
+   * @param nanos Time spent deriving the key, a share of the batch for keys derived together
+   */
+  default void onKeyDerived(KdfParam kdfParam, long nanos) {}
+
+  /**
+   * @param result Outcome of converting a single keystore
+   */
+  default void onResult(ConversionResult result) {}
+
+  /**
+   * @param summary Outcome of the job
+   */
+  default void onComplete(ConversionSummary summary) {}
+
+  /**
+   * @param other Listener notified after this one
+   * @return A listener notifying this listener, then the other
+   */
+  default ConversionListener andThen(final ConversionListener other) {
+    final ConversionListener first = this;
+    return new ConversionListener() {
+      @Override
+      public void onStart(final int total) {
+        first.onStart(total);
+        other.onStart(total);
+      }
+
+      @Override
+      public void onKeystoreStarted(final KeystoreSource source) {
+        first.onKeystoreStarted(source);
+        other.onKeystoreStarted(source);
+      }
+
+      @Override
+      public void onKeyDerived(final KdfParam kdfParam, final long nanos) {
+        first.onKeyDerived(kdfParam, nanos);
+        other.onKeyDerived(kdfParam, nanos);
+      }
+
+      @Override
+      public void onResult(final ConversionResult result) {
+        first.onResult(result);
+        other.onResult(result);
+      }
+
+      @Override
+      public void onComplete(final ConversionSummary summary) {
+        first.onComplete(summary);
+        other.onComplete(summary);
+      }
+    };
+  }
+}
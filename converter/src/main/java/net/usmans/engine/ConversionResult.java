@@ -0,0 +1,40 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans.engine;
+
+import java.time.Duration;
+import tech.pegasys.teku.bls.keystore.model.KeyStoreData;
+
+/**
+ * Outcome of converting a single keystore.
+ *
+ * @param source The source keystore
+ * @param converted The converted keystore, null if the conversion failed
+ * @param failedStage The stage that failed, null if the conversion succeeded
+ * @param error The cause of failure, null if the conversion succeeded
+ * @param elapsed Time spent converting the keystore, from loading it to writing it
+ */
+public record ConversionResult(
+    KeystoreSource source,
+    KeyStoreData converted,
+    ConversionStage failedStage,
+    Throwable error,
+    Duration elapsed) {
+
+  static ConversionResult success(
+      final KeystoreSource source, final KeyStoreData converted, final Duration elapsed) {
+    return new ConversionResult(source, converted, null, null, elapsed);
+  }
+
+  static ConversionResult failure(
+      final KeystoreSource source,
+      final ConversionStage stage,
+      final Throwable error,
+      final Duration elapsed) {
+    return new ConversionResult(source, null, stage, error, elapsed);
+  }
+
+  public boolean isSuccess() {
+    return error == null;
+  }
+}
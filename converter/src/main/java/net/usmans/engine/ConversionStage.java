@@ -0,0 +1,15 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans.engine;
+
+/** Stages of converting a single keystore, in order. */
+public enum ConversionStage {
+  /** Reading and validating the source keystore and its password. */
+  LOAD,
+  /** Decrypting the private key with the source KDF parameters. */
+  DECRYPT,
+  /** Encrypting the private key with the target KDF parameters. */
+  ENCRYPT,
+  /** Handing the converted keystore to the sink. */
+  WRITE
+}
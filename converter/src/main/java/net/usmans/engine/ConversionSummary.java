@@ -0,0 +1,19 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans.engine;
+
+import java.time.Duration;
+
+/**
+ * Outcome of a conversion job.
+ *
+ * @param converted Number of keystores converted
+ * @param failed Number of keystores that failed to convert
+ * @param cancelled Number of keystores not converted because the job was cancelled
+ * @param elapsed Wall-clock time of the job
+ */
+public record ConversionSummary(int converted, int failed, int cancelled, Duration elapsed) {
+  public boolean isSuccess() {
+    return failed == 0 && cancelled == 0;
+  }
+}
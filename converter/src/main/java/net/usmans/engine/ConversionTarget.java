@@ -0,0 +1,12 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans.engine;
+
+/**
+ * One output of a conversion: the KDF parameters keystores are re-encrypted with and the sink they
+ * are written to. A keystore converted to several targets is decrypted only once.
+ *
+ * @param kdfParamFactory KDF parameters of the target
+ * @param sink Sink receiving the keystores re-encrypted for the target
+ */
+public record ConversionTarget(KdfParamFactory kdfParamFactory, KeystoreSink sink) {}
@@ -0,0 +1,117 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans.engine;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Dispatches tasks longest-processing-time first: the most expensive task whose memory still fits
+ * in the budget next to the running tasks is handed to the executor first, so that the expensive
+ * keystores of a heterogeneous fleet do not end up alone at the tail of the run. A task larger than
+ * the whole budget runs once nothing else is running.
+ *
+ * <p>Tasks are grouped by cost, so a dispatch only scans the distinct costs rather than every
+ * pending task.
+ */
+final class CostScheduler {
+  private static final Comparator<TaskCost> LONGEST_FIRST =
+      Comparator.comparingLong(TaskCost::estimatedNanos)
+          .thenComparingLong(TaskCost::memoryBytes)
+          .reversed();
+
+  private final Executor executor;
+  private final long memoryBudget;
+  // dispatches requested while one runs, see dispatch()
+  private final AtomicInteger dispatchRequests = new AtomicInteger();
+  // guarded by this
+  private final TreeMap<TaskCost, Queue<Runnable>> pending = new TreeMap<>(LONGEST_FIRST);
+  private long inFlightMemory;
+  private int inFlight;
+
+  /**
+   * @param estimatedNanos Estimated duration of the task
+   * @param memoryBytes Memory needed by the task
+   */
+  record TaskCost(long estimatedNanos, long memoryBytes) {}
+
+  /**
+   * @param executor Executor running the dispatched tasks in submission order
+   * @param memoryBudget Maximum memory of tasks running at the same time
+   */
+  CostScheduler(final Executor executor, final long memoryBudget) {
+    this.executor = executor;
+    this.memoryBudget = memoryBudget;
+  }
+
+  /** Queue a task without dispatching it, see {@link #dispatch()}. */
+  synchronized void add(final TaskCost cost, final Runnable task) {
+    pending.computeIfAbsent(cost, ignored -> new ArrayDeque<>()).add(task);
+  }
+
+  /**
+   * Hand the pending tasks that fit in the memory budget to the executor. One thread dispatches at
+   * a time, a dispatch requested meanwhile is run by that thread once it has handed over its tasks.
+   */
+  void dispatch() {
+    if (dispatchRequests.getAndIncrement() != 0) {
+      return;
+    }
+    try {
+      do {
+        // hand over outside the lock, a direct executor runs the task and its release right here
+        dispatchable().forEach(executor::execute);
+      } while (dispatchRequests.decrementAndGet() != 0);
+    } catch (final RuntimeException e) {
+      dispatchRequests.set(0);
+      throw e;
+    }
+  }
+
+  private synchronized List<Runnable> dispatchable() {
+    final List<Runnable> dispatchable = new ArrayList<>();
+    TaskCost cost;
+    while ((cost = nextFitting()) != null) {
+      final Queue<Runnable> tasks = pending.get(cost);
+      final Runnable task = tasks.poll();
+      if (tasks.isEmpty()) {
+        pending.remove(cost);
+      }
+      inFlight++;
+      inFlightMemory += cost.memoryBytes();
+      final TaskCost taskCost = cost;
+      dispatchable.add(
+          () -> {
+            try {
+              task.run();
+            } finally {
+              release(taskCost);
+            }
+          });
+    }
+    return dispatchable;
+  }
+
+  private TaskCost nextFitting() {
+    for (final TaskCost cost : pending.keySet()) {
+      if (inFlight == 0 || inFlightMemory + cost.memoryBytes() <= memoryBudget) {
+        return cost;
+      }
+    }
+    return null;
+  }
+
+  private void release(final TaskCost cost) {
+    synchronized (this) {
+      inFlight--;
+      inFlightMemory -= cost.memoryBytes();
+    }
+    dispatch();
+  }
+}
@@ -0,0 +1,24 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans.engine;
+
+import org.apache.tuweni.bytes.Bytes;
+import tech.pegasys.teku.bls.keystore.model.KdfParam;
+
+/**
+ * A keystore whose public key and KDF parameters were recorded when it was last parsed and
+ * validated, for example in a keystore index, so that they are known without parsing it again.
+ */
+public interface IndexedKeystoreSource extends KeystoreSource {
+
+  /**
+   * @return The public key of the keystore
+   */
+  Bytes pubkey();
+
+  /**
+   * @return The KDF parameters of the keystore, without parsing it
+   */
+  @Override
+  KdfParam kdfParam();
+}
@@ -0,0 +1,139 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans.engine;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.tuweni.bytes.Bytes32;
+import tech.pegasys.teku.bls.keystore.model.KdfCost;
+import tech.pegasys.teku.bls.keystore.model.KdfFunction;
+import tech.pegasys.teku.bls.keystore.model.KdfParam;
+import tech.pegasys.teku.bls.keystore.model.Pbkdf2Param;
+import tech.pegasys.teku.bls.keystore.model.Pbkdf2PseudoRandomFunction;
+import tech.pegasys.teku.bls.keystore.model.SCryptParam;
+
+/**
+ * Turns the {@link KdfCost} of KDF parameters into an estimated duration on this host, and records
+ * how long key derivations actually took per cost class (KDF function and parameters, ignoring the
+ * salt) to report the estimates against the actual cost.
+ */
+public final class KdfCostModel {
+  private static final int CALIBRATION_RUNS = 3;
+
+  private final Map<KdfFunction, Double> nanosPerWork;
+  private final Map<String, CostClassStatistics> costClasses = new ConcurrentHashMap<>();
+
+  KdfCostModel(final Map<KdfFunction, Double> nanosPerWork) {
+    this.nanosPerWork = new EnumMap<>(nanosPerWork);
+  }
+
+  /**
+   * Estimated against actual per-keystore cost of one cost class.
+   *
+   * @param costClass KDF function and parameters, for example {@code scrypt n=262144 r=8 p=1}
+   * @param derivations Number of recorded key derivations
+   * @param estimated Estimated duration of one key derivation
+   * @param actual Mean actual duration of one key derivation
+   */
+  public record CostClassReport(
+      String costClass, long derivations, Duration estimated, Duration actual) {}
+
+  private record CostClassStatistics(long estimatedNanos, LongAdder count, LongAdder actualNanos) {}
+
+  /**
+   * Calibrate the model by timing small key derivations of every KDF function on this host.
+   *
+   * @return The calibrated model
+   */
+  public static KdfCostModel calibrate() {
+    final Map<KdfFunction, Double> nanosPerWork = new EnumMap<>(KdfFunction.class);
+    final Bytes32 salt = KeystoreRandom.salt();
+    nanosPerWork.put(KdfFunction.SCRYPT, calibrate(new SCryptParam(32, 4096, 1, 8, salt)));
+    nanosPerWork.put(
+        KdfFunction.PBKDF2,
+        calibrate(new Pbkdf2Param(32, 16_384, Pbkdf2PseudoRandomFunction.HMAC_SHA256, salt)));
+    return new KdfCostModel(nanosPerWork);
+  }
+
+  private static double calibrate(final KdfParam kdfParam) {
+    long bestNanos = Long.MAX_VALUE;
+    // the first runs include JIT compilation, keep the fastest
+    for (int i = 0; i < CALIBRATION_RUNS; i++) {
+      final long startNanos = System.nanoTime();
+      kdfParam.generateDecryptionKey("calibration");
+      bestNanos = Math.min(bestNanos, System.nanoTime() - startNanos);
+    }
+    return (double) bestNanos / kdfParam.estimateCost().work();
+  }
+
+  /**
+   * @param cost The cost of a key derivation
+   * @return The estimated duration of the key derivation, in nanoseconds
+   */
+  public long estimateNanos(final KdfCost cost) {
+    return Math.round(cost.work() * nanosPerWork.getOrDefault(cost.kdfFunction(), 0.0));
+  }
+
+  /**
+   * @param kdfParam The KDF parameters
+   * @return The estimated duration of a key derivation with the parameters
+   */
+  public Duration estimate(final KdfParam kdfParam) {
+    return Duration.ofNanos(estimateNanos(kdfParam.estimateCost()));
+  }
+
+  /**
+   * Record the actual duration of a key derivation.
+   *
+   * @param kdfParam The KDF parameters used
+   * @param nanos The duration, in nanoseconds
+   */
+  public void record(final KdfParam kdfParam, final long nanos) {
+    final CostClassStatistics statistics =
+        costClasses.computeIfAbsent(
+            costClass(kdfParam),
+            ignored ->
+                new CostClassStatistics(
+                    estimateNanos(kdfParam.estimateCost()), new LongAdder(), new LongAdder()));
+    statistics.count().increment();
+    statistics.actualNanos().add(nanos);
+  }
+
+  /**
+   * @return Estimated against actual cost of every recorded cost class, most expensive first
+   */
+  public List<CostClassReport> report() {
+    return costClasses.entrySet().stream()
+        .map(
+            entry -> {
+              final long count = entry.getValue().count().sum();
+              return new CostClassReport(
+                  entry.getKey(),
+                  count,
+                  Duration.ofNanos(entry.getValue().estimatedNanos()),
+                  Duration.ofNanos(entry.getValue().actualNanos().sum() / Math.max(1, count)));
+            })
+        .sorted(Comparator.comparing(CostClassReport::estimated).reversed())
+        .toList();
+  }
+
+  /**
+   * @param kdfParam KDF parameters
+   * @return Label of the KDF function and its cost parameters, for example {@code pbkdf2 c=2}
+   */
+  public static String costClass(final KdfParam kdfParam) {
+    if (kdfParam instanceof SCryptParam sCryptParam) {
+      return String.format(
+          "scrypt n=%d r=%d p=%d", sCryptParam.getN(), sCryptParam.getR(), sCryptParam.getP());
+    }
+    if (kdfParam instanceof Pbkdf2Param pbkdf2Param) {
+      return String.format("pbkdf2 c=%d", pbkdf2Param.getC());
+    }
+    return kdfParam.getKdfFunction().getJsonValue();
+  }
+}
@@ -0,0 +1,52 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans.engine;
+
+import com.google.common.base.Suppliers;
+import java.util.function.Supplier;
+import tech.pegasys.teku.bls.keystore.DerivedKeyCache;
+import tech.pegasys.teku.bls.keystore.model.KdfParam;
+import tech.pegasys.teku.bls.keystore.model.Pbkdf2Param;
+import tech.pegasys.teku.bls.keystore.model.Pbkdf2PseudoRandomFunction;
+import tech.pegasys.teku.bls.keystore.model.SCryptParam;
+
+/** Creates the target KDF parameters of each converted keystore. Must be thread-safe. */
+@FunctionalInterface
+public interface KdfParamFactory {
+
+  /**
+   * @return KDF parameters, with a fresh salt, to encrypt one keystore with.
+   */
+  KdfParam create();
+
+  /**
+   * All keystores converted with the returned factory share the parameters, and hence the salt,
+   * created on first use. Combined with a {@link DerivedKeyCache} keystores sharing a password then
+   * share a single KDF run.
+   *
+   * @return Factory returning the same parameters for every keystore.
+   */
+  default KdfParamFactory withSharedSalt() {
+    final Supplier<KdfParam> shared = Suppliers.memoize(this::create);
+    return shared::get;
+  }
+
+  /**
+   * @param c The iteration count
+   * @return Factory of PBKDF2 parameters with random salts.
+   */
+  static KdfParamFactory pbkdf2(final int c) {
+    return () ->
+        new Pbkdf2Param(32, c, Pbkdf2PseudoRandomFunction.HMAC_SHA256, KeystoreRandom.salt());
+  }
+
+  /**
+   * @param n CPU/Memory cost parameter
+   * @param p Parallelization parameter
+   * @param r Block size parameter
+   * @return Factory of SCRYPT parameters with random salts.
+   */
+  static KdfParamFactory scrypt(final int n, final int p, final int r) {
+    return () -> new SCryptParam(32, n, p, r, KeystoreRandom.salt());
+  }
+}
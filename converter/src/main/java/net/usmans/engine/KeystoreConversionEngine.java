@@ -0,0 +1,744 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans.engine;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+import org.apache.tuweni.bytes.Bytes;
+import tech.pegasys.teku.bls.keystore.DerivedKeyCache;
+import tech.pegasys.teku.bls.keystore.KeyStore;
+import tech.pegasys.teku.bls.keystore.kdf.MultiBufferPbkdf2;
+import tech.pegasys.teku.bls.keystore.model.Cipher;
+import tech.pegasys.teku.bls.keystore.model.CipherFunction;
+import tech.pegasys.teku.bls.keystore.model.KdfCost;
+import tech.pegasys.teku.bls.keystore.model.KdfParam;
+import tech.pegasys.teku.bls.keystore.model.KeyStoreData;
+import tech.pegasys.teku.bls.keystore.model.Pbkdf2Param;
+
+/**
+ * Converts the KDF parameters of v4 keystores. Each source keystore is loaded, decrypted with its
+ * password, re-encrypted with parameters from the {@link KdfParamFactory} and handed to the {@link
+ * KeystoreSink}, as an independent task on the executor. With {@link Builder#addTarget additional
+ * targets}, each keystore is decrypted once and re-encrypted for all targets, in parallel on the
+ * default executor and one after another on the worker of any other executor.
+ *
+ * <pre>{@code
+ * ConversionJob job =
+ *     KeystoreConversionEngine.builder()
+ *         .sources(sources)
+ *         .passwordSource(PasswordSource.directory(passwords, BulkloadingMode.WEB3SIGNER))
+ *         .kdfParamFactory(KdfParamFactory.pbkdf2(16_384))
+ *         .sink(KeystoreSink.directory(destination, BulkloadingMode.WEB3SIGNER))
+ *         .build()
+ *         .start();
+ * ConversionSummary summary = job.completion().join();
+ * }</pre>
+ *
+ * An engine runs its sources once; build a new engine for every conversion.
+ */
+public final class KeystoreConversionEngine {
+
+  private final List<KeystoreSource> sources;
+  private final PasswordSource passwordSource;
+  private final List<ConversionTarget> targets;
+  private final Executor executor;
+  private final ConversionListener listener;
+  private final DerivedKeyCache derivedKeyCache;
+  private final KdfCostModel costModel;
+  private final long memoryBudget;
+  private final int maxErrors;
+  private final int pbkdf2BatchSize;
+  private final AtomicBoolean started = new AtomicBoolean();
+  private final AtomicInteger errors = new AtomicInteger();
+
+  private KeystoreConversionEngine(final Builder builder) {
+    this.sources = List.copyOf(builder.sources);
+    this.passwordSource = builder.passwordSource;
+    this.targets = builder.targets();
+    this.executor = builder.executor;
+    this.listener = builder.listener;
+    this.derivedKeyCache = builder.derivedKeyCache;
+    this.costModel = builder.costModel;
+    this.memoryBudget = builder.memoryBudget;
+    this.maxErrors = builder.maxErrors;
+    this.pbkdf2BatchSize = builder.pbkdf2BatchSize;
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Start converting the sources asynchronously.
+   *
+   * @return Handle of the running conversion
+   * @throws IllegalStateException If the engine has already been started
+   */
+  public ConversionJob start() {
+    checkState(started.compareAndSet(false, true), "Conversion engine can only be started once");
+
+    final long startNanos = System.nanoTime();
+    final AtomicBoolean cancelled = new AtomicBoolean();
+    listener.onStart(sources.size());
+
+    final List<CompletableFuture<ConversionResult>> results;
+    if (costModel != null) {
+      results = scheduleByCost(cancelled);
+    } else if (pbkdf2BatchSize > 1) {
+      results = scheduleInBatches(cancelled);
+    } else {
+      results =
+          sources.stream()
+              .map(
+                  source ->
+                      CompletableFuture.supplyAsync(() -> convert(source, cancelled), executor)
+                          .thenApply(this::notifyListener))
+              .toList();
+    }
+
+    final CompletableFuture<ConversionSummary> completion =
+        CompletableFuture.allOf(results.toArray(CompletableFuture[]::new))
+            .thenApply(
+                ignored -> summarize(results, Duration.ofNanos(System.nanoTime() - startNanos)))
+            .thenApply(
+                summary -> {
+                  closeSink();
+                  listener.onComplete(summary);
+                  return summary;
+                });
+
+    return new ConversionJob(results, completion, cancelled);
+  }
+
+  /**
+   * Read the KDF parameters of all sources and run the most expensive conversions first, within the
+   * memory budget. The sources are planned asynchronously; their results complete as they are
+   * converted.
+   */
+  private List<CompletableFuture<ConversionResult>> scheduleByCost(final AtomicBoolean cancelled) {
+    final List<CompletableFuture<ConversionResult>> results =
+        sources.stream().map(source -> new CompletableFuture<ConversionResult>()).toList();
+    final CostScheduler scheduler = new CostScheduler(executor, memoryBudget);
+    final List<KdfCost> targetCosts =
+        targets.stream().map(target -> target.kdfParamFactory().create().estimateCost()).toList();
+    CompletableFuture.runAsync(
+            () -> {
+              IntStream.range(0, sources.size())
+                  .parallel()
+                  .forEach(
+                      i -> {
+                        final KeystoreSource source = sources.get(i);
+                        scheduler.add(
+                            taskCost(source, targetCosts),
+                            () ->
+                                results
+                                    .get(i)
+                                    .complete(notifyListener(convert(source, cancelled))));
+                      });
+              scheduler.dispatch();
+            })
+        .whenComplete(
+            (ignored, e) -> {
+              if (e != null) {
+                // nothing was dispatched or the executor rejected a task, don't leave the job
+                // hanging
+                results.forEach(result -> result.completeExceptionally(e));
+              }
+            });
+    return results;
+  }
+
+  /** Convert the sources in batches, one task per batch, see {@link #convertBatch}. */
+  private List<CompletableFuture<ConversionResult>> scheduleInBatches(
+      final AtomicBoolean cancelled) {
+    final List<CompletableFuture<ConversionResult>> results =
+        sources.stream().map(source -> new CompletableFuture<ConversionResult>()).toList();
+    final boolean pbkdf2Targets =
+        targets.stream()
+            .allMatch(target -> target.kdfParamFactory().create() instanceof Pbkdf2Param);
+    for (int start = 0; start < sources.size(); start += pbkdf2BatchSize) {
+      final int end = Math.min(sources.size(), start + pbkdf2BatchSize);
+      final List<KeystoreSource> batch = sources.subList(start, end);
+      final List<CompletableFuture<ConversionResult>> batchResults = results.subList(start, end);
+      CompletableFuture.runAsync(
+          () -> convertBatch(batch, batchResults, pbkdf2Targets, cancelled), executor);
+    }
+    return results;
+  }
+
+  private boolean parallelTargets() {
+    return targets.size() > 1 && executor == ForkJoinPool.commonPool();
+  }
+
+  private CostScheduler.TaskCost taskCost(
+      final KeystoreSource source, final List<KdfCost> targetCosts) {
+    long estimatedNanos = 0;
+    long memoryBytes = 0;
+    try {
+      final KdfCost sourceCost = source.kdfParam().estimateCost();
+      estimatedNanos = costModel.estimateNanos(sourceCost);
+      memoryBytes = sourceCost.memoryBytes();
+    } catch (final RuntimeException e) {
+      // fails as soon as it is converted, no need to run it early
+    }
+    // targets encrypted in parallel add up their memory
+    final boolean parallelTargets = parallelTargets();
+    long targetMemoryBytes = 0;
+    for (final KdfCost targetCost : targetCosts) {
+      estimatedNanos += costModel.estimateNanos(targetCost);
+      targetMemoryBytes =
+          parallelTargets
+              ? targetMemoryBytes + targetCost.memoryBytes()
+              : Math.max(targetMemoryBytes, targetCost.memoryBytes());
+    }
+    return new CostScheduler.TaskCost(estimatedNanos, Math.max(memoryBytes, targetMemoryBytes));
+  }
+
+  private ConversionResult convert(final KeystoreSource source, final AtomicBoolean cancelled) {
+    final long startNanos = System.nanoTime();
+    final KeyStoreData keyStoreData;
+    final String password;
+    try {
+      notifyStarted(source);
+      checkCancelled(cancelled);
+      keyStoreData = source.load();
+      password = passwordSource.getPassword(source);
+    } catch (final RuntimeException e) {
+      return failure(source, ConversionStage.LOAD, e, startNanos, cancelled);
+    }
+    return convertLoaded(source, keyStoreData, password, startNanos, cancelled);
+  }
+
+  /** Decrypt a loaded keystore and convert it, see {@link #convertDecrypted}. */
+  private ConversionResult convertLoaded(
+      final KeystoreSource source,
+      final KeyStoreData keyStoreData,
+      final String password,
+      final long startNanos,
+      final AtomicBoolean cancelled) {
+    final Bytes privateKey;
+    try {
+      checkCancelled(cancelled);
+      final long decryptStartNanos = System.nanoTime();
+      privateKey = KeyStore.decrypt(password, keyStoreData);
+      recordCost(keyStoreData.getCrypto().getKdf().getParam(), decryptStartNanos);
+    } catch (final RuntimeException e) {
+      return failure(source, ConversionStage.DECRYPT, e, startNanos, cancelled);
+    }
+    return convertDecrypted(source, keyStoreData, privateKey, password, startNanos, cancelled);
+  }
+
+  /** Encrypt a decrypted keystore for every target and write it to their sinks. */
+  private ConversionResult convertDecrypted(
+      final KeystoreSource source,
+      final KeyStoreData keyStoreData,
+      final Bytes privateKey,
+      final String password,
+      final long startNanos,
+      final AtomicBoolean cancelled) {
+    ConversionStage stage = ConversionStage.ENCRYPT;
+    try {
+      checkCancelled(cancelled);
+      // a parallel stream runs on the common pool, only use it when that is the executor: the
+      // targets of any other executor would run outside its concurrency limits and accounting
+      final List<KeyStoreData> converted =
+          (parallelTargets() ? targets.parallelStream() : targets.stream())
+              .map(target -> encrypt(target, keyStoreData, privateKey, password))
+              .toList();
+
+      stage = ConversionStage.WRITE;
+      for (int i = 0; i < targets.size(); i++) {
+        targets.get(i).sink().write(source, converted.get(i));
+      }
+      return ConversionResult.success(
+          source, converted.get(0), Duration.ofNanos(System.nanoTime() - startNanos));
+    } catch (final RuntimeException | IOException e) {
+      return failure(source, stage, e, startNanos, cancelled);
+    }
+  }
+
+  /**
+   * Convert a batch of keystores stage by stage, completing their results. The PBKDF2 keys of
+   * keystores whose KDF parameters only differ in the salt are derived at once, in the SIMD lanes
+   * of {@link Pbkdf2Param#generateDecryptionKeys}, both to decrypt the sources and to encrypt the
+   * targets. Keystores with other KDF functions are handed to a task of their own once loaded, and
+   * so are all decrypted keystores if a target is not PBKDF2, so that their keys are derived in
+   * parallel rather than one after another on the batch task.
+   *
+   * @param pbkdf2Targets true if every target is encrypted with PBKDF2
+   */
+  private void convertBatch(
+      final List<KeystoreSource> batch,
+      final List<CompletableFuture<ConversionResult>> batchResults,
+      final boolean pbkdf2Targets,
+      final AtomicBoolean cancelled) {
+    final long startNanos = System.nanoTime();
+    final int size = batch.size();
+    final ConversionResult[] results = new ConversionResult[size];
+    final boolean[] handedOff = new boolean[size];
+    final KeyStoreData[] keyStores = new KeyStoreData[size];
+    final String[] passwords = new String[size];
+    final Map<Integer, Pbkdf2Param> sourceParams = new HashMap<>();
+    for (int i = 0; i < size; i++) {
+      try {
+        notifyStarted(batch.get(i));
+        checkCancelled(cancelled);
+        keyStores[i] = batch.get(i).load();
+        passwords[i] = passwordSource.getPassword(batch.get(i));
+      } catch (final RuntimeException e) {
+        results[i] = failure(batch.get(i), ConversionStage.LOAD, e, startNanos, cancelled);
+        continue;
+      }
+      final KdfParam sourceParam = keyStores[i].getCrypto().getKdf().getParam();
+      if (sourceParam instanceof Pbkdf2Param pbkdf2Param) {
+        sourceParams.put(i, pbkdf2Param);
+      } else {
+        final KeyStoreData keyStoreData = keyStores[i];
+        final String password = passwords[i];
+        handOff(
+            batch.get(i),
+            batchResults.get(i),
+            source -> convertLoaded(source, keyStoreData, password, startNanos, cancelled));
+        handedOff[i] = true;
+      }
+    }
+
+    final Bytes[] privateKeys = new Bytes[size];
+    final Bytes[] decryptionKeys =
+        deriveKeys(
+            batch,
+            sourceParams,
+            passwords,
+            ConversionStage.DECRYPT,
+            results,
+            startNanos,
+            cancelled);
+    for (final int i : sourceParams.keySet()) {
+      if (results[i] == null) {
+        try {
+          privateKeys[i] = KeyStore.decryptWithDerivedKey(decryptionKeys[i], keyStores[i]);
+        } catch (final RuntimeException e) {
+          results[i] = failure(batch.get(i), ConversionStage.DECRYPT, e, startNanos, cancelled);
+        }
+      }
+    }
+
+    if (!pbkdf2Targets) {
+      for (final int i : sourceParams.keySet()) {
+        if (results[i] == null) {
+          final KeyStoreData keyStoreData = keyStores[i];
+          final Bytes privateKey = privateKeys[i];
+          final String password = passwords[i];
+          handOff(
+              batch.get(i),
+              batchResults.get(i),
+              source ->
+                  convertDecrypted(
+                      source, keyStoreData, privateKey, password, startNanos, cancelled));
+          handedOff[i] = true;
+        }
+      }
+    }
+
+    final KeyStoreData[][] converted = new KeyStoreData[size][targets.size()];
+    for (int t = 0; t < targets.size(); t++) {
+      final ConversionTarget target = targets.get(t);
+      final Map<Integer, Pbkdf2Param> targetParams = new HashMap<>();
+      for (int i = 0; i < size; i++) {
+        if (results[i] == null && !handedOff[i]) {
+          targetParams.put(i, (Pbkdf2Param) target.kdfParamFactory().create());
+        }
+      }
+      // derived keys shared through the cache are not derived again per keystore
+      final Bytes[] encryptionKeys =
+          derivedKeyCache == null
+              ? deriveKeys(
+                  batch,
+                  targetParams,
+                  passwords,
+                  ConversionStage.ENCRYPT,
+                  results,
+                  startNanos,
+                  cancelled)
+              : null;
+      for (final int i : targetParams.keySet()) {
+        if (results[i] != null) {
+          continue;
+        }
+        try {
+          converted[i][t] =
+              encryptionKeys == null
+                  ? encrypt(target, keyStores[i], privateKeys[i], passwords[i])
+                  : KeyStore.encryptWithDerivedKey(
+                      privateKeys[i],
+                      keyStores[i].getPubkey(),
+                      encryptionKeys[i],
+                      keyStores[i].getPath(),
+                      targetParams.get(i),
+                      new Cipher(CipherFunction.AES_128_CTR, KeystoreRandom.iv()));
+        } catch (final RuntimeException e) {
+          results[i] = failure(batch.get(i), ConversionStage.ENCRYPT, e, startNanos, cancelled);
+        }
+      }
+    }
+
+    for (int i = 0; i < size; i++) {
+      if (results[i] != null || handedOff[i]) {
+        continue;
+      }
+      try {
+        for (int t = 0; t < targets.size(); t++) {
+          targets.get(t).sink().write(batch.get(i), converted[i][t]);
+        }
+        results[i] =
+            ConversionResult.success(
+                batch.get(i), converted[i][0], Duration.ofNanos(System.nanoTime() - startNanos));
+      } catch (final RuntimeException | IOException e) {
+        results[i] = failure(batch.get(i), ConversionStage.WRITE, e, startNanos, cancelled);
+      }
+    }
+    for (int i = 0; i < size; i++) {
+      if (!handedOff[i]) {
+        batchResults.get(i).complete(notifyListener(results[i]));
+      }
+    }
+  }
+
+  /** Finish the conversion of a keystore of a batch on a task of its own. */
+  private void handOff(
+      final KeystoreSource source,
+      final CompletableFuture<ConversionResult> result,
+      final Function<KeystoreSource, ConversionResult> conversion) {
+    CompletableFuture.supplyAsync(() -> conversion.apply(source), executor)
+        .thenAccept(converted -> result.complete(notifyListener(converted)));
+  }
+
+  /**
+   * Derive the PBKDF2 keys of a batch, at once for parameters that only differ in the salt. Failed
+   * derivations are recorded in results.
+   *
+   * @return The derived keys, by index in the batch
+   */
+  private Bytes[] deriveKeys(
+      final List<KeystoreSource> batch,
+      final Map<Integer, Pbkdf2Param> params,
+      final String[] passwords,
+      final ConversionStage stage,
+      final ConversionResult[] results,
+      final long startNanos,
+      final AtomicBoolean cancelled) {
+    final Bytes[] keys = new Bytes[batch.size()];
+    final Map<List<Integer>, List<Integer>> pbkdf2Groups = new HashMap<>();
+    for (final Map.Entry<Integer, Pbkdf2Param> entry : params.entrySet()) {
+      final int i = entry.getKey();
+      final Pbkdf2Param pbkdf2Param = entry.getValue();
+      try {
+        checkCancelled(cancelled);
+        pbkdf2Param.validate();
+        pbkdf2Groups
+            .computeIfAbsent(
+                List.of(pbkdf2Param.getDkLen(), pbkdf2Param.getC()), shape -> new ArrayList<>())
+            .add(i);
+      } catch (final RuntimeException e) {
+        results[i] = failure(batch.get(i), stage, e, startNanos, cancelled);
+      }
+    }
+    for (final List<Integer> group : pbkdf2Groups.values()) {
+      try {
+        final long deriveStartNanos = System.nanoTime();
+        final List<Bytes> groupKeys =
+            Pbkdf2Param.generateDecryptionKeys(
+                group.stream().map(params::get).toList(),
+                group.stream().map(i -> passwords[i]).toList());
+        // the keys of a group are derived together, each is charged its share
+        final long perKeyNanos = (System.nanoTime() - deriveStartNanos) / group.size();
+        for (int j = 0; j < group.size(); j++) {
+          keys[group.get(j)] = groupKeys.get(j);
+          notifyKeyDerived(params.get(group.get(j)), perKeyNanos);
+        }
+      } catch (final RuntimeException e) {
+        group.forEach(i -> results[i] = failure(batch.get(i), stage, e, startNanos, cancelled));
+      }
+    }
+    return keys;
+  }
+
+  private ConversionResult failure(
+      final KeystoreSource source,
+      final ConversionStage stage,
+      final Exception e,
+      final long startNanos,
+      final AtomicBoolean cancelled) {
+    if (!(e instanceof CancellationException) && errors.incrementAndGet() > maxErrors) {
+      // error budget exhausted, don't spend KDF time on the rest of a broken batch
+      cancelled.set(true);
+    }
+    return ConversionResult.failure(
+        source, stage, e, Duration.ofNanos(System.nanoTime() - startNanos));
+  }
+
+  private KeyStoreData encrypt(
+      final ConversionTarget target,
+      final KeyStoreData keyStoreData,
+      final Bytes privateKey,
+      final String password) {
+    final KdfParam kdfParam = target.kdfParamFactory().create();
+    final Cipher cipher = new Cipher(CipherFunction.AES_128_CTR, KeystoreRandom.iv());
+    if (derivedKeyCache == null) {
+      final long startNanos = System.nanoTime();
+      final KeyStoreData converted =
+          KeyStore.encrypt(
+              privateKey,
+              keyStoreData.getPubkey(),
+              password,
+              keyStoreData.getPath(),
+              kdfParam,
+              cipher);
+      recordCost(kdfParam, startNanos);
+      return converted;
+    }
+    return KeyStore.encrypt(
+        privateKey,
+        keyStoreData.getPubkey(),
+        password,
+        keyStoreData.getPath(),
+        kdfParam,
+        cipher,
+        derivedKeyCache);
+  }
+
+  private void recordCost(final KdfParam kdfParam, final long startNanos) {
+    final long nanos = System.nanoTime() - startNanos;
+    if (costModel != null) {
+      costModel.record(kdfParam, nanos);
+    }
+    notifyKeyDerived(kdfParam, nanos);
+  }
+
+  private void notifyStarted(final KeystoreSource source) {
+    try {
+      listener.onKeystoreStarted(source);
+    } catch (final RuntimeException e) {
+      System.err.printf("Error in conversion listener: %s%n", e.getMessage());
+    }
+  }
+
+  private void notifyKeyDerived(final KdfParam kdfParam, final long nanos) {
+    try {
+      listener.onKeyDerived(kdfParam, nanos);
+    } catch (final RuntimeException e) {
+      System.err.printf("Error in conversion listener: %s%n", e.getMessage());
+    }
+  }
+
+  private static void checkCancelled(final AtomicBoolean cancelled) {
+    if (cancelled.get()) {
+      throw new CancellationException("Conversion cancelled");
+    }
+  }
+
+  private ConversionResult notifyListener(final ConversionResult result) {
+    try {
+      listener.onResult(result);
+    } catch (final RuntimeException e) {
+      // a misbehaving listener must not turn a converted keystore into a failed one
+      System.err.printf("Error in conversion listener: %s%n", e.getMessage());
+    }
+    return result;
+  }
+
+  private static ConversionSummary summarize(
+      final List<CompletableFuture<ConversionResult>> results, final Duration elapsed) {
+    int converted = 0;
+    int failed = 0;
+    int cancelled = 0;
+    for (final CompletableFuture<ConversionResult> future : results) {
+      final ConversionResult result = future.join();
+      if (result.isSuccess()) {
+        converted++;
+      } else if (result.error() instanceof CancellationException) {
+        cancelled++;
+      } else {
+        failed++;
+      }
+    }
+    return new ConversionSummary(converted, failed, cancelled, elapsed);
+  }
+
+  private void closeSink() {
+    try {
+      for (final ConversionTarget target : targets) {
+        target.sink().close();
+      }
+    } catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  public static final class Builder {
+    private List<KeystoreSource> sources;
+    private PasswordSource passwordSource;
+    private KdfParamFactory kdfParamFactory;
+    private KeystoreSink sink;
+    private final List<ConversionTarget> additionalTargets = new ArrayList<>();
+    private Executor executor = ForkJoinPool.commonPool();
+    private ConversionListener listener = ConversionListener.NOOP;
+    private DerivedKeyCache derivedKeyCache;
+    private KdfCostModel costModel;
+    private long memoryBudget = Runtime.getRuntime().maxMemory() / 2;
+    private int maxErrors = Integer.MAX_VALUE;
+    private int pbkdf2BatchSize = 1;
+
+    private Builder() {}
+
+    public Builder sources(final List<KeystoreSource> sources) {
+      this.sources = sources;
+      return this;
+    }
+
+    public Builder passwordSource(final PasswordSource passwordSource) {
+      this.passwordSource = passwordSource;
+      return this;
+    }
+
+    public Builder kdfParamFactory(final KdfParamFactory kdfParamFactory) {
+      this.kdfParamFactory = kdfParamFactory;
+      return this;
+    }
+
+    public Builder sink(final KeystoreSink sink) {
+      this.sink = sink;
+      return this;
+    }
+
+    /**
+     * Also convert every keystore to another target, next to the one set with {@link
+     * #kdfParamFactory} and {@link #sink}. The keystore is decrypted once and re-encrypted for all
+     * targets, in parallel only on the default executor. A keystore only succeeds if it is written
+     * to every target.
+     *
+     * @param kdfParamFactory KDF parameters of the target
+     * @param sink Sink of the target
+     * @return this builder
+     */
+    public Builder addTarget(final KdfParamFactory kdfParamFactory, final KeystoreSink sink) {
+      additionalTargets.add(new ConversionTarget(kdfParamFactory, sink));
+      return this;
+    }
+
+    private List<ConversionTarget> targets() {
+      final List<ConversionTarget> targets = new ArrayList<>();
+      targets.add(new ConversionTarget(kdfParamFactory, sink));
+      targets.addAll(additionalTargets);
+      return List.copyOf(targets);
+    }
+
+    /**
+     * @param executor Executor running the per-keystore tasks. Defaults to the common pool.
+     * @return this builder
+     */
+    public Builder executor(final Executor executor) {
+      this.executor = executor;
+      return this;
+    }
+
+    public Builder listener(final ConversionListener listener) {
+      this.listener = listener;
+      return this;
+    }
+
+    /**
+     * Reuse derived keys of the target KDF between keystores sharing a password and KDF parameters.
+     * Only effective with a factory that shares the salt, see {@link
+     * KdfParamFactory#withSharedSalt()}. Disabled by default.
+     *
+     * @param derivedKeyCache The cache, or null to derive a key for every keystore
+     * @return this builder
+     */
+    public Builder derivedKeyCache(final DerivedKeyCache derivedKeyCache) {
+      this.derivedKeyCache = derivedKeyCache;
+      return this;
+    }
+
+    /**
+     * Run the most expensive keystores first, as estimated by the cost model, and record the actual
+     * cost of every key derivation in it. Disabled by default, keystores then run in source order.
+     *
+     * @param costModel The cost model, or null to run keystores in source order
+     * @return this builder
+     */
+    public Builder costModel(final KdfCostModel costModel) {
+      this.costModel = costModel;
+      return this;
+    }
+
+    /**
+     * @param memoryBudget Maximum estimated KDF memory of keystores converted at the same time when
+     *     a cost model is set. Defaults to half of the maximum heap.
+     * @return this builder
+     */
+    public Builder memoryBudget(final long memoryBudget) {
+      this.memoryBudget = memoryBudget;
+      return this;
+    }
+
+    /**
+     * Cancel the job once more than this many keystores have failed. Unlimited by default.
+     *
+     * @param maxErrors Number of failed keystores tolerated
+     * @return this builder
+     */
+    public Builder maxErrors(final int maxErrors) {
+      this.maxErrors = maxErrors;
+      return this;
+    }
+
+    /**
+     * Convert keystores in batches of this size, one task per batch, and derive the PBKDF2 keys of
+     * each batch at once where their parameters only differ in the salt. Best set to {@link
+     * MultiBufferPbkdf2#LANES}. Defaults to 1, converting every keystore in its own task. Not used
+     * with a cost model.
+     *
+     * @param pbkdf2BatchSize Number of keystores per batch
+     * @return this builder
+     */
+    public Builder pbkdf2BatchSize(final int pbkdf2BatchSize) {
+      this.pbkdf2BatchSize = pbkdf2BatchSize;
+      return this;
+    }
+
+    public KeystoreConversionEngine build() {
+      checkNotNull(sources, "Sources cannot be null");
+      checkNotNull(passwordSource, "Password source cannot be null");
+      checkNotNull(kdfParamFactory, "KDF param factory cannot be null");
+      checkNotNull(sink, "Sink cannot be null");
+      additionalTargets.forEach(
+          target -> {
+            checkNotNull(target.kdfParamFactory(), "KDF param factory cannot be null");
+            checkNotNull(target.sink(), "Sink cannot be null");
+          });
+      checkNotNull(executor, "Executor cannot be null");
+      checkNotNull(listener, "Listener cannot be null");
+      checkArgument(maxErrors >= 0, "Maximum errors cannot be negative");
+      checkArgument(pbkdf2BatchSize >= 1, "PBKDF2 batch size must be positive");
+      return new KeystoreConversionEngine(this);
+    }
+  }
+}
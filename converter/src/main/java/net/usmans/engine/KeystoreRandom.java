@@ -0,0 +1,115 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans.engine;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.security.DrbgParameters;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+
+/**
+ * Random salts and IVs for converted keystores. A single {@link SecureRandom} is synchronized, so
+ * with many workers converting cheap keystores they queue on it. Here every thread has its own NIST
+ * SP 800-90A DRBG (the JDK's {@code DRBG}, Hash_DRBG with SHA-256 by default, at 256 bits of
+ * security strength), seeded from the system entropy source, personalized per thread and reseeded
+ * from it every {@link #RESEED_BYTES} bytes or {@link #RESEED_NANOS}. Bytes are drawn from it a
+ * buffer at a time and handed out as salts and IVs. Both are stored in the clear in the keystore,
+ * so buffering them ahead of use exposes nothing.
+ */
+public final class KeystoreRandom {
+  /** Bytes handed out between reseeds of a thread's DRBG. */
+  static final long RESEED_BYTES = 1L << 20;
+
+  /** Longest time between reseeds of a thread's DRBG. */
+  static final long RESEED_NANOS = 600_000_000_000L;
+
+  // a batch of 32 salts or 64 IVs
+  private static final int BUFFER_BYTES = 1024;
+
+  private static final AtomicLong INSTANCES = new AtomicLong();
+  private static final ThreadLocal<KeystoreRandom> THREAD_RANDOM =
+      ThreadLocal.withInitial(KeystoreRandom::new);
+
+  private final SecureRandom drbg;
+  private final byte[] buffer = new byte[BUFFER_BYTES];
+  private int position = BUFFER_BYTES;
+  private long bytesSinceReseed;
+  private long lastReseedNanos = System.nanoTime();
+
+  private KeystoreRandom() {
+    try {
+      drbg =
+          SecureRandom.getInstance(
+              "DRBG",
+              DrbgParameters.instantiation(
+                  256,
+                  DrbgParameters.Capability.RESEED_ONLY,
+                  personalization(INSTANCES.incrementAndGet())));
+    } catch (final NoSuchAlgorithmException e) {
+      throw new IllegalStateException("DRBG is not available", e);
+    }
+  }
+
+  /** Distinct per instance, so no two threads start from the same state. */
+  private static byte[] personalization(final long instance) {
+    return ("v4keystore_converter/"
+            + ProcessHandle.current().pid()
+            + "/"
+            + Thread.currentThread().getId()
+            + "/"
+            + instance
+            + "/"
+            + System.nanoTime())
+        .getBytes(UTF_8);
+  }
+
+  /**
+   * @return A random 32 byte KDF salt
+   */
+  public static Bytes32 salt() {
+    return Bytes32.wrap(THREAD_RANDOM.get().next(Bytes32.SIZE));
+  }
+
+  /**
+   * @return A random 16 byte AES-128-CTR IV
+   */
+  public static Bytes iv() {
+    return Bytes.wrap(THREAD_RANDOM.get().next(16));
+  }
+
+  /**
+   * @param size Number of bytes, at most the buffer size
+   * @return Random bytes from the calling thread's DRBG
+   */
+  static byte[] nextBytes(final int size) {
+    return THREAD_RANDOM.get().next(size);
+  }
+
+  private byte[] next(final int size) {
+    checkArgument(size > 0 && size <= BUFFER_BYTES, "Size must be between 1 and %s", BUFFER_BYTES);
+    if (position + size > BUFFER_BYTES) {
+      refill();
+    }
+    final byte[] bytes = new byte[size];
+    System.arraycopy(buffer, position, bytes, 0, size);
+    position += size;
+    return bytes;
+  }
+
+  private void refill() {
+    final long now = System.nanoTime();
+    if (bytesSinceReseed >= RESEED_BYTES || now - lastReseedNanos >= RESEED_NANOS) {
+      drbg.reseed();
+      bytesSinceReseed = 0;
+      lastReseedNanos = now;
+    }
+    drbg.nextBytes(buffer);
+    bytesSinceReseed += BUFFER_BYTES;
+    position = 0;
+  }
+}
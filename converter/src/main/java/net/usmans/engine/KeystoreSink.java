@@ -0,0 +1,119 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans.engine;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+import org.apache.tuweni.bytes.Bytes;
+import tech.pegasys.teku.bls.keystore.KeyStoreLoader;
+import tech.pegasys.teku.bls.keystore.model.KeyStoreData;
+
+/**
+ * Receives converted keystores. {@link #write} is called concurrently from the engine's workers and
+ * {@link #close} once, after the last keystore has been written.
+ */
+public interface KeystoreSink extends Closeable {
+
+  /**
+   * @param source The source keystore
+   * @param converted The converted keystore
+   * @throws IOException If the converted keystore cannot be written
+   */
+  void write(KeystoreSource source, KeyStoreData converted) throws IOException;
+
+  /**
+   * File the converted keystore will be written to, for sinks writing one file per keystore. Used
+   * to detect keystores that would overwrite each other before converting them.
+   *
+   * @param source The source keystore
+   * @param pubkey The public key of the keystore
+   * @return The file, or empty if the sink does not write one file per keystore
+   */
+  default Optional<Path> targetFile(final KeystoreSource source, final Bytes pubkey) {
+    return Optional.empty();
+  }
+
+  @Override
+  default void close() throws IOException {}
+
+  /**
+   * Write converted keystores as json files in a directory, laid out as per bulk-loading mode.
+   *
+   * @param destination The destination directory, created if it does not exist
+   * @param mode The bulk-loading mode
+   * @return The sink
+   */
+  static KeystoreSink directory(final Path destination, final BulkloadingMode mode) {
+    return new DirectorySink(destination, mode, mode, false);
+  }
+
+  /**
+   * Write converted keystores as json files in a directory, laid out as per a bulk-loading mode
+   * that can differ from the one of the sources. Keystores are then named after their public key.
+   *
+   * @param destination The destination directory, created if it does not exist
+   * @param sourceMode The bulk-loading mode of the sources
+   * @param mode The bulk-loading mode of the destination
+   * @return The sink
+   */
+  static KeystoreSink directory(
+      final Path destination, final BulkloadingMode sourceMode, final BulkloadingMode mode) {
+    return new DirectorySink(destination, mode, sourceMode, false);
+  }
+
+  /**
+   * @param atomicWrites Whether keystores are written to a temporary file renamed in place
+   */
+  record DirectorySink(
+      Path destination, BulkloadingMode mode, BulkloadingMode sourceMode, boolean atomicWrites)
+      implements KeystoreSink {
+
+    /**
+     * @return This sink writing every keystore to a temporary file renamed in place, so that
+     *     workers writing the same keystore at the same time never leave a torn file behind
+     */
+    public DirectorySink withAtomicWrites() {
+      return new DirectorySink(destination, mode, sourceMode, true);
+    }
+
+    @Override
+    public void write(final KeystoreSource source, final KeyStoreData converted)
+        throws IOException {
+      final Path keystoreFile = keystoreFile(source, converted.getPubkey());
+      Files.createDirectories(keystoreFile.getParent());
+      if (!atomicWrites) {
+        KeyStoreLoader.saveToFile(keystoreFile, converted);
+        return;
+      }
+      final Path temporary =
+          Files.createTempFile(
+              keystoreFile.getParent(), "." + keystoreFile.getFileName() + ".", ".tmp");
+      try {
+        KeyStoreLoader.saveToFile(temporary, converted);
+        Files.move(
+            temporary,
+            keystoreFile,
+            StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+      } finally {
+        Files.deleteIfExists(temporary);
+      }
+    }
+
+    @Override
+    public Optional<Path> targetFile(final KeystoreSource source, final Bytes pubkey) {
+      return Optional.of(keystoreFile(source, pubkey));
+    }
+
+    private Path keystoreFile(final KeystoreSource source, final Bytes pubkey) {
+      // source file names only carry over within the same layout
+      return sourceMode == mode
+          ? mode.keystoreFile(destination, source.path(), pubkey)
+          : destination.resolve(mode.keystorePath(pubkey));
+    }
+  }
+}
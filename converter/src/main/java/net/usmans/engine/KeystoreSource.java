@@ -0,0 +1,53 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans.engine;
+
+import java.nio.file.Path;
+import tech.pegasys.teku.bls.keystore.KeyStoreLoader;
+import tech.pegasys.teku.bls.keystore.KeyStoreValidationException;
+import tech.pegasys.teku.bls.keystore.model.KdfParam;
+import tech.pegasys.teku.bls.keystore.model.KeyStoreData;
+
+/** A v4 keystore to convert. */
+public interface KeystoreSource {
+
+  /**
+   * @return The path identifying this keystore. Password sources and sinks use it to derive the
+   *     password file and the converted keystore file names.
+   */
+  Path path();
+
+  /**
+   * Load and validate the keystore.
+   *
+   * @return The keystore data
+   * @throws KeyStoreValidationException If the keystore cannot be read or is invalid
+   */
+  KeyStoreData load() throws KeyStoreValidationException;
+
+  /**
+   * KDF parameters of the keystore, used to estimate its conversion cost before converting it.
+   * Sources that know the parameters without parsing the keystore should override this.
+   *
+   * @return The KDF parameters of the keystore
+   * @throws KeyStoreValidationException If the keystore cannot be read or is invalid
+   */
+  default KdfParam kdfParam() throws KeyStoreValidationException {
+    return load().getCrypto().getKdf().getParam();
+  }
+
+  /**
+   * @param keystorePath Path of a keystore file
+   * @return A source reading the keystore from the file system
+   */
+  static KeystoreSource file(final Path keystorePath) {
+    return new FileKeystoreSource(keystorePath);
+  }
+
+  record FileKeystoreSource(Path path) implements KeystoreSource {
+    @Override
+    public KeyStoreData load() {
+      return KeyStoreLoader.loadFromFile(path.toUri());
+    }
+  }
+}
@@ -0,0 +1,289 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans.engine;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Stream;
+import org.apache.tuweni.bytes.Bytes;
+import tech.pegasys.teku.bls.keystore.KeyStore;
+import tech.pegasys.teku.bls.keystore.PasswordUtils;
+import tech.pegasys.teku.bls.keystore.model.KeyStoreData;
+
+/**
+ * Finds the passwords of orphaned keystores, whose password cannot be read from the password
+ * source, among candidate passwords. Each candidate costs a KDF run of the keystore, so candidates
+ * are tried in parallel, most promising first, and the search stops at the first checksum match:
+ *
+ * <ol>
+ *   <li>the candidate matched for the keystore in a previous run, from the matches file
+ *   <li>candidates read from a file in the directory of the keystore
+ *   <li>candidates that matched other keystores, most recently matched first
+ *   <li>the remaining candidates, in the order they were read
+ * </ol>
+ *
+ * Candidates are normalized once, not per keystore. Matches are recorded by the origin of the
+ * candidate, never by the password, and written to the matches file on {@link #close}.
+ */
+public final class PasswordCandidates implements PasswordSource, AutoCloseable {
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+  private final PasswordSource passwordSource;
+  private final List<Candidate> candidates;
+  private final Path matchesFile;
+  private final Map<String, String> previousMatches;
+  private final int parallelism;
+  private final ExecutorService executor;
+  private final AtomicLong matchSequence = new AtomicLong();
+  private final AtomicLongArray lastMatched;
+  private final Map<Path, Optional<Candidate>> matches = new ConcurrentHashMap<>();
+
+  /**
+   * A candidate password.
+   *
+   * @param password The password
+   * @param normalizedPassword The normalized password
+   * @param origin The file the password was read from, with the line number for password lists
+   * @param directory The directory of that file
+   */
+  record Candidate(String password, Bytes normalizedPassword, String origin, Path directory) {}
+
+  private PasswordCandidates(
+      final PasswordSource passwordSource,
+      final List<Candidate> candidates,
+      final Path matchesFile,
+      final Map<String, String> previousMatches,
+      final int parallelism) {
+    this.passwordSource = passwordSource;
+    this.candidates = candidates;
+    this.matchesFile = matchesFile;
+    this.previousMatches = previousMatches;
+    this.parallelism = parallelism;
+    this.lastMatched = new AtomicLongArray(candidates.size());
+    this.executor =
+        Executors.newFixedThreadPool(
+            Math.max(1, parallelism - 1),
+            new ThreadFactoryBuilder()
+                .setNameFormat("password-candidates-%d")
+                .setDaemon(true)
+                .build());
+  }
+
+  /**
+   * Read the candidates and the matches of a previous run.
+   *
+   * @param passwordSource The password source tried first
+   * @param candidatesPath A directory of password files, each a candidate, searched recursively, or
+   *     a file with one candidate per line
+   * @param matchesFile The file matches are read from, if it exists, and written to. May be null.
+   * @param parallelism Number of candidates tried at the same time
+   * @return The password source
+   * @throws UncheckedIOException If the candidates or matches cannot be read
+   */
+  public static PasswordCandidates load(
+      final PasswordSource passwordSource,
+      final Path candidatesPath,
+      final Path matchesFile,
+      final int parallelism) {
+    checkArgument(parallelism >= 1, "Parallelism must be positive");
+    try {
+      final Map<String, String> previousMatches =
+          matchesFile != null && Files.exists(matchesFile)
+              ? OBJECT_MAPPER.readValue(
+                  matchesFile.toFile(), new TypeReference<TreeMap<String, String>>() {})
+              : new TreeMap<>();
+      return new PasswordCandidates(
+          passwordSource,
+          readCandidates(candidatesPath),
+          matchesFile,
+          previousMatches,
+          parallelism);
+    } catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static List<Candidate> readCandidates(final Path candidatesPath) throws IOException {
+    final List<Candidate> candidates = new ArrayList<>();
+    final Set<Bytes> seen = new HashSet<>();
+    if (Files.isDirectory(candidatesPath)) {
+      final List<Path> files;
+      try (Stream<Path> paths = Files.walk(candidatesPath)) {
+        files = paths.filter(Files::isRegularFile).sorted().toList();
+      }
+      for (final Path file : files) {
+        add(candidates, seen, Files.readString(file), file.toString(), file.getParent());
+      }
+    } else {
+      final List<String> lines = Files.readAllLines(candidatesPath);
+      for (int i = 0; i < lines.size(); i++) {
+        if (!lines.get(i).isEmpty()) {
+          add(
+              candidates,
+              seen,
+              lines.get(i),
+              candidatesPath + ":" + (i + 1),
+              candidatesPath.toAbsolutePath().getParent());
+        }
+      }
+    }
+    return List.copyOf(candidates);
+  }
+
+  private static void add(
+      final List<Candidate> candidates,
+      final Set<Bytes> seen,
+      final String password,
+      final String origin,
+      final Path directory) {
+    final Bytes normalizedPassword = PasswordUtils.normalizePassword(password);
+    // passwords equal once normalized derive the same key
+    if (seen.add(normalizedPassword)) {
+      candidates.add(
+          new Candidate(password, normalizedPassword, origin, directory.toAbsolutePath()));
+    }
+  }
+
+  /**
+   * @return Number of distinct candidates
+   */
+  public int size() {
+    return candidates.size();
+  }
+
+  /**
+   * @return Origin of the matched candidate of each keystore that needed one, by keystore path
+   */
+  public Map<Path, String> matches() {
+    final Map<Path, String> found = new TreeMap<>();
+    matches.forEach(
+        (path, candidate) -> candidate.ifPresent(match -> found.put(path, match.origin())));
+    return found;
+  }
+
+  @Override
+  public String getPassword(final KeystoreSource source) {
+    try {
+      return passwordSource.getPassword(source);
+    } catch (final UncheckedIOException e) {
+      // preflight and conversion both ask, search once
+      Optional<Candidate> match = matches.get(source.path());
+      if (match == null) {
+        match = search(source);
+        matches.put(source.path(), match);
+      }
+      return match
+          .map(Candidate::password)
+          .orElseThrow(
+              () ->
+                  new UncheckedIOException(
+                      String.format(
+                          "%s, and none of %d password candidates matched",
+                          e.getMessage(), candidates.size()),
+                      e.getCause()));
+    }
+  }
+
+  private Optional<Candidate> search(final KeystoreSource source) {
+    if (candidates.isEmpty()) {
+      // no attempt would ever complete the result
+      return Optional.empty();
+    }
+    final KeyStoreData keyStoreData = source.load();
+    final List<Integer> order = order(source.path());
+    final AtomicInteger next = new AtomicInteger();
+    final AtomicInteger tried = new AtomicInteger();
+    final CompletableFuture<Integer> result = new CompletableFuture<>();
+    final Runnable worker =
+        () -> {
+          int i;
+          while (!result.isDone() && (i = next.getAndIncrement()) < order.size()) {
+            final int candidate = order.get(i);
+            try {
+              if (KeyStore.validateNormalizedPassword(
+                  candidates.get(candidate).normalizedPassword(), keyStoreData)) {
+                result.complete(candidate);
+              }
+            } catch (final RuntimeException ex) {
+              result.completeExceptionally(ex);
+            }
+            if (tried.incrementAndGet() == order.size()) {
+              result.complete(-1);
+            }
+          }
+        };
+    final int helpers = Math.min(parallelism, order.size()) - 1;
+    for (int i = 0; i < helpers; i++) {
+      executor.execute(worker);
+    }
+    worker.run();
+
+    final int match = result.join();
+    if (match < 0) {
+      return Optional.empty();
+    }
+    lastMatched.set(match, matchSequence.incrementAndGet());
+    return Optional.of(candidates.get(match));
+  }
+
+  /** Candidate indexes, most promising first. */
+  private List<Integer> order(final Path keystore) {
+    final String previousOrigin = previousMatches.get(keystore.toString());
+    final Path directory = keystore.toAbsolutePath().getParent();
+    final Comparator<Integer> promising =
+        Comparator.<Integer, Boolean>comparing(
+                i -> !candidates.get(i).origin().equals(previousOrigin))
+            .thenComparing(i -> !candidates.get(i).directory().equals(directory))
+            .thenComparing(i -> -lastMatched.get(i))
+            .thenComparing(i -> i);
+    final List<Integer> order = new ArrayList<>(candidates.size());
+    for (int i = 0; i < candidates.size(); i++) {
+      order.add(i);
+    }
+    order.sort(promising);
+    return order;
+  }
+
+  /**
+   * Stop the search threads and write the matches, merged with those of previous runs, to the
+   * matches file.
+   *
+   * @throws UncheckedIOException If the matches file cannot be written
+   */
+  @Override
+  public void close() {
+    executor.shutdownNow();
+    if (matchesFile == null) {
+      return;
+    }
+    final Map<String, String> merged = new TreeMap<>(previousMatches);
+    matches().forEach((path, origin) -> merged.put(path.toString(), origin));
+    try {
+      OBJECT_MAPPER.writerWithDefaultPrettyPrinter().writeValue(matchesFile.toFile(), merged);
+    } catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
@@ -0,0 +1,37 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans.engine;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/** Supplies the password of a keystore. Implementations must be thread-safe. */
+@FunctionalInterface
+public interface PasswordSource {
+
+  /**
+   * @param source The keystore
+   * @return The password of the keystore
+   * @throws UncheckedIOException If the password cannot be read
+   */
+  String getPassword(KeystoreSource source);
+
+  /**
+   * Read passwords from files in a directory, named as per bulk-loading mode.
+   *
+   * @param passwordDirectory Directory containing password files
+   * @param mode The bulk-loading mode
+   * @return The password source
+   */
+  static PasswordSource directory(final Path passwordDirectory, final BulkloadingMode mode) {
+    return source -> {
+      try {
+        return Files.readString(passwordDirectory.resolve(mode.passwordFileName(source.path())));
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    };
+  }
+}
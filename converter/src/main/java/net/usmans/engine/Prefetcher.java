@@ -0,0 +1,490 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans.engine;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+import tech.pegasys.teku.bls.keystore.KeyStoreLoader;
+import tech.pegasys.teku.bls.keystore.KeyStoreValidationException;
+import tech.pegasys.teku.bls.keystore.model.KdfParam;
+import tech.pegasys.teku.bls.keystore.model.KeyStoreData;
+
+/**
+ * Reads keystores and their passwords ahead of the conversion workers, on a pool of I/O threads, so
+ * that on networked storage the KDF workers find them in memory instead of waiting on a round trip
+ * per file. Keystores are read in source order, at most {@code depth} of them read or being read
+ * ahead of the workers, and no more are started while the bytes read ahead exceed the memory cap.
+ * Each read is timed out on its own and retried with exponential backoff if it fails with an I/O
+ * error other than a missing or unreadable file; invalid keystores are not retried. A worker that
+ * reaches a keystore not read ahead yet reads it itself.
+ *
+ * <p>Preflight checks can read the keystores through {@link #preflightSources()}, with the same
+ * threads, timeouts and retries. The keystores and passwords read ahead are then read once, for
+ * both the checks and the workers.
+ *
+ * <p>A timed out read cannot be interrupted: the thread stuck in it is lost to the pool until the
+ * read returns, and the retry runs on another thread.
+ */
+public final class Prefetcher implements PasswordSource, AutoCloseable {
+  /**
+   * Bytes charged to the memory cap for a keystore not read from a file, such as a bundle entry.
+   */
+  static final long ESTIMATED_KEYSTORE_BYTES = 4096;
+
+  private static final long FIRST_BACKOFF_MILLIS = 100;
+  private static final long MAX_BACKOFF_MILLIS = 5_000;
+
+  private final List<KeystoreSource> sources;
+  private final PasswordSource passwordSource;
+  private final Options options;
+  private final ExecutorService executor;
+  private final List<KeystoreSource> prefetchedSources;
+  private final List<KeystoreSource> preflightSources;
+  private final AtomicLong retries = new AtomicLong();
+  private final LongAdder waitNanos = new LongAdder();
+  private final LongAdder notReadAhead = new LongAdder();
+
+  // guarded by this
+  private final Fetch[] fetches;
+  private int nextFetch;
+  private int outstanding;
+  private long bufferedBytes;
+
+  /**
+   * Prefetch options.
+   *
+   * @param depth Maximum number of keystores read or being read ahead of the workers
+   * @param threads Number of I/O threads
+   * @param timeout Time after which a single read is abandoned
+   * @param retries Number of times a failed or timed out read is retried
+   * @param maxBufferedBytes Bytes read ahead above which no more reads are started
+   */
+  public record Options(
+      int depth, int threads, Duration timeout, int retries, long maxBufferedBytes) {
+    public Options {
+      checkArgument(depth > 0, "Depth must be positive");
+      checkArgument(threads > 0, "Threads must be positive");
+      checkArgument(!timeout.isNegative() && !timeout.isZero(), "Timeout must be positive");
+      checkArgument(retries >= 0, "Retries cannot be negative");
+      checkArgument(maxBufferedBytes > 0, "Maximum buffered bytes must be positive");
+    }
+  }
+
+  /**
+   * What the workers waited for.
+   *
+   * @param retries Reads retried after a failure or timeout
+   * @param notReadAhead Keystores a worker reached before they were read ahead
+   * @param workerWait Total time workers waited for keystores and passwords
+   */
+  public record Statistics(long retries, long notReadAhead, Duration workerWait) {
+    /**
+     * @param other Statistics of another prefetcher
+     * @return The statistics of both
+     */
+    public Statistics plus(final Statistics other) {
+      return new Statistics(
+          retries + other.retries,
+          notReadAhead + other.notReadAhead,
+          workerWait.plus(other.workerWait));
+    }
+  }
+
+  /** A keystore and its password, being read or read. */
+  private static final class Fetch {
+    private final boolean ahead;
+    private volatile CompletableFuture<KeyStoreData> keystore;
+    private volatile CompletableFuture<String> password;
+    // guarded by the prefetcher
+    private long bytes;
+    private boolean released;
+
+    private Fetch(final boolean ahead) {
+      this.ahead = ahead;
+    }
+  }
+
+  private record PrefetchedSource(Prefetcher prefetcher, int index, KeystoreSource source)
+      implements KeystoreSource {
+    @Override
+    public Path path() {
+      return source.path();
+    }
+
+    @Override
+    public KeyStoreData load() {
+      return prefetcher.load(index);
+    }
+
+    @Override
+    public KdfParam kdfParam() {
+      return source.kdfParam();
+    }
+  }
+
+  /** A source read for the preflight checks, without consuming what was read ahead. */
+  private record PreflightSource(Prefetcher prefetcher, int index, KeystoreSource source)
+      implements KeystoreSource {
+    @Override
+    public Path path() {
+      return source.path();
+    }
+
+    @Override
+    public KeyStoreData load() {
+      return prefetcher.peek(index);
+    }
+
+    @Override
+    public KdfParam kdfParam() {
+      return source.kdfParam();
+    }
+  }
+
+  private Prefetcher(
+      final List<KeystoreSource> sources,
+      final PasswordSource passwordSource,
+      final Options options) {
+    this.sources = List.copyOf(sources);
+    this.passwordSource = passwordSource;
+    this.options = options;
+    this.fetches = new Fetch[this.sources.size()];
+    this.executor =
+        Executors.newFixedThreadPool(
+            options.threads(),
+            new ThreadFactoryBuilder().setNameFormat("prefetch-%d").setDaemon(true).build());
+    this.prefetchedSources =
+        IntStream.range(0, this.sources.size())
+            .<KeystoreSource>mapToObj(i -> new PrefetchedSource(this, i, this.sources.get(i)))
+            .toList();
+    this.preflightSources =
+        IntStream.range(0, this.sources.size())
+            .<KeystoreSource>mapToObj(
+                i ->
+                    // indexed keystores are checked without reading them
+                    this.sources.get(i) instanceof IndexedKeystoreSource indexed
+                        ? indexed
+                        : new PreflightSource(this, i, this.sources.get(i)))
+            .toList();
+  }
+
+  /**
+   * Start reading ahead.
+   *
+   * @param sources The keystores, in the order they are converted
+   * @param passwordSource The source of their passwords
+   * @param options The prefetch options
+   * @return The prefetcher, also the password source of the keystores it returns
+   */
+  public static Prefetcher start(
+      final List<KeystoreSource> sources,
+      final PasswordSource passwordSource,
+      final Options options) {
+    final Prefetcher prefetcher = new Prefetcher(sources, passwordSource, options);
+    prefetcher.fetchAhead();
+    return prefetcher;
+  }
+
+  /**
+   * @return The sources, loading from what was read ahead. Their passwords must be read from this
+   *     prefetcher.
+   */
+  public List<KeystoreSource> sources() {
+    return prefetchedSources;
+  }
+
+  /**
+   * @return The sources for preflight checks, reading what was read ahead without consuming it and
+   *     the other keystores with the same timeouts and retries. The keystores not read ahead are
+   *     read again when they are converted, keeping every keystore of a large tree until then would
+   *     fill the heap. Their passwords must be read from this prefetcher.
+   */
+  public List<KeystoreSource> preflightSources() {
+    return preflightSources;
+  }
+
+  /**
+   * @return What the workers waited for so far
+   */
+  public Statistics statistics() {
+    return new Statistics(retries.get(), notReadAhead.sum(), Duration.ofNanos(waitNanos.sum()));
+  }
+
+  @Override
+  public String getPassword(final KeystoreSource source) {
+    if (source instanceof PreflightSource preflight && preflight.prefetcher() == this) {
+      final CompletableFuture<String> password =
+          readAhead(preflight.index(), fetch -> fetch.password);
+      try {
+        return join(password != null ? password : readPassword(preflight.source(), null));
+      } catch (final IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+    if (!(source instanceof PrefetchedSource prefetched) || prefetched.prefetcher() != this) {
+      return passwordSource.getPassword(source);
+    }
+    final Fetch fetch;
+    synchronized (this) {
+      fetch = fetches[prefetched.index()];
+    }
+    final CompletableFuture<String> password = fetch == null ? null : fetch.password;
+    if (password == null) {
+      return passwordSource.getPassword(prefetched.source());
+    }
+    try {
+      return await(password);
+    } catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      // the password is only handed out once, a second request reads it again
+      fetch.password = null;
+    }
+  }
+
+  private KeyStoreData load(final int index) {
+    final Fetch fetch;
+    synchronized (this) {
+      if (fetches[index] == null) {
+        notReadAhead.increment();
+        fetches[index] = fetch(index, false);
+      }
+      fetch = fetches[index];
+    }
+    final CompletableFuture<KeyStoreData> keystore = fetch.keystore;
+    if (keystore == null) {
+      return sources.get(index).load();
+    }
+    try {
+      return await(keystore);
+    } catch (final IOException e) {
+      throw new KeyStoreValidationException(
+          String.format("Cannot read keystore %s: %s", sources.get(index).path(), e.getMessage()),
+          e);
+    } finally {
+      fetch.keystore = null;
+      release(fetch);
+    }
+  }
+
+  private KeyStoreData peek(final int index) {
+    final CompletableFuture<KeyStoreData> keystore = readAhead(index, fetch -> fetch.keystore);
+    try {
+      return join(keystore != null ? keystore : readKeystore(sources.get(index), null));
+    } catch (final IOException e) {
+      throw new KeyStoreValidationException(
+          String.format("Cannot read keystore %s: %s", sources.get(index).path(), e.getMessage()),
+          e);
+    }
+  }
+
+  /** The read ahead of a keystore or its password, null if it was not read ahead. */
+  private <T> CompletableFuture<T> readAhead(
+      final int index, final Function<Fetch, CompletableFuture<T>> read) {
+    final Fetch fetch;
+    synchronized (this) {
+      fetch = fetches[index];
+    }
+    return fetch == null ? null : read.apply(fetch);
+  }
+
+  private <T> T await(final CompletableFuture<T> future) throws IOException {
+    final long startNanos = System.nanoTime();
+    try {
+      return join(future);
+    } finally {
+      waitNanos.add(System.nanoTime() - startNanos);
+    }
+  }
+
+  private static <T> T join(final CompletableFuture<T> future) throws IOException {
+    try {
+      return future.join();
+    } catch (final CompletionException e) {
+      final Throwable cause = unwrap(e);
+      if (cause instanceof RuntimeException runtimeException) {
+        throw runtimeException;
+      }
+      if (cause instanceof IOException ioException) {
+        throw ioException;
+      }
+      throw new IOException(cause);
+    }
+  }
+
+  /** Start reads until the depth or the memory cap is reached. */
+  private synchronized void fetchAhead() {
+    while (nextFetch < fetches.length
+        && outstanding < options.depth()
+        && bufferedBytes < options.maxBufferedBytes()
+        && !executor.isShutdown()) {
+      final int index = nextFetch++;
+      if (fetches[index] == null) {
+        fetches[index] = fetch(index, true);
+        outstanding++;
+      }
+    }
+  }
+
+  private Fetch fetch(final int index, final boolean ahead) {
+    final KeystoreSource source = sources.get(index);
+    final Fetch fetch = new Fetch(ahead);
+    fetch.keystore = readKeystore(source, fetch);
+    fetch.password = readPassword(source, fetch);
+    return fetch;
+  }
+
+  /**
+   * @param fetch The fetch charged with the bytes read, null if they are not kept
+   */
+  private CompletableFuture<KeyStoreData> readKeystore(
+      final KeystoreSource source, final Fetch fetch) {
+    return withRetries(
+        "keystore " + source.path(),
+        () -> {
+          final KeyStoreData keyStoreData;
+          if (source instanceof KeystoreSource.FileKeystoreSource) {
+            final byte[] bytes = Files.readAllBytes(source.path());
+            charge(fetch, bytes.length);
+            keyStoreData = KeyStoreLoader.loadFromString(new String(bytes, UTF_8));
+          } else {
+            keyStoreData = source.load();
+            charge(fetch, ESTIMATED_KEYSTORE_BYTES);
+          }
+          return keyStoreData;
+        },
+        0);
+  }
+
+  /**
+   * @param fetch The fetch charged with the bytes read, null if they are not kept
+   */
+  private CompletableFuture<String> readPassword(final KeystoreSource source, final Fetch fetch) {
+    return withRetries(
+        "password of " + source.path(),
+        () -> {
+          final String password = passwordSource.getPassword(source);
+          charge(fetch, 2L * password.length());
+          return password;
+        },
+        0);
+  }
+
+  private <T> CompletableFuture<T> withRetries(
+      final String description, final Callable<T> read, final int attempt) {
+    return attempt(read)
+        .exceptionallyCompose(
+            e -> {
+              final Throwable cause = unwrap(e);
+              if (attempt >= options.retries() || !isRetriable(cause)) {
+                return CompletableFuture.failedFuture(
+                    cause instanceof TimeoutException
+                        ? new IOException(
+                            String.format(
+                                "Reading %s timed out %d times after %d ms",
+                                description, attempt + 1, options.timeout().toMillis()))
+                        : cause);
+              }
+              retries.incrementAndGet();
+              final long backoffMillis =
+                  Math.min(MAX_BACKOFF_MILLIS, FIRST_BACKOFF_MILLIS << Math.min(attempt, 16));
+              return CompletableFuture.runAsync(
+                      () -> {},
+                      CompletableFuture.delayedExecutor(backoffMillis, TimeUnit.MILLISECONDS))
+                  .thenCompose(ignored -> withRetries(description, read, attempt + 1));
+            });
+  }
+
+  /** A single read, timed out from when an I/O thread starts it rather than when it is queued. */
+  private <T> CompletableFuture<T> attempt(final Callable<T> read) {
+    final CompletableFuture<T> result = new CompletableFuture<>();
+    try {
+      executor.execute(
+          () -> {
+            result.orTimeout(options.timeout().toMillis(), TimeUnit.MILLISECONDS);
+            try {
+              result.complete(read.call());
+            } catch (final Exception e) {
+              result.completeExceptionally(e);
+            }
+          });
+    } catch (final RejectedExecutionException e) {
+      result.completeExceptionally(e);
+    }
+    return result;
+  }
+
+  private static boolean isRetriable(final Throwable error) {
+    if (error instanceof TimeoutException) {
+      return true;
+    }
+    for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+      if (cause instanceof IOException) {
+        // missing files and malformed keystores fail the same way every time
+        return !(cause instanceof NoSuchFileException
+            || cause instanceof FileNotFoundException
+            || cause instanceof AccessDeniedException
+            || cause instanceof JsonProcessingException);
+      }
+    }
+    return false;
+  }
+
+  private static Throwable unwrap(final Throwable error) {
+    return error instanceof CompletionException && error.getCause() != null
+        ? error.getCause()
+        : error;
+  }
+
+  private synchronized void charge(final Fetch fetch, final long bytes) {
+    // a read that timed out may still complete after its keystore was consumed
+    if (fetch != null && !fetch.released) {
+      fetch.bytes += bytes;
+      bufferedBytes += bytes;
+    }
+  }
+
+  private void release(final Fetch fetch) {
+    synchronized (this) {
+      if (fetch.released) {
+        return;
+      }
+      fetch.released = true;
+      bufferedBytes -= fetch.bytes;
+      if (fetch.ahead) {
+        outstanding--;
+      }
+    }
+    fetchAhead();
+  }
+
+  /** Stop reading ahead. Reads stuck in storage are abandoned. */
+  @Override
+  public void close() {
+    executor.shutdownNow();
+  }
+}
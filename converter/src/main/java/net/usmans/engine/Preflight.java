@@ -0,0 +1,201 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans.engine;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.tuweni.bytes.Bytes;
+import tech.pegasys.teku.bls.keystore.model.KdfParam;
+import tech.pegasys.teku.bls.keystore.model.KeyStoreData;
+
+/**
+ * Cheap checks of a conversion before any KDF work: every keystore is parsed and validated, unless
+ * it is an {@link IndexedKeystoreSource} validated when it was indexed, its password must be
+ * readable, public keys must be unique and no two keystores may be written to the same destination
+ * file. Also estimates the KDF time of the conversion. The checks run on a pool of I/O threads, as
+ * they are dominated by reading files.
+ */
+public final class Preflight {
+  private static final int IO_THREADS =
+      Math.min(32, 4 * Runtime.getRuntime().availableProcessors());
+
+  private final PasswordSource passwordSource;
+  private final List<ConversionTarget> targets;
+  private final KdfCostModel costModel;
+
+  public enum Severity {
+    /** The keystore cannot be converted as requested. */
+    ERROR,
+    /** The keystore can be converted, but probably not as intended. */
+    WARNING
+  }
+
+  /**
+   * @param path The keystore
+   * @param severity Severity of the issue
+   * @param message Description of the issue
+   */
+  public record Issue(Path path, Severity severity, String message) {}
+
+  /**
+   * @param keystores Number of checked keystores
+   * @param issues Issues found, errors first, each in source order
+   * @param estimatedKdfTime Estimated KDF time of decrypting and re-encrypting the valid keystores
+   *     on one core
+   */
+  public record Report(int keystores, List<Issue> issues, Duration estimatedKdfTime) {
+    public long errors() {
+      return issues.stream().filter(issue -> issue.severity() == Severity.ERROR).count();
+    }
+  }
+
+  // only what the later checks need, the parsed keystores of a large tree would fill the heap
+  private record Checked(int index, Path path, Bytes pubkey) {}
+
+  /**
+   * @param passwordSource Passwords of the keystores
+   * @param sink The sink the keystores will be converted to
+   * @param targetKdfParam KDF parameters the keystores will be converted to
+   * @param costModel Model estimating the KDF time
+   */
+  public Preflight(
+      final PasswordSource passwordSource,
+      final KeystoreSink sink,
+      final KdfParam targetKdfParam,
+      final KdfCostModel costModel) {
+    this(passwordSource, List.of(new ConversionTarget(() -> targetKdfParam, sink)), costModel);
+  }
+
+  /**
+   * @param passwordSource Passwords of the keystores
+   * @param targets The targets every keystore will be converted to
+   * @param costModel Model estimating the KDF time
+   */
+  public Preflight(
+      final PasswordSource passwordSource,
+      final List<ConversionTarget> targets,
+      final KdfCostModel costModel) {
+    this.passwordSource = passwordSource;
+    this.targets = List.copyOf(targets);
+    this.costModel = costModel;
+  }
+
+  /**
+   * @param sources The keystores to check
+   * @return The preflight report
+   */
+  public Report check(final List<KeystoreSource> sources) {
+    final List<Issue> issues = new ArrayList<>();
+    final Map<Integer, Issue> sourceIssues = new ConcurrentHashMap<>();
+    final AtomicLong kdfNanos = new AtomicLong();
+    final long targetNanos =
+        targets.stream()
+            .mapToLong(
+                target -> costModel.estimateNanos(target.kdfParamFactory().create().estimateCost()))
+            .sum();
+
+    final List<Checked> checked;
+    final ExecutorService ioExecutor =
+        Executors.newFixedThreadPool(
+            IO_THREADS,
+            new ThreadFactoryBuilder().setNameFormat("preflight-%d").setDaemon(true).build());
+    try {
+      final List<CompletableFuture<Checked>> futures = new ArrayList<>(sources.size());
+      for (int i = 0; i < sources.size(); i++) {
+        final int index = i;
+        final KeystoreSource source = sources.get(i);
+        futures.add(
+            CompletableFuture.supplyAsync(
+                () -> {
+                  final Bytes pubkey;
+                  final KdfParam kdfParam;
+                  try {
+                    if (source instanceof IndexedKeystoreSource indexed) {
+                      // validated when it was indexed, the index is refreshed before
+                      pubkey = indexed.pubkey();
+                      kdfParam = indexed.kdfParam();
+                    } else {
+                      final KeyStoreData keyStoreData = source.load();
+                      keyStoreData.validate();
+                      pubkey = keyStoreData.getPubkey();
+                      kdfParam = keyStoreData.getCrypto().getKdf().getParam();
+                    }
+                  } catch (final RuntimeException e) {
+                    sourceIssues.put(index, error(source, "Invalid keystore: " + e.getMessage()));
+                    return null;
+                  }
+                  try {
+                    passwordSource.getPassword(source);
+                  } catch (final RuntimeException e) {
+                    sourceIssues.put(
+                        index, error(source, "Password not readable: " + e.getMessage()));
+                    return null;
+                  }
+                  kdfNanos.addAndGet(
+                      costModel.estimateNanos(kdfParam.estimateCost()) + targetNanos);
+                  return new Checked(index, source.path(), pubkey);
+                },
+                ioExecutor));
+      }
+      checked = futures.stream().map(CompletableFuture::join).toList();
+    } finally {
+      ioExecutor.shutdownNow();
+    }
+
+    // duplicates and collisions are reported on the later keystore, in source order
+    final Map<Bytes, Path> pubkeys = new HashMap<>();
+    final Map<Path, Path> targetFiles = new HashMap<>();
+    for (int i = 0; i < checked.size(); i++) {
+      final Checked keystore = checked.get(i);
+      if (keystore == null) {
+        issues.add(sourceIssues.get(i));
+        continue;
+      }
+      final KeystoreSource source = sources.get(keystore.index());
+      final Path path = keystore.path();
+      final Bytes pubkey = keystore.pubkey();
+      final Path duplicate = pubkeys.putIfAbsent(pubkey, path);
+      if (duplicate != null) {
+        issues.add(error(source, "Duplicate public key, also in " + duplicate));
+        continue;
+      }
+      for (final ConversionTarget conversionTarget : targets) {
+        final Optional<Path> target = conversionTarget.sink().targetFile(source, pubkey);
+        if (target.isEmpty()) {
+          continue;
+        }
+        final Path collision = targetFiles.putIfAbsent(target.get(), path);
+        if (collision != null) {
+          issues.add(
+              error(source, "Destination " + target.get() + " is also written by " + collision));
+          break;
+        } else if (Files.exists(target.get())) {
+          issues.add(
+              new Issue(
+                  path,
+                  Severity.WARNING,
+                  "Destination " + target.get() + " exists and will be overwritten"));
+        }
+      }
+    }
+    issues.sort(Comparator.comparing(Issue::severity));
+    return new Report(sources.size(), List.copyOf(issues), Duration.ofNanos(kdfNanos.get()));
+  }
+
+  private static Issue error(final KeystoreSource source, final String message) {
+    return new Issue(source.path(), Severity.ERROR, message);
+  }
+}
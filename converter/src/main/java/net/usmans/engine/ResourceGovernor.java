@@ -0,0 +1,194 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans.engine;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import tech.pegasys.teku.bls.keystore.kdf.ParallelSCrypt;
+
+/**
+ * Executor keeping the conversion within a CPU budget, to run beside a live signer. Tasks run on
+ * {@code ceil(budget)} low priority worker threads, and are admitted through a token bucket of CPU
+ * time refilled at the budget: the CPU time of every task is charged once it completes, and the
+ * next task waits until the bucket is out of debt. When the load average shows other processes
+ * using the cores the budget would take, the refill rate drops to the remaining headroom, down to a
+ * tenth of the budget. Pass it to {@link KeystoreConversionEngine.Builder#executor(Executor)} and
+ * close it once the conversion has completed.
+ *
+ * <p>Only the CPU time of the worker threads is charged: work a task hands to other threads, such
+ * as the scrypt lanes {@link ParallelSCrypt} shares with the common pool, escapes the budget. Call
+ * {@link ParallelSCrypt#sequentialLanes()} when governing the conversion; the engine encrypts the
+ * targets of a keystore one after another on a governor.
+ *
+ * <p>Thread priorities are a hint: Linux only applies them with {@code -XX:ThreadPriorityPolicy=1}.
+ * The token bucket does not depend on them.
+ */
+public final class ResourceGovernor implements Executor, AutoCloseable {
+  static final double MIN_RATE_FRACTION = 0.1;
+  private static final long LOAD_SAMPLE_NANOS = Duration.ofSeconds(5).toNanos();
+
+  private final double cpuBudget;
+  private final int hostCpus;
+  private final Consumer<String> log;
+  private final TokenBucket cpuNanos;
+  private final ExecutorService workers;
+  private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+  private final OperatingSystemMXBean operatingSystem =
+      ManagementFactory.getOperatingSystemMXBean();
+  private final long startNanos = System.nanoTime();
+  private final AtomicInteger running = new AtomicInteger();
+  private final LongAdder completed = new LongAdder();
+  private final LongAdder usedCpuNanos = new LongAdder();
+  private final LongAdder pausedNanos = new LongAdder();
+  // guarded by this
+  private long lastLoadSampleNanos = startNanos;
+
+  /**
+   * Achieved throughput of the governed conversion.
+   *
+   * @param keystores Number of tasks completed
+   * @param elapsed Time since the governor started
+   * @param cpuCores Mean cores used by the tasks
+   * @param cpuBudget Cores allowed
+   * @param paused Time workers waited for the token bucket, summed over workers
+   */
+  public record Throughput(
+      long keystores, Duration elapsed, double cpuCores, double cpuBudget, Duration paused) {
+    public double keysPerSecond() {
+      return keystores / Math.max(1e-3, elapsed.toNanos() / 1e9);
+    }
+  }
+
+  /**
+   * @param cpuBudget Cores the conversion may use on average, fractions allowed
+   * @param log Receives one line per change of the refill rate
+   */
+  public ResourceGovernor(final double cpuBudget, final Consumer<String> log) {
+    checkArgument(cpuBudget > 0, "CPU budget must be positive");
+    this.cpuBudget = cpuBudget;
+    this.hostCpus = Runtime.getRuntime().availableProcessors();
+    this.log = log;
+    // a burst of at most one second of the budget
+    this.cpuNanos = new TokenBucket(cpuBudget * 1e9, cpuBudget * 1e9, System::nanoTime);
+    this.workers =
+        Executors.newFixedThreadPool(
+            (int) Math.ceil(cpuBudget),
+            new ThreadFactoryBuilder()
+                .setNameFormat("governed-worker-%d")
+                .setPriority(Thread.MIN_PRIORITY)
+                .setDaemon(true)
+                .build());
+  }
+
+  /**
+   * @param limits Limits of the cgroup of this process
+   * @param maxCpuPercent Percentage of the available cores the conversion may use
+   * @return Cores the conversion may use, from the available processors and the cgroup CPU quota
+   */
+  public static double cpuBudget(final CgroupLimits limits, final int maxCpuPercent) {
+    final double availableCores =
+        Math.min(
+            Runtime.getRuntime().availableProcessors(),
+            limits.cpuCores().orElse(Double.POSITIVE_INFINITY));
+    return availableCores * maxCpuPercent / 100;
+  }
+
+  @Override
+  public void execute(final Runnable task) {
+    workers.execute(
+        () -> {
+          admit();
+          running.incrementAndGet();
+          final long startCpuNanos = cpuTimeNanos();
+          try {
+            task.run();
+          } finally {
+            final long taskCpuNanos = Math.max(0, cpuTimeNanos() - startCpuNanos);
+            cpuNanos.charge(taskCpuNanos);
+            usedCpuNanos.add(taskCpuNanos);
+            completed.increment();
+            running.decrementAndGet();
+          }
+        });
+  }
+
+  /**
+   * @return Throughput achieved so far
+   */
+  public Throughput throughput() {
+    final long elapsedNanos = System.nanoTime() - startNanos;
+    return new Throughput(
+        completed.sum(),
+        Duration.ofNanos(elapsedNanos),
+        (double) usedCpuNanos.sum() / Math.max(1, elapsedNanos),
+        cpuBudget,
+        Duration.ofNanos(pausedNanos.sum()));
+  }
+
+  @Override
+  public void close() {
+    workers.shutdown();
+  }
+
+  private void admit() {
+    adjustToHostLoad();
+    long delayNanos;
+    while ((delayNanos = cpuNanos.delayNanos()) > 0) {
+      pausedNanos.add(delayNanos);
+      LockSupport.parkNanos(delayNanos);
+    }
+  }
+
+  private void adjustToHostLoad() {
+    final double loadAverage;
+    synchronized (this) {
+      final long nowNanos = System.nanoTime();
+      if (nowNanos - lastLoadSampleNanos < LOAD_SAMPLE_NANOS) {
+        return;
+      }
+      lastLoadSampleNanos = nowNanos;
+      loadAverage = operatingSystem.getSystemLoadAverage();
+    }
+    if (loadAverage < 0) {
+      return;
+    }
+    final double rate = rate(loadAverage, running.get());
+    final double previousRate = cpuNanos.rate() / 1e9;
+    if (Math.abs(rate - previousRate) > cpuBudget * MIN_RATE_FRACTION) {
+      cpuNanos.setRate(rate * 1e9);
+      log.accept(
+          String.format(
+              "Resource governor: load average %.1f on %d cores, pacing at %.2f of %.2f cores",
+              loadAverage, hostCpus, rate, cpuBudget));
+    }
+  }
+
+  /**
+   * @param loadAverage Load average of the host, including the running conversions
+   * @param ownLoad Conversions running now
+   * @return Cores the conversion may use next to the other processes
+   */
+  double rate(final double loadAverage, final int ownLoad) {
+    final double headroom = hostCpus - Math.max(0, loadAverage - ownLoad);
+    return Math.max(cpuBudget * MIN_RATE_FRACTION, Math.min(cpuBudget, headroom));
+  }
+
+  private long cpuTimeNanos() {
+    // wall time overestimates the CPU time, which keeps within the budget
+    return threadMXBean.isCurrentThreadCpuTimeSupported()
+        ? threadMXBean.getCurrentThreadCpuTime()
+        : System.nanoTime();
+  }
+}
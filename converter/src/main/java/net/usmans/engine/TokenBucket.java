@@ -0,0 +1,73 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans.engine;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket that may go into debt: work is charged once its actual cost is known, and admission
+ * waits until the debt has been paid back at the refill rate. Over time the charged cost cannot
+ * exceed the rate, whatever the cost of individual tasks.
+ */
+final class TokenBucket {
+  private final LongSupplier nanoClock;
+  private final double capacity;
+  // guarded by this
+  private double tokensPerNano;
+  private double tokens;
+  private long lastRefillNanos;
+
+  /**
+   * Start full.
+   *
+   * @param tokensPerSecond Refill rate
+   * @param capacity Maximum tokens, the largest burst admitted at once
+   * @param nanoClock Clock in nanoseconds, such as {@link System#nanoTime()}
+   */
+  TokenBucket(final double tokensPerSecond, final double capacity, final LongSupplier nanoClock) {
+    checkArgument(tokensPerSecond > 0, "Rate must be positive");
+    checkArgument(capacity > 0, "Capacity must be positive");
+    this.nanoClock = nanoClock;
+    this.capacity = capacity;
+    this.tokensPerNano = tokensPerSecond / 1e9;
+    this.tokens = capacity;
+    this.lastRefillNanos = nanoClock.getAsLong();
+  }
+
+  /**
+   * @return Nanoseconds until the bucket is out of debt, 0 if work can be admitted now
+   */
+  synchronized long delayNanos() {
+    refill();
+    return tokens > 0 ? 0 : (long) Math.ceil((1 - tokens) / tokensPerNano);
+  }
+
+  /**
+   * @param cost Tokens to take, the bucket goes into debt if there are not enough
+   */
+  synchronized void charge(final double cost) {
+    refill();
+    tokens -= cost;
+  }
+
+  /**
+   * @param tokensPerSecond The new refill rate
+   */
+  synchronized void setRate(final double tokensPerSecond) {
+    checkArgument(tokensPerSecond > 0, "Rate must be positive");
+    refill();
+    tokensPerNano = tokensPerSecond / 1e9;
+  }
+
+  synchronized double rate() {
+    return tokensPerNano * 1e9;
+  }
+
+  private void refill() {
+    final long nowNanos = nanoClock.getAsLong();
+    tokens = Math.min(capacity, tokens + (nowNanos - lastRefillNanos) * tokensPerNano);
+    lastRefillNanos = nowNanos;
+  }
+}
@@ -0,0 +1,405 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans.index;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+import net.usmans.engine.BulkloadingMode;
+import net.usmans.engine.IndexedKeystoreSource;
+import net.usmans.engine.PasswordSource;
+import org.apache.tuweni.bytes.Bytes;
+import tech.pegasys.teku.bls.keystore.KeyStore;
+import tech.pegasys.teku.bls.keystore.KeyStoreLoader;
+import tech.pegasys.teku.bls.keystore.model.KdfFunction;
+import tech.pegasys.teku.bls.keystore.model.KdfParam;
+import tech.pegasys.teku.bls.keystore.model.KeyStoreData;
+import tech.pegasys.teku.bls.keystore.model.Pbkdf2Param;
+import tech.pegasys.teku.bls.keystore.model.Pbkdf2PseudoRandomFunction;
+import tech.pegasys.teku.bls.keystore.model.SCryptParam;
+
+/**
+ * Persistent index of the keystores of a directory: public key, file path, modification time, size
+ * and KDF parameters of every keystore. Tools answer "which keys, which KDF parameters" from the
+ * index alone and parse or decrypt individual keystores only on demand. The index is kept in the
+ * keystore directory itself as {@value #INDEX_FILE_NAME}, which is ignored by both bulk-loading
+ * modes, and {@link #refresh} only re-parses keystores whose modification time or size changed.
+ *
+ * <p>The index file is memory-mapped when read. All integers are big-endian:
+ *
+ * <pre>
+ * header: 8 byte magic, u16 format version, u16 bulk-loading mode, u32 count
+ * entry:  u16 path length, path (UTF-8, relative to the directory), u64 modified millis, u64 size,
+ *         u16 pubkey length, pubkey, u8 kdf function, u8 prf, u32 dklen, u32 c or n, u32 r, u32 p,
+ *         u16 salt length, salt
+ * </pre>
+ */
+public final class KeystoreIndex {
+  public static final String INDEX_FILE_NAME = ".v4keystore.index";
+  private static final byte[] MAGIC = "V4KSINDX".getBytes(US_ASCII);
+  private static final short FORMAT_VERSION = 2;
+  private static final int MAX_FIELD_LENGTH = 0xFFFF;
+  // path, pubkey and salt lengths, modification time, size, kdf function, prf and 4 parameters
+  private static final int MIN_ENTRY_SIZE = 3 * 2 + 2 * 8 + 2 + 4 * 4;
+
+  private final Path directory;
+  private final BulkloadingMode mode;
+  private final List<Entry> entries;
+  private final RefreshStatistics statistics;
+
+  private KeystoreIndex(
+      final Path directory,
+      final BulkloadingMode mode,
+      final List<Entry> entries,
+      final RefreshStatistics statistics) {
+    this.directory = directory;
+    this.mode = mode;
+    this.entries = entries;
+    this.statistics = statistics;
+  }
+
+  /**
+   * Indexed keystore. KDF parameters and public key come from the index; the keystore itself is
+   * only parsed by {@link #load()}.
+   *
+   * @param path The keystore file
+   * @param lastModifiedMillis Modification time of the keystore file when it was indexed
+   * @param size Size of the keystore file when it was indexed
+   * @param pubkey The public key
+   * @param kdfParam The KDF parameters, including salt
+   */
+  public record Entry(
+      Path path, long lastModifiedMillis, long size, Bytes pubkey, KdfParam kdfParam)
+      implements IndexedKeystoreSource {
+    @Override
+    public KeyStoreData load() {
+      return KeyStoreLoader.loadFromFile(path.toUri());
+    }
+  }
+
+  /**
+   * Outcome of a refresh.
+   *
+   * @param reused Entries taken from the existing index
+   * @param parsed Keystores parsed because they are new or changed
+   * @param removed Entries dropped because their keystore no longer exists
+   * @param failures Keystores that could not be indexed, with the reason
+   */
+  public record RefreshStatistics(
+      int reused, int parsed, int removed, Map<Path, String> failures) {}
+
+  /**
+   * @param directory The keystore directory
+   * @return The index file of the directory
+   */
+  public static Path indexFile(final Path directory) {
+    return directory.resolve(INDEX_FILE_NAME);
+  }
+
+  /**
+   * Read the index of a directory as it is, without checking the keystore files.
+   *
+   * @param directory The keystore directory
+   * @param mode The bulk-loading mode of the directory
+   * @return The index, or empty if the directory has no valid index for the mode
+   * @throws IOException If the index file cannot be read
+   */
+  public static Optional<KeystoreIndex> read(final Path directory, final BulkloadingMode mode)
+      throws IOException {
+    return readEntries(directory, mode)
+        .map(
+            entries ->
+                new KeystoreIndex(
+                    directory,
+                    mode,
+                    List.copyOf(entries.values()),
+                    new RefreshStatistics(entries.size(), 0, 0, Map.of())));
+  }
+
+  /**
+   * Bring the index of a directory up to date. Keystores whose modification time and size match
+   * their index entry are not read; new and changed keystores are parsed in parallel. The index
+   * file is only rewritten if anything changed.
+   *
+   * @param directory The keystore directory
+   * @param mode The bulk-loading mode of the directory
+   * @return The refreshed index
+   * @throws IOException If the directory cannot be listed or the index cannot be written
+   */
+  public static KeystoreIndex refresh(final Path directory, final BulkloadingMode mode)
+      throws IOException {
+    final Map<Path, Entry> existing = readEntries(directory, mode).orElse(Map.of());
+    final Map<Path, String> failures = new ConcurrentHashMap<>();
+    final List<Entry> entries =
+        mode.listKeystores(directory).parallelStream()
+            .map(
+                keystorePath -> {
+                  try {
+                    final BasicFileAttributes attributes =
+                        Files.readAttributes(keystorePath, BasicFileAttributes.class);
+                    final Entry entry = existing.get(keystorePath);
+                    if (entry != null
+                        && entry.lastModifiedMillis() == attributes.lastModifiedTime().toMillis()
+                        && entry.size() == attributes.size()) {
+                      return entry;
+                    }
+                    final KeyStoreData keyStoreData =
+                        KeyStoreLoader.loadFromFile(keystorePath.toUri());
+                    return checkIndexable(
+                        directory,
+                        new Entry(
+                            keystorePath,
+                            attributes.lastModifiedTime().toMillis(),
+                            attributes.size(),
+                            keyStoreData.getPubkey(),
+                            keyStoreData.getCrypto().getKdf().getParam()));
+                  } catch (final IOException | RuntimeException e) {
+                    failures.put(keystorePath, String.valueOf(e.getMessage()));
+                    return null;
+                  }
+                })
+            .filter(Objects::nonNull)
+            .toList();
+
+    final int reused = (int) entries.stream().filter(e -> existing.get(e.path()) == e).count();
+    final Set<Path> indexed = entries.stream().map(Entry::path).collect(Collectors.toSet());
+    final int removed =
+        (int) existing.keySet().stream().filter(path -> !indexed.contains(path)).count();
+    final RefreshStatistics statistics =
+        new RefreshStatistics(
+            reused, entries.size() - reused, removed, Collections.unmodifiableMap(failures));
+    if (reused != entries.size() || removed > 0 || !Files.exists(indexFile(directory))) {
+      write(directory, mode, entries);
+    }
+    return new KeystoreIndex(directory, mode, entries, statistics);
+  }
+
+  public Path getDirectory() {
+    return directory;
+  }
+
+  public BulkloadingMode getMode() {
+    return mode;
+  }
+
+  public List<Entry> entries() {
+    return entries;
+  }
+
+  public RefreshStatistics statistics() {
+    return statistics;
+  }
+
+  /**
+   * @param pubkey The public key
+   * @return The indexed keystore with the public key, if any
+   */
+  public Optional<Entry> find(final Bytes pubkey) {
+    return entries.stream().filter(entry -> entry.pubkey().equals(pubkey)).findFirst();
+  }
+
+  /**
+   * Parse and decrypt keystores on demand, in parallel batches on the executor.
+   *
+   * @param selected The entries to decrypt
+   * @param passwordSource Passwords of the keystores
+   * @param executor Executor running the batches
+   * @param batchSize Number of keystores decrypted by each task
+   * @return One future per entry, in order, completed with the private key
+   */
+  public static List<CompletableFuture<Bytes>> decrypt(
+      final List<Entry> selected,
+      final PasswordSource passwordSource,
+      final Executor executor,
+      final int batchSize) {
+    final List<CompletableFuture<Bytes>> privateKeys = new ArrayList<>(selected.size());
+    selected.forEach(entry -> privateKeys.add(new CompletableFuture<>()));
+    for (int start = 0; start < selected.size(); start += batchSize) {
+      final int from = start;
+      final int to = Math.min(selected.size(), start + batchSize);
+      executor.execute(
+          () -> {
+            for (int i = from; i < to; i++) {
+              final Entry entry = selected.get(i);
+              try {
+                privateKeys
+                    .get(i)
+                    .complete(KeyStore.decrypt(passwordSource.getPassword(entry), entry.load()));
+              } catch (final RuntimeException e) {
+                privateKeys.get(i).completeExceptionally(e);
+              }
+            }
+          });
+    }
+    return privateKeys;
+  }
+
+  private static Optional<Map<Path, Entry>> readEntries(
+      final Path directory, final BulkloadingMode mode) throws IOException {
+    final Path indexFile = indexFile(directory);
+    if (!Files.isRegularFile(indexFile)) {
+      return Optional.empty();
+    }
+    final ByteBuffer buffer;
+    try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+
+    try {
+      final byte[] magic = new byte[MAGIC.length];
+      buffer.get(magic);
+      if (!Arrays.equals(magic, MAGIC)
+          || buffer.getShort() != FORMAT_VERSION
+          || buffer.getShort() != mode.ordinal()) {
+        // written by another version or for another mode, rebuild it
+        return Optional.empty();
+      }
+      final int count = buffer.getInt();
+      if (count < 0 || count > buffer.remaining() / MIN_ENTRY_SIZE) {
+        return Optional.empty();
+      }
+      final Map<Path, Entry> entries = new LinkedHashMap<>(count * 2);
+      for (int i = 0; i < count; i++) {
+        final Path path =
+            keystorePath(
+                directory,
+                new String(readBytes(buffer, Short.toUnsignedInt(buffer.getShort())), UTF_8));
+        final long lastModifiedMillis = buffer.getLong();
+        final long size = buffer.getLong();
+        final Bytes pubkey = Bytes.wrap(readBytes(buffer, Short.toUnsignedInt(buffer.getShort())));
+        final KdfFunction kdfFunction = KdfFunction.values()[buffer.get()];
+        final Pbkdf2PseudoRandomFunction prf = Pbkdf2PseudoRandomFunction.values()[buffer.get()];
+        final int dklen = buffer.getInt();
+        final int cOrN = buffer.getInt();
+        final int r = buffer.getInt();
+        final int p = buffer.getInt();
+        final Bytes salt = Bytes.wrap(readBytes(buffer, Short.toUnsignedInt(buffer.getShort())));
+        final KdfParam kdfParam =
+            switch (kdfFunction) {
+              case PBKDF2 -> new Pbkdf2Param(dklen, cOrN, prf, salt);
+              case SCRYPT -> new SCryptParam(dklen, cOrN, p, r, salt);
+            };
+        entries.put(path, new Entry(path, lastModifiedMillis, size, pubkey, kdfParam));
+      }
+      return Optional.of(entries);
+    } catch (final RuntimeException e) {
+      // truncated or corrupt index, rebuild it
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * @throws IllegalArgumentException If the indexed path is not a relative path within the
+   *     directory
+   */
+  private static Path keystorePath(final Path directory, final String indexedPath) {
+    final Path relativePath = directory.getFileSystem().getPath(indexedPath);
+    final Path path = directory.resolve(relativePath).normalize();
+    if (relativePath.isAbsolute() || !path.startsWith(directory.normalize())) {
+      throw new IllegalArgumentException("Indexed path outside of the directory: " + indexedPath);
+    }
+    return path;
+  }
+
+  private static byte[] readBytes(final ByteBuffer buffer, final int length) {
+    final byte[] bytes = new byte[length];
+    buffer.get(bytes);
+    return bytes;
+  }
+
+  /** Reject entries whose variable length fields do not fit their u16 length in the index. */
+  private static Entry checkIndexable(final Path directory, final Entry entry) {
+    checkedLength("path", relativePath(directory, entry).length);
+    checkedLength("pubkey", entry.pubkey().size());
+    checkedLength("salt", entry.kdfParam().getSalt().size());
+    return entry;
+  }
+
+  private static int checkedLength(final String field, final int length) {
+    if (length > MAX_FIELD_LENGTH) {
+      throw new IllegalArgumentException(
+          String.format("Keystore %s of %d bytes too large to index", field, length));
+    }
+    return length;
+  }
+
+  private static byte[] relativePath(final Path directory, final Entry entry) {
+    return directory.relativize(entry.path()).toString().getBytes(UTF_8);
+  }
+
+  private static void write(
+      final Path directory, final BulkloadingMode mode, final List<Entry> entries)
+      throws IOException {
+    // a unique name, so that processes refreshing the same index do not write the same file
+    final Path tempFile = Files.createTempFile(directory, INDEX_FILE_NAME, ".tmp");
+    try {
+      writeEntries(tempFile, directory, mode, entries);
+      Files.move(tempFile, indexFile(directory), ATOMIC_MOVE, REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(tempFile);
+    }
+  }
+
+  private static void writeEntries(
+      final Path file, final Path directory, final BulkloadingMode mode, final List<Entry> entries)
+      throws IOException {
+    try (DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+      out.write(MAGIC);
+      out.writeShort(FORMAT_VERSION);
+      out.writeShort(mode.ordinal());
+      out.writeInt(entries.size());
+      for (final Entry entry : entries) {
+        final byte[] path = relativePath(directory, entry);
+        out.writeShort(checkedLength("path", path.length));
+        out.write(path);
+        out.writeLong(entry.lastModifiedMillis());
+        out.writeLong(entry.size());
+        out.writeShort(checkedLength("pubkey", entry.pubkey().size()));
+        out.write(entry.pubkey().toArrayUnsafe());
+        final KdfParam kdfParam = entry.kdfParam();
+        out.writeByte(kdfParam.getKdfFunction().ordinal());
+        if (kdfParam instanceof SCryptParam sCryptParam) {
+          out.writeByte(0);
+          out.writeInt(kdfParam.getDkLen());
+          out.writeInt(sCryptParam.getN());
+          out.writeInt(sCryptParam.getR());
+          out.writeInt(sCryptParam.getP());
+        } else {
+          final Pbkdf2Param pbkdf2Param = (Pbkdf2Param) kdfParam;
+          out.writeByte(pbkdf2Param.getPrf().ordinal());
+          out.writeInt(kdfParam.getDkLen());
+          out.writeInt(pbkdf2Param.getC());
+          out.writeInt(0);
+          out.writeInt(0);
+        }
+        out.writeShort(checkedLength("salt", kdfParam.getSalt().size()));
+        out.write(kdfParam.getSalt().toArrayUnsafe());
+      }
+    }
+  }
+}
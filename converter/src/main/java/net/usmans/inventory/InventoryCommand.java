@@ -0,0 +1,254 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans.inventory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+import net.usmans.PicoCliVersionProvider;
+import net.usmans.engine.KdfCostModel;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Model.CommandSpec;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.ParameterException;
+import picocli.CommandLine.Spec;
+import tech.pegasys.teku.bls.keystore.model.KdfParam;
+
+/**
+ * Counts the keystores of a directory tree per KDF function and parameters, derived key length and
+ * cipher, without decrypting or converting anything. Every class is reported with the estimated
+ * time a signer spends decrypting one of its keystores on this host.
+ */
+@Command(
+    name = "inventory",
+    mixinStandardHelpOptions = true,
+    versionProvider = PicoCliVersionProvider.class,
+    description = "Report how many keystores use which KDF parameters and cipher",
+    sortOptions = false)
+public class InventoryCommand implements Callable<Integer> {
+
+  @Option(
+      names = {"--src"},
+      paramLabel = "<PATH>",
+      required = true,
+      description = "Directory tree to scan for json keystores. Required.")
+  private Path source;
+
+  @Option(
+      names = {"--threads"},
+      paramLabel = "<INTEGER>",
+      description =
+          "Number of threads reading keystores. Defaults to twice the number of cores, "
+              + "reads are mostly waiting on I/O.")
+  private int threads = 2 * Runtime.getRuntime().availableProcessors();
+
+  @Option(
+      names = {"--json"},
+      description = "Print the inventory as json instead of a table.")
+  private boolean json;
+
+  @Option(
+      names = {"--output"},
+      paramLabel = "<PATH>",
+      description = "File to also write the json inventory to.")
+  private Path output;
+
+  @Spec private CommandSpec spec; // will be populated by PicoCli at runtime
+
+  /**
+   * Keystores sharing their KDF parameters, derived key length and cipher.
+   *
+   * @param kdf KDF function and cost parameters, for example {@code scrypt n=262144 r=8 p=1}
+   * @param dklen Derived key length
+   * @param cipher Cipher function
+   * @param keystores Number of keystores
+   * @param estimatedDecryptMillis Estimated time to decrypt one keystore on one core of this host,
+   *     -1 if the KDF is not supported
+   * @param estimatedTotalSeconds Estimated time to decrypt all keystores of the class on one core
+   */
+  public record KdfClass(
+      String kdf,
+      int dklen,
+      String cipher,
+      long keystores,
+      double estimatedDecryptMillis,
+      double estimatedTotalSeconds) {}
+
+  /**
+   * @param path Path of the file
+   * @param message Why it was not counted
+   */
+  public record Unreadable(String path, String message) {}
+
+  /**
+   * @param files Number of json files scanned
+   * @param keystores Number of keystores counted
+   * @param duplicatePubkeys Number of keystores whose public key is also in another keystore
+   * @param scanSeconds Wall-clock time of the scan
+   * @param classes Keystore count per class, most keystores first
+   * @param unreadable Files that are not readable v4 keystores
+   */
+  public record Report(
+      int files,
+      int keystores,
+      int duplicatePubkeys,
+      double scanSeconds,
+      List<KdfClass> classes,
+      List<Unreadable> unreadable) {}
+
+  private record ClassKey(String kdf, KdfParam kdfParam, int dklen, String cipher) {}
+
+  @Override
+  public Integer call() throws IOException, InterruptedException, ExecutionException {
+    validateCliParams();
+
+    final long startNanos = System.nanoTime();
+    final List<Path> files;
+    try (Stream<Path> paths = Files.walk(source)) {
+      files =
+          paths
+              .filter(
+                  path ->
+                      path.getFileName().toString().endsWith(".json")
+                          && !path.getFileName().toString().startsWith("deposit_data")
+                          && Files.isRegularFile(path))
+              .toList();
+    }
+
+    final Map<ClassKey, LongAdder> classes = new ConcurrentHashMap<>();
+    final Set<String> pubkeys = ConcurrentHashMap.newKeySet();
+    final AtomicInteger duplicates = new AtomicInteger();
+    final ConcurrentLinkedQueue<Unreadable> unreadable = new ConcurrentLinkedQueue<>();
+    final ForkJoinPool pool = new ForkJoinPool(threads);
+    try {
+      pool.submit(
+              () ->
+                  files.parallelStream()
+                      .forEach(
+                          file -> {
+                            try {
+                              final KeystoreScanner.ScannedKeystore keystore =
+                                  KeystoreScanner.scan(file);
+                              classes
+                                  .computeIfAbsent(classKey(keystore), key -> new LongAdder())
+                                  .increment();
+                              if (keystore.pubkey() != null && !pubkeys.add(keystore.pubkey())) {
+                                duplicates.incrementAndGet();
+                              }
+                            } catch (final IOException | UncheckedIOException e) {
+                              unreadable.add(new Unreadable(file.toString(), e.getMessage()));
+                            }
+                          }))
+          .get();
+    } finally {
+      pool.shutdown();
+    }
+    final double scanSeconds = (System.nanoTime() - startNanos) / 1e9;
+
+    final KdfCostModel costModel = KdfCostModel.calibrate();
+    final List<KdfClass> kdfClasses =
+        classes.entrySet().stream()
+            .map(entry -> kdfClass(entry.getKey(), entry.getValue().sum(), costModel))
+            .sorted(
+                Comparator.comparingLong(KdfClass::keystores)
+                    .reversed()
+                    .thenComparing(KdfClass::kdf))
+            .toList();
+    final Report report =
+        new Report(
+            files.size(),
+            files.size() - unreadable.size(),
+            duplicates.get(),
+            scanSeconds,
+            kdfClasses,
+            unreadable.stream().sorted(Comparator.comparing(Unreadable::path)).toList());
+
+    final ObjectMapper objectMapper = new ObjectMapper();
+    if (output != null) {
+      objectMapper.writerWithDefaultPrettyPrinter().writeValue(output.toFile(), report);
+    }
+    if (json) {
+      System.out.println(objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(report));
+    } else {
+      printTable(report);
+    }
+    return 0;
+  }
+
+  private static ClassKey classKey(final KeystoreScanner.ScannedKeystore keystore) {
+    final String kdf =
+        keystore.kdfParam() == null
+            ? keystore.kdfFunction()
+            : KdfCostModel.costClass(keystore.kdfParam());
+    return new ClassKey(kdf, keystore.kdfParam(), keystore.dklen(), keystore.cipherFunction());
+  }
+
+  private static KdfClass kdfClass(
+      final ClassKey key, final long keystores, final KdfCostModel costModel) {
+    if (key.kdfParam() == null) {
+      return new KdfClass(key.kdf(), key.dklen(), key.cipher(), keystores, -1, -1);
+    }
+    final double decryptMillis = costModel.estimate(key.kdfParam()).toNanos() / 1e6;
+    return new KdfClass(
+        key.kdf(),
+        key.dklen(),
+        key.cipher(),
+        keystores,
+        decryptMillis,
+        decryptMillis * keystores / 1000);
+  }
+
+  private static void printTable(final Report report) {
+    System.out.printf(
+        "%-32s %5s %-12s %10s %14s %14s%n",
+        "KDF", "DKLEN", "CIPHER", "KEYSTORES", "DECRYPT MS", "TOTAL CPU S");
+    report
+        .classes()
+        .forEach(
+            kdfClass ->
+                System.out.printf(
+                    "%-32s %5d %-12s %10d %14s %14s%n",
+                    kdfClass.kdf(),
+                    kdfClass.dklen(),
+                    kdfClass.cipher(),
+                    kdfClass.keystores(),
+                    estimate(kdfClass.estimatedDecryptMillis(), "%.1f"),
+                    estimate(kdfClass.estimatedTotalSeconds(), "%.1f")));
+    report
+        .unreadable()
+        .forEach(
+            unreadable ->
+                System.err.printf(
+                    "Unreadable keystore %s: %s%n", unreadable.path(), unreadable.message()));
+    System.out.printf(
+        "%d keystores in %d json files, %d duplicate public keys, scanned in %.1f s.%n",
+        report.keystores(), report.files(), report.duplicatePubkeys(), report.scanSeconds());
+  }
+
+  private static String estimate(final double value, final String format) {
+    return value < 0 ? "unknown" : String.format(format, value);
+  }
+
+  private void validateCliParams() {
+    if (!Files.isDirectory(source)) {
+      throw new ParameterException(spec.commandLine(), "--src must be an existing directory.");
+    }
+    if (threads <= 0) {
+      throw new ParameterException(spec.commandLine(), "--threads must be a positive integer.");
+    }
+  }
+}
@@ -0,0 +1,162 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans.inventory;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.apache.tuweni.bytes.Bytes32;
+import tech.pegasys.teku.bls.keystore.model.KdfParam;
+import tech.pegasys.teku.bls.keystore.model.Pbkdf2Param;
+import tech.pegasys.teku.bls.keystore.model.Pbkdf2PseudoRandomFunction;
+import tech.pegasys.teku.bls.keystore.model.SCryptParam;
+
+/**
+ * Reads the KDF parameters, cipher function and public key of a keystore from its token stream,
+ * without binding the whole document and without decoding salts, checksums or the encrypted key.
+ * Parsing stops as soon as all fields are known.
+ */
+final class KeystoreScanner {
+  private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+  /**
+   * Fields of a scanned keystore.
+   *
+   * @param pubkey Public key as written in the keystore, null if absent
+   * @param kdfFunction KDF function as written in the keystore
+   * @param kdfParam KDF parameters with a zero salt, null if the function is not supported
+   * @param dklen Derived key length
+   * @param cipherFunction Cipher function as written in the keystore
+   */
+  record ScannedKeystore(
+      String pubkey, String kdfFunction, KdfParam kdfParam, int dklen, String cipherFunction) {}
+
+  private static final class Fields {
+    private String pubkey;
+    private String kdfFunction;
+    private String cipherFunction;
+    private boolean kdfParams;
+    private int dklen;
+    private int c;
+    private String prf;
+    private int n;
+    private int r;
+    private int p;
+
+    private boolean complete() {
+      return pubkey != null && kdfFunction != null && kdfParams && cipherFunction != null;
+    }
+  }
+
+  private KeystoreScanner() {}
+
+  /**
+   * @param keystoreFile The keystore file
+   * @return The scanned fields
+   * @throws IOException If the file cannot be read, is not json or is not a keystore
+   */
+  static ScannedKeystore scan(final Path keystoreFile) throws IOException {
+    final Fields fields = new Fields();
+    try (JsonParser parser = JSON_FACTORY.createParser(Files.newInputStream(keystoreFile))) {
+      expect(parser, JsonToken.START_OBJECT);
+      while (!fields.complete() && parser.nextToken() == JsonToken.FIELD_NAME) {
+        final String name = parser.currentName();
+        parser.nextToken();
+        switch (name) {
+          case "pubkey" -> fields.pubkey = parser.getValueAsString();
+          case "crypto" -> scanCrypto(parser, fields);
+          default -> parser.skipChildren();
+        }
+      }
+    }
+    if (fields.kdfFunction == null || !fields.kdfParams || fields.cipherFunction == null) {
+      throw new IOException("Not a v4 keystore, crypto.kdf or crypto.cipher is missing");
+    }
+    return new ScannedKeystore(
+        fields.pubkey, fields.kdfFunction, kdfParam(fields), fields.dklen, fields.cipherFunction);
+  }
+
+  private static void scanCrypto(final JsonParser parser, final Fields fields) throws IOException {
+    expectCurrent(parser, JsonToken.START_OBJECT);
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      final String name = parser.currentName();
+      parser.nextToken();
+      switch (name) {
+        case "kdf" -> fields.kdfFunction = scanModule(parser, fields, true);
+        case "cipher" -> fields.cipherFunction = scanModule(parser, fields, false);
+        default -> parser.skipChildren();
+      }
+    }
+  }
+
+  /**
+   * Scan a {@code {"function": ..., "params": {...}, "message": ...}} module.
+   *
+   * @return The function of the module
+   */
+  private static String scanModule(final JsonParser parser, final Fields fields, final boolean kdf)
+      throws IOException {
+    expectCurrent(parser, JsonToken.START_OBJECT);
+    String function = null;
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      final String name = parser.currentName();
+      parser.nextToken();
+      if (name.equals("function")) {
+        function = parser.getValueAsString();
+      } else if (kdf && name.equals("params")) {
+        scanKdfParams(parser, fields);
+      } else {
+        parser.skipChildren();
+      }
+    }
+    return function;
+  }
+
+  private static void scanKdfParams(final JsonParser parser, final Fields fields)
+      throws IOException {
+    expectCurrent(parser, JsonToken.START_OBJECT);
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      final String name = parser.currentName();
+      parser.nextToken();
+      switch (name) {
+        case "dklen" -> fields.dklen = parser.getValueAsInt();
+        case "c" -> fields.c = parser.getValueAsInt();
+        case "prf" -> fields.prf = parser.getValueAsString();
+        case "n" -> fields.n = parser.getValueAsInt();
+        case "r" -> fields.r = parser.getValueAsInt();
+        case "p" -> fields.p = parser.getValueAsInt();
+        default -> parser.skipChildren();
+      }
+    }
+    fields.kdfParams = true;
+  }
+
+  private static KdfParam kdfParam(final Fields fields) {
+    // the salt does not change the cost, don't decode it
+    return switch (fields.kdfFunction) {
+      case "scrypt" -> new SCryptParam(fields.dklen, fields.n, fields.p, fields.r, Bytes32.ZERO);
+      case "pbkdf2" ->
+          Pbkdf2PseudoRandomFunction.HMAC_SHA256.getJsonValue().equals(fields.prf)
+              ? new Pbkdf2Param(
+                  fields.dklen, fields.c, Pbkdf2PseudoRandomFunction.HMAC_SHA256, Bytes32.ZERO)
+              : null;
+      default -> null;
+    };
+  }
+
+  private static void expect(final JsonParser parser, final JsonToken token) throws IOException {
+    parser.nextToken();
+    expectCurrent(parser, token);
+  }
+
+  private static void expectCurrent(final JsonParser parser, final JsonToken token)
+      throws IOException {
+    if (parser.currentToken() != token) {
+      throw new IOException(
+          "Not a v4 keystore, expected " + token + " but found " + parser.currentToken());
+    }
+  }
+}
@@ -0,0 +1,165 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans.metrics;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import net.usmans.engine.ConversionListener;
+import net.usmans.engine.ConversionResult;
+import net.usmans.engine.ConversionStage;
+import net.usmans.engine.KeystoreSource;
+import tech.pegasys.teku.bls.keystore.model.KdfFunction;
+import tech.pegasys.teku.bls.keystore.model.KdfParam;
+
+/**
+ * Conversion counters, rendered in the Prometheus text exposition format. Workers only increment
+ * {@link LongAdder}s in maps filled at construction, so scrapes never contend with the conversion;
+ * a scrape reads each counter once and may see counters of different instants.
+ */
+public final class ConversionMetrics implements ConversionListener {
+  private static final double NANOS_PER_SECOND = 1e9;
+
+  private final LongAdder planned = new LongAdder();
+  private final LongAdder started = new LongAdder();
+  private final LongAdder converted = new LongAdder();
+  private final Map<ConversionStage, LongAdder> failed = adders(ConversionStage.class);
+  private final LongAdder keystoreCount = new LongAdder();
+  private final LongAdder keystoreNanos = new LongAdder();
+  private final Map<KdfFunction, LongAdder> kdfCount = adders(KdfFunction.class);
+  private final Map<KdfFunction, LongAdder> kdfNanos = adders(KdfFunction.class);
+
+  private static <E extends Enum<E>> Map<E, LongAdder> adders(final Class<E> keys) {
+    final Map<E, LongAdder> adders = new EnumMap<>(keys);
+    for (final E key : keys.getEnumConstants()) {
+      adders.put(key, new LongAdder());
+    }
+    return Collections.unmodifiableMap(adders);
+  }
+
+  @Override
+  public void onStart(final int total) {
+    planned.add(total);
+  }
+
+  @Override
+  public void onKeystoreStarted(final KeystoreSource source) {
+    started.increment();
+  }
+
+  @Override
+  public void onKeyDerived(final KdfParam kdfParam, final long nanos) {
+    kdfCount.get(kdfParam.getKdfFunction()).increment();
+    kdfNanos.get(kdfParam.getKdfFunction()).add(nanos);
+  }
+
+  @Override
+  public void onResult(final ConversionResult result) {
+    if (result.isSuccess()) {
+      converted.increment();
+    } else {
+      failed.get(result.failedStage()).increment();
+    }
+    keystoreCount.increment();
+    keystoreNanos.add(result.elapsed().toNanos());
+  }
+
+  /**
+   * @return All metrics in the Prometheus text exposition format, version 0.0.4
+   */
+  public String scrape() {
+    final StringBuilder out = new StringBuilder(4096);
+    final long startedNow = started.sum();
+    final long finished = keystoreCount.sum();
+
+    header(out, "converter_keystores_converted_total", "counter", "Keystores converted.");
+    sample(out, "converter_keystores_converted_total", "", converted.sum());
+    header(out, "converter_keystores_failed_total", "counter", "Keystores failed, per stage.");
+    failed.forEach(
+        (stage, count) ->
+            sample(
+                out,
+                "converter_keystores_failed_total",
+                label("stage", stage.name().toLowerCase(Locale.ROOT)),
+                count.sum()));
+    header(out, "converter_keystores_in_flight", "gauge", "Keystores being converted.");
+    sample(out, "converter_keystores_in_flight", "", Math.max(0, startedNow - finished));
+    header(
+        out, "converter_keystores_queued", "gauge", "Keystores waiting for a conversion worker.");
+    sample(out, "converter_keystores_queued", "", Math.max(0, planned.sum() - startedNow));
+
+    header(
+        out,
+        "converter_keystore_duration_seconds",
+        "summary",
+        "Time to convert one keystore, from loading it to writing it.");
+    sample(out, "converter_keystore_duration_seconds_count", "", finished);
+    sample(
+        out, "converter_keystore_duration_seconds_sum", "", keystoreNanos.sum() / NANOS_PER_SECOND);
+    header(
+        out,
+        "converter_kdf_duration_seconds",
+        "summary",
+        "Time to derive one key, per KDF function.");
+    for (final KdfFunction kdfFunction : KdfFunction.values()) {
+      final String labels = label("kdf", kdfFunction.getJsonValue());
+      sample(out, "converter_kdf_duration_seconds_count", labels, kdfCount.get(kdfFunction).sum());
+      sample(
+          out,
+          "converter_kdf_duration_seconds_sum",
+          labels,
+          kdfNanos.get(kdfFunction).sum() / NANOS_PER_SECOND);
+    }
+
+    final MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+    header(out, "jvm_memory_heap_used_bytes", "gauge", "Used heap.");
+    sample(out, "jvm_memory_heap_used_bytes", "", heap.getUsed());
+    header(out, "jvm_memory_heap_committed_bytes", "gauge", "Committed heap.");
+    sample(out, "jvm_memory_heap_committed_bytes", "", heap.getCommitted());
+    header(out, "jvm_memory_heap_max_bytes", "gauge", "Maximum heap, -1 if undefined.");
+    sample(out, "jvm_memory_heap_max_bytes", "", heap.getMax());
+    header(out, "jvm_gc_collections_total", "counter", "Garbage collections, per collector.");
+    for (final GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      sample(
+          out,
+          "jvm_gc_collections_total",
+          label("gc", gc.getName()),
+          Math.max(0, gc.getCollectionCount()));
+    }
+    header(out, "jvm_gc_collection_seconds_total", "counter", "Time spent in GC, per collector.");
+    for (final GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      sample(
+          out,
+          "jvm_gc_collection_seconds_total",
+          label("gc", gc.getName()),
+          Math.max(0, gc.getCollectionTime()) / 1000.0);
+    }
+    return out.toString();
+  }
+
+  private static void header(
+      final StringBuilder out, final String name, final String type, final String help) {
+    out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+    out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+  }
+
+  private static void sample(
+      final StringBuilder out, final String name, final String labels, final long value) {
+    out.append(name).append(labels).append(' ').append(value).append('\n');
+  }
+
+  private static void sample(
+      final StringBuilder out, final String name, final String labels, final double value) {
+    out.append(name).append(labels).append(' ').append(value).append('\n');
+  }
+
+  private static String label(final String name, final String value) {
+    final String escaped = value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    return "{" + name + "=\"" + escaped + "\"}";
+  }
+}
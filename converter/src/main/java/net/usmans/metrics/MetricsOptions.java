@@ -0,0 +1,60 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans.metrics;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import picocli.CommandLine;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.ParameterException;
+
+/** Options of the Prometheus endpoint of a conversion, see {@link MetricsServer}. */
+public class MetricsOptions {
+  @Option(
+      names = {"--metrics-port"},
+      paramLabel = "<PORT>",
+      description =
+          "Serve Prometheus metrics on http://<metrics-host>:<PORT>/metrics during the conversion: "
+              + "keystores converted, failed per stage, in flight and queued, KDF time per KDF "
+              + "function, heap and GC. 0 picks a free port.")
+  private Integer port;
+
+  @Option(
+      names = {"--metrics-host"},
+      paramLabel = "<HOST>",
+      description = "Address the metrics endpoint listens on. Defaults to ${DEFAULT-VALUE}.")
+  private String host = "127.0.0.1";
+
+  /**
+   * @return true if --metrics-port is given
+   */
+  public boolean enabled() {
+    return port != null;
+  }
+
+  /**
+   * @param metrics The metrics to serve
+   * @param console Stream for the address of the endpoint
+   * @return The started metrics server, null without --metrics-port
+   */
+  public MetricsServer start(final ConversionMetrics metrics, final PrintStream console) {
+    if (!enabled()) {
+      return null;
+    }
+    try {
+      final MetricsServer server = MetricsServer.start(new InetSocketAddress(host, port), metrics);
+      console.printf("Serving metrics on http://%s:%d/metrics%n", host, server.port());
+      return server;
+    } catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  public void validate(final CommandLine commandLine) {
+    if (port != null && (port < 0 || port > 65535)) {
+      throw new ParameterException(commandLine, "--metrics-port must be between 0 and 65535.");
+    }
+  }
+}
@@ -0,0 +1,66 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans.metrics;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+
+/** Serves {@link ConversionMetrics} on {@code /metrics} for Prometheus to scrape. */
+public final class MetricsServer implements AutoCloseable {
+  static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+  private final HttpServer server;
+
+  private MetricsServer(final HttpServer server) {
+    this.server = server;
+  }
+
+  /**
+   * @param address Address to listen on, port 0 picks a free port
+   * @param metrics The metrics to serve
+   * @return The started server
+   * @throws IOException If the address cannot be bound
+   */
+  public static MetricsServer start(
+      final InetSocketAddress address, final ConversionMetrics metrics) throws IOException {
+    final HttpServer server = HttpServer.create(address, 0);
+    server.createContext("/metrics", exchange -> serve(exchange, metrics));
+    server.start();
+    return new MetricsServer(server);
+  }
+
+  /**
+   * @return The port the server listens on
+   */
+  public int port() {
+    return server.getAddress().getPort();
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+  }
+
+  private static void serve(final HttpExchange exchange, final ConversionMetrics metrics)
+      throws IOException {
+    try {
+      if (!exchange.getRequestMethod().equals("GET")) {
+        exchange.sendResponseHeaders(405, -1);
+        return;
+      }
+      final byte[] body = metrics.scrape().getBytes(UTF_8);
+      exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+      exchange.sendResponseHeaders(200, body.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    } finally {
+      exchange.close();
+    }
+  }
+}
@@ -0,0 +1,53 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package tech.pegasys.teku.bls.keystore;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.Suppliers;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import org.apache.tuweni.bytes.Bytes;
+import tech.pegasys.teku.bls.keystore.model.KdfParam;
+
+/**
+ * Cache of KDF derived keys, keyed by normalized password and KDF parameters (including salt).
+ * Keystores sharing a password and KDF parameters then share a single run of the expensive key
+ * derivation function. Concurrent lookups of the same key wait for the one derivation in progress
+ * rather than repeating it.
+ *
+ * <p>Reusing a derived key is only safe because each keystore is still encrypted with its own
+ * random AES-128-CTR IV. It weakens the keystores against offline attacks: breaking the password of
+ * one keystore breaks every keystore sharing it, and work against the shared salt is done once.
+ */
+public class DerivedKeyCache {
+  private final ConcurrentHashMap<CacheKey, Supplier<Bytes>> derivedKeys =
+      new ConcurrentHashMap<>();
+
+  private record CacheKey(Bytes normalizedPassword, KdfParam kdfParam) {}
+
+  /**
+   * Return the derived key of password and KDF parameters, running the KDF only on the first call.
+   *
+   * @param password The password
+   * @param kdfParam The KDF parameters
+   * @return The derived (decryption) key
+   */
+  public Bytes getDecryptionKey(final String password, final KdfParam kdfParam) {
+    checkNotNull(password, "Password cannot be null");
+    checkNotNull(kdfParam, "KDFParam cannot be null");
+
+    final CacheKey cacheKey = new CacheKey(PasswordUtils.normalizePassword(password), kdfParam);
+    return derivedKeys
+        .computeIfAbsent(
+            cacheKey, key -> Suppliers.memoize(() -> kdfParam.generateDecryptionKey(password)))
+        .get();
+  }
+
+  /**
+   * @return Number of distinct (password, KDF parameters) pairs derived so far
+   */
+  public int size() {
+    return derivedKeys.size();
+  }
+}
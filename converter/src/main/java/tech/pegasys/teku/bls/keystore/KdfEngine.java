@@ -0,0 +1,152 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package tech.pegasys.teku.bls.keystore;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.spec.InvalidKeySpecException;
+import java.util.Arrays;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import org.bouncycastle.crypto.generators.PKCS5S2ParametersGenerator;
+import org.bouncycastle.crypto.generators.SCrypt;
+import org.bouncycastle.crypto.params.KeyParameter;
+import org.bouncycastle.crypto.util.DigestFactory;
+import tech.pegasys.teku.bls.keystore.kdf.ParallelSCrypt;
+import tech.pegasys.teku.bls.keystore.model.KdfFunction;
+import tech.pegasys.teku.bls.keystore.model.KdfParam;
+import tech.pegasys.teku.bls.keystore.model.Pbkdf2Param;
+import tech.pegasys.teku.bls.keystore.model.SCryptParam;
+
+/**
+ * An implementation of a KDF function. All engines of a function derive the same keys; which one is
+ * fastest depends on the JVM, the CPU and the parameters, see {@link KdfEngines}.
+ */
+public enum KdfEngine {
+  /** Bouncy Castle {@code PKCS5S2ParametersGenerator} with SHA-256. */
+  BOUNCY_CASTLE_PBKDF2(KdfFunction.PBKDF2, "bouncycastle") {
+    @Override
+    byte[] derive(final byte[] password, final KdfParam param) {
+      final Pbkdf2Param pbkdf2Param = (Pbkdf2Param) param;
+      final PKCS5S2ParametersGenerator gen =
+          new PKCS5S2ParametersGenerator(DigestFactory.createSHA256());
+      gen.init(password, pbkdf2Param.getSalt().toArrayUnsafe(), pbkdf2Param.getC());
+      return ((KeyParameter) gen.generateDerivedParameters(pbkdf2Param.getDkLen() * 8)).getKey();
+    }
+  },
+
+  /** The JDK's {@code PBKDF2WithHmacSHA256} secret key factory. */
+  JDK_PBKDF2(KdfFunction.PBKDF2, "jdk") {
+    private final ThreadLocal<SecretKeyFactory> factory =
+        ThreadLocal.withInitial(
+            () -> {
+              try {
+                return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
+              } catch (final NoSuchAlgorithmException e) {
+                throw new IllegalStateException("PBKDF2WithHmacSHA256 is not available", e);
+              }
+            });
+
+    @Override
+    byte[] derive(final byte[] password, final KdfParam param) {
+      final Pbkdf2Param pbkdf2Param = (Pbkdf2Param) param;
+      // the JDK takes the password as characters and encodes them in UTF-8, which only gives the
+      // same bytes back for non-empty valid UTF-8; it also refuses an empty salt
+      final String passwordString = new String(password, UTF_8);
+      if (password.length == 0
+          || pbkdf2Param.getSalt().isEmpty()
+          || !Arrays.equals(passwordString.getBytes(UTF_8), password)) {
+        return BOUNCY_CASTLE_PBKDF2.derive(password, param);
+      }
+      final PBEKeySpec keySpec =
+          new PBEKeySpec(
+              passwordString.toCharArray(),
+              pbkdf2Param.getSalt().toArrayUnsafe(),
+              pbkdf2Param.getC(),
+              pbkdf2Param.getDkLen() * 8);
+      try {
+        return factory.get().generateSecret(keySpec).getEncoded();
+      } catch (final InvalidKeySpecException e) {
+        throw new IllegalStateException("PBKDF2WithHmacSHA256 refused the parameters", e);
+      } finally {
+        keySpec.clearPassword();
+      }
+    }
+  },
+
+  /** Bouncy Castle {@code SCrypt}, running the p lanes one after another. */
+  BOUNCY_CASTLE_SCRYPT(KdfFunction.SCRYPT, "bouncycastle") {
+    @Override
+    boolean supports(final KdfParam param) {
+      // always keeps the V array on the heap
+      return param instanceof SCryptParam sCryptParam
+          && ParallelSCrypt.laneHeapBytes(sCryptParam.getN(), sCryptParam.getR())
+              == 128L * sCryptParam.getR() * sCryptParam.getN();
+    }
+
+    @Override
+    byte[] derive(final byte[] password, final KdfParam param) {
+      final SCryptParam sCryptParam = (SCryptParam) param;
+      return SCrypt.generate(
+          password,
+          sCryptParam.getSalt().toArrayUnsafe(),
+          sCryptParam.getN(),
+          sCryptParam.getR(),
+          sCryptParam.getP(),
+          sCryptParam.getDkLen());
+    }
+  },
+
+  /** {@link ParallelSCrypt}, running the p lanes on idle cores. */
+  PARALLEL_SCRYPT(KdfFunction.SCRYPT, "parallel") {
+    @Override
+    byte[] derive(final byte[] password, final KdfParam param) {
+      final SCryptParam sCryptParam = (SCryptParam) param;
+      return ParallelSCrypt.generate(
+          password,
+          sCryptParam.getSalt().toArrayUnsafe(),
+          sCryptParam.getN(),
+          sCryptParam.getR(),
+          sCryptParam.getP(),
+          sCryptParam.getDkLen());
+    }
+  };
+
+  private final KdfFunction kdfFunction;
+  private final String displayName;
+
+  KdfEngine(final KdfFunction kdfFunction, final String displayName) {
+    this.kdfFunction = kdfFunction;
+    this.displayName = displayName;
+  }
+
+  /**
+   * @return The KDF function implemented
+   */
+  public KdfFunction kdfFunction() {
+    return kdfFunction;
+  }
+
+  /**
+   * @return Short name for reports
+   */
+  public String displayName() {
+    return displayName;
+  }
+
+  /**
+   * @param param KDF parameters
+   * @return true if this engine can derive keys with the parameters
+   */
+  boolean supports(final KdfParam param) {
+    return param.getKdfFunction() == kdfFunction;
+  }
+
+  /**
+   * @param password The normalized password
+   * @param param KDF parameters of this engine's function
+   * @return The derived key
+   */
+  abstract byte[] derive(byte[] password, KdfParam param);
+}
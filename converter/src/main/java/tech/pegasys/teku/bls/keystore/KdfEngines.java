@@ -0,0 +1,272 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package tech.pegasys.teku.bls.keystore;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import tech.pegasys.teku.bls.keystore.kdf.MultiBufferPbkdf2;
+import tech.pegasys.teku.bls.keystore.model.KdfFunction;
+import tech.pegasys.teku.bls.keystore.model.KdfParam;
+import tech.pegasys.teku.bls.keystore.model.Pbkdf2Param;
+import tech.pegasys.teku.bls.keystore.model.SCryptParam;
+
+/**
+ * Picks the {@link KdfEngine} that derives keys in {@link KdfParam#generateDecryptionKey}. Until
+ * {@link #select} runs, PBKDF2 keys are derived with Bouncy Castle and scrypt keys with {@link
+ * tech.pegasys.teku.bls.keystore.kdf.ParallelSCrypt}. {@link #select} times every engine on each
+ * parameter class of a job, that is the parameters but the salt, checks that they derive the same
+ * key as the default engine, and selects the fastest per class. Engines are timed one key at a
+ * time, interleaved, after a first untimed run; a class that only one engine supports gets it
+ * without deriving any key. Choices are cached in a file per host, JVM and CPU count, so that later
+ * runs skip the calibration. Parameter classes that were not selected for use the default engine.
+ */
+public final class KdfEngines {
+  // engines are timed in rounds until this much time was spent, or for at most MAX_ROUNDS
+  private static final long TIMING_BUDGET_NANOS = 300_000_000L;
+  private static final int MAX_ROUNDS = 5;
+
+  private static final SecureRandom SECURE_RANDOM = new SecureRandom();
+  private static final Map<String, KdfEngine> SELECTED = new ConcurrentHashMap<>();
+
+  private KdfEngines() {}
+
+  /**
+   * The engine chosen for a parameter class.
+   *
+   * @param parameterClass The parameters but the salt, for example {@code scrypt n=262144 r=8 p=1
+   *     dklen=32}
+   * @param engine The selected engine
+   * @param timings Fastest timed key derivation of each engine that derived the right key, empty if
+   *     the choice was read from the cache or the engine is the only one supporting the parameters
+   * @param mismatched Engines that derived a different key than the default engine, never selected
+   * @param cached true if the choice was read from the cache rather than calibrated
+   */
+  public record Selection(
+      String parameterClass,
+      KdfEngine engine,
+      Map<KdfEngine, Duration> timings,
+      List<KdfEngine> mismatched,
+      boolean cached) {}
+
+  /**
+   * @param param KDF parameters
+   * @return The parameter class of the parameters
+   */
+  public static String parameterClass(final KdfParam param) {
+    if (param instanceof SCryptParam sCryptParam) {
+      return String.format(
+          "scrypt n=%d r=%d p=%d dklen=%d",
+          sCryptParam.getN(), sCryptParam.getR(), sCryptParam.getP(), sCryptParam.getDkLen());
+    }
+    if (param instanceof Pbkdf2Param pbkdf2Param) {
+      return String.format("pbkdf2 c=%d dklen=%d", pbkdf2Param.getC(), pbkdf2Param.getDkLen());
+    }
+    return param.getKdfFunction().getJsonValue();
+  }
+
+  /**
+   * @param param KDF parameters
+   * @return The engine deriving keys with the parameters
+   */
+  public static KdfEngine engine(final KdfParam param) {
+    final KdfEngine selected = SELECTED.get(parameterClass(param));
+    return selected != null && selected.supports(param)
+        ? selected
+        : defaultEngine(param.getKdfFunction());
+  }
+
+  /**
+   * Derive a key with the engine selected for the parameters.
+   *
+   * @param normalizedPassword The normalized password
+   * @param param KDF parameters
+   * @return The derived key
+   */
+  public static byte[] derive(final byte[] normalizedPassword, final KdfParam param) {
+    return engine(param).derive(normalizedPassword, param);
+  }
+
+  private static KdfEngine defaultEngine(final KdfFunction kdfFunction) {
+    return switch (kdfFunction) {
+      case PBKDF2 -> KdfEngine.BOUNCY_CASTLE_PBKDF2;
+      case SCRYPT -> KdfEngine.PARALLEL_SCRYPT;
+    };
+  }
+
+  /**
+   * Select the fastest engine for each parameter class of the given parameters, from the cache or
+   * by timing the engines.
+   *
+   * @param params KDF parameters of the job, typically of the source keystores and the targets
+   * @param cacheFile File the choices of this host are read from and written to. May be null.
+   * @return The choice made for each parameter class
+   * @throws UncheckedIOException If the cache file cannot be read or written
+   */
+  public static List<Selection> select(final Collection<KdfParam> params, final Path cacheFile) {
+    final Map<String, KdfParam> classes = new LinkedHashMap<>();
+    params.forEach(param -> classes.putIfAbsent(parameterClass(param), param));
+    final Properties cache = readCache(cacheFile);
+    final String host = hostKey();
+    final List<Selection> selections = new ArrayList<>();
+    boolean calibrated = false;
+    for (final Map.Entry<String, KdfParam> parameterClass : classes.entrySet()) {
+      final KdfParam param = parameterClass.getValue();
+      final String cacheKey = host + " " + parameterClass.getKey();
+      Optional<Selection> selection = cachedSelection(cache.getProperty(cacheKey), param);
+      if (selection.isEmpty()) {
+        selection = Optional.of(calibrate(param));
+        cache.setProperty(cacheKey, selection.get().engine().name());
+        calibrated = true;
+      }
+      selections.add(selection.get());
+    }
+    selections.forEach(selection -> SELECTED.put(selection.parameterClass(), selection.engine()));
+    if (calibrated && cacheFile != null) {
+      writeCache(cacheFile, cache);
+    }
+    return selections;
+  }
+
+  /** Forget the selections, deriving keys with the default engines again. */
+  public static void reset() {
+    SELECTED.clear();
+  }
+
+  private static Optional<Selection> cachedSelection(
+      final String engineName, final KdfParam param) {
+    if (engineName == null) {
+      return Optional.empty();
+    }
+    try {
+      final KdfEngine engine = KdfEngine.valueOf(engineName);
+      return engine.supports(param)
+          ? Optional.of(new Selection(parameterClass(param), engine, Map.of(), List.of(), true))
+          : Optional.empty();
+    } catch (final IllegalArgumentException e) {
+      // an engine of another version
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Time the engines of one parameter class and pick the fastest that derives the right key. An
+   * engine that is the only one supporting the parameters is selected without deriving any key.
+   */
+  static Selection calibrate(final KdfParam param) {
+    final KdfEngine defaultEngine = defaultEngine(param.getKdfFunction());
+    final List<KdfEngine> candidates =
+        Arrays.stream(KdfEngine.values()).filter(engine -> engine.supports(param)).toList();
+    if (candidates.size() <= 1) {
+      return new Selection(
+          parameterClass(param),
+          candidates.isEmpty() ? defaultEngine : candidates.get(0),
+          Map.of(),
+          List.of(),
+          false);
+    }
+
+    final byte[] password = PasswordUtils.normalizePassword(randomPassword()).toArrayUnsafe();
+    final byte[] expected = defaultEngine.derive(password, param);
+    final List<KdfEngine> engines = new ArrayList<>();
+    final List<KdfEngine> mismatched = new ArrayList<>();
+    for (final KdfEngine engine : candidates) {
+      // the untimed first run, also the cross-check
+      if (engine == defaultEngine || Arrays.equals(engine.derive(password, param), expected)) {
+        engines.add(engine);
+      } else {
+        mismatched.add(engine);
+      }
+    }
+
+    final Map<KdfEngine, Long> fastest = new EnumMap<>(KdfEngine.class);
+    final long startNanos = System.nanoTime();
+    for (int round = 0;
+        round < MAX_ROUNDS && (round == 0 || System.nanoTime() - startNanos < TIMING_BUDGET_NANOS);
+        round++) {
+      for (final KdfEngine engine : engines) {
+        final long runStartNanos = System.nanoTime();
+        engine.derive(password, param);
+        fastest.merge(engine, System.nanoTime() - runStartNanos, Math::min);
+      }
+    }
+
+    final Map<KdfEngine, Duration> timings = new EnumMap<>(KdfEngine.class);
+    fastest.forEach((engine, nanos) -> timings.put(engine, Duration.ofNanos(nanos)));
+    final KdfEngine selected =
+        timings.entrySet().stream()
+            .min(Map.Entry.comparingByValue())
+            .map(Map.Entry::getKey)
+            .orElse(defaultEngine);
+    return new Selection(parameterClass(param), selected, timings, mismatched, false);
+  }
+
+  private static String randomPassword() {
+    final StringBuilder password = new StringBuilder();
+    for (int i = 0; i < 16; i++) {
+      password.append((char) ('a' + SECURE_RANDOM.nextInt(26)));
+    }
+    return password.toString();
+  }
+
+  /** The engines, the JVM and the CPU the choices were made for. */
+  private static String hostKey() {
+    return String.join(
+            "/",
+            System.getProperty("os.arch"),
+            System.getProperty("java.vm.vendor"),
+            System.getProperty("java.vm.version"),
+            Runtime.getRuntime().availableProcessors() + "cpus",
+            MultiBufferPbkdf2.LANES + "lanes")
+        .replace(' ', '_');
+  }
+
+  private static Properties readCache(final Path cacheFile) {
+    final Properties cache = new Properties();
+    if (cacheFile != null && Files.exists(cacheFile)) {
+      try (Reader reader = Files.newBufferedReader(cacheFile, UTF_8)) {
+        cache.load(reader);
+      } catch (final IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+    return cache;
+  }
+
+  private static void writeCache(final Path cacheFile, final Properties cache) {
+    try {
+      final Path directory = cacheFile.toAbsolutePath().getParent();
+      Files.createDirectories(directory);
+      // concurrent runs on the host each replace the whole file, never leave a partial one
+      final Path temporary = Files.createTempFile(directory, cacheFile.getFileName() + ".", ".tmp");
+      try (Writer writer = Files.newBufferedWriter(temporary, UTF_8)) {
+        cache.store(writer, "KDF engine per host and parameter class");
+      }
+      Files.move(
+          temporary,
+          cacheFile,
+          StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
@@ -62,13 +62,91 @@ public class KeyStore {
     kdfParam.validate();
     cipher.validate();
 
-    final Crypto crypto = encryptUsingCipherFunction(blsPrivateKey, password, kdfParam, cipher);
+    final Bytes decryptionKey = kdfParam.generateDecryptionKey(password);
+    final Crypto crypto =
+        encryptUsingCipherFunction(blsPrivateKey, decryptionKey, kdfParam, cipher);
+    return new KeyStoreData(crypto, blsPublicKey, path);
+  }
+
+  /**
+   * Encrypt the given BLS12-381 key with specified password, taking the derived key from the cache.
+   * Keys encrypted with the same password and the same kdfParam (including salt) share a single KDF
+   * run and differ only in the cipher IV.
+   *
+   * @param blsPrivateKey BLS12-381 private key in Bytes to encrypt.
+   * @param blsPublicKey BLS12-381 public key in Bytes.
+   * @param password The password to use for encryption
+   * @param path Path as defined in EIP-2334. Can be empty String.
+   * @param kdfParam crypto function and related parameters, typically shared between keys.
+   * @param cipher cipher function and iv parameter to use. The iv must be unique per key.
+   * @param derivedKeyCache The cache of derived keys
+   * @return The constructed KeyStore.
+   * @see #encrypt(Bytes, Bytes, String, String, KdfParam, Cipher)
+   */
+  public static KeyStoreData encrypt(
+      final Bytes blsPrivateKey,
+      final Bytes blsPublicKey,
+      final String password,
+      final String path,
+      final KdfParam kdfParam,
+      final Cipher cipher,
+      final DerivedKeyCache derivedKeyCache) {
+
+    checkNotNull(blsPrivateKey, "PrivateKey cannot be null");
+    checkNotNull(blsPublicKey, "PublicKey cannot be null");
+    checkNotNull(password, "Password cannot be null");
+    checkNotNull(path, "Path cannot be null");
+    checkNotNull(kdfParam, "KDFParam cannot be null");
+    checkNotNull(cipher, "Cipher cannot be null");
+    checkNotNull(derivedKeyCache, "DerivedKeyCache cannot be null");
+
+    kdfParam.validate();
+    cipher.validate();
+
+    final Bytes decryptionKey = derivedKeyCache.getDecryptionKey(password, kdfParam);
+    final Crypto crypto =
+        encryptUsingCipherFunction(blsPrivateKey, decryptionKey, kdfParam, cipher);
+    return new KeyStoreData(crypto, blsPublicKey, path);
+  }
+
+  /**
+   * Encrypt the given BLS12-381 key with a key already derived from the password and kdfParam, for
+   * example by a batched KDF.
+   *
+   * @param blsPrivateKey BLS12-381 private key in Bytes to encrypt.
+   * @param blsPublicKey BLS12-381 public key in Bytes.
+   * @param decryptionKey The key derived from the password with kdfParam
+   * @param path Path as defined in EIP-2334. Can be empty String.
+   * @param kdfParam crypto function and related parameters the key was derived with.
+   * @param cipher cipher function and iv parameter to use.
+   * @return The constructed KeyStore.
+   * @see #encrypt(Bytes, Bytes, String, String, KdfParam, Cipher)
+   */
+  public static KeyStoreData encryptWithDerivedKey(
+      final Bytes blsPrivateKey,
+      final Bytes blsPublicKey,
+      final Bytes decryptionKey,
+      final String path,
+      final KdfParam kdfParam,
+      final Cipher cipher) {
+
+    checkNotNull(blsPrivateKey, "PrivateKey cannot be null");
+    checkNotNull(blsPublicKey, "PublicKey cannot be null");
+    checkNotNull(decryptionKey, "DecryptionKey cannot be null");
+    checkNotNull(path, "Path cannot be null");
+    checkNotNull(kdfParam, "KDFParam cannot be null");
+    checkNotNull(cipher, "Cipher cannot be null");
+
+    kdfParam.validate();
+    cipher.validate();
+
+    final Crypto crypto =
+        encryptUsingCipherFunction(blsPrivateKey, decryptionKey, kdfParam, cipher);
     return new KeyStoreData(crypto, blsPublicKey, path);
   }
 
   private static Crypto encryptUsingCipherFunction(
-      final Bytes secret, final String password, final KdfParam kdfParam, final Cipher cipher) {
-    final Bytes decryptionKey = kdfParam.generateDecryptionKey(password);
+      final Bytes secret, final Bytes decryptionKey, final KdfParam kdfParam, final Cipher cipher) {
     final Bytes cipherMessage =
         applyCipherFunction(decryptionKey, cipher, true, secret.toArrayUnsafe());
     final Bytes checksumMessage = calculateSHA256Checksum(decryptionKey, cipherMessage);
@@ -95,6 +173,29 @@ public class KeyStore {
     return validateChecksum(decryptionKey, keyStoreData);
   }
 
+  /**
+   * Validates a password already normalized with {@link PasswordUtils#normalizePassword(String)}
+   * without decrypting the key.
+   *
+   * @param normalizedPassword The normalized password to validate
+   * @param keyStoreData The Key Store against which password to validate
+   * @return true if password is valid, false otherwise.
+   * @see #validatePassword(String, KeyStoreData)
+   */
+  public static boolean validateNormalizedPassword(
+      final Bytes normalizedPassword, final KeyStoreData keyStoreData) {
+    checkNotNull(normalizedPassword, "Password cannot be null");
+    checkNotNull(keyStoreData, "KeyStoreData cannot be null");
+
+    final Bytes decryptionKey =
+        keyStoreData
+            .getCrypto()
+            .getKdf()
+            .getParam()
+            .generateDecryptionKeyFromNormalized(normalizedPassword);
+    return validateChecksum(decryptionKey, keyStoreData);
+  }
+
   /**
    * Decrypts BLS private key from the given KeyStore
    *
@@ -108,6 +209,21 @@ public class KeyStore {
 
     final Bytes decryptionKey =
         keyStoreData.getCrypto().getKdf().getParam().generateDecryptionKey(password);
+    return decryptWithDerivedKey(decryptionKey, keyStoreData);
+  }
+
+  /**
+   * Decrypts BLS private key from the given KeyStore with a key already derived from the password,
+   * for example by a batched KDF.
+   *
+   * @param decryptionKey The key derived from the password with the KDF parameters of the KeyStore
+   * @param keyStoreData The given Key Store
+   * @return decrypted BLS private key in Bytes
+   */
+  public static Bytes decryptWithDerivedKey(
+      final Bytes decryptionKey, final KeyStoreData keyStoreData) {
+    checkNotNull(decryptionKey, "DecryptionKey cannot be null");
+    checkNotNull(keyStoreData, "KeyStoreData cannot be null");
 
     if (!validateChecksum(decryptionKey, keyStoreData)) {
       throw new KeyStoreValidationException(
@@ -106,6 +106,12 @@ public class KeyStoreLoader {
     Files.writeString(keystoreFile, toJson(keyStoreData), UTF_8);
   }
 
+  public static String saveToString(final KeyStoreData keyStoreData) {
+    checkNotNull(keyStoreData, "KeyStore data cannot be null");
+
+    return toJson(keyStoreData);
+  }
+
   private static String toJson(final KeyStoreData keyStoreData) {
     try {
       return KeyStoreLoader.OBJECT_MAPPER
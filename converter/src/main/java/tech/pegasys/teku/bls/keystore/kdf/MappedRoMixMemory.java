@@ -0,0 +1,151 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package tech.pegasys.teku.bls.keystore.kdf;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * V array in a temporary file, for lanes too large for the heap. Blocks are written sequentially
+ * through a small direct staging buffer, so the file is filled with large appends instead of page
+ * faults on a writable mapping. Once sealed, the file is mapped read-only for the random reads of
+ * the second ROMix loop, served from the page cache. The mapping belongs to a confined arena of the
+ * lane's thread and is unmapped when the memory is closed, not when it is garbage collected.
+ *
+ * <p>The file is only readable by its owner. Closing overwrites it with zeros and syncs it before
+ * it is deleted, so the blocks do not stay behind in freed file system blocks. Copies the storage
+ * device keeps on its own, such as remapped SSD pages, are out of reach.
+ */
+final class MappedRoMixMemory implements RoMixMemory {
+  private static final int STAGING_BYTES = 1 << 20;
+  private static final ValueLayout.OfInt INT_LE =
+      ValueLayout.JAVA_INT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+
+  private final Path file;
+  private final FileChannel channel;
+  private final Arena arena = Arena.ofConfined();
+  private final int blockInts;
+  private final long blockBytes;
+  private final ByteBuffer staging;
+  private final IntBuffer stagingInts;
+  // mapped once sealed
+  private MemorySegment blocks;
+
+  MappedRoMixMemory(final Path directory, final int blockInts) {
+    this.blockInts = blockInts;
+    this.blockBytes = 4L * blockInts;
+    this.staging =
+        ByteBuffer.allocateDirect(Math.max(1, STAGING_BYTES / (4 * blockInts)) * 4 * blockInts)
+            .order(ByteOrder.LITTLE_ENDIAN);
+    this.stagingInts = staging.asIntBuffer();
+    try {
+      this.file = Files.createTempFile(directory, "scrypt-", ".tmp");
+    } catch (final IOException e) {
+      arena.close();
+      throw new UncheckedIOException("Cannot create scrypt memory file in " + directory, e);
+    }
+    try {
+      this.channel =
+          FileChannel.open(
+              file,
+              StandardOpenOption.READ,
+              StandardOpenOption.WRITE,
+              StandardOpenOption.DELETE_ON_CLOSE);
+    } catch (final IOException e) {
+      arena.close();
+      try {
+        Files.deleteIfExists(file);
+      } catch (final IOException suppressed) {
+        e.addSuppressed(suppressed);
+      }
+      throw new UncheckedIOException("Cannot open scrypt memory file " + file, e);
+    }
+  }
+
+  @Override
+  public void write(final int index, final int[] block) {
+    stagingInts.put(block, 0, blockInts);
+    if (!stagingInts.hasRemaining()) {
+      flush();
+    }
+  }
+
+  @Override
+  public void sealed() {
+    flush();
+    try {
+      // one segment for the whole file, its long offsets need no chunks
+      blocks = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size(), arena);
+    } catch (final IOException e) {
+      throw new UncheckedIOException("Cannot map scrypt memory file " + file, e);
+    }
+  }
+
+  @Override
+  public void xorInto(final int index, final int[] x) {
+    final long offset = index * blockBytes;
+    for (int k = 0; k < blockInts; k++) {
+      x[k] ^= blocks.get(INT_LE, offset + 4L * k);
+    }
+  }
+
+  @Override
+  public void close() {
+    try {
+      wipe();
+    } finally {
+      try {
+        // unmap before the file is deleted
+        arena.close();
+        channel.close();
+      } catch (final IOException e) {
+        throw new UncheckedIOException("Cannot delete scrypt memory file " + file, e);
+      }
+    }
+  }
+
+  private void flush() {
+    staging.position(0).limit(4 * stagingInts.position());
+    writeFully(staging);
+    staging.clear();
+    stagingInts.clear();
+  }
+
+  private void wipe() {
+    try {
+      staging.clear();
+      while (staging.hasRemaining()) {
+        staging.put((byte) 0);
+      }
+      final long size = channel.size();
+      for (long position = 0; position < size; position += staging.capacity()) {
+        staging.position(0).limit((int) Math.min(staging.capacity(), size - position));
+        channel.position(position);
+        writeFully(staging);
+      }
+      channel.force(false);
+    } catch (final IOException e) {
+      throw new UncheckedIOException("Cannot wipe scrypt memory file " + file, e);
+    }
+  }
+
+  private void writeFully(final ByteBuffer buffer) {
+    try {
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    } catch (final IOException e) {
+      throw new UncheckedIOException("Cannot write scrypt memory file " + file, e);
+    }
+  }
+}
@@ -0,0 +1,177 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package tech.pegasys.teku.bls.keystore.kdf;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Arrays;
+import java.util.List;
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.bouncycastle.crypto.generators.PKCS5S2ParametersGenerator;
+import org.bouncycastle.crypto.macs.HMac;
+import org.bouncycastle.crypto.params.KeyParameter;
+import org.bouncycastle.crypto.util.DigestFactory;
+
+/**
+ * PBKDF2-HMAC-SHA256 (RFC 8018) of several passwords at once. One key is one long chain of
+ * dependent HMAC iterations, but keys sharing the iteration count can run their chains in lockstep,
+ * one key per SIMD lane, with the Java Vector API. Requires the {@code jdk.incubator.vector} module
+ * ({@code --add-modules jdk.incubator.vector}); without it, and for batches too small to fill half
+ * of the lanes, keys are derived one at a time with Bouncy Castle. The derived keys are the same
+ * either way.
+ */
+public final class MultiBufferPbkdf2 {
+  private static final int[] SHA256_IV = {
+    0x6a09e667, 0xbb67ae85, 0x3c6ef372, 0xa54ff53a, 0x510e527f, 0x9b05688c, 0x1f83d9ab, 0x5be0cd19
+  };
+  private static final int SHA256_BLOCK_SIZE = 64;
+  private static final int SHA256_DIGEST_SIZE = 32;
+
+  /** Number of keys derived at once, 1 if the Vector API is not available. */
+  public static final int LANES = lanes();
+
+  private MultiBufferPbkdf2() {}
+
+  private static int lanes() {
+    if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+      return 1;
+    }
+    try {
+      return Sha256Lanes.lanes();
+    } catch (final LinkageError e) {
+      return 1;
+    }
+  }
+
+  /**
+   * Derive keys with PBKDF2-HMAC-SHA256.
+   *
+   * @param passwords The passwords
+   * @param salts The salt of each password
+   * @param c The iteration count, shared by all keys
+   * @param dkLen Length of the derived keys in bytes
+   * @return The derived key of each password
+   */
+  public static byte[][] deriveHmacSha256(
+      final List<byte[]> passwords, final List<byte[]> salts, final int c, final int dkLen) {
+    checkArgument(passwords.size() == salts.size(), "Every password needs a salt");
+    checkArgument(c >= 1, "Iteration count must be positive");
+    checkArgument(dkLen > 0, "Derived key length must be positive");
+    final byte[][] keys = new byte[passwords.size()][];
+    final int minimumBatch = Math.max(2, LANES / 2);
+    int start = 0;
+    while (LANES > 1 && passwords.size() - start >= minimumBatch) {
+      final int count = Math.min(LANES, passwords.size() - start);
+      deriveInLanes(passwords, salts, start, count, c, dkLen, keys);
+      start += count;
+    }
+    for (int i = start; i < passwords.size(); i++) {
+      keys[i] = deriveScalar(passwords.get(i), salts.get(i), c, dkLen);
+    }
+    return keys;
+  }
+
+  static byte[] deriveScalar(
+      final byte[] password, final byte[] salt, final int c, final int dkLen) {
+    final PKCS5S2ParametersGenerator gen =
+        new PKCS5S2ParametersGenerator(DigestFactory.createSHA256());
+    gen.init(password, salt, c);
+    return ((KeyParameter) gen.generateDerivedParameters(dkLen * 8)).getKey();
+  }
+
+  private static void deriveInLanes(
+      final List<byte[]> passwords,
+      final List<byte[]> salts,
+      final int start,
+      final int count,
+      final int c,
+      final int dkLen,
+      final byte[][] keys) {
+    final int lanes = LANES;
+    final int[] innerState = new int[8 * lanes];
+    final int[] outerState = new int[8 * lanes];
+    for (int lane = 0; lane < count; lane++) {
+      final byte[] keyBlock = hmacKeyBlock(passwords.get(start + lane));
+      setLane(innerState, lane, lanes, padState(keyBlock, (byte) 0x36));
+      setLane(outerState, lane, lanes, padState(keyBlock, (byte) 0x5C));
+      keys[start + lane] = new byte[dkLen];
+    }
+
+    final int blocks = (dkLen + SHA256_DIGEST_SIZE - 1) / SHA256_DIGEST_SIZE;
+    final int[] u = new int[8 * lanes];
+    final int[] t = new int[8 * lanes];
+    final byte[] firstU = new byte[SHA256_DIGEST_SIZE];
+    for (int block = 1; block <= blocks; block++) {
+      // the first iteration hashes salt and block index, it is cheap and run per key
+      for (int lane = 0; lane < count; lane++) {
+        final HMac hmac = new HMac(new SHA256Digest());
+        hmac.init(new KeyParameter(passwords.get(start + lane)));
+        hmac.update(salts.get(start + lane), 0, salts.get(start + lane).length);
+        hmac.update((byte) (block >>> 24));
+        hmac.update((byte) (block >>> 16));
+        hmac.update((byte) (block >>> 8));
+        hmac.update((byte) block);
+        hmac.doFinal(firstU, 0);
+        for (int word = 0; word < 8; word++) {
+          u[word * lanes + lane] = bigEndianToInt(firstU, 4 * word);
+        }
+      }
+      System.arraycopy(u, 0, t, 0, t.length);
+      Sha256Lanes.iterate(innerState, outerState, u, t, c - 1);
+
+      final int offset = (block - 1) * SHA256_DIGEST_SIZE;
+      final int length = Math.min(SHA256_DIGEST_SIZE, dkLen - offset);
+      final byte[] digest = new byte[SHA256_DIGEST_SIZE];
+      for (int lane = 0; lane < count; lane++) {
+        for (int word = 0; word < 8; word++) {
+          intToBigEndian(t[word * lanes + lane], digest, 4 * word);
+        }
+        System.arraycopy(digest, 0, keys[start + lane], offset, length);
+      }
+    }
+  }
+
+  /** The HMAC key padded to the SHA-256 block size, hashed first if it is longer. */
+  private static byte[] hmacKeyBlock(final byte[] password) {
+    final byte[] keyBlock = new byte[SHA256_BLOCK_SIZE];
+    if (password.length > SHA256_BLOCK_SIZE) {
+      final SHA256Digest digest = new SHA256Digest();
+      digest.update(password, 0, password.length);
+      digest.doFinal(keyBlock, 0);
+    } else {
+      System.arraycopy(password, 0, keyBlock, 0, password.length);
+    }
+    return keyBlock;
+  }
+
+  private static int[] padState(final byte[] keyBlock, final byte pad) {
+    final byte[] padded = new byte[SHA256_BLOCK_SIZE];
+    for (int i = 0; i < SHA256_BLOCK_SIZE; i++) {
+      padded[i] = (byte) (keyBlock[i] ^ pad);
+    }
+    final int[] state = Arrays.copyOf(SHA256_IV, 8);
+    Sha256Lanes.compressScalar(state, padded);
+    return state;
+  }
+
+  private static void setLane(
+      final int[] words, final int lane, final int lanes, final int[] laneWords) {
+    for (int word = 0; word < laneWords.length; word++) {
+      words[word * lanes + lane] = laneWords[word];
+    }
+  }
+
+  private static int bigEndianToInt(final byte[] bytes, final int offset) {
+    return (bytes[offset] & 0xFF) << 24
+        | (bytes[offset + 1] & 0xFF) << 16
+        | (bytes[offset + 2] & 0xFF) << 8
+        | (bytes[offset + 3] & 0xFF);
+  }
+
+  private static void intToBigEndian(final int value, final byte[] bytes, final int offset) {
+    bytes[offset] = (byte) (value >>> 24);
+    bytes[offset + 1] = (byte) (value >>> 16);
+    bytes[offset + 2] = (byte) (value >>> 8);
+    bytes[offset + 3] = (byte) value;
+  }
+}
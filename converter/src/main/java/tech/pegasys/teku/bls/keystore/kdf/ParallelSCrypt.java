@@ -0,0 +1,291 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package tech.pegasys.teku.bls.keystore.kdf;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.bouncycastle.crypto.engines.Salsa20Engine;
+import org.bouncycastle.crypto.generators.PKCS5S2ParametersGenerator;
+import org.bouncycastle.crypto.params.KeyParameter;
+import org.bouncycastle.crypto.util.DigestFactory;
+
+/**
+ * scrypt (RFC 7914) running its p independent ROMix lanes in parallel. Bouncy Castle's {@code
+ * SCrypt.generate} runs the lanes one after another on the calling thread; here the lanes are
+ * shared with common pool workers while the pool has idle workers and enough free heap for another
+ * lane's V array, so the latency of a single key with p &gt; 1 drops with p on an idle host. Under
+ * full load no helper is started and the lanes run sequentially on the calling thread. The derived
+ * key is the same as Bouncy Castle's.
+ *
+ * <p>With {@link #sequentialLanes}, no helper is ever started, so that all the CPU time of a key is
+ * spent on the calling thread, for example when an executor charges its tasks for their CPU time.
+ *
+ * <p>With {@link #fileBackedAbove}, V arrays larger than a threshold live in a temporary file
+ * mapped into memory instead of the heap, so keys with a very large n can be derived on hosts whose
+ * heap cannot hold their V array.
+ */
+public final class ParallelSCrypt {
+  // largest V array chunk, keeps every chunk well below the maximum array length
+  private static final int MAX_CHUNK_INTS = 1 << 26;
+
+  private static volatile FileBacking fileBacking;
+  private static volatile boolean sequentialLanes;
+
+  private record FileBacking(Path directory, long thresholdBytes) {}
+
+  private ParallelSCrypt() {}
+
+  /**
+   * Keep V arrays larger than {@code thresholdBytes} in temporary files in {@code directory} rather
+   * than on the heap. Applies to all keys derived afterwards.
+   *
+   * @param directory Directory of the temporary files, an existing directory on a local disk
+   * @param thresholdBytes Size of the V array of one lane, 128 * r * n bytes, above which it is
+   *     kept in a file
+   */
+  public static void fileBackedAbove(final Path directory, final long thresholdBytes) {
+    checkArgument(Files.isDirectory(directory), "%s is not a directory", directory);
+    checkArgument(thresholdBytes >= 0, "Threshold must not be negative");
+    fileBacking = new FileBacking(directory, thresholdBytes);
+  }
+
+  /** Keep every V array on the heap, the default. */
+  public static void heapOnly() {
+    fileBacking = null;
+  }
+
+  /**
+   * Run the lanes of all keys derived afterwards on the calling thread, one after another, like
+   * Bouncy Castle does.
+   */
+  public static void sequentialLanes() {
+    sequentialLanes = true;
+  }
+
+  /** Share the lanes with idle common pool workers, the default. */
+  public static void parallelLanes() {
+    sequentialLanes = false;
+  }
+
+  /**
+   * Heap taken by the V array of one lane: 128 * r * n bytes, or none when it is kept in a file.
+   *
+   * @param n CPU/memory cost parameter
+   * @param r Block size parameter
+   * @return The heap in bytes
+   */
+  public static long laneHeapBytes(final int n, final int r) {
+    final long laneBytes = 128L * r * n;
+    return isFileBacked(laneBytes, fileBacking) ? 0 : laneBytes;
+  }
+
+  private static boolean isFileBacked(final long laneBytes, final FileBacking backing) {
+    return backing != null && laneBytes > backing.thresholdBytes();
+  }
+
+  /**
+   * Derive a key.
+   *
+   * @param password The password
+   * @param salt The salt
+   * @param n CPU/memory cost parameter, a power of 2 larger than 1
+   * @param r Block size parameter
+   * @param p Parallelization parameter
+   * @param dkLen Length of the derived key in bytes
+   * @return The derived key
+   */
+  public static byte[] generate(
+      final byte[] password,
+      final byte[] salt,
+      final int n,
+      final int r,
+      final int p,
+      final int dkLen) {
+    checkParameters(n, r, p, dkLen);
+    return generate(password, salt, n, r, p, dkLen, helpers(n, r, p));
+  }
+
+  static byte[] generate(
+      final byte[] password,
+      final byte[] salt,
+      final int n,
+      final int r,
+      final int p,
+      final int dkLen,
+      final int helpers) {
+    final int blockInts = 32 * r;
+    final byte[] bytes = singleIterationPbkdf2(password, salt, p * 128 * r);
+    final int[] b = new int[bytes.length / 4];
+    for (int i = 0; i < b.length; i++) {
+      b[i] = littleEndianToInt(bytes, i * 4);
+    }
+    try {
+      if (helpers == 0) {
+        for (int lane = 0; lane < p; lane++) {
+          roMix(b, lane * blockInts, n, r);
+        }
+      } else {
+        roMixInParallel(b, n, r, p, helpers);
+      }
+      for (int i = 0; i < b.length; i++) {
+        intToLittleEndian(b[i], bytes, i * 4);
+      }
+      return singleIterationPbkdf2(password, bytes, dkLen);
+    } finally {
+      Arrays.fill(b, 0);
+      Arrays.fill(bytes, (byte) 0);
+    }
+  }
+
+  private static void checkParameters(final int n, final int r, final int p, final int dkLen) {
+    checkArgument(
+        n > 1 && Integer.bitCount(n) == 1, "Cost parameter n must be > 1 and a power of 2");
+    checkArgument(r >= 1, "Block size r must be >= 1");
+    checkArgument(
+        p >= 1 && p <= Integer.MAX_VALUE / (128 * r * 8),
+        "Parallelization parameter p must be >= 1 and <= %s",
+        Integer.MAX_VALUE / (128 * r * 8));
+    checkArgument(dkLen >= 1, "Derived key length must be >= 1");
+  }
+
+  /**
+   * Number of common pool workers to share the lanes with: one per idle worker, as long as the free
+   * heap holds their V arrays. None with {@link #sequentialLanes}.
+   */
+  static int helpers(final int n, final int r, final int p) {
+    if (p == 1 || sequentialLanes) {
+      return 0;
+    }
+    final ForkJoinPool pool = ForkJoinPool.commonPool();
+    final int idleWorkers = pool.getParallelism() - pool.getActiveThreadCount();
+    final Runtime runtime = Runtime.getRuntime();
+    final long freeHeap = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+    final long laneBytes = Math.max(laneHeapBytes(n, r), 128L * r);
+    final long lanesInFreeHeap = freeHeap / laneBytes - 1;
+    return (int) Math.max(0, Math.min(p - 1, Math.min(idleWorkers, lanesInFreeHeap)));
+  }
+
+  /**
+   * Lanes are claimed from a shared counter by the calling thread and the helpers, so lanes a
+   * helper has not started yet are run by the calling thread rather than waited for.
+   */
+  private static void roMixInParallel(
+      final int[] b, final int n, final int r, final int p, final int helpers) {
+    final AtomicInteger nextLane = new AtomicInteger();
+    final CountDownLatch lanesDone = new CountDownLatch(p);
+    final AtomicReference<Throwable> failure = new AtomicReference<>();
+    final Runnable worker =
+        () -> {
+          int lane;
+          while ((lane = nextLane.getAndIncrement()) < p) {
+            try {
+              roMix(b, lane * 32 * r, n, r);
+            } catch (final Throwable t) {
+              failure.compareAndSet(null, t);
+            } finally {
+              lanesDone.countDown();
+            }
+          }
+        };
+    for (int i = 0; i < helpers; i++) {
+      ForkJoinPool.commonPool().execute(worker);
+    }
+    worker.run();
+    Uninterruptibles.awaitUninterruptibly(lanesDone);
+
+    final Throwable t = failure.get();
+    if (t instanceof RuntimeException runtimeException) {
+      throw runtimeException;
+    }
+    if (t instanceof Error error) {
+      throw error;
+    }
+  }
+
+  /** ROMix of one lane, in place. */
+  private static void roMix(final int[] b, final int offset, final int n, final int r) {
+    final int blockInts = 32 * r;
+    int[] x = Arrays.copyOfRange(b, offset, offset + blockInts);
+    int[] y = new int[blockInts];
+    final int[] salsaIn = new int[16];
+    final int[] salsaOut = new int[16];
+    try (RoMixMemory v = allocate(n, blockInts)) {
+      for (int i = 0; i < n; i++) {
+        v.write(i, x);
+        blockMix(x, y, salsaIn, salsaOut, r);
+        final int[] t = x;
+        x = y;
+        y = t;
+      }
+      v.sealed();
+      for (int i = 0; i < n; i++) {
+        v.xorInto(x[blockInts - 16] & (n - 1), x);
+        blockMix(x, y, salsaIn, salsaOut, r);
+        final int[] t = x;
+        x = y;
+        y = t;
+      }
+      System.arraycopy(x, 0, b, offset, blockInts);
+    } finally {
+      Arrays.fill(x, 0);
+      Arrays.fill(y, 0);
+      Arrays.fill(salsaIn, 0);
+      Arrays.fill(salsaOut, 0);
+    }
+  }
+
+  private static RoMixMemory allocate(final int n, final int blockInts) {
+    final FileBacking backing = fileBacking;
+    if (isFileBacked(4L * blockInts * n, backing)) {
+      return new MappedRoMixMemory(backing.directory(), blockInts);
+    }
+    return new RoMixMemory.OnHeap(n, blockInts, MAX_CHUNK_INTS);
+  }
+
+  /**
+   * BlockMix with Salsa20/8: output block i is written to position i / 2 for even i and r + i / 2
+   * for odd i.
+   */
+  private static void blockMix(
+      final int[] in, final int[] out, final int[] salsaIn, final int[] salsaOut, final int r) {
+    System.arraycopy(in, in.length - 16, salsaOut, 0, 16);
+    for (int i = 0; i < 2 * r; i++) {
+      for (int k = 0; k < 16; k++) {
+        salsaIn[k] = salsaOut[k] ^ in[i * 16 + k];
+      }
+      Salsa20Engine.salsaCore(8, salsaIn, salsaOut);
+      final int outBlock = (i & 1) == 0 ? i >>> 1 : r + (i >>> 1);
+      System.arraycopy(salsaOut, 0, out, outBlock * 16, 16);
+    }
+  }
+
+  private static byte[] singleIterationPbkdf2(
+      final byte[] password, final byte[] salt, final int length) {
+    final PKCS5S2ParametersGenerator generator =
+        new PKCS5S2ParametersGenerator(DigestFactory.createSHA256());
+    generator.init(password, salt, 1);
+    return ((KeyParameter) generator.generateDerivedMacParameters(length * 8)).getKey();
+  }
+
+  private static int littleEndianToInt(final byte[] bytes, final int offset) {
+    return (bytes[offset] & 0xFF)
+        | (bytes[offset + 1] & 0xFF) << 8
+        | (bytes[offset + 2] & 0xFF) << 16
+        | bytes[offset + 3] << 24;
+  }
+
+  private static void intToLittleEndian(final int value, final byte[] bytes, final int offset) {
+    bytes[offset] = (byte) value;
+    bytes[offset + 1] = (byte) (value >>> 8);
+    bytes[offset + 2] = (byte) (value >>> 16);
+    bytes[offset + 3] = (byte) (value >>> 24);
+  }
+}
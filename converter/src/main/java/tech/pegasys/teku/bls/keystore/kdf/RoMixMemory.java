@@ -0,0 +1,78 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package tech.pegasys.teku.bls.keystore.kdf;
+
+import java.util.Arrays;
+
+/**
+ * The V array of one ROMix lane: n blocks, written once in order and then read in random order.
+ * Closing it wipes the blocks.
+ */
+interface RoMixMemory extends AutoCloseable {
+
+  /**
+   * Store block {@code index}. Blocks are written in order, starting at 0.
+   *
+   * @param index The block index
+   * @param block The block
+   */
+  void write(int index, int[] block);
+
+  /** Called once after the last block is written and before the first read. */
+  default void sealed() {}
+
+  /**
+   * XOR block {@code index} into {@code x}.
+   *
+   * @param index The block index
+   * @param x The block to XOR into
+   */
+  void xorInto(int index, int[] x);
+
+  @Override
+  void close();
+
+  /** V array on the heap, split into chunks for large n * r. */
+  final class OnHeap implements RoMixMemory {
+    private final int blockInts;
+    private final int chunkShift;
+    private final int chunkMask;
+    private final int[][] chunks;
+
+    OnHeap(final int n, final int blockInts, final int maxChunkInts) {
+      this.blockInts = blockInts;
+      final int blocksPerChunk =
+          Math.min(n, Integer.highestOneBit(Math.max(1, maxChunkInts / blockInts)));
+      this.chunkShift = Integer.numberOfTrailingZeros(blocksPerChunk);
+      this.chunkMask = blocksPerChunk - 1;
+      this.chunks = new int[n / blocksPerChunk][];
+    }
+
+    @Override
+    public void write(final int index, final int[] block) {
+      final int chunk = index >>> chunkShift;
+      if (chunks[chunk] == null) {
+        chunks[chunk] = new int[(chunkMask + 1) * blockInts];
+      }
+      System.arraycopy(block, 0, chunks[chunk], (index & chunkMask) * blockInts, blockInts);
+    }
+
+    @Override
+    public void xorInto(final int index, final int[] x) {
+      final int[] chunk = chunks[index >>> chunkShift];
+      final int chunkOffset = (index & chunkMask) * blockInts;
+      for (int k = 0; k < blockInts; k++) {
+        x[k] ^= chunk[chunkOffset + k];
+      }
+    }
+
+    @Override
+    public void close() {
+      for (final int[] chunk : chunks) {
+        if (chunk != null) {
+          Arrays.fill(chunk, 0);
+        }
+      }
+    }
+  }
+}
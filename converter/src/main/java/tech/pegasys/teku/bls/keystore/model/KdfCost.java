@@ -0,0 +1,13 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package tech.pegasys.teku.bls.keystore.model;
+
+/**
+ * Estimated cost of deriving a key with a KDF. Work units are specific to the KDF function, so
+ * costs of different functions are only comparable after calibrating each function on the host.
+ *
+ * @param kdfFunction The KDF function
+ * @param work Work units: Salsa20/8 core invocations for scrypt, SHA-256 compressions for PBKDF2
+ * @param memoryBytes Memory needed while deriving the key
+ */
+public record KdfCost(KdfFunction kdfFunction, long work, long memoryBytes) {}
@@ -30,8 +30,27 @@ public abstract class KdfParam {
     return generateDecryptionKey(PasswordUtils.normalizePassword(password));
   }
 
+  /**
+   * Derive the key of a password already normalized with {@link
+   * PasswordUtils#normalizePassword(String)}, for callers trying one password against many
+   * keystores.
+   *
+   * @param normalizedPassword The normalized password
+   * @return The derived key
+   */
+  public Bytes generateDecryptionKeyFromNormalized(final Bytes normalizedPassword) {
+    return generateDecryptionKey(normalizedPassword);
+  }
+
   protected abstract Bytes generateDecryptionKey(final Bytes password);
 
+  /**
+   * Estimate the cost of deriving a key with these parameters, without deriving it.
+   *
+   * @return The estimated cost
+   */
+  public abstract KdfCost estimateCost();
+
   public void validate() {
     checkNotNull(getSalt(), "salt cannot be null");
     // because the EIP-2335 spec requires dklen >= 32
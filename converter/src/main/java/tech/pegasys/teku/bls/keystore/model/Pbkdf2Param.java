@@ -2,17 +2,21 @@
 // SPDX-License-Identifier: (Apache-2.0 OR MIT)
 package tech.pegasys.teku.bls.keystore.model;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.base.MoreObjects;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
 import org.apache.tuweni.bytes.Bytes;
-import org.bouncycastle.crypto.generators.PKCS5S2ParametersGenerator;
-import org.bouncycastle.crypto.params.KeyParameter;
-import org.bouncycastle.crypto.util.DigestFactory;
+import tech.pegasys.teku.bls.keystore.KdfEngines;
 import tech.pegasys.teku.bls.keystore.KeyStoreValidationException;
+import tech.pegasys.teku.bls.keystore.PasswordUtils;
+import tech.pegasys.teku.bls.keystore.kdf.MultiBufferPbkdf2;
 
 public class Pbkdf2Param extends KdfParam {
 
@@ -62,15 +66,71 @@ public class Pbkdf2Param extends KdfParam {
     return KdfFunction.PBKDF2;
   }
 
+  @Override
+  public KdfCost estimateCost() {
+    // two SHA-256 compressions (inner and outer HMAC) per iteration for each 32 byte output block
+    final long blocks = (getDkLen() + 31) / 32;
+    return new KdfCost(KdfFunction.PBKDF2, 2L * c * blocks, 0);
+  }
+
   @Override
   protected Bytes generateDecryptionKey(final Bytes password) {
     checkNotNull(password, "Password cannot be null");
-    final PKCS5S2ParametersGenerator gen =
-        new PKCS5S2ParametersGenerator(DigestFactory.createSHA256());
-    gen.init(password.toArrayUnsafe(), getSalt().toArrayUnsafe(), c);
-    final int keySizeInBits = getDkLen() * 8;
-    final byte[] key = ((KeyParameter) gen.generateDerivedParameters(keySizeInBits)).getKey();
-    return Bytes.wrap(key);
+    return Bytes.wrap(KdfEngines.derive(password.toArrayUnsafe(), this));
+  }
+
+  /**
+   * Derive the keys of several keystores whose PBKDF2 parameters differ only in the salt, in the
+   * SIMD lanes of {@link MultiBufferPbkdf2} where available.
+   *
+   * @param params The KDF parameters of each keystore, with the same dklen, c and prf
+   * @param passwords The password of each keystore
+   * @return The derived (decryption) key of each keystore
+   */
+  public static List<Bytes> generateDecryptionKeys(
+      final List<Pbkdf2Param> params, final List<String> passwords) {
+    checkArgument(params.size() == passwords.size(), "Every KDF param needs a password");
+    if (params.isEmpty()) {
+      return List.of();
+    }
+    final Pbkdf2Param first = params.get(0);
+    checkArgument(
+        params.stream()
+            .allMatch(
+                param ->
+                    param.getDkLen() == first.getDkLen()
+                        && param.c.equals(first.c)
+                        && param.prf == first.prf),
+        "KDF params must only differ in the salt");
+    final byte[][] keys =
+        MultiBufferPbkdf2.deriveHmacSha256(
+            passwords.stream()
+                .map(password -> PasswordUtils.normalizePassword(password).toArrayUnsafe())
+                .toList(),
+            params.stream().map(param -> param.getSalt().toArrayUnsafe()).toList(),
+            first.c,
+            first.getDkLen());
+    return Arrays.stream(keys).map(Bytes::wrap).toList();
+  }
+
+  @Override
+  public boolean equals(final Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    final Pbkdf2Param that = (Pbkdf2Param) o;
+    return Objects.equals(getDkLen(), that.getDkLen())
+        && Objects.equals(c, that.c)
+        && prf == that.prf
+        && Objects.equals(getSalt(), that.getSalt());
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(getDkLen(), c, prf, getSalt());
   }
 
   @Override
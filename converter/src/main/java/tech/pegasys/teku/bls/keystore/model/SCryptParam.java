@@ -8,9 +8,11 @@ import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.base.MoreObjects;
+import java.util.Objects;
 import org.apache.tuweni.bytes.Bytes;
-import org.bouncycastle.crypto.generators.SCrypt;
+import tech.pegasys.teku.bls.keystore.KdfEngines;
 import tech.pegasys.teku.bls.keystore.KeyStoreValidationException;
+import tech.pegasys.teku.bls.keystore.kdf.ParallelSCrypt;
 
 public class SCryptParam extends KdfParam {
   private final int n;
@@ -94,17 +96,40 @@ public class SCryptParam extends KdfParam {
     return KdfFunction.SCRYPT;
   }
 
+  @Override
+  public KdfCost estimateCost() {
+    // each of the p lanes runs ROMix: 2n BlockMix rounds of 2r Salsa20/8 cores over a 128 * r * n
+    // byte V array. Lanes only run in parallel on idle cores, so count the memory of one lane,
+    // none if the V array is kept in a file.
+    return new KdfCost(
+        KdfFunction.SCRYPT, 4L * n * r * p, ParallelSCrypt.laneHeapBytes(n, r) + 128L * r * p);
+  }
+
   @Override
   protected Bytes generateDecryptionKey(final Bytes password) {
     checkNotNull(password, "Password cannot be null");
-    return Bytes.wrap(
-        SCrypt.generate(
-            password.toArrayUnsafe(),
-            getSalt().toArrayUnsafe(),
-            getN(),
-            getR(),
-            getP(),
-            getDkLen()));
+    return Bytes.wrap(KdfEngines.derive(password.toArrayUnsafe(), this));
+  }
+
+  @Override
+  public boolean equals(final Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    final SCryptParam that = (SCryptParam) o;
+    return Objects.equals(getDkLen(), that.getDkLen())
+        && n == that.n
+        && p == that.p
+        && r == that.r
+        && Objects.equals(getSalt(), that.getSalt());
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(getDkLen(), n, p, r, getSalt());
   }
 
   @Override
@@ -2,7 +2,7 @@
 // SPDX-License-Identifier: (Apache-2.0 OR MIT)
 package net.usmans;
 
-import static net.usmans.V4keystore_converterMain.SECURE_RANDOM;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import java.io.IOException;
@@ -10,11 +10,23 @@ import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.IntStream;
-import net.usmans.V4keystore_converterMain.BulkloadingMode;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import net.usmans.archive.ArchiveKeystores;
+import net.usmans.archive.ArchiveReader;
+import net.usmans.archive.TarWriter;
+import net.usmans.bundle.KeystoreBundle;
+import net.usmans.engine.BulkloadingMode;
 import org.apache.tuweni.bytes.Bytes;
 import org.apache.tuweni.bytes.Bytes32;
 import org.junit.jupiter.api.BeforeAll;
@@ -22,6 +34,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 import picocli.CommandLine;
 import tech.pegasys.teku.bls.BLSTestUtil;
+import tech.pegasys.teku.bls.keystore.KdfEngines;
 import tech.pegasys.teku.bls.keystore.KeyStore;
 import tech.pegasys.teku.bls.keystore.KeyStoreLoader;
 import tech.pegasys.teku.bls.keystore.model.Cipher;
@@ -34,6 +47,7 @@ import tech.pegasys.teku.bls.keystore.model.Pbkdf2PseudoRandomFunction;
 import tech.pegasys.teku.bls.keystore.model.SCryptParam;
 
 class V4KeystoreConverterMainTest {
+  private static final SecureRandom SECURE_RANDOM = new SecureRandom();
 
   @TempDir static Path srcDir;
   @TempDir static Path passwordDir;
@@ -157,6 +171,461 @@ class V4KeystoreConverterMainTest {
             });
   }
 
+  @Test
+  void preflightFailureConvertsNothing(@TempDir Path brokenSrcDir, @TempDir Path destDir)
+      throws Exception {
+    try (var keystoreFiles = Files.list(srcDir.resolve("WEB3SIGNER"))) {
+      for (final Path keystoreFile : keystoreFiles.toList()) {
+        Files.copy(keystoreFile, brokenSrcDir.resolve(keystoreFile.getFileName()));
+      }
+    }
+    Files.writeString(brokenSrcDir.resolve("0xbroken.json"), "{\"version\": 4");
+
+    final String[] args = {
+      "--src",
+      brokenSrcDir.toString(),
+      "--password-src",
+      passwordDir.resolve("WEB3SIGNER").toString(),
+      "--dest",
+      destDir.toString()
+    };
+    assertThat(new CommandLine(new V4keystore_converterMain()).execute(args)).isEqualTo(1);
+    try (var convertedFiles = Files.list(destDir)) {
+      assertThat(convertedFiles).isEmpty();
+    }
+
+    // tolerated by the error budget, the valid keystores are converted
+    final String[] tolerantArgs = Arrays.copyOf(args, args.length + 2);
+    tolerantArgs[args.length] = "--max-errors";
+    tolerantArgs[args.length + 1] = "1";
+    assertThat(new CommandLine(new V4keystore_converterMain()).execute(tolerantArgs)).isEqualTo(1);
+    try (var convertedFiles = Files.list(destDir)) {
+      assertThat(convertedFiles).hasSize(2);
+    }
+  }
+
+  @Test
+  void workersSharingAClaimDirectoryConvertEveryKeystoreOnce(@TempDir Path workDir)
+      throws Exception {
+    final Path destDir = workDir.resolve("dest");
+    final Path claimDir = workDir.resolve("claims");
+    final String[] args = {
+      "--src",
+      srcDir.resolve("WEB3SIGNER").toString(),
+      "--password-src",
+      passwordDir.resolve("WEB3SIGNER").toString(),
+      "--dest",
+      destDir.toString(),
+      "--claim-dir",
+      claimDir.toString(),
+      "--claim-batch-size",
+      "1"
+    };
+    final ExecutorService executor = Executors.newFixedThreadPool(3);
+    try {
+      final List<Future<Integer>> exitCodes = new ArrayList<>();
+      for (int i = 0; i < 3; i++) {
+        exitCodes.add(
+            executor.submit(() -> new CommandLine(new V4keystore_converterMain()).execute(args)));
+      }
+      for (final Future<Integer> exitCode : exitCodes) {
+        assertThat(exitCode.get()).isZero();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    try (var converted = Files.list(destDir)) {
+      assertThat(converted).hasSize(2);
+    }
+    try (var claims = Files.list(claimDir)) {
+      assertThat(claims.map(file -> file.getFileName().toString()))
+          .containsExactlyInAnyOrder(
+              "claim-plan.properties", "batch-00000000.done", "batch-00000001.done");
+    }
+  }
+
+  @Test
+  void selectedKdfEnginesConvertAndAreCached(@TempDir Path workDir) throws Exception {
+    final Path destDir = workDir.resolve("dest");
+    final Path cacheFile = workDir.resolve("kdf-engines.properties");
+    final String[] args = {
+      "--src",
+      srcDir.resolve("WEB3SIGNER").toString(),
+      "--password-src",
+      passwordDir.resolve("WEB3SIGNER").toString(),
+      "--dest",
+      destDir.toString(),
+      "--select-kdf-engines",
+      "--kdf-engine-cache",
+      cacheFile.toString()
+    };
+    try {
+      assertThat(new CommandLine(new V4keystore_converterMain()).execute(args)).isZero();
+    } finally {
+      KdfEngines.reset();
+    }
+
+    assertThat(cacheFile).exists();
+    try (var converted = Files.list(destDir)) {
+      assertThat(converted.toList())
+          .hasSize(2)
+          .allSatisfy(
+              keystoreFile ->
+                  assertThat(
+                          KeyStore.validatePassword(
+                              "password", KeyStoreLoader.loadFromFile(keystoreFile.toUri())))
+                      .isTrue());
+    }
+  }
+
+  @Test
+  void inPlaceConversionSwapsTheConvertedTreeIn(@TempDir Path workDir) throws Exception {
+    final Path keysDir = Files.createDirectories(workDir.resolve("keys"));
+    try (var keystoreFiles = Files.list(srcDir.resolve("WEB3SIGNER"))) {
+      for (final Path keystoreFile : keystoreFiles.toList()) {
+        Files.copy(keystoreFile, keysDir.resolve(keystoreFile.getFileName()));
+      }
+    }
+    Files.writeString(keysDir.resolve("signer.yaml"), "type: file-keystore");
+    final String[] args = {
+      "--src", keysDir.toString(), "--password-src", passwordDir.resolve("WEB3SIGNER").toString()
+    };
+    final String[] inPlaceArgs = Arrays.copyOf(args, args.length + 1);
+    inPlaceArgs[args.length] = "--in-place";
+
+    assertThat(new CommandLine(new V4keystore_converterMain()).execute(inPlaceArgs)).isZero();
+
+    try (var siblings = Files.list(workDir)) {
+      assertThat(siblings.map(path -> path.getFileName().toString()))
+          .hasSize(2)
+          .contains("keys")
+          .anyMatch(name -> name.startsWith("keys.backup-"));
+    }
+    assertThat(keysDir.resolve("signer.yaml")).hasContent("type: file-keystore");
+    assertThat(keysDir.resolve("deposit_data-123.json")).exists();
+    try (var keystoreFiles = Files.list(keysDir)) {
+      assertThat(keystoreFiles.filter(file -> file.getFileName().toString().startsWith("0x")))
+          .hasSize(2)
+          .allSatisfy(
+              keystoreFile ->
+                  assertThat(
+                          KeyStoreLoader.loadFromFile(keystoreFile.toUri())
+                              .getCrypto()
+                              .getKdf()
+                              .getKdfFunction())
+                      .isEqualTo(KdfFunction.PBKDF2));
+    }
+
+    // a keystore that cannot be converted leaves the source as it is
+    Files.writeString(keysDir.resolve("0xbroken.json"), "{\"version\": 4");
+    final List<String> before;
+    try (var files = Files.walk(workDir)) {
+      before = files.map(Path::toString).sorted().toList();
+    }
+    assertThat(new CommandLine(new V4keystore_converterMain()).execute(inPlaceArgs)).isEqualTo(1);
+    try (var files = Files.walk(workDir)) {
+      assertThat(files.map(Path::toString).sorted().toList()).isEqualTo(before);
+    }
+  }
+
+  @Test
+  void inPlaceAbortKeepsTheStagingTreeWhileTheSourceIsNotInPlace(@TempDir Path workDir)
+      throws IOException {
+    final Path keysDir = Files.createDirectories(workDir.resolve("keys"));
+    final InPlaceConversion inPlaceConversion = InPlaceConversion.of(keysDir);
+    Files.writeString(
+        Files.createDirectories(inPlaceConversion.staging()).resolve("0x1.json"), "converted");
+
+    // both renames of a swap failed: the source is in the backup directory
+    Files.move(keysDir, inPlaceConversion.backup());
+    inPlaceConversion.abort();
+    assertThat(inPlaceConversion.staging().resolve("0x1.json")).hasContent("converted");
+
+    Files.move(inPlaceConversion.backup(), keysDir);
+    inPlaceConversion.abort();
+    assertThat(inPlaceConversion.staging()).doesNotExist();
+  }
+
+  @Test
+  void inPlaceConversionRejectsDestination(@TempDir Path destDir) {
+    CommandLine cmd = new CommandLine(new V4keystore_converterMain());
+    StringWriter err = new StringWriter();
+    cmd.setErr(new PrintWriter(err));
+
+    int exitCode =
+        cmd.execute(
+            "--src",
+            srcDir.resolve("WEB3SIGNER").toString(),
+            "--password-src",
+            passwordDir.resolve("WEB3SIGNER").toString(),
+            "--dest",
+            destDir.toString(),
+            "--in-place");
+
+    assertThat(exitCode).isEqualTo(2);
+    assertThat(err.toString()).contains("cannot be used with --in-place");
+  }
+
+  @Test
+  void multipleProcessesTest(@TempDir Path destDir) throws Exception {
+    V4keystore_converterMain app = new V4keystore_converterMain();
+    CommandLine cmd = new CommandLine(app);
+
+    StringWriter sw = new StringWriter();
+    cmd.setOut(new PrintWriter(sw));
+
+    int exitCode =
+        cmd.execute(
+            "--src",
+            srcDir.resolve("WEB3SIGNER").toString(),
+            "--password-src",
+            passwordDir.resolve("WEB3SIGNER").toString(),
+            "--dest",
+            destDir.toString(),
+            "--processes",
+            "2",
+            "--process-heap",
+            "128m");
+
+    assertThat(exitCode).isZero();
+
+    Files.list(srcDir.resolve("WEB3SIGNER"))
+        .filter(file -> !file.getFileName().toString().startsWith("deposit_data"))
+        .forEach(
+            keystoreFile -> {
+              // load converted keystore
+              final KeyStoreData convertedKeyStoreData =
+                  KeyStoreLoader.loadFromFile(
+                      destDir.resolve(keystoreFile.getFileName().toString()).toUri());
+
+              KdfParam param = convertedKeyStoreData.getCrypto().getKdf().getParam();
+              assertThat(param).isInstanceOf(Pbkdf2Param.class);
+              assertThat(((Pbkdf2Param) param).getC()).isEqualTo(1);
+            });
+  }
+
+  @Test
+  void archiveSourceIsConvertedIntoTarArchive(@TempDir Path archiveDir) throws Exception {
+    // nimbus layout, keystores in a tar.gz and passwords in a zip
+    final Path keystoreArchive = archiveDir.resolve("keystores.tar.gz");
+    try (TarWriter writer = ArchiveKeystores.openWriter(keystoreArchive);
+        var keystoreDirs = Files.list(srcDir.resolve("NIMBUS"))) {
+      for (final Path keystoreDir : keystoreDirs.toList()) {
+        writer.write(
+            keystoreDir.getFileName() + "/keystore.json",
+            Files.readAllBytes(keystoreDir.resolve("keystore.json")));
+      }
+    }
+    final Path passwordArchive = archiveDir.resolve("passwords.zip");
+    try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(passwordArchive));
+        var passwordFiles = Files.list(passwordDir.resolve("NIMBUS"))) {
+      for (final Path passwordFile : passwordFiles.toList()) {
+        zip.putNextEntry(new ZipEntry("secrets/" + passwordFile.getFileName()));
+        zip.write(Files.readAllBytes(passwordFile));
+      }
+    }
+
+    final Path destArchive = archiveDir.resolve("converted.tar");
+    CommandLine cmd = new CommandLine(new V4keystore_converterMain());
+    cmd.setOut(new PrintWriter(new StringWriter()));
+    int exitCode =
+        cmd.execute(
+            "--src",
+            keystoreArchive.toString(),
+            "--password-src",
+            passwordArchive.toString(),
+            "--dest",
+            destArchive.toString(),
+            "--mode",
+            "NIMBUS",
+            "-c",
+            "2");
+
+    assertThat(exitCode).isZero();
+    final List<String> converted = new ArrayList<>();
+    try (ArchiveReader reader = ArchiveKeystores.openReader(destArchive)) {
+      ArchiveReader.Entry entry;
+      while ((entry = reader.next(name -> true)) != null) {
+        converted.add(entry.name());
+        final Path sourceFile = srcDir.resolve("NIMBUS").resolve(entry.name());
+        final KeyStoreData convertedKeyStoreData =
+            KeyStoreLoader.loadFromString(new String(entry.content(), UTF_8));
+        assertThat(((Pbkdf2Param) convertedKeyStoreData.getCrypto().getKdf().getParam()).getC())
+            .isEqualTo(2);
+        assertThat(KeyStore.decrypt("password", convertedKeyStoreData))
+            .isEqualTo(
+                KeyStore.decrypt("password", KeyStoreLoader.loadFromFile(sourceFile.toUri())));
+      }
+    }
+    assertThat(converted).hasSize(2).allMatch(name -> name.endsWith("/keystore.json"));
+  }
+
+  @Test
+  void profilesConvertToEveryLayoutInOnePass(@TempDir Path web3signerDir, @TempDir Path nimbusDir)
+      throws Exception {
+    CommandLine cmd = new CommandLine(new V4keystore_converterMain());
+    cmd.setOut(new PrintWriter(new StringWriter()));
+    int exitCode =
+        cmd.execute(
+            "--src",
+            srcDir.resolve("WEB3SIGNER").toString(),
+            "--password-src",
+            passwordDir.resolve("WEB3SIGNER").toString(),
+            "--profile",
+            "web3signer:pbkdf2:c=3:dest=" + web3signerDir,
+            "--profile",
+            "NIMBUS:SCRYPT:n=16:r=4:dest=" + nimbusDir);
+
+    assertThat(exitCode).isZero();
+    Files.list(srcDir.resolve("WEB3SIGNER"))
+        .filter(file -> !file.getFileName().toString().startsWith("deposit_data"))
+        .forEach(
+            keystoreFile -> {
+              final KeyStoreData source = KeyStoreLoader.loadFromFile(keystoreFile.toUri());
+              final KeyStoreData web3signer =
+                  KeyStoreLoader.loadFromFile(
+                      web3signerDir.resolve(keystoreFile.getFileName().toString()).toUri());
+              final KeyStoreData nimbus =
+                  KeyStoreLoader.loadFromFile(
+                      nimbusDir
+                          .resolve(source.getPubkey().toHexString())
+                          .resolve("keystore.json")
+                          .toUri());
+
+              assertThat(((Pbkdf2Param) web3signer.getCrypto().getKdf().getParam()).getC())
+                  .isEqualTo(3);
+              final SCryptParam scryptParam = (SCryptParam) nimbus.getCrypto().getKdf().getParam();
+              assertThat(scryptParam.getN()).isEqualTo(16);
+              assertThat(scryptParam.getR()).isEqualTo(4);
+              assertThat(KeyStore.decrypt("password", web3signer))
+                  .isEqualTo(KeyStore.decrypt("password", source));
+              assertThat(KeyStore.decrypt("password", nimbus))
+                  .isEqualTo(KeyStore.decrypt("password", source));
+            });
+  }
+
+  @Test
+  void governedConversionStaysWithinBudget(@TempDir Path destDir) throws IOException {
+    CommandLine cmd = new CommandLine(new V4keystore_converterMain());
+    cmd.setOut(new PrintWriter(new StringWriter()));
+
+    int exitCode =
+        cmd.execute(
+            "--src",
+            srcDir.resolve("WEB3SIGNER").toString(),
+            "--password-src",
+            passwordDir.resolve("WEB3SIGNER").toString(),
+            "--dest",
+            destDir.toString(),
+            "--max-cpu-percent=50",
+            "--max-memory=64m");
+
+    assertThat(exitCode).isZero();
+    try (var converted = Files.list(destDir)) {
+      assertThat(converted.filter(file -> file.toString().endsWith(".json")))
+          .hasSize(
+              (int)
+                  Files.list(srcDir.resolve("WEB3SIGNER"))
+                      .filter(file -> !file.getFileName().toString().startsWith("deposit_data"))
+                      .count());
+    }
+  }
+
+  @Test
+  void governorCannotBeSharedByProcesses(@TempDir Path destDir) {
+    CommandLine cmd = new CommandLine(new V4keystore_converterMain());
+    StringWriter err = new StringWriter();
+    cmd.setErr(new PrintWriter(err));
+
+    int exitCode =
+        cmd.execute(
+            "--src",
+            srcDir.resolve("WEB3SIGNER").toString(),
+            "--password-src",
+            passwordDir.resolve("WEB3SIGNER").toString(),
+            "--dest",
+            destDir.toString(),
+            "--max-cpu-percent=50",
+            "--processes=2");
+
+    assertThat(exitCode).isEqualTo(2);
+    assertThat(err.toString()).contains("cannot be used with --processes");
+  }
+
+  @Test
+  void invalidProfileIsRejected(@TempDir Path destDir) {
+    CommandLine cmd = new CommandLine(new V4keystore_converterMain());
+    StringWriter err = new StringWriter();
+    cmd.setErr(new PrintWriter(err));
+
+    int exitCode =
+        cmd.execute(
+            "--src",
+            srcDir.resolve("WEB3SIGNER").toString(),
+            "--password-src",
+            passwordDir.resolve("WEB3SIGNER").toString(),
+            "--profile",
+            "nimbus:scrypt:n=100:dest=" + destDir);
+
+    assertThat(exitCode).isEqualTo(2);
+    assertThat(err.toString()).contains("n must be a power of 2");
+  }
+
+  @Test
+  void bundleOutputRoundTripsToJson(@TempDir Path bundleDir, @TempDir Path destDir)
+      throws IOException {
+    CommandLine cmd = new CommandLine(new V4keystore_converterMain());
+    cmd.setOut(new PrintWriter(new StringWriter()));
+
+    int exitCode =
+        cmd.execute(
+            "--src",
+            srcDir.resolve("WEB3SIGNER").toString(),
+            "--password-src",
+            passwordDir.resolve("WEB3SIGNER").toString(),
+            "--dest",
+            bundleDir.toString(),
+            "--output-format",
+            "BUNDLE");
+
+    assertThat(exitCode).isZero();
+    assertThat(bundleDir.resolve(KeystoreBundle.FILE_NAME)).isRegularFile();
+
+    // convert the bundle back to json keystores
+    cmd = new CommandLine(new V4keystore_converterMain());
+    cmd.setOut(new PrintWriter(new StringWriter()));
+    exitCode =
+        cmd.execute(
+            "--src",
+            bundleDir.resolve(KeystoreBundle.FILE_NAME).toString(),
+            "--password-src",
+            passwordDir.resolve("WEB3SIGNER").toString(),
+            "--dest",
+            destDir.toString(),
+            "-c",
+            "2");
+
+    assertThat(exitCode).isZero();
+
+    Files.list(srcDir.resolve("WEB3SIGNER"))
+        .filter(file -> !file.getFileName().toString().startsWith("deposit_data"))
+        .forEach(
+            keystoreFile -> {
+              final KeyStoreData convertedKeyStoreData =
+                  KeyStoreLoader.loadFromFile(
+                      destDir.resolve(keystoreFile.getFileName().toString()).toUri());
+
+              KdfParam param = convertedKeyStoreData.getCrypto().getKdf().getParam();
+              assertThat(param).isInstanceOf(Pbkdf2Param.class);
+              assertThat(((Pbkdf2Param) param).getC()).isEqualTo(2);
+              assertThat(KeyStore.decrypt("password", convertedKeyStoreData))
+                  .isEqualTo(
+                      KeyStore.decrypt(
+                          "password", KeyStoreLoader.loadFromFile(keystoreFile.toUri())));
+            });
+  }
+
   @Test
   void testNimbusModeWithMinimal(@TempDir Path destDir) throws IOException {
     V4keystore_converterMain app = new V4keystore_converterMain();
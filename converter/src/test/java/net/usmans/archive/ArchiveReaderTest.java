@@ -0,0 +1,94 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans.archive;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.jupiter.api.Test;
+
+class ArchiveReaderTest {
+  private static final String LONG_NAME =
+      "validators/" + "a".repeat(120) + "/" + "b".repeat(96) + ".json";
+
+  private static byte[] tar(final String... names) throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (TarWriter writer = new TarWriter(out)) {
+      for (final String name : names) {
+        writer.write(name, name.getBytes(UTF_8));
+      }
+    }
+    return out.toByteArray();
+  }
+
+  private static List<String> readNames(final byte[] archive) throws IOException {
+    final List<String> names = new ArrayList<>();
+    try (ArchiveReader reader = ArchiveReader.open(new ByteArrayInputStream(archive))) {
+      ArchiveReader.Entry entry;
+      while ((entry = reader.next(name -> true)) != null) {
+        assertThat(new String(entry.content(), UTF_8)).isEqualTo(entry.name());
+        names.add(entry.name());
+      }
+    }
+    return names;
+  }
+
+  @Test
+  void tarRoundTripsShortAndLongNames() throws IOException {
+    final String prefixed = "p".repeat(80) + "/" + "n".repeat(90) + ".json";
+    final byte[] archive = tar("short.json", prefixed, LONG_NAME);
+
+    assertThat(archive.length % ArchiveReader.BLOCK_SIZE).isZero();
+    assertThat(readNames(archive)).containsExactly("short.json", prefixed, LONG_NAME);
+  }
+
+  @Test
+  void gzipCompressedTarIsDetected() throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+      gzip.write(tar("a.json", LONG_NAME));
+    }
+
+    assertThat(readNames(out.toByteArray())).containsExactly("a.json", LONG_NAME);
+  }
+
+  @Test
+  void zipEntriesAreRead() throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (ZipOutputStream zip = new ZipOutputStream(out)) {
+      zip.putNextEntry(new ZipEntry("dir/"));
+      zip.putNextEntry(new ZipEntry("dir/a.txt"));
+      zip.write("dir/a.txt".getBytes(UTF_8));
+    }
+
+    assertThat(readNames(out.toByteArray())).containsExactly("dir/a.txt");
+  }
+
+  @Test
+  void unwantedEntriesAreSkipped() throws IOException {
+    try (ArchiveReader reader =
+        ArchiveReader.open(new ByteArrayInputStream(tar("a.txt", "b.json", "c.txt")))) {
+      assertThat(reader.next(name -> name.endsWith(".json")).name()).isEqualTo("b.json");
+      assertThat(reader.next(name -> name.endsWith(".json"))).isNull();
+    }
+  }
+
+  @Test
+  void corruptTarHeaderIsRejected() throws IOException {
+    final byte[] archive = tar("a.json");
+    archive[0] = 'x';
+
+    assertThatThrownBy(() -> readNames(archive))
+        .isInstanceOf(IOException.class)
+        .hasMessageContaining("checksum");
+  }
+}
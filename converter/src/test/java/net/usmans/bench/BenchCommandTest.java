@@ -0,0 +1,69 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans.bench;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import net.usmans.V4keystore_converterMain;
+import net.usmans.engine.BulkloadingMode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import picocli.CommandLine;
+
+class BenchCommandTest {
+
+  @Test
+  void percentileUsesNearestRank() {
+    final long[] sorted = {1, 2, 3, 4, 5, 6, 7, 8, 9, 10};
+
+    assertThat(BenchCommand.percentile(sorted, 0.5)).isEqualTo(5);
+    assertThat(BenchCommand.percentile(sorted, 0.99)).isEqualTo(10);
+    assertThat(BenchCommand.percentile(sorted, 1.0)).isEqualTo(10);
+    assertThat(BenchCommand.percentile(new long[0], 0.99)).isZero();
+  }
+
+  @Test
+  void benchReportsOneResultPerModeFleetAndThreadCount(@TempDir Path workDir) throws Exception {
+    final Path output = workDir.resolve("bench.json");
+    final CommandLine cmd = new CommandLine(new V4keystore_converterMain());
+    cmd.setOut(new PrintWriter(new StringWriter()));
+
+    final int exitCode =
+        cmd.execute(
+            "bench",
+            "--keys=3,5",
+            "--threads=1,2",
+            "--source-kdf-function=PBKDF2",
+            "--source-c=2",
+            "--work-dir=" + workDir,
+            "--output=" + output,
+            "--skip-warmup");
+
+    assertThat(exitCode).isZero();
+    final BenchCommand.Report report =
+        new ObjectMapper().readValue(output.toFile(), BenchCommand.Report.class);
+    assertThat(report.sourceKdf()).isEqualTo("pbkdf2 c=2");
+    assertThat(report.results()).hasSize(8);
+    assertThat(report.results())
+        .allSatisfy(
+            result -> {
+              assertThat(result.converted()).isEqualTo(result.keys());
+              assertThat(result.failed()).isZero();
+              assertThat(result.keysPerSecond()).isPositive();
+              assertThat(result.p99Millis()).isGreaterThanOrEqualTo(result.p50Millis());
+            });
+    assertThat(report.results())
+        .filteredOn(result -> result.mode() == BulkloadingMode.NIMBUS)
+        .hasSize(4);
+    // fleets are kept for later runs, converted keystores are not
+    assertThat(workDir.resolve("fleet-web3signer-5-pbkdf2c2").resolve("keys")).isDirectory();
+    assertThat(workDir.resolve("converted")).doesNotExist();
+    assertThat(Files.list(workDir.resolve("fleet-nimbus-3-pbkdf2c2").resolve("secrets")))
+        .hasSize(3);
+  }
+}
@@ -0,0 +1,195 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans.bundle;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+import net.usmans.engine.BulkloadingMode;
+import net.usmans.engine.KeystoreSource;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import tech.pegasys.teku.bls.BLSTestUtil;
+import tech.pegasys.teku.bls.keystore.KeyStore;
+import tech.pegasys.teku.bls.keystore.KeyStoreLoader;
+import tech.pegasys.teku.bls.keystore.KeyStoreValidationException;
+import tech.pegasys.teku.bls.keystore.model.Cipher;
+import tech.pegasys.teku.bls.keystore.model.KdfParam;
+import tech.pegasys.teku.bls.keystore.model.KeyStoreData;
+import tech.pegasys.teku.bls.keystore.model.Pbkdf2Param;
+import tech.pegasys.teku.bls.keystore.model.Pbkdf2PseudoRandomFunction;
+import tech.pegasys.teku.bls.keystore.model.SCryptParam;
+
+class KeystoreBundleTest {
+  private static final SecureRandom SECURE_RANDOM = new SecureRandom();
+
+  private static List<KeyStoreData> keystores() {
+    return IntStream.rangeClosed(1, 4)
+        .mapToObj(
+            seed -> {
+              final var blsKeyPair = BLSTestUtil.randomKeyPair(seed);
+              final KdfParam kdfParam =
+                  seed % 2 == 0
+                      ? new Pbkdf2Param(
+                          32,
+                          2,
+                          Pbkdf2PseudoRandomFunction.HMAC_SHA256,
+                          Bytes32.random(SECURE_RANDOM))
+                      : new SCryptParam(32, 16, 1, 8, Bytes32.random(SECURE_RANDOM));
+              return KeyStore.encrypt(
+                  blsKeyPair.getSecretKey().toBytes(),
+                  blsKeyPair.getPublicKey().toBytesCompressed(),
+                  "password",
+                  "m/12381/3600/" + seed + "/0/0",
+                  kdfParam,
+                  new Cipher(Bytes.random(16, SECURE_RANDOM)));
+            })
+        .toList();
+  }
+
+  private static Path writeBundle(final Path dir, final List<KeyStoreData> keystores)
+      throws IOException {
+    final Path bundleFile = dir.resolve(KeystoreBundle.FILE_NAME);
+    try (KeystoreBundleWriter writer = new KeystoreBundleWriter(bundleFile)) {
+      for (final KeyStoreData keyStoreData : keystores) {
+        writer.write(KeystoreSource.file(Path.of("unused.json")), keyStoreData);
+      }
+    }
+    return bundleFile;
+  }
+
+  @Test
+  void bundleRoundTripsToIdenticalJson(@TempDir Path tempDir) throws IOException {
+    final List<KeyStoreData> keystores = keystores();
+    final KeystoreBundle bundle = KeystoreBundle.open(writeBundle(tempDir, keystores));
+
+    assertThat(bundle.size()).isEqualTo(keystores.size());
+    for (final KeyStoreData expected : keystores) {
+      final KeyStoreData actual = bundle.find(expected.getPubkey()).orElseThrow();
+      final Path expectedJson = tempDir.resolve("expected.json");
+      final Path actualJson = tempDir.resolve("actual.json");
+      KeyStoreLoader.saveToFile(expectedJson, expected);
+      KeyStoreLoader.saveToFile(actualJson, actual);
+      assertThat(actualJson).hasSameTextualContentAs(expectedJson);
+      assertThat(KeyStore.decrypt("password", actual))
+          .isEqualTo(KeyStore.decrypt("password", expected));
+    }
+    assertThat(bundle.find(Bytes.repeat((byte) 0xFF, 48))).isEmpty();
+  }
+
+  @Test
+  void indexIsSortedByPubkey(@TempDir Path tempDir) throws IOException {
+    final KeystoreBundle bundle = KeystoreBundle.open(writeBundle(tempDir, keystores()));
+
+    final List<String> pubkeys =
+        IntStream.range(0, bundle.size()).mapToObj(i -> bundle.pubkey(i).toHexString()).toList();
+    assertThat(pubkeys).isSorted();
+  }
+
+  @Test
+  void extractWritesStandardKeystores(@TempDir Path tempDir) throws IOException {
+    final List<KeyStoreData> keystores = keystores();
+    final KeystoreBundle bundle = KeystoreBundle.open(writeBundle(tempDir, keystores));
+    final Path extracted = tempDir.resolve("extracted");
+
+    bundle.extract(extracted, BulkloadingMode.NIMBUS);
+
+    keystores.forEach(
+        expected -> {
+          final KeyStoreData actual =
+              KeyStoreLoader.loadFromFile(
+                  extracted
+                      .resolve(expected.getPubkey().toHexString())
+                      .resolve("keystore.json")
+                      .toUri());
+          assertThat(actual.getUuid()).isEqualTo(expected.getUuid());
+          assertThat(actual.getPath()).isEqualTo(expected.getPath());
+        });
+  }
+
+  @Test
+  void duplicatePubkeysAreRejected(@TempDir Path tempDir) throws IOException {
+    final KeyStoreData keyStoreData = keystores().get(0);
+    try (KeystoreBundleWriter writer =
+        new KeystoreBundleWriter(tempDir.resolve(KeystoreBundle.FILE_NAME))) {
+      writer.write(KeystoreSource.file(Path.of("a.json")), keyStoreData);
+      assertThatThrownBy(() -> writer.write(KeystoreSource.file(Path.of("b.json")), keyStoreData))
+          .isInstanceOf(IOException.class)
+          .hasMessageContaining("Duplicate public key");
+    }
+  }
+
+  @Test
+  void openRejectsOtherFiles(@TempDir Path tempDir) throws IOException {
+    final Path notABundle = Files.writeString(tempDir.resolve("keystore.json"), "{}");
+
+    assertThatThrownBy(() -> KeystoreBundle.open(notABundle))
+        .isInstanceOf(KeyStoreValidationException.class)
+        .hasMessageContaining("Not a keystore bundle");
+  }
+
+  @Test
+  void corruptRecordsAreRejected(@TempDir Path tempDir) throws IOException {
+    final Path bundleFile = writeBundle(tempDir, keystores());
+    final byte[] bytes = Files.readAllBytes(bundleFile);
+    final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    final int indexOffset = (int) buffer.getLong(16);
+    final int recordOffset = (int) buffer.getLong(indexOffset + 56);
+    // unknown kdf function of the first record, record offset of the second one out of the file
+    buffer.put(recordOffset + 9, (byte) 0x7F);
+    buffer.putLong(indexOffset + KeystoreBundle.INDEX_ENTRY_SIZE + 56, bytes.length);
+    // pubkey length of the third entry larger than its slot in the index
+    buffer.put(indexOffset + 2 * KeystoreBundle.INDEX_ENTRY_SIZE, (byte) 0xFF);
+    Files.write(bundleFile, bytes);
+
+    final KeystoreBundle bundle = KeystoreBundle.open(bundleFile);
+    assertThatThrownBy(() -> bundle.get(0))
+        .isInstanceOf(KeyStoreValidationException.class)
+        .hasMessageContaining("Unknown kdf function 127");
+    assertThatThrownBy(() -> bundle.get(1))
+        .isInstanceOf(KeyStoreValidationException.class)
+        .hasMessageContaining("record offset");
+    assertThatThrownBy(() -> bundle.pubkey(2))
+        .isInstanceOf(KeyStoreValidationException.class)
+        .hasMessageContaining("pubkey length 255");
+    assertThat(bundle.get(3).getPubkey()).isEqualTo(bundle.pubkey(3));
+
+    // a record cut short by the end of the file
+    final Path truncated = tempDir.resolve("truncated.v4bundle");
+    Files.write(
+        truncated,
+        Arrays.copyOf(
+            bytes,
+            (int) buffer.getLong(indexOffset + 3 * KeystoreBundle.INDEX_ENTRY_SIZE + 56) + 20));
+    assertThatThrownBy(() -> KeystoreBundle.open(truncated).get(3))
+        .isInstanceOf(KeyStoreValidationException.class)
+        .hasMessageContaining("Corrupt keystore bundle record");
+  }
+
+  @Test
+  void recordsOffsetMustFollowTheIndex(@TempDir Path tempDir) throws IOException {
+    final Path bundleFile = writeBundle(tempDir, keystores());
+    // the temporary file was moved in place
+    try (var files = Files.list(tempDir)) {
+      assertThat(files).containsExactly(bundleFile);
+    }
+    final byte[] bytes = Files.readAllBytes(bundleFile);
+    final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    buffer.putLong(24, buffer.getLong(24) - KeystoreBundle.INDEX_ENTRY_SIZE);
+    Files.write(bundleFile, bytes);
+
+    assertThatThrownBy(() -> KeystoreBundle.open(bundleFile))
+        .isInstanceOf(KeyStoreValidationException.class)
+        .hasMessageContaining("Corrupt keystore bundle");
+  }
+}
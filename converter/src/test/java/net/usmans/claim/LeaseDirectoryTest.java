@@ -0,0 +1,153 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans.claim;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class LeaseDirectoryTest {
+  private static final List<Path> KEYSTORES =
+      IntStream.range(0, 10).mapToObj(i -> Path.of("0x" + i + ".json")).toList();
+
+  @Test
+  void workersClaimEveryBatchExactlyOnce(@TempDir final Path claimDir) throws Exception {
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      final List<Future<List<Integer>>> claimed = new ArrayList<>();
+      for (int worker = 0; worker < 4; worker++) {
+        claimed.add(executor.submit(claimAll(claimDir)));
+      }
+      final List<Integer> batches = new ArrayList<>();
+      for (final Future<List<Integer>> workerBatches : claimed) {
+        batches.addAll(workerBatches.get());
+      }
+      assertThat(batches).containsExactlyInAnyOrder(0, 1, 2, 3);
+    } finally {
+      executor.shutdownNow();
+    }
+    try (Stream<Path> files = Files.list(claimDir)) {
+      assertThat(files.map(file -> file.getFileName().toString()))
+          .containsExactlyInAnyOrder(
+              LeaseDirectory.PLAN_FILE_NAME,
+              "batch-00000000.done",
+              "batch-00000001.done",
+              "batch-00000002.done",
+              "batch-00000003.done");
+    }
+  }
+
+  private static Callable<List<Integer>> claimAll(final Path claimDir) {
+    return () -> {
+      final List<Integer> batches = new ArrayList<>();
+      try (LeaseDirectory leases =
+          LeaseDirectory.open(claimDir, KEYSTORES, 3, Duration.ofSeconds(10))) {
+        assertThat(leases.batches()).isEqualTo(4);
+        Optional<LeaseDirectory.Lease> lease;
+        while ((lease = leases.claim()).isPresent()) {
+          batches.add(lease.get().batch());
+          lease.get().complete(0);
+        }
+      }
+      return batches;
+    };
+  }
+
+  @Test
+  void reclaimsBatchesOfExpiredLeasesOnly(@TempDir final Path claimDir) throws Exception {
+    try (LeaseDirectory leases =
+        LeaseDirectory.open(claimDir, KEYSTORES, 5, Duration.ofSeconds(2))) {
+      // a crashed worker left batch 0 behind a long time ago, a live one holds batch 1
+      final Path expired = Files.writeString(claimDir.resolve("batch-00000000.lease-0"), "");
+      Files.setLastModifiedTime(expired, FileTime.from(Instant.now().minusSeconds(60)));
+      Files.writeString(claimDir.resolve("batch-00000001.lease-0"), "");
+
+      final LeaseDirectory.Lease lease = leases.claim().orElseThrow();
+      assertThat(lease.batch()).isZero();
+      assertThat(lease.fromIndex()).isZero();
+      assertThat(lease.toIndex()).isEqualTo(5);
+      assertThat(leases.reclaimed()).isEqualTo(1);
+      assertThat(claimDir.resolve("batch-00000000.lease-1")).exists();
+      lease.complete(1);
+      assertThat(claimDir.resolve("batch-00000000.done")).content().contains("failed=1");
+      assertThat(expired).doesNotExist();
+
+      // the live worker renews batch 1 until it lets it go
+      final Thread renewal =
+          new Thread(
+              () -> {
+                try {
+                  for (int i = 0; i < 10; i++) {
+                    Files.setLastModifiedTime(
+                        claimDir.resolve("batch-00000001.lease-0"), FileTime.from(Instant.now()));
+                    Thread.sleep(200);
+                  }
+                  Files.delete(claimDir.resolve("batch-00000001.lease-0"));
+                } catch (final IOException | InterruptedException e) {
+                  throw new IllegalStateException(e);
+                }
+              });
+      renewal.start();
+      final long startNanos = System.nanoTime();
+      final LeaseDirectory.Lease released = leases.claim().orElseThrow();
+      assertThat(released.batch()).isEqualTo(1);
+      assertThat(Duration.ofNanos(System.nanoTime() - startNanos))
+          .isGreaterThan(Duration.ofMillis(1500));
+      assertThat(leases.reclaimed()).isEqualTo(1);
+      renewal.join();
+      released.complete(0);
+      assertThat(leases.claim()).isEmpty();
+    }
+  }
+
+  @Test
+  void detectsLeasesClaimedByAnotherWorker(@TempDir final Path claimDir) throws Exception {
+    try (LeaseDirectory leases =
+        LeaseDirectory.open(claimDir, KEYSTORES, 10, Duration.ofMillis(300))) {
+      final LeaseDirectory.Lease lease = leases.claim().orElseThrow();
+      final CountDownLatch cancelled = new CountDownLatch(1);
+      lease.onLost(cancelled::countDown);
+      // a worker that saw the lease expire, say during a long GC pause, claimed the next generation
+      Files.writeString(claimDir.resolve("batch-00000000.lease-1"), "");
+      assertThat(cancelled.await(5, TimeUnit.SECONDS)).isTrue();
+      assertThat(lease.isLost()).isTrue();
+
+      // registered after the loss, run right away
+      final CountDownLatch late = new CountDownLatch(1);
+      lease.onLost(late::countDown);
+      assertThat(late.getCount()).isZero();
+    }
+  }
+
+  @Test
+  void refusesWorkersOfAnotherTree(@TempDir final Path claimDir) {
+    LeaseDirectory.open(claimDir, KEYSTORES, 5, Duration.ofSeconds(10)).close();
+
+    assertThatThrownBy(
+            () ->
+                LeaseDirectory.open(claimDir, KEYSTORES.subList(1, 10), 5, Duration.ofSeconds(10)))
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessageContaining("was created for 10 keystores in batches of 5");
+    assertThatThrownBy(() -> LeaseDirectory.open(claimDir, KEYSTORES, 4, Duration.ofSeconds(10)))
+        .isInstanceOf(IllegalStateException.class);
+  }
+}
@@ -0,0 +1,225 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans.daemon;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+import net.usmans.bench.FleetGenerator;
+import net.usmans.engine.BulkloadingMode;
+import net.usmans.engine.KdfParamFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import tech.pegasys.teku.bls.keystore.KeyStoreLoader;
+import tech.pegasys.teku.bls.keystore.model.KdfFunction;
+import tech.pegasys.teku.bls.keystore.model.SCryptParam;
+
+class ConversionDaemonTest {
+
+  private static ConversionRequest request(
+      final Path workDir, final String dest, final KdfFunction kdfFunction) {
+    return new ConversionRequest(
+        workDir.resolve("keys").toString(),
+        workDir.resolve("secrets").toString(),
+        workDir.resolve(dest).toString(),
+        BulkloadingMode.WEB3SIGNER,
+        kdfFunction,
+        2,
+        16,
+        1,
+        8,
+        null);
+  }
+
+  @Test
+  void queuedJobsAreConvertedOverTheSocket(@TempDir Path workDir) throws IOException {
+    FleetGenerator.generate(
+        workDir.resolve("keys"),
+        workDir.resolve("secrets"),
+        BulkloadingMode.WEB3SIGNER,
+        3,
+        KdfParamFactory.pbkdf2(2));
+    final Path socket = workDir.resolve("daemon.sock");
+
+    try (ConversionDaemon daemon = new ConversionDaemon(socket, 1, ForkJoinPool.commonPool())) {
+      daemon.start();
+      final List<ConversionResponse> responses =
+          IntStream.range(0, 3)
+              .mapToObj(
+                  job ->
+                      CompletableFuture.supplyAsync(
+                          () -> {
+                            try {
+                              return ClientCommand.submit(
+                                  socket, request(workDir, "dest" + job, KdfFunction.SCRYPT));
+                            } catch (final IOException e) {
+                              throw new UncheckedIOException(e);
+                            }
+                          }))
+              .toList()
+              .stream()
+              .map(CompletableFuture::join)
+              .toList();
+
+      assertThat(responses)
+          .allSatisfy(
+              response -> {
+                assertThat(response.isSuccess()).isTrue();
+                assertThat(response.converted()).isEqualTo(3);
+              });
+      try (var converted = Files.list(workDir.resolve("dest2"))) {
+        assertThat(converted)
+            .hasSize(3)
+            .allSatisfy(
+                keystore ->
+                    assertThat(
+                            KeyStoreLoader.loadFromFile(keystore.toUri())
+                                .getCrypto()
+                                .getKdf()
+                                .getParam())
+                        .isInstanceOf(SCryptParam.class));
+      }
+    }
+    assertThat(socket).doesNotExist();
+  }
+
+  @Test
+  void invalidJobsAreAnsweredWithAnError(@TempDir Path workDir) throws IOException {
+    final Path socket = workDir.resolve("daemon.sock");
+
+    try (ConversionDaemon daemon = new ConversionDaemon(socket, 1, ForkJoinPool.commonPool())) {
+      daemon.start();
+
+      final ConversionResponse invalidKdf =
+          ClientCommand.submit(
+              socket,
+              new ConversionRequest(
+                  workDir.toString(),
+                  workDir.toString(),
+                  workDir.toString(),
+                  BulkloadingMode.WEB3SIGNER,
+                  KdfFunction.SCRYPT,
+                  1,
+                  3,
+                  1,
+                  8,
+                  null));
+      final ConversionResponse missingSource =
+          ClientCommand.submit(socket, request(workDir, "dest", KdfFunction.PBKDF2));
+
+      assertThat(invalidKdf.isSuccess()).isFalse();
+      assertThat(invalidKdf.error()).contains("power of 2");
+      assertThat(missingSource.error()).startsWith("Unable to list keystores");
+    }
+  }
+
+  @Test
+  void socketIsOnlyAccessibleToItsOwner(@TempDir Path workDir) throws IOException {
+    final Path socket = workDir.resolve("daemon.sock");
+
+    try (ConversionDaemon daemon = new ConversionDaemon(socket, 1, ForkJoinPool.commonPool())) {
+      daemon.start();
+
+      assertThat(Files.getPosixFilePermissions(socket))
+          .isEqualTo(PosixFilePermissions.fromString("rw-------"));
+      try (var files = Files.list(workDir)) {
+        assertThat(files).containsExactly(socket);
+      }
+    }
+  }
+
+  @Test
+  void silentClientsAreDisconnectedAndExtraClientsRefused(@TempDir Path workDir)
+      throws IOException {
+    final Path socket = workDir.resolve("daemon.sock");
+    final ConversionDaemon.Limits limits =
+        new ConversionDaemon.Limits(1, Duration.ofMillis(500), 1 << 20);
+
+    try (ConversionDaemon daemon =
+            new ConversionDaemon(socket, 1, ForkJoinPool.commonPool(), limits);
+        SocketChannel silent = connect(daemon, socket)) {
+      // the silent client holds the only connection slot until it is disconnected
+      assertThat(ClientCommand.submit(socket, request(workDir, "dest", KdfFunction.PBKDF2)).error())
+          .isEqualTo("Too many clients connected");
+      final long startNanos = System.nanoTime();
+      assertThat(silent.read(ByteBuffer.allocate(1))).isEqualTo(-1);
+      assertThat(Duration.ofNanos(System.nanoTime() - startNanos))
+          .isLessThan(Duration.ofSeconds(5));
+    }
+  }
+
+  private static SocketChannel connect(final ConversionDaemon daemon, final Path socket)
+      throws IOException {
+    daemon.start();
+    return SocketChannel.open(UnixDomainSocketAddress.of(socket));
+  }
+
+  @Test
+  void oversizedRequestsAreRejected(@TempDir Path workDir) throws IOException {
+    final Path socket = workDir.resolve("daemon.sock");
+    final ConversionDaemon.Limits limits =
+        new ConversionDaemon.Limits(4, Duration.ofSeconds(10), 1 << 20);
+
+    try (ConversionDaemon daemon =
+        new ConversionDaemon(socket, 1, ForkJoinPool.commonPool(), limits)) {
+      daemon.start();
+
+      final ConversionRequest hungry =
+          new ConversionRequest(
+              workDir.toString(),
+              workDir.toString(),
+              workDir.toString(),
+              BulkloadingMode.WEB3SIGNER,
+              KdfFunction.SCRYPT,
+              1,
+              1 << 30,
+              1,
+              8,
+              null);
+      assertThat(ClientCommand.submit(socket, hungry).error()).contains("scrypt memory");
+
+      try (SocketChannel oversized = SocketChannel.open(UnixDomainSocketAddress.of(socket))) {
+        oversized.write(
+            ByteBuffer.wrap("{".repeat(ConversionDaemon.MAX_REQUEST_BYTES + 1).getBytes(UTF_8)));
+        final ByteBuffer response = ByteBuffer.allocate(1024);
+        while (oversized.read(response) > 0 && response.get(response.position() - 1) != '\n') {
+          // read the whole response line
+        }
+        assertThat(new String(response.array(), 0, response.position(), UTF_8))
+            .contains("Request is larger than");
+      }
+    }
+  }
+
+  @Test
+  void staleSocketIsReplacedButLiveDaemonIsNot(@TempDir Path workDir) throws IOException {
+    final Path socket = workDir.resolve("daemon.sock");
+    // a crashed daemon leaves its socket file behind
+    try (ServerSocketChannel crashed = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+      crashed.bind(UnixDomainSocketAddress.of(socket));
+    }
+    assertThat(socket).exists();
+
+    try (ConversionDaemon daemon = new ConversionDaemon(socket, 1, ForkJoinPool.commonPool());
+        ConversionDaemon second = new ConversionDaemon(socket, 1, ForkJoinPool.commonPool())) {
+      daemon.start();
+      assertThatThrownBy(second::start).hasMessageContaining("Another daemon is listening");
+    }
+  }
+}
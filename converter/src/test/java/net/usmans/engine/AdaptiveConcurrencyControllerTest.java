@@ -0,0 +1,115 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans.engine;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.usmans.engine.AdaptiveConcurrencyController.Sample;
+import org.junit.jupiter.api.Test;
+
+class AdaptiveConcurrencyControllerTest {
+  private static final Duration NO_SAMPLING = Duration.ofHours(1);
+
+  @Test
+  void limitsInFlightTasks() throws InterruptedException {
+    final AtomicInteger inFlight = new AtomicInteger();
+    final AtomicInteger maxInFlight = new AtomicInteger();
+    final CountDownLatch release = new CountDownLatch(1);
+    final CountDownLatch done = new CountDownLatch(6);
+    try (AdaptiveConcurrencyController controller =
+        new AdaptiveConcurrencyController(1, 8, 2, NO_SAMPLING, line -> {})) {
+      for (int i = 0; i < 6; i++) {
+        controller.execute(
+            () -> {
+              maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+              try {
+                release.await();
+              } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+              inFlight.decrementAndGet();
+              done.countDown();
+            });
+      }
+      Thread.sleep(200);
+      assertThat(inFlight.get()).isEqualTo(2);
+
+      release.countDown();
+      assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+      assertThat(maxInFlight.get()).isEqualTo(2);
+    }
+  }
+
+  @Test
+  void increasesAdditivelyAndDecreasesMultiplicatively() {
+    final List<String> log = new CopyOnWriteArrayList<>();
+    final CountDownLatch release = new CountDownLatch(1);
+    try (AdaptiveConcurrencyController controller =
+        new AdaptiveConcurrencyController(1, 8, 2, NO_SAMPLING, log::add)) {
+      for (int i = 0; i < 20; i++) {
+        controller.execute(
+            () -> {
+              try {
+                release.await();
+              } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+            });
+      }
+
+      controller.adjust(new Sample(10, 0, 0));
+      assertThat(controller.getLimit()).isEqualTo(3);
+      controller.adjust(new Sample(15, 0, 0));
+      assertThat(controller.getLimit()).isEqualTo(4);
+      // no gain from the last increase, hold
+      controller.adjust(new Sample(15.1, 0, 0));
+      assertThat(controller.getLimit()).isEqualTo(4);
+      controller.adjust(new Sample(15.1, 0, 0));
+      assertThat(controller.getLimit()).isEqualTo(5);
+      controller.adjust(new Sample(10, 0, 0));
+      assertThat(controller.getLimit()).isEqualTo(3);
+      controller.adjust(new Sample(10, 0.5, 0));
+      assertThat(controller.getLimit()).isEqualTo(2);
+      controller.adjust(new Sample(10, 0.5, 0));
+      assertThat(controller.getLimit()).isEqualTo(1);
+      controller.adjust(new Sample(10, 0.5, 0));
+      assertThat(controller.getLimit()).isEqualTo(1);
+
+      assertThat(log).hasSize(6);
+      assertThat(log.get(0)).contains("2 -> 3").contains("keystores waiting");
+      assertThat(log.get(3)).contains("5 -> 3").contains("throughput dropped");
+      assertThat(log.get(4)).contains("3 -> 2").contains("GC took 50%");
+      release.countDown();
+    }
+  }
+
+  @Test
+  void backsOffWhenAllocationGrowsWithoutThroughput() {
+    final CountDownLatch release = new CountDownLatch(1);
+    try (AdaptiveConcurrencyController controller =
+        new AdaptiveConcurrencyController(1, 8, 4, NO_SAMPLING, line -> {})) {
+      for (int i = 0; i < 10; i++) {
+        controller.execute(
+            () -> {
+              try {
+                release.await();
+              } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+            });
+      }
+
+      controller.adjust(new Sample(10, 0, 100));
+      assertThat(controller.getLimit()).isEqualTo(5);
+      controller.adjust(new Sample(10, 0, 200));
+      assertThat(controller.getLimit()).isEqualTo(4);
+      release.countDown();
+    }
+  }
+}
@@ -0,0 +1,84 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans.engine;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class CostSchedulerTest {
+
+  @Test
+  void dispatchesLongestTasksFirst() throws InterruptedException {
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+    final List<Long> order = new CopyOnWriteArrayList<>();
+    final CostScheduler scheduler = new CostScheduler(executor, Long.MAX_VALUE);
+    for (final long nanos : new long[] {5, 100, 1, 50, 100}) {
+      scheduler.add(new CostScheduler.TaskCost(nanos, 0), () -> order.add(nanos));
+    }
+    scheduler.dispatch();
+    executor.shutdown();
+    assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+    assertThat(order).containsExactly(100L, 100L, 50L, 5L, 1L);
+  }
+
+  @Test
+  void keepsRunningTasksWithinMemoryBudget() throws InterruptedException {
+    final ExecutorService executor = Executors.newCachedThreadPool();
+    final AtomicLong inFlightMemory = new AtomicLong();
+    final AtomicLong maxInFlightMemory = new AtomicLong();
+    final CountDownLatch done = new CountDownLatch(6);
+    final CostScheduler scheduler = new CostScheduler(executor, 100);
+    for (final long memory : new long[] {60, 60, 30, 30, 150, 10}) {
+      scheduler.add(
+          new CostScheduler.TaskCost(memory, memory),
+          () -> {
+            maxInFlightMemory.accumulateAndGet(inFlightMemory.addAndGet(memory), Math::max);
+            try {
+              Thread.sleep(20);
+            } catch (final InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+            inFlightMemory.addAndGet(-memory);
+            done.countDown();
+          });
+    }
+    scheduler.dispatch();
+
+    assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+    executor.shutdown();
+    // the 150 byte task exceeds the budget on its own and only runs alone
+    assertThat(maxInFlightMemory.get()).isEqualTo(150);
+  }
+
+  @Test
+  void directExecutorRunsEveryTaskWithoutNesting() {
+    final AtomicInteger ran = new AtomicInteger();
+    final AtomicInteger maxDepth = new AtomicInteger();
+    final int depth = Thread.currentThread().getStackTrace().length;
+    final CostScheduler scheduler = new CostScheduler(Runnable::run, 1);
+    for (int i = 0; i < 10_000; i++) {
+      scheduler.add(
+          new CostScheduler.TaskCost(i, 1),
+          () -> {
+            ran.incrementAndGet();
+            maxDepth.accumulateAndGet(
+                Thread.currentThread().getStackTrace().length - depth, Math::max);
+          });
+    }
+    scheduler.dispatch();
+
+    assertThat(ran).hasValue(10_000);
+    // each release hands the next task to the first dispatch instead of dispatching it itself
+    assertThat(maxDepth.get()).isLessThan(20);
+  }
+}
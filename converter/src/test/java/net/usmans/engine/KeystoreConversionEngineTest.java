@@ -0,0 +1,497 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans.engine;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.junit.jupiter.api.Test;
+import tech.pegasys.teku.bls.BLSTestUtil;
+import tech.pegasys.teku.bls.keystore.DerivedKeyCache;
+import tech.pegasys.teku.bls.keystore.KeyStore;
+import tech.pegasys.teku.bls.keystore.model.Cipher;
+import tech.pegasys.teku.bls.keystore.model.KdfFunction;
+import tech.pegasys.teku.bls.keystore.model.KeyStoreData;
+import tech.pegasys.teku.bls.keystore.model.Pbkdf2Param;
+import tech.pegasys.teku.bls.keystore.model.Pbkdf2PseudoRandomFunction;
+import tech.pegasys.teku.bls.keystore.model.SCryptParam;
+
+class KeystoreConversionEngineTest {
+  private static final SecureRandom SECURE_RANDOM = new SecureRandom();
+
+  private static List<KeystoreSource> inMemorySources(final int count) {
+    return IntStream.rangeClosed(1, count)
+        .mapToObj(BLSTestUtil::randomKeyPair)
+        .map(
+            blsKeyPair -> {
+              final KeyStoreData keyStoreData =
+                  KeyStore.encrypt(
+                      blsKeyPair.getSecretKey().toBytes(),
+                      blsKeyPair.getPublicKey().toBytesCompressed(),
+                      "password",
+                      "",
+                      new SCryptParam(32, 16, 1, 8, Bytes32.random(SECURE_RANDOM)),
+                      new Cipher(Bytes.random(16, SECURE_RANDOM)));
+              final Path path = Path.of(keyStoreData.getPubkey().toHexString() + ".json");
+              return (KeystoreSource) new InMemorySource(path, keyStoreData);
+            })
+        .toList();
+  }
+
+  private record InMemorySource(Path path, KeyStoreData keyStoreData) implements KeystoreSource {
+    @Override
+    public KeyStoreData load() {
+      return keyStoreData;
+    }
+  }
+
+  @Test
+  void convertsEverySourceAndReportsPerKeyResults() {
+    final List<KeystoreSource> sources = inMemorySources(3);
+    final Map<Path, KeyStoreData> written = new ConcurrentHashMap<>();
+
+    final ConversionJob job =
+        KeystoreConversionEngine.builder()
+            .sources(sources)
+            .passwordSource(source -> "password")
+            .kdfParamFactory(KdfParamFactory.pbkdf2(2))
+            .sink((source, converted) -> written.put(source.path(), converted))
+            .build()
+            .start();
+
+    final ConversionSummary summary = job.completion().join();
+    assertThat(summary.converted()).isEqualTo(3);
+    assertThat(summary.isSuccess()).isTrue();
+    assertThat(job.results()).hasSize(3).allSatisfy(f -> assertThat(f.join().isSuccess()).isTrue());
+
+    sources.forEach(
+        source -> {
+          final KeyStoreData converted = written.get(source.path());
+          assertThat(converted.getCrypto().getKdf().getParam()).isInstanceOf(Pbkdf2Param.class);
+          assertThat(KeyStore.decrypt("password", converted))
+              .isEqualTo(KeyStore.decrypt("password", source.load()));
+        });
+  }
+
+  @Test
+  void sharedSaltDerivesKeyOncePerPassword() {
+    final List<KeystoreSource> sources = inMemorySources(3);
+    final Map<Path, KeyStoreData> written = new ConcurrentHashMap<>();
+    final DerivedKeyCache derivedKeyCache = new DerivedKeyCache();
+
+    KeystoreConversionEngine.builder()
+        .sources(sources)
+        .passwordSource(source -> "password")
+        .kdfParamFactory(KdfParamFactory.scrypt(16, 1, 8).withSharedSalt())
+        .derivedKeyCache(derivedKeyCache)
+        .sink((source, converted) -> written.put(source.path(), converted))
+        .build()
+        .start()
+        .completion()
+        .join();
+
+    assertThat(derivedKeyCache.size()).isEqualTo(1);
+    assertThat(written.values())
+        .extracting(converted -> converted.getCrypto().getKdf().getParam().getSalt())
+        .containsOnly(written.values().iterator().next().getCrypto().getKdf().getParam().getSalt());
+    assertThat(written.values())
+        .extracting(converted -> converted.getCrypto().getCipher().getCipherParam().getIv())
+        .doesNotHaveDuplicates();
+    sources.forEach(
+        source ->
+            assertThat(KeyStore.decrypt("password", written.get(source.path())))
+                .isEqualTo(KeyStore.decrypt("password", source.load())));
+  }
+
+  @Test
+  void additionalTargetsReuseTheDecryptedKey() {
+    final List<KeystoreSource> sources = inMemorySources(2);
+    final Map<Path, KeyStoreData> pbkdf2 = new ConcurrentHashMap<>();
+    final Map<Path, KeyStoreData> scrypt = new ConcurrentHashMap<>();
+    final KdfCostModel costModel =
+        new KdfCostModel(Map.of(KdfFunction.SCRYPT, 1.0, KdfFunction.PBKDF2, 1.0));
+
+    final ConversionJob job =
+        KeystoreConversionEngine.builder()
+            .sources(sources)
+            .passwordSource(source -> "password")
+            .kdfParamFactory(KdfParamFactory.pbkdf2(2))
+            .sink((source, converted) -> pbkdf2.put(source.path(), converted))
+            .addTarget(
+                KdfParamFactory.scrypt(16, 1, 8),
+                (source, converted) -> scrypt.put(source.path(), converted))
+            .costModel(costModel)
+            .build()
+            .start();
+
+    assertThat(job.completion().join().converted()).isEqualTo(2);
+    assertThat(job.results())
+        .allSatisfy(
+            result ->
+                assertThat(result.join().converted())
+                    .isSameAs(pbkdf2.get(result.join().source().path())));
+    sources.forEach(
+        source -> {
+          assertThat(scrypt.get(source.path()).getCrypto().getKdf().getParam())
+              .isInstanceOf(SCryptParam.class);
+          assertThat(KeyStore.decrypt("password", scrypt.get(source.path())))
+              .isEqualTo(KeyStore.decrypt("password", pbkdf2.get(source.path())));
+        });
+    // one decryption of each source, one encryption per target
+    assertThat(costModel.report())
+        .extracting(
+            KdfCostModel.CostClassReport::costClass, KdfCostModel.CostClassReport::derivations)
+        .containsExactlyInAnyOrder(tuple("scrypt n=16 r=8 p=1", 4L), tuple("pbkdf2 c=2", 2L));
+  }
+
+  @Test
+  void additionalTargetsStayOnTheExecutor() throws InterruptedException {
+    final var executor =
+        Executors.newFixedThreadPool(2, runnable -> new Thread(runnable, "converter-worker"));
+    final List<String> encryptingThreads = new CopyOnWriteArrayList<>();
+    final KdfParamFactory scrypt =
+        () -> {
+          encryptingThreads.add(Thread.currentThread().getName());
+          return KdfParamFactory.scrypt(16, 1, 8).create();
+        };
+
+    final ConversionJob job =
+        KeystoreConversionEngine.builder()
+            .sources(inMemorySources(4))
+            .passwordSource(source -> "password")
+            .kdfParamFactory(scrypt)
+            .sink((source, converted) -> {})
+            .addTarget(scrypt, (source, converted) -> {})
+            .addTarget(scrypt, (source, converted) -> {})
+            .executor(executor)
+            .build()
+            .start();
+
+    assertThat(job.completion().join().converted()).isEqualTo(4);
+    executor.shutdown();
+    assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+    assertThat(encryptingThreads).hasSize(12).containsOnly("converter-worker");
+  }
+
+  @Test
+  void batchedPbkdf2KeysDecryptLikeSingleKeys() {
+    final List<KeystoreSource> sources = inMemorySources(5);
+    final Path wrongPassword = sources.get(1).path();
+    final Map<Path, KeyStoreData> pbkdf2 = new ConcurrentHashMap<>();
+
+    final ConversionSummary toPbkdf2 =
+        KeystoreConversionEngine.builder()
+            .sources(sources)
+            .passwordSource(
+                source -> source.path().equals(wrongPassword) ? "wrong password" : "password")
+            .kdfParamFactory(KdfParamFactory.pbkdf2(3))
+            .sink((source, converted) -> pbkdf2.put(source.path(), converted))
+            .pbkdf2BatchSize(4)
+            .build()
+            .start()
+            .completion()
+            .join();
+
+    assertThat(toPbkdf2.converted()).isEqualTo(4);
+    assertThat(toPbkdf2.failed()).isEqualTo(1);
+    assertThat(pbkdf2).doesNotContainKey(wrongPassword);
+
+    // batched decryption of the PBKDF2 keystores, back to scrypt
+    final Map<Path, KeyStoreData> scrypt = new ConcurrentHashMap<>();
+    final ConversionSummary toScrypt =
+        KeystoreConversionEngine.builder()
+            .sources(
+                pbkdf2.entrySet().stream()
+                    .map(
+                        entry ->
+                            (KeystoreSource) new InMemorySource(entry.getKey(), entry.getValue()))
+                    .toList())
+            .passwordSource(source -> "password")
+            .kdfParamFactory(KdfParamFactory.scrypt(16, 1, 8))
+            .sink((source, converted) -> scrypt.put(source.path(), converted))
+            .pbkdf2BatchSize(4)
+            .build()
+            .start()
+            .completion()
+            .join();
+
+    assertThat(toScrypt.converted()).isEqualTo(4);
+    sources.stream()
+        .filter(source -> !source.path().equals(wrongPassword))
+        .forEach(
+            source -> {
+              final Bytes privateKey = KeyStore.decrypt("password", source.load());
+              assertThat(KeyStore.decrypt("password", pbkdf2.get(source.path())))
+                  .isEqualTo(privateKey);
+              assertThat(KeyStore.decrypt("password", scrypt.get(source.path())))
+                  .isEqualTo(privateKey);
+            });
+  }
+
+  @Test
+  void batchedKeystoresWithOtherKdfsAreConvertedInParallel() {
+    final var executor = Executors.newFixedThreadPool(3);
+    try {
+      // scrypt sources, then PBKDF2 sources encrypted with scrypt: either way each keystore of the
+      // batch reaches its sink while the other one is still being converted
+      final Map<Path, KeyStoreData> pbkdf2 = new ConcurrentHashMap<>();
+      final ConversionSummary fromScrypt =
+          convertBatchTogether(inMemorySources(2), KdfParamFactory.pbkdf2(2), pbkdf2, executor);
+      final Map<Path, KeyStoreData> scrypt = new ConcurrentHashMap<>();
+      final ConversionSummary toScrypt =
+          convertBatchTogether(
+              pbkdf2.entrySet().stream()
+                  .map(
+                      entry ->
+                          (KeystoreSource) new InMemorySource(entry.getKey(), entry.getValue()))
+                  .toList(),
+              KdfParamFactory.scrypt(16, 1, 8),
+              scrypt,
+              executor);
+
+      assertThat(fromScrypt.converted()).isEqualTo(2);
+      assertThat(toScrypt.converted()).isEqualTo(2);
+      scrypt.forEach(
+          (path, converted) ->
+              assertThat(KeyStore.decrypt("password", converted))
+                  .isEqualTo(KeyStore.decrypt("password", pbkdf2.get(path))));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private static ConversionSummary convertBatchTogether(
+      final List<KeystoreSource> sources,
+      final KdfParamFactory kdfParamFactory,
+      final Map<Path, KeyStoreData> written,
+      final Executor executor) {
+    final CountDownLatch writing = new CountDownLatch(sources.size());
+    return KeystoreConversionEngine.builder()
+        .sources(sources)
+        .passwordSource(source -> "password")
+        .kdfParamFactory(kdfParamFactory)
+        .sink(
+            (source, converted) -> {
+              writing.countDown();
+              try {
+                if (!writing.await(10, TimeUnit.SECONDS)) {
+                  throw new IllegalStateException("Keystores of the batch written one at a time");
+                }
+              } catch (final InterruptedException e) {
+                throw new IllegalStateException(e);
+              }
+              written.put(source.path(), converted);
+            })
+        .executor(executor)
+        .pbkdf2BatchSize(sources.size())
+        .build()
+        .start()
+        .completion()
+        .join();
+  }
+
+  @Test
+  void failuresAreReportedWithTheirStage() {
+    final ConversionJob job =
+        KeystoreConversionEngine.builder()
+            .sources(inMemorySources(1))
+            .passwordSource(source -> "wrong password")
+            .kdfParamFactory(KdfParamFactory.pbkdf2(2))
+            .sink((source, converted) -> {})
+            .build()
+            .start();
+
+    final ConversionResult result = job.results().get(0).join();
+    assertThat(result.isSuccess()).isFalse();
+    assertThat(result.failedStage()).isEqualTo(ConversionStage.DECRYPT);
+    assertThat(job.completion().join().failed()).isEqualTo(1);
+  }
+
+  @Test
+  void exceedingMaxErrorsCancelsRemainingKeystores() {
+    final var executor = Executors.newSingleThreadExecutor();
+    final ConversionSummary summary =
+        KeystoreConversionEngine.builder()
+            .sources(inMemorySources(4))
+            .passwordSource(source -> "wrong password")
+            .kdfParamFactory(KdfParamFactory.pbkdf2(2))
+            .sink((source, converted) -> {})
+            .executor(executor)
+            .maxErrors(1)
+            .build()
+            .start()
+            .completion()
+            .join();
+    executor.shutdown();
+
+    assertThat(summary.failed()).isEqualTo(2);
+    assertThat(summary.cancelled()).isEqualTo(2);
+  }
+
+  @Test
+  void publisherDeliversAllResults() throws InterruptedException {
+    final ConversionJob job =
+        KeystoreConversionEngine.builder()
+            .sources(inMemorySources(3))
+            .passwordSource(source -> "password")
+            .kdfParamFactory(
+                () -> new Pbkdf2Param(32, 2, Pbkdf2PseudoRandomFunction.HMAC_SHA256, Bytes32.ZERO))
+            .sink((source, converted) -> {})
+            .build()
+            .start();
+
+    final List<ConversionResult> received = new CopyOnWriteArrayList<>();
+    final CountDownLatch completed = new CountDownLatch(1);
+    job.publisher()
+        .subscribe(
+            new Flow.Subscriber<>() {
+              @Override
+              public void onSubscribe(final Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+              }
+
+              @Override
+              public void onNext(final ConversionResult item) {
+                received.add(item);
+              }
+
+              @Override
+              public void onError(final Throwable throwable) {}
+
+              @Override
+              public void onComplete() {
+                completed.countDown();
+              }
+            });
+
+    assertThat(completed.await(30, TimeUnit.SECONDS)).isTrue();
+    assertThat(received).hasSize(3);
+  }
+
+  @Test
+  void cancelledJobSkipsPendingKeystores() {
+    final CountDownLatch release = new CountDownLatch(1);
+    final var executor = Executors.newSingleThreadExecutor();
+    try {
+      // block the only worker so that every keystore is still pending when the job is cancelled
+      executor.execute(
+          () -> {
+            try {
+              release.await();
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+          });
+      final ConversionJob job =
+          KeystoreConversionEngine.builder()
+              .sources(inMemorySources(2))
+              .passwordSource(source -> "password")
+              .kdfParamFactory(KdfParamFactory.pbkdf2(2))
+              .sink((source, converted) -> {})
+              .executor(executor)
+              .build()
+              .start();
+
+      job.cancel();
+      release.countDown();
+
+      final ConversionSummary summary = job.completion().join();
+      assertThat(summary.cancelled()).isEqualTo(2);
+      assertThat(summary.isSuccess()).isFalse();
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void costModelRunsMostExpensiveKeystoresFirst() {
+    final List<KeystoreSource> sources = new ArrayList<>();
+    IntStream.rangeClosed(1, 4)
+        .forEach(
+            seed -> {
+              final var blsKeyPair = BLSTestUtil.randomKeyPair(seed);
+              final KeyStoreData keyStoreData =
+                  KeyStore.encrypt(
+                      blsKeyPair.getSecretKey().toBytes(),
+                      blsKeyPair.getPublicKey().toBytesCompressed(),
+                      "password",
+                      "",
+                      seed % 2 == 0
+                          ? new SCryptParam(32, 1024, 1, 8, Bytes32.random(SECURE_RANDOM))
+                          : new Pbkdf2Param(
+                              32,
+                              2,
+                              Pbkdf2PseudoRandomFunction.HMAC_SHA256,
+                              Bytes32.random(SECURE_RANDOM)),
+                      new Cipher(Bytes.random(16, SECURE_RANDOM)));
+              sources.add(new InMemorySource(Path.of(seed + ".json"), keyStoreData));
+            });
+    final List<Path> converted = new CopyOnWriteArrayList<>();
+    final KdfCostModel costModel =
+        new KdfCostModel(Map.of(KdfFunction.SCRYPT, 1.0, KdfFunction.PBKDF2, 1.0));
+    final var executor = Executors.newSingleThreadExecutor();
+
+    final ConversionSummary summary =
+        KeystoreConversionEngine.builder()
+            .sources(sources)
+            .passwordSource(source -> "password")
+            .kdfParamFactory(KdfParamFactory.pbkdf2(2))
+            .sink((source, keyStoreData) -> converted.add(source.path()))
+            .executor(executor)
+            .costModel(costModel)
+            .build()
+            .start()
+            .completion()
+            .join();
+    executor.shutdown();
+
+    assertThat(summary.converted()).isEqualTo(4);
+    assertThat(converted.subList(0, 2))
+        .containsExactlyInAnyOrder(Path.of("2.json"), Path.of("4.json"));
+    assertThat(costModel.report())
+        .extracting(
+            KdfCostModel.CostClassReport::costClass, KdfCostModel.CostClassReport::derivations)
+        .containsExactly(tuple("scrypt n=1024 r=8 p=1", 2L), tuple("pbkdf2 c=2", 6L));
+  }
+
+  @Test
+  void rejectedCostScheduledKeystoresFailTheJob() {
+    final var executor = Executors.newSingleThreadExecutor();
+    executor.shutdown();
+
+    final ConversionJob job =
+        KeystoreConversionEngine.builder()
+            .sources(inMemorySources(2))
+            .passwordSource(source -> "password")
+            .kdfParamFactory(KdfParamFactory.pbkdf2(2))
+            .sink((source, keyStoreData) -> {})
+            .executor(executor)
+            .costModel(new KdfCostModel(Map.of(KdfFunction.SCRYPT, 1.0, KdfFunction.PBKDF2, 1.0)))
+            .build()
+            .start();
+
+    assertThatThrownBy(() -> job.completion().get(10, TimeUnit.SECONDS))
+        .isInstanceOf(ExecutionException.class)
+        .hasRootCauseInstanceOf(RejectedExecutionException.class);
+    assertThat(job.results()).allMatch(CompletableFuture::isCompletedExceptionally);
+  }
+}
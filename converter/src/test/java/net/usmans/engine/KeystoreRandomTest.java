@@ -0,0 +1,57 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans.engine;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.apache.tuweni.bytes.Bytes;
+import org.junit.jupiter.api.Test;
+
+class KeystoreRandomTest {
+
+  @Test
+  void threadsNeverHandOutTheSameSaltOrIv() throws Exception {
+    final Set<Bytes> drawn = Collections.synchronizedSet(new HashSet<>());
+    final ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      final List<Future<?>> futures = new ArrayList<>();
+      for (int thread = 0; thread < 8; thread++) {
+        futures.add(
+            executor.submit(
+                () -> {
+                  for (int i = 0; i < 1_000; i++) {
+                    drawn.add(KeystoreRandom.salt());
+                    drawn.add(KeystoreRandom.iv());
+                  }
+                }));
+      }
+      for (final Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    assertThat(drawn).hasSize(16_000);
+    assertThat(drawn).allSatisfy(bytes -> assertThat(bytes.size()).isIn(16, 32));
+  }
+
+  @Test
+  void keepsDrawingAcrossReseeds() {
+    final Set<Bytes> drawn = new HashSet<>();
+    final long draws = 2 * KeystoreRandom.RESEED_BYTES / 1024;
+    for (long i = 0; i < draws; i++) {
+      drawn.add(Bytes.wrap(KeystoreRandom.nextBytes(1024)));
+    }
+
+    assertThat(drawn).hasSize((int) draws);
+  }
+}
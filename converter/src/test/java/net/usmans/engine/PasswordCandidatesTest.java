@@ -0,0 +1,123 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans.engine;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import net.usmans.bench.FleetGenerator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class PasswordCandidatesTest {
+  private static final BulkloadingMode MODE = BulkloadingMode.WEB3SIGNER;
+
+  @Test
+  void findsPasswordsOfOrphanedKeystoresAmongCandidates(@TempDir final Path workDir)
+      throws IOException {
+    final Path keys = workDir.resolve("keys");
+    final Path secrets = workDir.resolve("secrets");
+    final Path candidates = Files.createDirectories(workDir.resolve("candidates/old-host"));
+    FleetGenerator.generate(keys, secrets, MODE, 4, KdfParamFactory.scrypt(16, 1, 8));
+    final List<KeystoreSource> sources =
+        MODE.listKeystores(keys).stream().map(KeystoreSource::file).toList();
+    final Map<Path, String> passwords = new HashMap<>();
+    for (final KeystoreSource source : sources) {
+      passwords.put(source.path(), PasswordSource.directory(secrets, MODE).getPassword(source));
+    }
+    // two password files got misnamed in a migration, next to a few that do not match
+    for (int i = 0; i < 2; i++) {
+      final Path passwordFile = secrets.resolve(MODE.passwordFileName(sources.get(i).path()));
+      Files.move(passwordFile, candidates.resolve("misnamed-" + i + ".txt"));
+    }
+    for (int i = 0; i < 5; i++) {
+      Files.writeString(candidates.resolve("decoy-" + i + ".txt"), "not the password " + i);
+    }
+    final Path matchesFile = workDir.resolve("password-matches.json");
+
+    try (PasswordCandidates passwordSource =
+        PasswordCandidates.load(
+            PasswordSource.directory(secrets, MODE),
+            workDir.resolve("candidates"),
+            matchesFile,
+            4)) {
+      assertThat(passwordSource.size()).isEqualTo(7);
+      for (final KeystoreSource source : sources) {
+        assertThat(passwordSource.getPassword(source)).isEqualTo(passwords.get(source.path()));
+      }
+      assertThat(passwordSource.matches())
+          .containsOnlyKeys(sources.get(0).path(), sources.get(1).path())
+          .allSatisfy((keystore, origin) -> assertThat(origin).contains("misnamed-"));
+    }
+    assertThat(Files.readString(matchesFile))
+        .contains(sources.get(0).path().toString(), sources.get(1).path().toString())
+        .doesNotContain(passwords.get(sources.get(0).path()));
+
+    // a later run starts from the recorded matches and keeps them
+    try (PasswordCandidates passwordSource =
+        PasswordCandidates.load(
+            PasswordSource.directory(secrets, MODE),
+            workDir.resolve("candidates"),
+            matchesFile,
+            1)) {
+      assertThat(passwordSource.getPassword(sources.get(1)))
+          .isEqualTo(passwords.get(sources.get(1).path()));
+    }
+    assertThat(Files.readString(matchesFile)).contains(sources.get(0).path().toString());
+  }
+
+  @Test
+  void reportsKeystoresNoCandidateMatches(@TempDir final Path workDir) throws IOException {
+    final Path keys = workDir.resolve("keys");
+    final Path secrets = workDir.resolve("secrets");
+    FleetGenerator.generate(keys, secrets, MODE, 1, KdfParamFactory.pbkdf2(2));
+    final KeystoreSource source = KeystoreSource.file(MODE.listKeystores(keys).get(0));
+    Files.delete(secrets.resolve(MODE.passwordFileName(source.path())));
+    final Path candidateList =
+        Files.writeString(workDir.resolve("candidates.txt"), "first\n\nsecond\nfirst\n");
+
+    try (PasswordCandidates passwordSource =
+        PasswordCandidates.load(PasswordSource.directory(secrets, MODE), candidateList, null, 2)) {
+      assertThat(passwordSource.size()).isEqualTo(2);
+      assertThatThrownBy(() -> passwordSource.getPassword(source))
+          .isInstanceOf(UncheckedIOException.class)
+          .hasMessageContaining("none of 2 password candidates matched");
+      assertThat(passwordSource.matches()).isEmpty();
+    }
+  }
+
+  @Test
+  void reportsKeystoresWithoutAnyCandidate(@TempDir final Path workDir) throws IOException {
+    final Path keys = workDir.resolve("keys");
+    final Path secrets = workDir.resolve("secrets");
+    FleetGenerator.generate(keys, secrets, MODE, 1, KdfParamFactory.pbkdf2(2));
+    final KeystoreSource source = KeystoreSource.file(MODE.listKeystores(keys).get(0));
+    Files.delete(secrets.resolve(MODE.passwordFileName(source.path())));
+
+    for (final Path emptyCandidates :
+        List.of(
+            Files.createDirectories(workDir.resolve("candidates")),
+            Files.writeString(workDir.resolve("candidates.txt"), "\n"))) {
+      try (PasswordCandidates passwordSource =
+          PasswordCandidates.load(
+              PasswordSource.directory(secrets, MODE), emptyCandidates, null, 2)) {
+        assertThat(passwordSource.size()).isZero();
+        assertTimeoutPreemptively(
+            Duration.ofSeconds(10),
+            () ->
+                assertThatThrownBy(() -> passwordSource.getPassword(source))
+                    .isInstanceOf(UncheckedIOException.class)
+                    .hasMessageContaining("none of 0 password candidates matched"));
+      }
+    }
+  }
+}
@@ -0,0 +1,228 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans.engine;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import net.usmans.bench.FleetGenerator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import tech.pegasys.teku.bls.keystore.model.KdfFunction;
+import tech.pegasys.teku.bls.keystore.model.KeyStoreData;
+
+class PrefetcherTest {
+  private static final BulkloadingMode MODE = BulkloadingMode.WEB3SIGNER;
+
+  @Test
+  void convertsFromStorageThatFailsAndStallsTransiently(@TempDir final Path workDir)
+      throws IOException {
+    final Path keys = workDir.resolve("keys");
+    final Path secrets = workDir.resolve("secrets");
+    FleetGenerator.generate(keys, secrets, MODE, 6, KdfParamFactory.pbkdf2(2));
+    final List<KeystoreSource> sources =
+        MODE.listKeystores(keys).stream().map(KeystoreSource::file).toList();
+    final PasswordSource passwords = PasswordSource.directory(secrets, MODE);
+    final Map<Path, AtomicInteger> attempts = new ConcurrentHashMap<>();
+    final CountDownLatch stuck = new CountDownLatch(1);
+    // the first read of every password fails, the first of one more stalls until it times out
+    final PasswordSource flakyPasswords =
+        source -> {
+          final int attempt =
+              attempts
+                  .computeIfAbsent(source.path(), path -> new AtomicInteger())
+                  .incrementAndGet();
+          if (attempt == 1) {
+            throw new UncheckedIOException(new IOException("Stale NFS file handle"));
+          }
+          if (attempt == 2 && source.path().equals(sources.get(3).path())) {
+            try {
+              stuck.await();
+            } catch (final InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+          }
+          return passwords.getPassword(source);
+        };
+
+    try (Prefetcher prefetcher =
+        Prefetcher.start(
+            sources,
+            flakyPasswords,
+            new Prefetcher.Options(3, 4, Duration.ofMillis(300), 3, 1 << 20))) {
+      final ConversionSummary summary =
+          KeystoreConversionEngine.builder()
+              .sources(prefetcher.sources())
+              .passwordSource(prefetcher)
+              .kdfParamFactory(KdfParamFactory.pbkdf2(2))
+              .sink((source, converted) -> {})
+              .build()
+              .start()
+              .completion()
+              .join();
+
+      assertThat(summary.converted()).isEqualTo(6);
+      assertThat(attempts.get(sources.get(3).path())).hasValue(3);
+      assertThat(prefetcher.statistics().retries()).isEqualTo(7);
+    } finally {
+      stuck.countDown();
+    }
+  }
+
+  @Test
+  void preflightChecksShareTheReadAhead(@TempDir final Path workDir) throws IOException {
+    final Path keys = workDir.resolve("keys");
+    final Path secrets = workDir.resolve("secrets");
+    FleetGenerator.generate(keys, secrets, MODE, 6, KdfParamFactory.pbkdf2(2));
+    final List<KeystoreSource> sources =
+        MODE.listKeystores(keys).stream().map(KeystoreSource::file).toList();
+    final PasswordSource passwords = PasswordSource.directory(secrets, MODE);
+    final Map<Path, AtomicInteger> reads = new ConcurrentHashMap<>();
+    final PasswordSource countedPasswords =
+        source -> {
+          reads.computeIfAbsent(source.path(), path -> new AtomicInteger()).incrementAndGet();
+          return passwords.getPassword(source);
+        };
+
+    try (Prefetcher prefetcher =
+        Prefetcher.start(
+            sources,
+            countedPasswords,
+            new Prefetcher.Options(3, 2, Duration.ofSeconds(5), 0, 1 << 20))) {
+      final Preflight.Report report =
+          new Preflight(
+                  prefetcher,
+                  KeystoreSink.directory(workDir.resolve("dest"), MODE),
+                  KdfParamFactory.pbkdf2(2).create(),
+                  new KdfCostModel(Map.of(KdfFunction.SCRYPT, 1.0, KdfFunction.PBKDF2, 1.0)))
+              .check(prefetcher.preflightSources());
+      assertThat(report.errors()).isZero();
+
+      final ConversionSummary summary =
+          KeystoreConversionEngine.builder()
+              .sources(prefetcher.sources())
+              .passwordSource(prefetcher)
+              .kdfParamFactory(KdfParamFactory.pbkdf2(2))
+              .sink((source, converted) -> {})
+              .build()
+              .start()
+              .completion()
+              .join();
+
+      assertThat(summary.converted()).isEqualTo(6);
+      // the three keystores read ahead are read once for the checks and the conversion
+      assertThat(sources)
+          .extracting(source -> reads.get(source.path()).get())
+          .containsExactly(1, 1, 1, 2, 2, 2);
+    }
+  }
+
+  @Test
+  void failsMissingAndInvalidKeystoresWithoutRetrying(@TempDir final Path workDir)
+      throws IOException {
+    final Path keys = workDir.resolve("keys");
+    final Path secrets = workDir.resolve("secrets");
+    FleetGenerator.generate(keys, secrets, MODE, 2, KdfParamFactory.pbkdf2(2));
+    final List<KeystoreSource> sources =
+        MODE.listKeystores(keys).stream().map(KeystoreSource::file).toList();
+    Files.delete(sources.get(0).path());
+    Files.writeString(sources.get(1).path(), "{not a keystore");
+
+    try (Prefetcher prefetcher =
+        Prefetcher.start(
+            sources,
+            PasswordSource.directory(secrets, MODE),
+            new Prefetcher.Options(2, 2, Duration.ofSeconds(5), 3, 1 << 20))) {
+      final ConversionJob job =
+          KeystoreConversionEngine.builder()
+              .sources(prefetcher.sources())
+              .passwordSource(prefetcher)
+              .kdfParamFactory(KdfParamFactory.pbkdf2(2))
+              .sink((source, converted) -> {})
+              .build()
+              .start();
+
+      assertThat(job.completion().join().failed()).isEqualTo(2);
+      assertThat(job.results())
+          .allSatisfy(
+              result -> assertThat(result.join().failedStage()).isEqualTo(ConversionStage.LOAD));
+      assertThat(job.results().get(0).join().error()).hasMessageContaining("Cannot read keystore");
+      assertThat(prefetcher.statistics().retries()).isZero();
+    }
+  }
+
+  @Test
+  void stopsReadingAheadAtTheDepthAndMemoryCap() throws InterruptedException {
+    final AtomicInteger loads = new AtomicInteger();
+    final List<KeystoreSource> sources =
+        IntStream.range(0, 10)
+            .<KeystoreSource>mapToObj(
+                i ->
+                    new KeystoreSource() {
+                      @Override
+                      public Path path() {
+                        return Path.of(i + ".json");
+                      }
+
+                      @Override
+                      public KeyStoreData load() {
+                        loads.incrementAndGet();
+                        return null;
+                      }
+                    })
+            .toList();
+
+    try (Prefetcher prefetcher =
+        Prefetcher.start(
+            sources,
+            source -> "password",
+            new Prefetcher.Options(4, 2, Duration.ofSeconds(5), 0, 1 << 20))) {
+      awaitLoads(loads, 4);
+      assertThat(loads).hasValue(4);
+      prefetcher.sources().get(0).load();
+      awaitLoads(loads, 5);
+      assertThat(loads).hasValue(5);
+    }
+
+    // two keystores read ahead exceed the cap
+    loads.set(0);
+    try (Prefetcher prefetcher =
+        Prefetcher.start(
+            sources,
+            source -> "password",
+            new Prefetcher.Options(
+                8, 1, Duration.ofSeconds(5), 0, Prefetcher.ESTIMATED_KEYSTORE_BYTES + 1))) {
+      // reads are started before the size of what they read is known
+      awaitLoads(loads, 8);
+      prefetcher.sources().get(0).load();
+      prefetcher.sources().get(1).load();
+      TimeUnit.MILLISECONDS.sleep(200);
+      assertThat(loads).hasValue(8);
+      for (int i = 2; i < 8; i++) {
+        prefetcher.sources().get(i).load();
+      }
+      awaitLoads(loads, 10);
+      assertThat(prefetcher.statistics().notReadAhead()).isZero();
+    }
+  }
+
+  private static void awaitLoads(final AtomicInteger loads, final int expected)
+      throws InterruptedException {
+    final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (loads.get() < expected && System.nanoTime() < deadline) {
+      TimeUnit.MILLISECONDS.sleep(10);
+    }
+    TimeUnit.MILLISECONDS.sleep(100);
+  }
+}
@@ -0,0 +1,139 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans.engine;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import tech.pegasys.teku.bls.BLSTestUtil;
+import tech.pegasys.teku.bls.keystore.KeyStore;
+import tech.pegasys.teku.bls.keystore.KeyStoreValidationException;
+import tech.pegasys.teku.bls.keystore.model.Cipher;
+import tech.pegasys.teku.bls.keystore.model.KdfFunction;
+import tech.pegasys.teku.bls.keystore.model.KdfParam;
+import tech.pegasys.teku.bls.keystore.model.KeyStoreData;
+import tech.pegasys.teku.bls.keystore.model.Pbkdf2Param;
+import tech.pegasys.teku.bls.keystore.model.Pbkdf2PseudoRandomFunction;
+import tech.pegasys.teku.bls.keystore.model.SCryptParam;
+
+class PreflightTest {
+  private static final SecureRandom SECURE_RANDOM = new SecureRandom();
+
+  private record Source(Path path, KeyStoreData keyStoreData) implements KeystoreSource {
+    @Override
+    public KeyStoreData load() {
+      if (keyStoreData == null) {
+        throw new KeyStoreValidationException("Invalid KeyStore: truncated");
+      }
+      return keyStoreData;
+    }
+  }
+
+  private record Indexed(Path path, Bytes pubkey, KdfParam kdfParam)
+      implements IndexedKeystoreSource {
+    @Override
+    public KeyStoreData load() {
+      throw new IllegalStateException("Indexed keystore parsed again");
+    }
+  }
+
+  private static KeyStoreData keystore(final int seed) {
+    final var blsKeyPair = BLSTestUtil.randomKeyPair(seed);
+    return KeyStore.encrypt(
+        blsKeyPair.getSecretKey().toBytes(),
+        blsKeyPair.getPublicKey().toBytesCompressed(),
+        "password",
+        "",
+        new SCryptParam(32, 1024, 1, 8, Bytes32.random(SECURE_RANDOM)),
+        new Cipher(Bytes.random(16, SECURE_RANDOM)));
+  }
+
+  @Test
+  void reportsEveryProblemBeforeConverting(@TempDir Path destination) throws IOException {
+    final List<KeystoreSource> sources =
+        List.of(
+            new Source(Path.of("a/1.json"), keystore(1)),
+            new Source(Path.of("a/2.json"), null),
+            new Source(Path.of("a/3.json"), keystore(3)),
+            new Source(Path.of("a/dup.json"), keystore(1)),
+            new Source(Path.of("b/1.json"), keystore(5)),
+            new Source(Path.of("a/6.json"), keystore(6)));
+    Files.writeString(destination.resolve("6.json"), "{}");
+    final PasswordSource passwordSource =
+        source -> {
+          if (source.path().endsWith("3.json")) {
+            throw new UncheckedIOException(new IOException("3.txt not found"));
+          }
+          return "password";
+        };
+    final KdfCostModel costModel =
+        new KdfCostModel(Map.of(KdfFunction.SCRYPT, 1.0, KdfFunction.PBKDF2, 1.0));
+
+    final Preflight.Report report =
+        new Preflight(
+                passwordSource,
+                KeystoreSink.directory(destination, BulkloadingMode.WEB3SIGNER),
+                new Pbkdf2Param(32, 2, Pbkdf2PseudoRandomFunction.HMAC_SHA256, Bytes32.ZERO),
+                costModel)
+            .check(sources);
+
+    assertThat(report.keystores()).isEqualTo(6);
+    assertThat(report.errors()).isEqualTo(4);
+    assertThat(report.issues())
+        .extracting(Preflight.Issue::path, Preflight.Issue::severity)
+        .containsExactly(
+            tuple(Path.of("a/2.json"), Preflight.Severity.ERROR),
+            tuple(Path.of("a/3.json"), Preflight.Severity.ERROR),
+            tuple(Path.of("a/dup.json"), Preflight.Severity.ERROR),
+            tuple(Path.of("b/1.json"), Preflight.Severity.ERROR),
+            tuple(Path.of("a/6.json"), Preflight.Severity.WARNING));
+    assertThat(report.issues().get(0).message()).contains("Invalid keystore");
+    assertThat(report.issues().get(1).message()).contains("Password not readable");
+    assertThat(report.issues().get(2).message()).contains("Duplicate public key");
+    assertThat(report.issues().get(3).message()).contains("is also written by a/1.json");
+    // scrypt n=1024 r=8 p=1 to pbkdf2 c=2 for the four readable keystores
+    assertThat(report.estimatedKdfTime().toNanos()).isEqualTo(4 * (4L * 1024 * 8 + 4));
+  }
+
+  @Test
+  void indexedKeystoresAreNotParsedAgain(@TempDir Path destination) {
+    final KeyStoreData keystore = keystore(1);
+    final KeystoreSource indexed =
+        new Indexed(
+            Path.of("a/1.json"), keystore.getPubkey(), keystore.getCrypto().getKdf().getParam());
+    final List<Path> passwordsRead = new CopyOnWriteArrayList<>();
+    final PasswordSource passwordSource =
+        source -> {
+          passwordsRead.add(source.path());
+          return "password";
+        };
+
+    final Preflight.Report report =
+        new Preflight(
+                passwordSource,
+                KeystoreSink.directory(destination, BulkloadingMode.WEB3SIGNER),
+                new Pbkdf2Param(32, 2, Pbkdf2PseudoRandomFunction.HMAC_SHA256, Bytes32.ZERO),
+                new KdfCostModel(Map.of(KdfFunction.SCRYPT, 1.0, KdfFunction.PBKDF2, 1.0)))
+            .check(List.of(indexed, new Source(Path.of("a/2.json"), keystore)));
+
+    // the indexed keystore is still checked against the others
+    assertThat(report.issues())
+        .extracting(Preflight.Issue::path, Preflight.Issue::severity)
+        .containsExactly(tuple(Path.of("a/2.json"), Preflight.Severity.ERROR));
+    assertThat(report.issues().get(0).message()).contains("Duplicate public key");
+    assertThat(passwordsRead).containsExactlyInAnyOrder(Path.of("a/1.json"), Path.of("a/2.json"));
+    assertThat(report.estimatedKdfTime().toNanos()).isEqualTo(2 * (4L * 1024 * 8 + 4));
+  }
+}
@@ -0,0 +1,109 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans.engine;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ResourceGovernorTest {
+
+  @Test
+  void tokenBucketAdmitsOnceDebtIsPaidBack() {
+    final AtomicLong clock = new AtomicLong();
+    // 1 token per second, bursts of 2
+    final TokenBucket bucket = new TokenBucket(1, 2, clock::get);
+    assertThat(bucket.delayNanos()).isZero();
+
+    bucket.charge(5);
+    // 3 tokens in debt, admitted again once above 0
+    assertThat(bucket.delayNanos()).isEqualTo(TimeUnit.SECONDS.toNanos(4));
+    clock.addAndGet(TimeUnit.SECONDS.toNanos(4));
+    assertThat(bucket.delayNanos()).isZero();
+
+    // refills no further than the capacity
+    clock.addAndGet(TimeUnit.HOURS.toNanos(1));
+    bucket.charge(3);
+    assertThat(bucket.delayNanos()).isEqualTo(TimeUnit.SECONDS.toNanos(2));
+  }
+
+  @Test
+  void tightestCgroupLimitOnThePathApplies(@TempDir Path mountPoint) throws IOException {
+    final Path parent = Files.createDirectories(mountPoint.resolve("system.slice"));
+    final Path cgroup = Files.createDirectories(parent.resolve("converter.service"));
+    Files.writeString(mountPoint.resolve("cpu.max"), "max 100000\n");
+    Files.writeString(parent.resolve("cpu.max"), "150000 100000\n");
+    Files.writeString(parent.resolve("memory.max"), "1073741824\n");
+    Files.writeString(cgroup.resolve("cpu.max"), "400000 100000\n");
+    Files.writeString(cgroup.resolve("memory.max"), "max\n");
+
+    final CgroupLimits limits = CgroupLimits.read(mountPoint, "/system.slice/converter.service");
+
+    assertThat(limits.cpuCores().getAsDouble()).isCloseTo(1.5, within(1e-9));
+    assertThat(limits.memoryBytes().getAsLong()).isEqualTo(1L << 30);
+    assertThat(CgroupLimits.read(mountPoint, "/").cpuCores()).isEmpty();
+  }
+
+  @Test
+  void cgroupHierarchyIsFoundFromProcFiles() {
+    assertThat(
+            CgroupLimits.cgroup2MountPoint(
+                List.of(
+                    "35 24 0:30 / /sys/fs/cgroup/memory rw,nosuid - cgroup cgroup rw,memory",
+                    "42 32 0:38 / /sys/fs/cgroup/unified rw,relatime - cgroup2 cgroup2 rw")))
+        .contains(Path.of("/sys/fs/cgroup/unified"));
+    assertThat(CgroupLimits.cgroupPath(List.of("4:memory:/x", "0::/user.slice/session-1.scope")))
+        .contains("/user.slice/session-1.scope");
+  }
+
+  @Test
+  void rateLeavesHeadroomForOtherProcesses() {
+    final int cores = Runtime.getRuntime().availableProcessors();
+    try (ResourceGovernor governor = new ResourceGovernor(1, line -> {})) {
+      assertThat(governor.rate(0, 0)).isEqualTo(1);
+      // other processes keep all cores but half of one busy
+      assertThat(governor.rate(cores - 0.5 + 1, 1)).isCloseTo(0.5, within(1e-9));
+      assertThat(governor.rate(10.0 * cores, 0)).isEqualTo(ResourceGovernor.MIN_RATE_FRACTION);
+    }
+  }
+
+  @Test
+  void cpuUseIsPacedToTheBudget() throws InterruptedException {
+    final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    final int tasks = 30;
+    final CountDownLatch done = new CountDownLatch(tasks);
+    final long startNanos = System.nanoTime();
+    try (ResourceGovernor governor = new ResourceGovernor(0.5, line -> {})) {
+      for (int i = 0; i < tasks; i++) {
+        governor.execute(
+            () -> {
+              // spin for 50 ms of CPU time
+              final long endCpuNanos =
+                  threadMXBean.getCurrentThreadCpuTime() + TimeUnit.MILLISECONDS.toNanos(50);
+              while (threadMXBean.getCurrentThreadCpuTime() < endCpuNanos) {
+                Thread.onSpinWait();
+              }
+              done.countDown();
+            });
+      }
+      assertThat(done.await(30, TimeUnit.SECONDS)).isTrue();
+      final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+
+      // 1.5 s of CPU on one thread: the burst of 0.5 s runs out after 1 s, the remaining 0.5 s
+      // of CPU runs at half a core
+      assertThat(elapsedMillis).isGreaterThanOrEqualTo(1500);
+      assertThat(governor.throughput().paused()).isPositive();
+    }
+  }
+}
@@ -0,0 +1,212 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans.index;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.SecureRandom;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+import net.usmans.engine.BulkloadingMode;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import tech.pegasys.teku.bls.BLSTestUtil;
+import tech.pegasys.teku.bls.keystore.KeyStore;
+import tech.pegasys.teku.bls.keystore.KeyStoreLoader;
+import tech.pegasys.teku.bls.keystore.model.Cipher;
+import tech.pegasys.teku.bls.keystore.model.KdfParam;
+import tech.pegasys.teku.bls.keystore.model.KeyStoreData;
+import tech.pegasys.teku.bls.keystore.model.Pbkdf2Param;
+import tech.pegasys.teku.bls.keystore.model.Pbkdf2PseudoRandomFunction;
+import tech.pegasys.teku.bls.keystore.model.SCryptParam;
+
+class KeystoreIndexTest {
+  private static final SecureRandom SECURE_RANDOM = new SecureRandom();
+
+  private static KeyStoreData writeKeystore(final Path dir, final int seed) {
+    return writeKeystore(
+        dir,
+        seed,
+        seed % 2 == 0
+            ? new Pbkdf2Param(
+                32, 2, Pbkdf2PseudoRandomFunction.HMAC_SHA256, Bytes32.random(SECURE_RANDOM))
+            : new SCryptParam(32, 16, 1, 8, Bytes32.random(SECURE_RANDOM)));
+  }
+
+  private static KeyStoreData writeKeystore(
+      final Path dir, final int seed, final KdfParam kdfParam) {
+    final var blsKeyPair = BLSTestUtil.randomKeyPair(seed);
+    final KeyStoreData keyStoreData =
+        KeyStore.encrypt(
+            blsKeyPair.getSecretKey().toBytes(),
+            blsKeyPair.getPublicKey().toBytesCompressed(),
+            "password",
+            "m/12381/3600/" + seed + "/0/0",
+            kdfParam,
+            new Cipher(Bytes.random(16, SECURE_RANDOM)));
+    try {
+      KeyStoreLoader.saveToFile(keystorePath(dir, keyStoreData.getPubkey()), keyStoreData);
+    } catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return keyStoreData;
+  }
+
+  private static Path keystorePath(final Path dir, final Bytes pubkey) {
+    return dir.resolve(pubkey.toUnprefixedHexString() + ".json");
+  }
+
+  @Test
+  void indexHoldsPubkeysAndKdfParams(@TempDir Path tempDir) throws IOException {
+    final List<KeyStoreData> keystores =
+        IntStream.rangeClosed(1, 4).mapToObj(seed -> writeKeystore(tempDir, seed)).toList();
+
+    final KeystoreIndex index = KeystoreIndex.refresh(tempDir, BulkloadingMode.WEB3SIGNER);
+    assertThat(index.statistics().parsed()).isEqualTo(4);
+    assertThat(Files.exists(KeystoreIndex.indexFile(tempDir))).isTrue();
+
+    final KeystoreIndex read =
+        KeystoreIndex.read(tempDir, BulkloadingMode.WEB3SIGNER).orElseThrow();
+    assertThat(read.entries()).containsExactlyInAnyOrderElementsOf(index.entries());
+    for (final KeyStoreData expected : keystores) {
+      final KeystoreIndex.Entry entry = read.find(expected.getPubkey()).orElseThrow();
+      assertThat(entry.kdfParam()).isEqualTo(expected.getCrypto().getKdf().getParam());
+      assertThat(entry.load().getUuid()).isEqualTo(expected.getUuid());
+    }
+    assertThat(KeystoreIndex.read(tempDir, BulkloadingMode.NIMBUS)).isEmpty();
+  }
+
+  @Test
+  void refreshOnlyParsesChangedKeystores(@TempDir Path tempDir) throws IOException {
+    IntStream.rangeClosed(1, 3).forEach(seed -> writeKeystore(tempDir, seed));
+    KeystoreIndex.refresh(tempDir, BulkloadingMode.WEB3SIGNER);
+
+    final KeystoreIndex unchanged = KeystoreIndex.refresh(tempDir, BulkloadingMode.WEB3SIGNER);
+    assertThat(unchanged.statistics().reused()).isEqualTo(3);
+    assertThat(unchanged.statistics().parsed()).isZero();
+
+    final KeyStoreData replaced = writeKeystore(tempDir, 2);
+    final Path replacedPath = keystorePath(tempDir, replaced.getPubkey());
+    Files.setLastModifiedTime(
+        replacedPath,
+        FileTime.fromMillis(Files.getLastModifiedTime(replacedPath).toMillis() + 1000));
+    Files.delete(
+        keystorePath(tempDir, BLSTestUtil.randomKeyPair(3).getPublicKey().toBytesCompressed()));
+    Files.writeString(tempDir.resolve("broken.json"), "{");
+
+    final KeystoreIndex refreshed = KeystoreIndex.refresh(tempDir, BulkloadingMode.WEB3SIGNER);
+    assertThat(refreshed.statistics().reused()).isEqualTo(1);
+    assertThat(refreshed.statistics().parsed()).isEqualTo(1);
+    assertThat(refreshed.statistics().removed()).isEqualTo(1);
+    assertThat(refreshed.statistics().failures()).containsOnlyKeys(tempDir.resolve("broken.json"));
+    assertThat(refreshed.find(replaced.getPubkey()).orElseThrow().kdfParam())
+        .isEqualTo(replaced.getCrypto().getKdf().getParam());
+  }
+
+  @Test
+  void longSaltsAreIndexedAndOversizedOnesRejected(@TempDir Path tempDir) throws IOException {
+    final KeyStoreData longSalt =
+        writeKeystore(
+            tempDir,
+            1,
+            new Pbkdf2Param(
+                32, 2, Pbkdf2PseudoRandomFunction.HMAC_SHA256, Bytes.random(300, SECURE_RANDOM)));
+    final KeyStoreData oversizedSalt =
+        writeKeystore(
+            tempDir,
+            2,
+            new Pbkdf2Param(
+                32,
+                2,
+                Pbkdf2PseudoRandomFunction.HMAC_SHA256,
+                Bytes.random(0x10000, SECURE_RANDOM)));
+
+    final KeystoreIndex index = KeystoreIndex.refresh(tempDir, BulkloadingMode.WEB3SIGNER);
+    assertThat(index.statistics().failures())
+        .containsOnlyKeys(keystorePath(tempDir, oversizedSalt.getPubkey()));
+    assertThat(index.statistics().failures().values())
+        .allSatisfy(failure -> assertThat(failure).contains("salt of 65536 bytes"));
+
+    final KeystoreIndex read =
+        KeystoreIndex.read(tempDir, BulkloadingMode.WEB3SIGNER).orElseThrow();
+    assertThat(read.entries())
+        .singleElement()
+        .satisfies(
+            entry ->
+                assertThat(entry.kdfParam()).isEqualTo(longSalt.getCrypto().getKdf().getParam()));
+    try (var files = Files.list(tempDir)) {
+      assertThat(files.map(file -> file.getFileName().toString()))
+          .noneMatch(name -> name.endsWith(".tmp"));
+    }
+  }
+
+  @Test
+  void corruptIndexesAreRebuilt(@TempDir Path tempDir) throws IOException {
+    writeKeystore(tempDir, 1);
+    KeystoreIndex.refresh(tempDir, BulkloadingMode.WEB3SIGNER);
+    final Path indexFile = KeystoreIndex.indexFile(tempDir);
+    final byte[] index = Files.readAllBytes(indexFile);
+
+    // entry count beyond the entries in the file
+    final ByteBuffer count = ByteBuffer.wrap(index.clone());
+    count.putInt(12, Integer.MAX_VALUE);
+    Files.write(indexFile, count.array());
+    assertThat(KeystoreIndex.read(tempDir, BulkloadingMode.WEB3SIGNER)).isEmpty();
+
+    // unknown kdf function
+    final ByteBuffer kdfFunction = ByteBuffer.wrap(index.clone());
+    final int pathLength = Short.toUnsignedInt(kdfFunction.getShort(16));
+    final int pubkeyOffset = 16 + 2 + pathLength + 8 + 8;
+    kdfFunction.put(
+        pubkeyOffset + 2 + Short.toUnsignedInt(kdfFunction.getShort(pubkeyOffset)), (byte) 7);
+    Files.write(indexFile, kdfFunction.array());
+    assertThat(KeystoreIndex.read(tempDir, BulkloadingMode.WEB3SIGNER)).isEmpty();
+
+    // paths leaving the directory
+    for (final String path :
+        List.of("../" + "x".repeat(pathLength - 3), "/" + "x".repeat(pathLength - 1))) {
+      final byte[] escaping = index.clone();
+      System.arraycopy(path.getBytes(UTF_8), 0, escaping, 18, pathLength);
+      Files.write(indexFile, escaping);
+      assertThat(KeystoreIndex.read(tempDir, BulkloadingMode.WEB3SIGNER)).isEmpty();
+    }
+
+    final KeystoreIndex rebuilt = KeystoreIndex.refresh(tempDir, BulkloadingMode.WEB3SIGNER);
+    assertThat(rebuilt.statistics().parsed()).isEqualTo(1);
+    assertThat(KeystoreIndex.read(tempDir, BulkloadingMode.WEB3SIGNER)).isPresent();
+  }
+
+  @Test
+  void decryptsEntriesInBatches(@TempDir Path tempDir) throws IOException {
+    IntStream.rangeClosed(1, 5).forEach(seed -> writeKeystore(tempDir, seed));
+    final KeystoreIndex index = KeystoreIndex.refresh(tempDir, BulkloadingMode.WEB3SIGNER);
+
+    final List<CompletableFuture<Bytes>> privateKeys =
+        KeystoreIndex.decrypt(index.entries(), source -> "password", ForkJoinPool.commonPool(), 2);
+
+    assertThat(privateKeys).hasSize(5);
+    for (int i = 0; i < privateKeys.size(); i++) {
+      final Bytes pubkey = index.entries().get(i).pubkey();
+      final Bytes expected =
+          IntStream.rangeClosed(1, 5)
+              .mapToObj(BLSTestUtil::randomKeyPair)
+              .filter(keyPair -> keyPair.getPublicKey().toBytesCompressed().equals(pubkey))
+              .findFirst()
+              .orElseThrow()
+              .getSecretKey()
+              .toBytes();
+      assertThat(privateKeys.get(i).join()).isEqualTo(expected);
+    }
+  }
+}
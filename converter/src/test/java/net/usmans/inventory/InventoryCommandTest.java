@@ -0,0 +1,72 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans.inventory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import net.usmans.V4keystore_converterMain;
+import net.usmans.bench.FleetGenerator;
+import net.usmans.engine.BulkloadingMode;
+import net.usmans.engine.KdfParamFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import picocli.CommandLine;
+
+class InventoryCommandTest {
+
+  @Test
+  void keystoresAreCountedPerKdfClass(@TempDir Path workDir) throws Exception {
+    final Path tree = workDir.resolve("tree");
+    FleetGenerator.generate(
+        tree.resolve("web3signer"),
+        workDir.resolve("secrets1"),
+        BulkloadingMode.WEB3SIGNER,
+        3,
+        KdfParamFactory.pbkdf2(2));
+    FleetGenerator.generate(
+        tree.resolve("nimbus"),
+        workDir.resolve("secrets2"),
+        BulkloadingMode.NIMBUS,
+        2,
+        KdfParamFactory.scrypt(16, 1, 8));
+    try (var keystores = Files.list(tree.resolve("web3signer"))) {
+      final Path keystore = keystores.findFirst().orElseThrow();
+      Files.copy(keystore, tree.resolve("copy.json"));
+    }
+    Files.writeString(tree.resolve("broken.json"), "{\"crypto\": [");
+    Files.writeString(tree.resolve("deposit_data-1.json"), "[]");
+    final Path output = workDir.resolve("inventory.json");
+
+    final CommandLine cmd = new CommandLine(new V4keystore_converterMain());
+    cmd.setOut(new PrintWriter(new StringWriter()));
+    final int exitCode =
+        cmd.execute("inventory", "--src=" + tree, "--output=" + output, "--threads=2");
+
+    assertThat(exitCode).isZero();
+    final InventoryCommand.Report report =
+        new ObjectMapper().readValue(output.toFile(), InventoryCommand.Report.class);
+    assertThat(report.files()).isEqualTo(7);
+    assertThat(report.keystores()).isEqualTo(6);
+    assertThat(report.duplicatePubkeys()).isEqualTo(1);
+    assertThat(report.classes())
+        .extracting(
+            InventoryCommand.KdfClass::kdf,
+            InventoryCommand.KdfClass::dklen,
+            InventoryCommand.KdfClass::cipher,
+            InventoryCommand.KdfClass::keystores)
+        .containsExactly(
+            tuple("pbkdf2 c=2", 32, "aes-128-ctr", 4L),
+            tuple("scrypt n=16 r=8 p=1", 32, "aes-128-ctr", 2L));
+    assertThat(report.classes())
+        .allSatisfy(kdfClass -> assertThat(kdfClass.estimatedDecryptMillis()).isNotNegative());
+    assertThat(report.unreadable())
+        .singleElement()
+        .satisfies(unreadable -> assertThat(unreadable.path()).endsWith("broken.json"));
+  }
+}
@@ -0,0 +1,106 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package net.usmans.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import net.usmans.bench.FleetGenerator;
+import net.usmans.engine.BulkloadingMode;
+import net.usmans.engine.KdfParamFactory;
+import net.usmans.engine.KeystoreConversionEngine;
+import net.usmans.engine.KeystoreSource;
+import net.usmans.engine.PasswordSource;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import tech.pegasys.teku.bls.keystore.model.KeyStoreData;
+
+class MetricsServerTest {
+  private final HttpClient client = HttpClient.newHttpClient();
+
+  @Test
+  void scrapeReportsTheConversion(@TempDir Path workDir) throws Exception {
+    FleetGenerator.generate(
+        workDir.resolve("keys"),
+        workDir.resolve("secrets"),
+        BulkloadingMode.WEB3SIGNER,
+        3,
+        KdfParamFactory.scrypt(16, 1, 8));
+    // one keystore cannot be decrypted
+    try (var passwords = Files.list(workDir.resolve("secrets"))) {
+      Files.writeString(passwords.findFirst().orElseThrow(), "wrong password");
+    }
+    final Map<Path, KeyStoreData> written = new ConcurrentHashMap<>();
+    final ConversionMetrics metrics = new ConversionMetrics();
+
+    try (MetricsServer server =
+        MetricsServer.start(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), metrics)) {
+      KeystoreConversionEngine.builder()
+          .sources(
+              BulkloadingMode.WEB3SIGNER.listKeystores(workDir.resolve("keys")).stream()
+                  .map(KeystoreSource::file)
+                  .toList())
+          .passwordSource(
+              PasswordSource.directory(workDir.resolve("secrets"), BulkloadingMode.WEB3SIGNER))
+          .kdfParamFactory(KdfParamFactory.pbkdf2(2))
+          .sink((source, converted) -> written.put(source.path(), converted))
+          .listener(metrics)
+          .build()
+          .start()
+          .completion()
+          .join();
+
+      final HttpResponse<String> response = scrape(server, "GET");
+
+      assertThat(response.statusCode()).isEqualTo(200);
+      assertThat(response.headers().firstValue("Content-Type"))
+          .contains(MetricsServer.CONTENT_TYPE);
+      assertThat(response.body())
+          .contains(
+              "# TYPE converter_keystores_converted_total counter\n",
+              "converter_keystores_converted_total 2\n",
+              "converter_keystores_failed_total{stage=\"decrypt\"} 1\n",
+              "converter_keystores_failed_total{stage=\"write\"} 0\n",
+              "converter_keystores_in_flight 0\n",
+              "converter_keystores_queued 0\n",
+              "converter_keystore_duration_seconds_count 3\n",
+              // the failed decryption is not timed
+              "converter_kdf_duration_seconds_count{kdf=\"scrypt\"} 2\n",
+              "converter_kdf_duration_seconds_count{kdf=\"pbkdf2\"} 2\n",
+              "# TYPE jvm_memory_heap_used_bytes gauge\n");
+      assertThat(response.body().lines())
+          .allSatisfy(
+              line ->
+                  assertThat(line)
+                      .matches("# (HELP|TYPE) .*|[a-z_]+(\\{[a-z]+=\"[^\"]*\"})? -?[0-9.E-]+"));
+    }
+  }
+
+  @Test
+  void onlyGetIsServed() throws Exception {
+    try (MetricsServer server =
+        MetricsServer.start(
+            new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), new ConversionMetrics())) {
+      assertThat(scrape(server, "POST").statusCode()).isEqualTo(405);
+    }
+  }
+
+  private HttpResponse<String> scrape(final MetricsServer server, final String method)
+      throws IOException, InterruptedException {
+    return client.send(
+        HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.port() + "/metrics"))
+            .method(method, HttpRequest.BodyPublishers.noBody())
+            .build(),
+        HttpResponse.BodyHandlers.ofString());
+  }
+}
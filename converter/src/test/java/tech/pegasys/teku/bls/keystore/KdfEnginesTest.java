@@ -0,0 +1,95 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package tech.pegasys.teku.bls.keystore;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import tech.pegasys.teku.bls.keystore.kdf.ParallelSCrypt;
+import tech.pegasys.teku.bls.keystore.model.KdfParam;
+import tech.pegasys.teku.bls.keystore.model.Pbkdf2Param;
+import tech.pegasys.teku.bls.keystore.model.Pbkdf2PseudoRandomFunction;
+import tech.pegasys.teku.bls.keystore.model.SCryptParam;
+
+class KdfEnginesTest {
+  private static final KdfParam PBKDF2 =
+      new Pbkdf2Param(32, 1024, Pbkdf2PseudoRandomFunction.HMAC_SHA256, Bytes32.random());
+  private static final KdfParam SCRYPT = new SCryptParam(32, 1024, 2, 8, Bytes32.random());
+
+  @AfterEach
+  void resetEngines() {
+    KdfEngines.reset();
+    ParallelSCrypt.heapOnly();
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {"password", "", "\u00e9t\u00e9 \ud83d\udd11", "\u212b"})
+  void everyEngineDerivesTheSameKey(final String password) {
+    final byte[] normalizedPassword = PasswordUtils.normalizePassword(password).toArrayUnsafe();
+    for (final KdfParam param : List.of(PBKDF2, SCRYPT)) {
+      final Bytes expected = param.generateDecryptionKey(password);
+      for (final KdfEngine engine : KdfEngine.values()) {
+        if (engine.supports(param)) {
+          assertThat(Bytes.wrap(engine.derive(normalizedPassword, param)))
+              .describedAs("%s with %s", engine, param)
+              .isEqualTo(expected);
+        }
+      }
+    }
+  }
+
+  @Test
+  void selectsAnEngineAndCachesTheChoice(@TempDir final Path workDir) {
+    final Path cacheFile = workDir.resolve("cache/kdf-engines.properties");
+    final Bytes expected = SCRYPT.generateDecryptionKey("password");
+
+    final List<KdfEngines.Selection> selections =
+        KdfEngines.select(List.of(PBKDF2, SCRYPT, PBKDF2), cacheFile);
+
+    assertThat(selections)
+        .extracting(KdfEngines.Selection::parameterClass)
+        .containsExactly("pbkdf2 c=1024 dklen=32", "scrypt n=1024 r=8 p=2 dklen=32");
+    assertThat(selections)
+        .allSatisfy(
+            selection -> {
+              assertThat(selection.cached()).isFalse();
+              assertThat(selection.mismatched()).isEmpty();
+              assertThat(selection.timings()).hasSize(2).containsKey(selection.engine());
+            });
+    assertThat(KdfEngines.engine(PBKDF2)).isEqualTo(selections.get(0).engine());
+    assertThat(KdfEngines.engine(SCRYPT)).isEqualTo(selections.get(1).engine());
+    assertThat(SCRYPT.generateDecryptionKey("password")).isEqualTo(expected);
+    assertThat(cacheFile).exists();
+
+    // a later run on this host
+    KdfEngines.reset();
+    final List<KdfEngines.Selection> cached = KdfEngines.select(List.of(SCRYPT), cacheFile);
+    assertThat(cached).singleElement().matches(KdfEngines.Selection::cached);
+    assertThat(cached.get(0).engine()).isEqualTo(selections.get(1).engine());
+  }
+
+  @Test
+  void keepsFileBackedScryptOnTheParallelEngine(@TempDir final Path workDir) throws Exception {
+    ParallelSCrypt.fileBackedAbove(Files.createDirectories(workDir.resolve("scrypt")), 0);
+
+    assertThat(KdfEngine.BOUNCY_CASTLE_SCRYPT.supports(SCRYPT)).isFalse();
+    assertThat(KdfEngines.select(List.of(SCRYPT), null))
+        .singleElement()
+        .satisfies(
+            selection -> {
+              assertThat(selection.engine()).isEqualTo(KdfEngine.PARALLEL_SCRYPT);
+              // the only candidate, selected without deriving or timing a key
+              assertThat(selection.cached()).isFalse();
+              assertThat(selection.timings()).isEmpty();
+            });
+  }
+}
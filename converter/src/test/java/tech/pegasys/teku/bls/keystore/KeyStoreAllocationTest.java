@@ -0,0 +1,150 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package tech.pegasys.teku.bls.keystore;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.Supplier;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import tech.pegasys.teku.bls.keystore.model.Cipher;
+import tech.pegasys.teku.bls.keystore.model.KdfParam;
+import tech.pegasys.teku.bls.keystore.model.KeyStoreData;
+import tech.pegasys.teku.bls.keystore.model.Pbkdf2Param;
+import tech.pegasys.teku.bls.keystore.model.Pbkdf2PseudoRandomFunction;
+import tech.pegasys.teku.bls.keystore.model.SCryptParam;
+
+/**
+ * Bytes allocated per keystore by each stage of the per-key hot path, against the budgets in {@code
+ * allocation-budgets.properties}. KDF parameters are the cheapest valid ones, so the budgets cover
+ * the fixed cost of a stage plus the KDF working memory at that size. When a change legitimately
+ * moves a stage, update its budget from the table printed on failure.
+ */
+class KeyStoreAllocationTest {
+  private static final SecureRandom SECURE_RANDOM = new SecureRandom();
+  private static final String PASSWORD = "testpassword\u00e9";
+  private static final int WARMUP_ITERATIONS = 2_000;
+  private static final int ROUNDS = 5;
+  private static final int ITERATIONS_PER_ROUND = 200;
+
+  private final com.sun.management.ThreadMXBean threads =
+      (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+  @Test
+  void stagesStayWithinTheirAllocationBudget(@TempDir final Path tempDir) throws IOException {
+    assumeTrue(threads.isThreadAllocatedMemorySupported(), "Thread allocation is not measurable");
+    threads.setThreadAllocatedMemoryEnabled(true);
+
+    final Bytes privateKey = Bytes32.random(SECURE_RANDOM);
+    final Bytes publicKey = Bytes.random(48, SECURE_RANDOM);
+    final KeyStoreData pbkdf2Keystore = encrypt(privateKey, publicKey, pbkdf2());
+    final KeyStoreData scryptKeystore = encrypt(privateKey, publicKey, scrypt());
+    final Path keystoreFile = tempDir.resolve("keystore.json");
+    KeyStoreLoader.saveToFile(keystoreFile, scryptKeystore);
+    final URI keystoreUri = keystoreFile.toUri();
+
+    final Map<String, Long> measured = new LinkedHashMap<>();
+    measured.put("normalizePassword", measure(() -> PasswordUtils.normalizePassword(PASSWORD)));
+    measured.put("load", measure(() -> KeyStoreLoader.loadFromFile(keystoreUri)));
+    measured.put("decrypt.pbkdf2", measure(() -> KeyStore.decrypt(PASSWORD, pbkdf2Keystore)));
+    measured.put("decrypt.scrypt", measure(() -> KeyStore.decrypt(PASSWORD, scryptKeystore)));
+    measured.put("encrypt.pbkdf2", measure(() -> encrypt(privateKey, publicKey, pbkdf2())));
+    measured.put("encrypt.scrypt", measure(() -> encrypt(privateKey, publicKey, scrypt())));
+    measured.put("save", measure(() -> KeyStoreLoader.saveToString(scryptKeystore)));
+
+    final Properties budgets = loadBudgets();
+    final boolean overBudget =
+        measured.entrySet().stream()
+            .anyMatch(
+                entry ->
+                    entry.getValue() > Long.parseLong(budgets.getProperty(entry.getKey(), "-1")));
+    assertThat(overBudget).as(table(measured, budgets)).isFalse();
+  }
+
+  private static KeyStoreData encrypt(
+      final Bytes privateKey, final Bytes publicKey, final KdfParam kdfParam) {
+    return KeyStore.encrypt(
+        privateKey, publicKey, PASSWORD, "", kdfParam, new Cipher(Bytes.random(16, SECURE_RANDOM)));
+  }
+
+  private static KdfParam pbkdf2() {
+    return new Pbkdf2Param(
+        32, 1, Pbkdf2PseudoRandomFunction.HMAC_SHA256, Bytes32.random(SECURE_RANDOM));
+  }
+
+  private static KdfParam scrypt() {
+    return new SCryptParam(32, 2, 1, 1, Bytes32.random(SECURE_RANDOM));
+  }
+
+  /** Smallest average allocation of a round, after the JIT had the chance to compile the stage. */
+  private long measure(final Supplier<?> stage) {
+    final long threadId = Thread.currentThread().getId();
+    Object sink = null;
+    for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+      sink = stage.get();
+    }
+    long best = Long.MAX_VALUE;
+    for (int round = 0; round < ROUNDS; round++) {
+      final long before = threads.getThreadAllocatedBytes(threadId);
+      for (int i = 0; i < ITERATIONS_PER_ROUND; i++) {
+        sink = stage.get();
+      }
+      final long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+      best = Math.min(best, allocated / ITERATIONS_PER_ROUND);
+    }
+    assertThat(sink).isNotNull();
+    return best;
+  }
+
+  private static Properties loadBudgets() {
+    final Properties budgets = new Properties();
+    try (InputStream in =
+        KeyStoreAllocationTest.class.getResourceAsStream("/allocation-budgets.properties")) {
+      if (in != null) {
+        budgets.load(in);
+      }
+    } catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return budgets;
+  }
+
+  private static String table(final Map<String, Long> measured, final Properties budgets) {
+    final StringBuilder table =
+        new StringBuilder(
+            String.format(
+                "Allocation budget exceeded (bytes per keystore)%n%-20s %10s %10s %8s%n",
+                "stage", "budget", "measured", "diff"));
+    measured.forEach(
+        (stage, bytes) -> {
+          final String budget = budgets.getProperty(stage);
+          if (budget == null) {
+            table.append(String.format("%-20s %10s %10d %8s%n", stage, "-", bytes, "missing"));
+          } else {
+            final long limit = Long.parseLong(budget);
+            table.append(
+                String.format(
+                    "%-20s %10d %10d %+7.1f%%%s%n",
+                    stage,
+                    limit,
+                    bytes,
+                    100.0 * (bytes - limit) / limit,
+                    bytes > limit ? " !" : ""));
+          }
+        });
+    return table.toString();
+  }
+}
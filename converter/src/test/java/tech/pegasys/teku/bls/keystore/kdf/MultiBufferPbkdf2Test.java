@@ -0,0 +1,74 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package tech.pegasys.teku.bls.keystore.kdf;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.tuweni.bytes.Bytes;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+class MultiBufferPbkdf2Test {
+  private static final SecureRandom SECURE_RANDOM = new SecureRandom();
+
+  @Test
+  void derivesOneKeyPerLaneWithTheVectorModule() {
+    // run by the vectorTest task; the test task runs without the module
+    assumeTrue(ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent());
+    assertThat(MultiBufferPbkdf2.LANES).isGreaterThanOrEqualTo(4);
+  }
+
+  @Test
+  void matchesRfc7914TestVector() {
+    final byte[][] keys =
+        MultiBufferPbkdf2.deriveHmacSha256(
+            List.of("passwd".getBytes(UTF_8), "passwd".getBytes(UTF_8)),
+            List.of("salt".getBytes(UTF_8), "salt".getBytes(UTF_8)),
+            1,
+            64);
+
+    assertThat(List.of(keys))
+        .allSatisfy(
+            key ->
+                assertThat(Bytes.wrap(key))
+                    .isEqualTo(
+                        Bytes.fromHexString(
+                            "55ac046e56e3089fec1691c22544b605f94185216dde0465e68b9d57c20dacbc49ca9cccf179b645991664b39d77ef317c71b845b1e30bd509112041d3a19783")));
+  }
+
+  @ParameterizedTest
+  @CsvSource({
+    "1, 1, 32, 12",
+    "3, 2, 32, 12",
+    "17, 1000, 32, 12",
+    "9, 100, 48, 100",
+    "5, 64, 64, 64",
+    "33, 7, 32, 0"
+  })
+  void matchesBouncyCastle(
+      final int keyCount, final int c, final int dkLen, final int passwordLength) {
+    final List<byte[]> passwords = new ArrayList<>();
+    final List<byte[]> salts = new ArrayList<>();
+    for (int i = 0; i < keyCount; i++) {
+      final byte[] password = new byte[passwordLength];
+      final byte[] salt = new byte[32];
+      SECURE_RANDOM.nextBytes(password);
+      SECURE_RANDOM.nextBytes(salt);
+      passwords.add(password);
+      salts.add(salt);
+    }
+
+    final byte[][] keys = MultiBufferPbkdf2.deriveHmacSha256(passwords, salts, c, dkLen);
+
+    for (int i = 0; i < keyCount; i++) {
+      assertThat(keys[i])
+          .isEqualTo(MultiBufferPbkdf2.deriveScalar(passwords.get(i), salts.get(i), c, dkLen));
+    }
+  }
+}
@@ -0,0 +1,104 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package tech.pegasys.teku.bls.keystore.kdf;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import org.apache.tuweni.bytes.Bytes;
+import org.bouncycastle.crypto.generators.SCrypt;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+class ParallelSCryptTest {
+  private static final SecureRandom SECURE_RANDOM = new SecureRandom();
+
+  @Test
+  void matchesRfc7914TestVector() {
+    final byte[] key =
+        ParallelSCrypt.generate(
+            "password".getBytes(UTF_8), "NaCl".getBytes(UTF_8), 1024, 8, 16, 64);
+
+    assertThat(Bytes.wrap(key))
+        .isEqualTo(
+            Bytes.fromHexString(
+                "fdbabe1c9d3472007856e7190d01e9fe7c6ad7cbc8237830e77376634b3731622eaf30d92e22a3886ff109279d9830dac727afb94a83ee6d8360cbdfa2cc0640"));
+  }
+
+  @ParameterizedTest
+  @CsvSource({
+    "2, 1, 1, 32, 0",
+    "16, 8, 1, 32, 0",
+    "1024, 8, 1, 32, 0",
+    "1024, 8, 4, 32, 0",
+    "1024, 8, 4, 32, 3",
+    "256, 3, 5, 48, 2",
+    "512, 1, 7, 32, 6"
+  })
+  void matchesBouncyCastle(
+      final int n, final int r, final int p, final int dkLen, final int helpers) {
+    final byte[] password = new byte[12];
+    final byte[] salt = new byte[32];
+    SECURE_RANDOM.nextBytes(password);
+    SECURE_RANDOM.nextBytes(salt);
+
+    assertThat(ParallelSCrypt.generate(password, salt, n, r, p, dkLen, helpers))
+        .isEqualTo(SCrypt.generate(password, salt, n, r, p, dkLen));
+  }
+
+  @ParameterizedTest
+  @CsvSource({"1024, 8, 1, 0", "1024, 8, 4, 3", "256, 3, 5, 0", "16, 1, 2, 1"})
+  void fileBackedMatchesBouncyCastle(
+      final int n, final int r, final int p, final int helpers, @TempDir final Path tempDir)
+      throws IOException {
+    final byte[] password = new byte[12];
+    final byte[] salt = new byte[32];
+    SECURE_RANDOM.nextBytes(password);
+    SECURE_RANDOM.nextBytes(salt);
+
+    ParallelSCrypt.fileBackedAbove(tempDir, 0);
+    try {
+      assertThat(ParallelSCrypt.laneHeapBytes(n, r)).isZero();
+      assertThat(ParallelSCrypt.generate(password, salt, n, r, p, 32, helpers))
+          .isEqualTo(SCrypt.generate(password, salt, n, r, p, 32));
+    } finally {
+      ParallelSCrypt.heapOnly();
+    }
+    try (var files = Files.list(tempDir)) {
+      assertThat(files).isEmpty();
+    }
+  }
+
+  @Test
+  void onlyLanesAboveTheThresholdAreFileBacked(@TempDir final Path tempDir) {
+    ParallelSCrypt.fileBackedAbove(tempDir, 128L * 8 * 1024);
+    try {
+      assertThat(ParallelSCrypt.laneHeapBytes(1024, 8)).isEqualTo(128L * 8 * 1024);
+      assertThat(ParallelSCrypt.laneHeapBytes(2048, 8)).isZero();
+    } finally {
+      ParallelSCrypt.heapOnly();
+    }
+    assertThat(ParallelSCrypt.laneHeapBytes(2048, 8)).isEqualTo(128L * 8 * 2048);
+  }
+
+  @Test
+  void sequentialLanesStartNoHelper() {
+    ParallelSCrypt.sequentialLanes();
+    try {
+      assertThat(ParallelSCrypt.helpers(1024, 8, 16)).isZero();
+      assertThat(
+              ParallelSCrypt.generate(
+                  "password".getBytes(UTF_8), "NaCl".getBytes(UTF_8), 1024, 8, 16, 64))
+          .isEqualTo(
+              SCrypt.generate("password".getBytes(UTF_8), "NaCl".getBytes(UTF_8), 1024, 8, 16, 64));
+    } finally {
+      ParallelSCrypt.parallelLanes();
+    }
+  }
+}
@@ -0,0 +1,200 @@
+// Copyright 2025, Usman Saleem.
+// SPDX-License-Identifier: (Apache-2.0 OR MIT)
+package tech.pegasys.teku.bls.keystore.kdf;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Multi-buffer SHA-256: one independent message block per SIMD lane. Only runs the fixed-size
+ * blocks of the PBKDF2-HMAC-SHA256 iterations, see {@link MultiBufferPbkdf2}. Only loaded when the
+ * {@code jdk.incubator.vector} module is present.
+ *
+ * <p>Words are stored word-major: word {@code w} of lane {@code l} is at {@code [w * lanes + l]}.
+ */
+final class Sha256Lanes {
+  static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+  // length of an HMAC-SHA256 inner or outer message: a 64 byte key block and a 32 byte digest
+  private static final int HMAC_MESSAGE_BITS = (64 + 32) * 8;
+
+  private static final int[] K = {
+    0x428a2f98, 0x71374491, 0xb5c0fbcf, 0xe9b5dba5, 0x3956c25b, 0x59f111f1, 0x923f82a4, 0xab1c5ed5,
+    0xd807aa98, 0x12835b01, 0x243185be, 0x550c7dc3, 0x72be5d74, 0x80deb1fe, 0x9bdc06a7, 0xc19bf174,
+    0xe49b69c1, 0xefbe4786, 0x0fc19dc6, 0x240ca1cc, 0x2de92c6f, 0x4a7484aa, 0x5cb0a9dc, 0x76f988da,
+    0x983e5152, 0xa831c66d, 0xb00327c8, 0xbf597fc7, 0xc6e00bf3, 0xd5a79147, 0x06ca6351, 0x14292967,
+    0x27b70a85, 0x2e1b2138, 0x4d2c6dfc, 0x53380d13, 0x650a7354, 0x766a0abb, 0x81c2c92e, 0x92722c85,
+    0xa2bfe8a1, 0xa81a664b, 0xc24b8b70, 0xc76c51a3, 0xd192e819, 0xd6990624, 0xf40e3585, 0x106aa070,
+    0x19a4c116, 0x1e376c08, 0x2748774c, 0x34b0bcb5, 0x391c0cb3, 0x4ed8aa4a, 0x5b9cca4f, 0x682e6ff3,
+    0x748f82ee, 0x78a5636f, 0x84c87814, 0x8cc70208, 0x90befffa, 0xa4506ceb, 0xbef9a3f7, 0xc67178f2
+  };
+
+  private Sha256Lanes() {}
+
+  static int lanes() {
+    return SPECIES.length();
+  }
+
+  /**
+   * Run PBKDF2 iterations in every lane: {@code u = HMAC(password, u)} and {@code t ^= u}.
+   *
+   * @param innerState HMAC inner state, SHA-256 state after the ipad key block of each lane
+   * @param outerState HMAC outer state, SHA-256 state after the opad key block of each lane
+   * @param u Previous HMAC output of each lane, updated in place
+   * @param t XOR of the HMAC outputs of each lane, updated in place
+   * @param iterations Number of iterations
+   */
+  static void iterate(
+      final int[] innerState,
+      final int[] outerState,
+      final int[] u,
+      final int[] t,
+      final int iterations) {
+    final int lanes = lanes();
+    final int[] w = new int[64 * lanes];
+    for (int iteration = 0; iteration < iterations; iteration++) {
+      compress(innerState, u, w, u, lanes);
+      compress(outerState, u, w, u, lanes);
+      for (int i = 0; i < 8 * lanes; i += lanes) {
+        IntVector.fromArray(SPECIES, t, i)
+            .lanewise(VectorOperators.XOR, IntVector.fromArray(SPECIES, u, i))
+            .intoArray(t, i);
+      }
+    }
+  }
+
+  /**
+   * Compress the padded 32 byte message of every lane into a copy of the state.
+   *
+   * @param state The state to start from, not modified
+   * @param message 8 message words per lane
+   * @param w Scratch space for the message schedule
+   * @param digest Receives the 8 digest words per lane, may be the message
+   * @param lanes Number of lanes
+   */
+  private static void compress(
+      final int[] state, final int[] message, final int[] w, final int[] digest, final int lanes) {
+    System.arraycopy(message, 0, w, 0, 8 * lanes);
+    IntVector.broadcast(SPECIES, 0x80000000).intoArray(w, 8 * lanes);
+    for (int i = 9; i < 15; i++) {
+      IntVector.zero(SPECIES).intoArray(w, i * lanes);
+    }
+    IntVector.broadcast(SPECIES, HMAC_MESSAGE_BITS).intoArray(w, 15 * lanes);
+    for (int i = 16; i < 64; i++) {
+      final IntVector w2 = IntVector.fromArray(SPECIES, w, (i - 2) * lanes);
+      final IntVector w15 = IntVector.fromArray(SPECIES, w, (i - 15) * lanes);
+      final IntVector sigma1 =
+          w2.lanewise(VectorOperators.ROR, 17)
+              .lanewise(VectorOperators.XOR, w2.lanewise(VectorOperators.ROR, 19))
+              .lanewise(VectorOperators.XOR, w2.lanewise(VectorOperators.LSHR, 10));
+      final IntVector sigma0 =
+          w15.lanewise(VectorOperators.ROR, 7)
+              .lanewise(VectorOperators.XOR, w15.lanewise(VectorOperators.ROR, 18))
+              .lanewise(VectorOperators.XOR, w15.lanewise(VectorOperators.LSHR, 3));
+      sigma1
+          .add(IntVector.fromArray(SPECIES, w, (i - 7) * lanes))
+          .add(sigma0)
+          .add(IntVector.fromArray(SPECIES, w, (i - 16) * lanes))
+          .intoArray(w, i * lanes);
+    }
+
+    IntVector a = IntVector.fromArray(SPECIES, state, 0);
+    IntVector b = IntVector.fromArray(SPECIES, state, lanes);
+    IntVector c = IntVector.fromArray(SPECIES, state, 2 * lanes);
+    IntVector d = IntVector.fromArray(SPECIES, state, 3 * lanes);
+    IntVector e = IntVector.fromArray(SPECIES, state, 4 * lanes);
+    IntVector f = IntVector.fromArray(SPECIES, state, 5 * lanes);
+    IntVector g = IntVector.fromArray(SPECIES, state, 6 * lanes);
+    IntVector h = IntVector.fromArray(SPECIES, state, 7 * lanes);
+    for (int i = 0; i < 64; i++) {
+      final IntVector bigSigma1 =
+          e.lanewise(VectorOperators.ROR, 6)
+              .lanewise(VectorOperators.XOR, e.lanewise(VectorOperators.ROR, 11))
+              .lanewise(VectorOperators.XOR, e.lanewise(VectorOperators.ROR, 25));
+      final IntVector ch = e.and(f).lanewise(VectorOperators.XOR, e.not().and(g));
+      final IntVector t1 =
+          h.add(bigSigma1).add(ch).add(K[i]).add(IntVector.fromArray(SPECIES, w, i * lanes));
+      final IntVector bigSigma0 =
+          a.lanewise(VectorOperators.ROR, 2)
+              .lanewise(VectorOperators.XOR, a.lanewise(VectorOperators.ROR, 13))
+              .lanewise(VectorOperators.XOR, a.lanewise(VectorOperators.ROR, 22));
+      final IntVector maj =
+          a.and(b).lanewise(VectorOperators.XOR, a.and(c)).lanewise(VectorOperators.XOR, b.and(c));
+      h = g;
+      g = f;
+      f = e;
+      e = d.add(t1);
+      d = c;
+      c = b;
+      b = a;
+      a = t1.add(bigSigma0).add(maj);
+    }
+    a.add(IntVector.fromArray(SPECIES, state, 0)).intoArray(digest, 0);
+    b.add(IntVector.fromArray(SPECIES, state, lanes)).intoArray(digest, lanes);
+    c.add(IntVector.fromArray(SPECIES, state, 2 * lanes)).intoArray(digest, 2 * lanes);
+    d.add(IntVector.fromArray(SPECIES, state, 3 * lanes)).intoArray(digest, 3 * lanes);
+    e.add(IntVector.fromArray(SPECIES, state, 4 * lanes)).intoArray(digest, 4 * lanes);
+    f.add(IntVector.fromArray(SPECIES, state, 5 * lanes)).intoArray(digest, 5 * lanes);
+    g.add(IntVector.fromArray(SPECIES, state, 6 * lanes)).intoArray(digest, 6 * lanes);
+    h.add(IntVector.fromArray(SPECIES, state, 7 * lanes)).intoArray(digest, 7 * lanes);
+  }
+
+  /**
+   * Scalar SHA-256 compression of one 64 byte block, used to precompute the HMAC states.
+   *
+   * @param state The state, updated in place
+   * @param block The block
+   */
+  static void compressScalar(final int[] state, final byte[] block) {
+    final int[] w = new int[64];
+    for (int i = 0; i < 16; i++) {
+      w[i] =
+          (block[4 * i] & 0xFF) << 24
+              | (block[4 * i + 1] & 0xFF) << 16
+              | (block[4 * i + 2] & 0xFF) << 8
+              | (block[4 * i + 3] & 0xFF);
+    }
+    for (int i = 16; i < 64; i++) {
+      final int s0 =
+          Integer.rotateRight(w[i - 15], 7)
+              ^ Integer.rotateRight(w[i - 15], 18)
+              ^ (w[i - 15] >>> 3);
+      final int s1 =
+          Integer.rotateRight(w[i - 2], 17) ^ Integer.rotateRight(w[i - 2], 19) ^ (w[i - 2] >>> 10);
+      w[i] = w[i - 16] + s0 + w[i - 7] + s1;
+    }
+    int a = state[0];
+    int b = state[1];
+    int c = state[2];
+    int d = state[3];
+    int e = state[4];
+    int f = state[5];
+    int g = state[6];
+    int h = state[7];
+    for (int i = 0; i < 64; i++) {
+      final int s1 =
+          Integer.rotateRight(e, 6) ^ Integer.rotateRight(e, 11) ^ Integer.rotateRight(e, 25);
+      final int t1 = h + s1 + ((e & f) ^ (~e & g)) + K[i] + w[i];
+      final int s0 =
+          Integer.rotateRight(a, 2) ^ Integer.rotateRight(a, 13) ^ Integer.rotateRight(a, 22);
+      final int t2 = s0 + ((a & b) ^ (a & c) ^ (b & c));
+      h = g;
+      g = f;
+      f = e;
+      e = d + t1;
+      d = c;
+      c = b;
+      b = a;
+      a = t1 + t2;
+    }
+    state[0] += a;
+    state[1] += b;
+    state[2] += c;
+    state[3] += d;
+    state[4] += e;
+    state[5] += f;
+    state[6] += g;
+    state[7] += h;
+  }
+}